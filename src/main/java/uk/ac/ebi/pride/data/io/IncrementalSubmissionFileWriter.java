@@ -0,0 +1,510 @@
+package uk.ac.ebi.pride.data.io;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.exception.SubmissionFileException;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.ProjectMetaData;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.Constant;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Writer for keeping an existing submission file up to date without rewriting it on every change.
+ * <p/>
+ * New and changed data files are appended to the end of the submission file as extra file mapping (and sample
+ * metadata) entries, which replace the earlier entries of the same file id when the file is parsed. Deleted data
+ * files are recorded in a sidecar journal, see {@link SubmissionFileJournal}. Project metadata is overwritten in
+ * place when the new lines fit into the old ones, padded with spaces.
+ * <p/>
+ * Whenever the changes can not be expressed this way, or too many obsolete entries have accumulated, the submission
+ * file is rewritten in full using {@link SubmissionFileWriter}. {@link #compact()} does the same on request.
+ * <p/>
+ * This is a change to the submission file format: an incrementally updated file may hold several entries for the
+ * same file id, and file mapping entries after the sample metadata section. {@link SubmissionFileParser} and
+ * {@link LazySubmission} read such files, but older parsers, which read the sections in order and expect one entry
+ * per file id, report misplaced or duplicate entries. Call {@link #compact()} before handing the submission file to
+ * an older tool: a compacted file is laid out like any file written by {@link SubmissionFileWriter}.
+ * <p/>
+ * The writer assumes it is the only one modifying the submission file.
+ */
+public class IncrementalSubmissionFileWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalSubmissionFileWriter.class);
+
+    /**
+     * Minimum number of obsolete entries before an update triggers a full rewrite
+     */
+    private static final int MIN_OBSOLETE_ENTRIES_BEFORE_REWRITE = 1024;
+
+    /**
+     * Size of the chunks read while scanning the submission file
+     */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private static final HashFunction ENTRY_HASH = Hashing.murmur3_128();
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte SPACE = ' ';
+
+    private final File file;
+
+    private boolean scanned = false;
+    private boolean prideAccessionColumn;
+    private boolean urlColumn;
+    private boolean sampleMetaDataSection;
+    private boolean endsWithNewLine;
+    private boolean standardFileMappingHeader;
+    private final List<MetaDataLine> metaDataLines = new ArrayList<MetaDataLine>();
+    private final Map<Integer, Long> fileMappingHashes = new LinkedHashMap<Integer, Long>();
+    private final Map<Integer, Long> sampleMetaDataHashes = new HashMap<Integer, Long>();
+    private final Set<Integer> deletedFileIds = new HashSet<Integer>();
+    private int obsoleteEntries;
+
+    public IncrementalSubmissionFileWriter(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Bring the submission file up to date with the given submission, rewriting it only when needed
+     *
+     * @param submission submission object
+     * @throws SubmissionFileException exception while updating the submission file
+     */
+    public void update(Submission submission) throws SubmissionFileException {
+        try {
+            if (!file.exists()) {
+                rewrite(submission);
+                return;
+            }
+            if (!scanned) {
+                scan();
+            }
+
+            ProjectMetaData projectMetaData = submission.getProjectMetaData();
+            boolean partial = projectMetaData.isPartialSubmission();
+            List<DataFile> dataFiles = submission.getDataFiles();
+            // appended entries must line up with the existing file mapping columns
+            if (!standardFileMappingHeader
+                    || partial == sampleMetaDataSection
+                    || (!prideAccessionColumn && SubmissionFileWriter.hasPrideAccession(dataFiles))
+                    || (!urlColumn && SubmissionFileWriter.hasURL(dataFiles))) {
+                rewrite(submission);
+                return;
+            }
+
+            // project metadata
+            List<String> newMetaDataLines = splitLines(SubmissionFileWriter.formatProjectMetaData(projectMetaData));
+            if (!fitsMetaDataLines(newMetaDataLines)) {
+                rewrite(submission);
+                return;
+            }
+
+            // file mapping and sample metadata entries
+            StringBuilder appendedEntries = new StringBuilder();
+            Map<Integer, Long> appendedFileMappingHashes = new HashMap<Integer, Long>();
+            Map<Integer, Long> appendedSampleMetaDataHashes = new HashMap<Integer, Long>();
+            Set<Integer> remainingFileIds = new HashSet<Integer>(fileMappingHashes.keySet());
+            int replacedEntries = 0;
+            for (DataFile dataFile : dataFiles) {
+                int fileId = dataFile.getFileId();
+                if (deletedFileIds.contains(fileId)) {
+                    // a deleted file id is being reused
+                    rewrite(submission);
+                    return;
+                }
+                remainingFileIds.remove(fileId);
+
+                Long previousHash = fileMappingHashes.get(fileId);
+                String entry = formatFileMapping(dataFile, previousHash);
+                long hash = hashEntry(entry);
+                if (previousHash == null || previousHash != hash) {
+                    if (previousHash != null) {
+                        replacedEntries++;
+                    }
+                    appendedEntries.append(entry).append(Constant.LINE_SEPARATOR);
+                    appendedFileMappingHashes.put(fileId, hash);
+                }
+
+                boolean resultFile = ProjectFileType.RESULT.equals(dataFile.getFileType());
+                Long previousSampleMetaDataHash = sampleMetaDataHashes.get(fileId);
+                if (!partial && resultFile) {
+                    String sampleMetaDataEntry = stripLineSeparator(SubmissionFileWriter.formatSampleMetaDataEntry(dataFile));
+                    long sampleMetaDataHash = hashEntry(sampleMetaDataEntry);
+                    if (previousSampleMetaDataHash == null || previousSampleMetaDataHash != sampleMetaDataHash) {
+                        if (previousSampleMetaDataHash != null) {
+                            replacedEntries++;
+                        }
+                        appendedEntries.append(sampleMetaDataEntry).append(Constant.LINE_SEPARATOR);
+                        appendedSampleMetaDataHashes.put(fileId, sampleMetaDataHash);
+                    }
+                } else if (previousSampleMetaDataHash != null) {
+                    // sample metadata entries can not be withdrawn without deleting the file
+                    rewrite(submission);
+                    return;
+                }
+            }
+
+            int liveEntries = dataFiles.size() + sampleMetaDataHashes.size() + appendedSampleMetaDataHashes.size();
+            int newObsoleteEntries = obsoleteEntries + replacedEntries + remainingFileIds.size();
+            if (newObsoleteEntries > Math.max(MIN_OBSOLETE_ENTRIES_BEFORE_REWRITE, liveEntries)) {
+                rewrite(submission);
+                return;
+            }
+
+            // apply the changes, entries first so that a failure never leaves a journal pointing at missing entries
+            if (appendedEntries.length() > 0) {
+                appendEntries(appendedEntries);
+                fileMappingHashes.putAll(appendedFileMappingHashes);
+                sampleMetaDataHashes.putAll(appendedSampleMetaDataHashes);
+            }
+            if (!remainingFileIds.isEmpty()) {
+                List<Integer> removedFileIds = new ArrayList<Integer>(remainingFileIds);
+                Collections.sort(removedFileIds);
+                SubmissionFileJournal.appendDeletedFileIds(file, removedFileIds);
+                deletedFileIds.addAll(removedFileIds);
+                for (Integer removedFileId : removedFileIds) {
+                    fileMappingHashes.remove(removedFileId);
+                    sampleMetaDataHashes.remove(removedFileId);
+                }
+            }
+            writeMetaDataLines(newMetaDataLines);
+            obsoleteEntries = newObsoleteEntries;
+        } catch (IOException e) {
+            String msg = "Error while updating submission file: " + file.getAbsolutePath();
+            logger.error(msg, e);
+            throw new SubmissionFileException(msg, e);
+        }
+    }
+
+    /**
+     * Fold all the incremental changes back into a clean submission file and remove the journal
+     *
+     * @throws SubmissionFileException exception while compacting the submission file
+     */
+    public void compact() throws SubmissionFileException {
+        try {
+            rewrite(SubmissionFileParser.parse(file));
+        } catch (IOException e) {
+            String msg = "Error while compacting submission file: " + file.getAbsolutePath();
+            logger.error(msg, e);
+            throw new SubmissionFileException(msg, e);
+        }
+    }
+
+    /**
+     * Rewrite the whole submission file, the journal is removed once the new file is in place. If that removal
+     * does not happen, the journal still belongs to the replaced file and is ignored, see
+     * {@link SubmissionFileJournal}.
+     */
+    private void rewrite(Submission submission) throws SubmissionFileException, IOException {
+        SubmissionFileWriter.write(submission, file);
+        SubmissionFileJournal.delete(file);
+        scan();
+    }
+
+    /**
+     * Format the file mapping entry of a data file.
+     * <p/>
+     * Paths are written in canonical form, which is a file system call, so the path as given is tried first:
+     * data files parsed from the submission file already carry the canonical path of their entry.
+     */
+    private String formatFileMapping(DataFile dataFile, Long previousHash) throws IOException {
+        if (!dataFile.isFile()) {
+            return stripLineSeparator(SubmissionFileWriter.formatFileMapping(dataFile, null, prideAccessionColumn, urlColumn));
+        }
+
+        if (previousHash != null) {
+            String entry = stripLineSeparator(SubmissionFileWriter.formatFileMapping(dataFile,
+                    dataFile.getFile().getPath(), prideAccessionColumn, urlColumn));
+            if (hashEntry(entry) == previousHash) {
+                return entry;
+            }
+        }
+
+        return stripLineSeparator(SubmissionFileWriter.formatFileMapping(dataFile,
+                dataFile.getFile().getCanonicalPath(), prideAccessionColumn, urlColumn));
+    }
+
+    /**
+     * Check whether the new project metadata lines can be written over the existing ones
+     */
+    private boolean fitsMetaDataLines(List<String> newMetaDataLines) {
+        if (newMetaDataLines.size() != metaDataLines.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < newMetaDataLines.size(); i++) {
+            MetaDataLine metaDataLine = metaDataLines.get(i);
+            String newLine = newMetaDataLines.get(i);
+            if (!newLine.equals(metaDataLine.getContent())
+                    && newLine.getBytes(StandardCharsets.UTF_8).length > metaDataLine.getLength()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Overwrite the changed project metadata lines in place, padding them to the length of the old lines
+     */
+    private void writeMetaDataLines(List<String> newMetaDataLines) throws IOException {
+        FileChannel channel = null;
+        try {
+            for (int i = 0; i < newMetaDataLines.size(); i++) {
+                MetaDataLine metaDataLine = metaDataLines.get(i);
+                String newLine = newMetaDataLines.get(i);
+                if (newLine.equals(metaDataLine.getContent())) {
+                    continue;
+                }
+
+                if (channel == null) {
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                }
+                byte[] content = newLine.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.allocate(metaDataLine.getLength());
+                buffer.put(content);
+                while (buffer.hasRemaining()) {
+                    buffer.put(SPACE);
+                }
+                buffer.flip();
+                long position = metaDataLine.getOffset();
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                metaDataLines.set(i, new MetaDataLine(metaDataLine.getOffset(), metaDataLine.getLength(), newLine));
+            }
+
+            if (channel != null) {
+                channel.force(true);
+            }
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Append entries to the end of the submission file
+     */
+    private void appendEntries(StringBuilder entries) throws IOException {
+        if (!endsWithNewLine) {
+            entries.insert(0, Constant.LINE_SEPARATOR);
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(entries.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        endsWithNewLine = true;
+    }
+
+    /**
+     * Read the layout of the submission file: position of the project metadata lines, file mapping columns and
+     * a hash of every file mapping and sample metadata entry
+     */
+    private void scan() throws IOException, SubmissionFileException {
+        metaDataLines.clear();
+        fileMappingHashes.clear();
+        sampleMetaDataHashes.clear();
+        deletedFileIds.clear();
+        SubmissionFileJournal.deleteIfStale(file);
+        deletedFileIds.addAll(SubmissionFileJournal.readDeletedFileIds(file));
+        prideAccessionColumn = false;
+        urlColumn = false;
+        sampleMetaDataSection = false;
+        endsWithNewLine = true;
+        obsoleteEntries = 0;
+        standardFileMappingHeader = true;
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] chunk = new byte[SCAN_BUFFER_SIZE];
+            ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+            long offset = 0;
+            long lineStart = 0;
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] == LINE_FEED) {
+                        line.write(chunk, start, i - start);
+                        scanLine(line.toByteArray(), lineStart);
+                        line.reset();
+                        start = i + 1;
+                        lineStart = offset + i + 1;
+                    }
+                }
+                line.write(chunk, start, read - start);
+                offset += read;
+            }
+            endsWithNewLine = line.size() == 0;
+            if (!endsWithNewLine) {
+                scanLine(line.toByteArray(), lineStart);
+            }
+        } finally {
+            in.close();
+        }
+
+        for (Integer deletedFileId : deletedFileIds) {
+            if (fileMappingHashes.remove(deletedFileId) != null) {
+                obsoleteEntries++;
+            }
+            if (sampleMetaDataHashes.remove(deletedFileId) != null) {
+                obsoleteEntries++;
+            }
+        }
+
+        scanned = true;
+    }
+
+    /**
+     * Record a single line of the submission file
+     *
+     * @param line      line content, without the line feed
+     * @param lineStart offset of the line in the submission file
+     */
+    private void scanLine(byte[] line, long lineStart) {
+        int length = line.length;
+        if (length > 0 && line[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        String content = new String(line, 0, length, StandardCharsets.UTF_8);
+
+        String[] parts = content.split(Constant.TAB, -1);
+        String section = parts[0];
+        if (Constant.METADATA_HEADER.equals(section)) {
+            metaDataLines.add(new MetaDataLine(lineStart, length, stripTrailingSpaces(content)));
+        } else if (Constant.FILE_MAPPING_HEADER.equals(section)) {
+            standardFileMappingHeader = scanFileMappingHeader(parts);
+        } else if (Constant.FILE_MAPPING_ENTRY.equals(section)) {
+            recordEntry(fileMappingHashes, parts, content);
+        } else if (Constant.SAMPLE_METADATA_HEADER.equals(section)) {
+            sampleMetaDataSection = true;
+        } else if (Constant.SAMPLE_METADATA_ENTRY.equals(section)) {
+            recordEntry(sampleMetaDataHashes, parts, content);
+        }
+    }
+
+    /**
+     * Read the optional columns from the file mapping header
+     *
+     * @return boolean true if the header is laid out the way {@link SubmissionFileWriter} writes it
+     */
+    private boolean scanFileMappingHeader(String[] headers) {
+        List<String> expected = new ArrayList<String>(Arrays.asList(Constant.FILE_MAPPING_HEADER,
+                Constant.FILE_ID, Constant.FILE_TYPE, Constant.FILE_PATH, Constant.FILE_MAPPING));
+        for (int i = expected.size(); i < headers.length; i++) {
+            String header = headers[i].trim();
+            if (Constant.PRIDE_ACCESSION.equalsIgnoreCase(header) && !prideAccessionColumn && !urlColumn) {
+                prideAccessionColumn = true;
+                expected.add(header);
+            } else if (Constant.URL.equalsIgnoreCase(header) && !urlColumn) {
+                urlColumn = true;
+                expected.add(header);
+            }
+        }
+
+        if (expected.size() != headers.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.get(i).equalsIgnoreCase(headers[i].trim())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the hash of an entry, a repeated file id replaces the earlier entry
+     */
+    private void recordEntry(Map<Integer, Long> hashes, String[] parts, String content) {
+        if (parts.length < 2) {
+            return;
+        }
+        try {
+            int fileId = Integer.parseInt(parts[1].trim());
+            if (hashes.put(fileId, hashEntry(content)) != null) {
+                obsoleteEntries++;
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("Invalid file id in submission file entry: " + content);
+        }
+    }
+
+    private static long hashEntry(String entry) {
+        return ENTRY_HASH.hashString(entry, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static List<String> splitLines(String content) {
+        List<String> lines = new ArrayList<String>();
+        for (String line : content.split(Constant.LINE_SEPARATOR)) {
+            if (line.length() > 0) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static String stripLineSeparator(String line) {
+        return line.endsWith(Constant.LINE_SEPARATOR) ? line.substring(0, line.length() - Constant.LINE_SEPARATOR.length()) : line;
+    }
+
+    private static String stripTrailingSpaces(String line) {
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * Location of a project metadata line in the submission file, the length excludes the line separator
+     */
+    private static final class MetaDataLine {
+        private final long offset;
+        private final int length;
+        private final String content;
+
+        private MetaDataLine(long offset, int length, String content) {
+            this.offset = offset;
+            this.length = length;
+            this.content = content;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package uk.ac.ebi.pride.data.io;
+
+import com.google.common.collect.MapMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.exception.SubmissionFileException;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.ProjectMetaData;
+import uk.ac.ebi.pride.data.model.SampleMetaData;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.Constant;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read only view of a submission file which does not materialize all of its data files upfront.
+ * <p/>
+ * Opening the view parses the project metadata and records the byte offset of every file mapping and sample
+ * metadata entry. Data files are materialized on demand, a page at a time, and the most recently used pages are
+ * kept in a small LRU cache. Mapped data files are materialized one by one from their own entries, their pages are
+ * left alone.
+ * <p/>
+ * A data file stays the same instance for as long as it is referenced, by the caller or through the file mappings of
+ * another data file, even once its page has been evicted, so that identity based consumers see a single instance.
+ * <p/>
+ * Entries are resolved the same way as {@link SubmissionFileParser} does: a repeated file id replaces the earlier
+ * entry, keeping its position, and data files deleted in the submission journal are left out.
+ * <p/>
+ * The view fails with an exception if the submission file is modified after it has been opened.
+ */
+public class LazySubmission {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazySubmission.class);
+
+    /**
+     * Number of data files materialized together
+     */
+    public static final int DEFAULT_PAGE_SIZE = 256;
+    /**
+     * Number of pages kept in memory
+     */
+    public static final int DEFAULT_MAX_CACHED_PAGES = 16;
+
+    private static final int SCAN_BUFFER_SIZE = 256 * 1024;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte TAB = '\t';
+    private static final long NO_OFFSET = -1;
+
+    private final File file;
+    private final int pageSize;
+    private final long fileSize;
+    private final long lastModified;
+    private final ProjectMetaData projectMetaData;
+    private final Set<Integer> deletedFileIds;
+
+    private SubmissionFileParser.FileMappingColumns fileMappingColumns;
+    private int fileMappingIdIndex = -1;
+    private String[] sampleMetaDataHeaders;
+    private int sampleMetaDataFileIdIndex = -1;
+
+    /**
+     * File mapping entry of each data file, in file mapping order
+     */
+    private long[] fileMappingOffsets = new long[1024];
+    /**
+     * Sample metadata entry of each data file, or NO_OFFSET
+     */
+    private long[] sampleMetaDataOffsets;
+    private int[] fileIds = new int[1024];
+    private int numberOfDataFiles = 0;
+    /**
+     * File ids in ascending order, and the position of each of them in the file mapping section
+     */
+    private int[] sortedFileIds;
+    private int[] positionsBySortedFileId;
+
+    private final Map<Integer, DataFile[]> pages;
+    /**
+     * Data files which are still referenced, by file id, including those whose file mappings are being resolved
+     */
+    private final Map<Integer, DataFile> liveDataFiles = new MapMaker().weakValues().makeMap();
+
+    public LazySubmission(File file) throws SubmissionFileException {
+        this(file, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    public LazySubmission(File file, int pageSize, final int maxCachedPages) throws SubmissionFileException {
+        if (pageSize < 1 || maxCachedPages < 1) {
+            throw new IllegalArgumentException("Page size and number of cached pages must be positive");
+        }
+
+        this.file = file;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, DataFile[]>(maxCachedPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DataFile[]> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+
+        if (!file.isFile()) {
+            String msg = "Failed to find submission file: " + file.getAbsolutePath();
+            logger.error(msg);
+            throw new SubmissionFileException(msg);
+        }
+        this.fileSize = file.length();
+        this.lastModified = file.lastModified();
+        this.deletedFileIds = SubmissionFileJournal.readDeletedFileIds(file);
+
+        Submission submission = new Submission();
+        try {
+            scan(submission);
+        } catch (IOException e) {
+            String msg = "Failed to read from submission file: " + file.getAbsolutePath();
+            logger.error(msg, e);
+            throw new SubmissionFileException(msg, e);
+        }
+        this.projectMetaData = submission.getProjectMetaData();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public ProjectMetaData getProjectMetaData() {
+        return projectMetaData;
+    }
+
+    public synchronized int getNumberOfDataFiles() {
+        return numberOfDataFiles;
+    }
+
+    /**
+     * Get the ids of all the data files, in file mapping order, without materializing them
+     *
+     * @return int[]   file ids
+     */
+    public synchronized int[] getFileIds() {
+        return Arrays.copyOf(fileIds, numberOfDataFiles);
+    }
+
+    public synchronized boolean containsFileId(int fileId) {
+        return indexOf(fileId) >= 0;
+    }
+
+    /**
+     * Get a data file by its position in the file mapping section
+     *
+     * @param index position of the data file
+     * @return DataFile    data file
+     * @throws SubmissionFileException exception while reading the data file
+     */
+    public synchronized DataFile getDataFile(int index) throws SubmissionFileException {
+        if (index < 0 || index >= numberOfDataFiles) {
+            throw new IndexOutOfBoundsException("Data file index: " + index + ", number of data files: " + numberOfDataFiles);
+        }
+        return getPage(index / pageSize)[index % pageSize];
+    }
+
+    /**
+     * Get a data file by its file id
+     *
+     * @param fileId file id
+     * @return DataFile    data file, null if there is no data file with the given id
+     * @throws SubmissionFileException exception while reading the data file
+     */
+    public synchronized DataFile getDataFileById(int fileId) throws SubmissionFileException {
+        int index = indexOf(fileId);
+        return index < 0 ? null : getDataFile(index);
+    }
+
+    /**
+     * Get a range of data files, in file mapping order
+     *
+     * @param fromIndex position of the first data file, inclusive
+     * @param toIndex   position of the last data file, exclusive
+     * @return List<DataFile>  data files
+     * @throws SubmissionFileException exception while reading the data files
+     */
+    public synchronized List<DataFile> getDataFiles(int fromIndex, int toIndex) throws SubmissionFileException {
+        if (fromIndex < 0 || toIndex > numberOfDataFiles || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Data file range: " + fromIndex + " - " + toIndex + ", number of data files: " + numberOfDataFiles);
+        }
+
+        List<DataFile> dataFiles = new ArrayList<DataFile>(toIndex - fromIndex);
+        for (int index = fromIndex; index < toIndex; index++) {
+            dataFiles.add(getDataFile(index));
+        }
+        return dataFiles;
+    }
+
+    /**
+     * Materialize the whole submission, this parses the complete submission file
+     *
+     * @return Submission  submission object
+     * @throws SubmissionFileException exception while reading the submission file
+     */
+    public synchronized Submission toSubmission() throws SubmissionFileException {
+        checkUnmodified();
+        return SubmissionFileParser.parse(file);
+    }
+
+    /**
+     * Read every line of the submission file once: parse the project metadata and record the offsets of the
+     * file mapping and sample metadata entries
+     */
+    private void scan(Submission submission) throws IOException, SubmissionFileException {
+        List<String[]> metadata = new ArrayList<String[]>();
+        // entries found before their section header, resolved at the end
+        List<Long> pendingFileMappings = new ArrayList<Long>();
+        List<Long> pendingSampleMetaData = new ArrayList<Long>();
+        Map<Integer, Long> sampleMetaDataOffsetByFileId = new HashMap<Integer, Long>();
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] chunk = new byte[SCAN_BUFFER_SIZE];
+            byte[] line = new byte[1024];
+            int lineLength = 0;
+            long offset = 0;
+            long lineStart = 0;
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] == LINE_FEED) {
+                        line = append(line, lineLength, chunk, start, i - start);
+                        lineLength += i - start;
+                        scanLine(line, lineLength, lineStart, metadata, pendingFileMappings, pendingSampleMetaData, sampleMetaDataOffsetByFileId);
+                        lineLength = 0;
+                        start = i + 1;
+                        lineStart = offset + start;
+                    }
+                }
+                // keep the start of a line spanning chunks
+                line = append(line, lineLength, chunk, start, read - start);
+                lineLength += read - start;
+                offset += read;
+            }
+            if (lineLength > 0) {
+                scanLine(line, lineLength, lineStart, metadata, pendingFileMappings, pendingSampleMetaData, sampleMetaDataOffsetByFileId);
+            }
+        } finally {
+            in.close();
+        }
+
+        // entries which appeared before their headers
+        if ((!pendingFileMappings.isEmpty() && fileMappingColumns == null)
+                || (!pendingSampleMetaData.isEmpty() && sampleMetaDataHeaders == null)) {
+            throw new SubmissionFileException("Submission file entries without section header: " + file.getAbsolutePath());
+        }
+        if (!pendingFileMappings.isEmpty() || !pendingSampleMetaData.isEmpty()) {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                for (Long pendingOffset : pendingFileMappings) {
+                    addFileMapping(parseIntField(readEntry(channel, pendingOffset), fileMappingIdIndex), pendingOffset);
+                }
+                for (Long pendingOffset : pendingSampleMetaData) {
+                    sampleMetaDataOffsetByFileId.put(parseIntField(readEntry(channel, pendingOffset), sampleMetaDataFileIdIndex), pendingOffset);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        indexFileIds();
+
+        // sample metadata of each data file, the last entry wins
+        for (Map.Entry<Integer, Long> entry : sampleMetaDataOffsetByFileId.entrySet()) {
+            int index = indexOf(entry.getKey());
+            if (index >= 0) {
+                sampleMetaDataOffsets[index] = entry.getValue();
+            } else if (!deletedFileIds.contains(entry.getKey())) {
+                throw new SubmissionFileException("Failed to find data file for sample metadata, file id: " + entry.getKey());
+            }
+        }
+
+        SubmissionFileParser.parseProjectMetadata(submission, metadata);
+    }
+
+    /**
+     * Record a single line, the line feed is not included
+     */
+    private void scanLine(byte[] line, int length, long offset,
+                          List<String[]> metadata,
+                          List<Long> pendingFileMappings,
+                          List<Long> pendingSampleMetaData,
+                          Map<Integer, Long> sampleMetaDataOffsetByFileId) throws SubmissionFileException {
+        if (length > 0 && line[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+
+        String section = getSection(line, length);
+        if (Constant.FILE_MAPPING_ENTRY.equals(section)) {
+            if (fileMappingColumns == null) {
+                pendingFileMappings.add(offset);
+            } else {
+                addFileMapping(parseIntField(line, length, fileMappingIdIndex), offset);
+            }
+        } else if (Constant.SAMPLE_METADATA_ENTRY.equals(section)) {
+            if (sampleMetaDataHeaders == null) {
+                pendingSampleMetaData.add(offset);
+            } else {
+                sampleMetaDataOffsetByFileId.put(parseIntField(line, length, sampleMetaDataFileIdIndex), offset);
+            }
+        } else {
+            String content = new String(line, 0, length, StandardCharsets.UTF_8);
+            if (content.trim().length() == 0) {
+                return;
+            }
+
+            String[] parts = content.split(Constant.TAB, -1);
+            if (Constant.METADATA_HEADER.equals(parts[0])) {
+                if (parts.length < 3) {
+                    throw new SubmissionFileException("The MetaData section of the submission file must have three tab-separated parts: " + content);
+                }
+                metadata.add(parts);
+            } else if (Constant.FILE_MAPPING_HEADER.equals(parts[0])) {
+                fileMappingColumns = new SubmissionFileParser.FileMappingColumns(parts);
+                fileMappingIdIndex = indexOf(parts, Constant.FILE_ID);
+            } else if (Constant.SAMPLE_METADATA_HEADER.equals(parts[0])) {
+                sampleMetaDataHeaders = parts;
+                sampleMetaDataFileIdIndex = indexOf(parts, Constant.FILE_ID);
+            } else if (!Constant.COMMENT_ENTRY.equals(parts[0])) {
+                String msg = "Unrecognised submission file section: " + file.getAbsolutePath();
+                logger.error(msg);
+                throw new SubmissionFileException(msg);
+            }
+        }
+    }
+
+    /**
+     * Record a file mapping entry, repeated file ids are resolved by {@link #indexFileIds()}
+     */
+    private void addFileMapping(int fileId, long offset) {
+        if (deletedFileIds.contains(fileId)) {
+            return;
+        }
+
+        if (numberOfDataFiles == fileIds.length) {
+            int capacity = fileIds.length * 2;
+            fileIds = Arrays.copyOf(fileIds, capacity);
+            fileMappingOffsets = Arrays.copyOf(fileMappingOffsets, capacity);
+        }
+        fileIds[numberOfDataFiles] = fileId;
+        fileMappingOffsets[numberOfDataFiles] = offset;
+        numberOfDataFiles++;
+    }
+
+    /**
+     * Drop the repeated file mapping entries, a repeated entry replaces the earlier one and keeps its position, and
+     * sort the file ids for {@link #indexOf(int)}
+     */
+    private void indexFileIds() {
+        int count = numberOfDataFiles;
+        // file id in the high bits and position in the low bits, so that the entries of a file id keep their order
+        long[] keys = new long[count];
+        for (int index = 0; index < count; index++) {
+            keys[index] = ((long) fileIds[index] << 32) | index;
+        }
+        Arrays.sort(keys);
+
+        boolean[] kept = new boolean[count];
+        int first = -1;
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            if (i == 0 || (int) (keys[i] >> 32) != (int) (keys[i - 1] >> 32)) {
+                first = index;
+                kept[index] = true;
+            } else {
+                fileMappingOffsets[first] = fileMappingOffsets[index];
+            }
+        }
+
+        int[] positions = new int[count];
+        int position = 0;
+        for (int index = 0; index < count; index++) {
+            if (kept[index]) {
+                fileIds[position] = fileIds[index];
+                fileMappingOffsets[position] = fileMappingOffsets[index];
+                positions[index] = position++;
+            }
+        }
+        numberOfDataFiles = position;
+        fileIds = Arrays.copyOf(fileIds, position);
+        fileMappingOffsets = Arrays.copyOf(fileMappingOffsets, position);
+        sampleMetaDataOffsets = new long[position];
+        Arrays.fill(sampleMetaDataOffsets, NO_OFFSET);
+
+        sortedFileIds = new int[position];
+        positionsBySortedFileId = new int[position];
+        int sorted = 0;
+        for (long key : keys) {
+            int index = (int) key;
+            if (kept[index]) {
+                sortedFileIds[sorted] = (int) (key >> 32);
+                positionsBySortedFileId[sorted++] = positions[index];
+            }
+        }
+    }
+
+    /**
+     * @return int position of a file id in the file mapping section, -1 if there is no data file with this id
+     */
+    private int indexOf(int fileId) {
+        int i = Arrays.binarySearch(sortedFileIds, fileId);
+        return i < 0 ? -1 : positionsBySortedFileId[i];
+    }
+
+    /**
+     * Get a page of data files, materializing it if it is not cached
+     */
+    private DataFile[] getPage(int page) throws SubmissionFileException {
+        DataFile[] dataFiles = pages.get(page);
+        if (dataFiles != null) {
+            return dataFiles;
+        }
+
+        checkUnmodified();
+        int from = page * pageSize;
+        int to = Math.min(numberOfDataFiles, from + pageSize);
+        dataFiles = new DataFile[to - from];
+        List<Integer> created = new ArrayList<Integer>();
+        boolean complete = false;
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                for (int index = from; index < to; index++) {
+                    dataFiles[index - from] = materialize(channel, index, created);
+                }
+                complete = true;
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            String msg = "Failed to read from submission file: " + file.getAbsolutePath();
+            logger.error(msg, e);
+            throw new SubmissionFileException(msg, e);
+        } finally {
+            if (!complete) {
+                // data files whose mappings could not be resolved must not be handed out later
+                for (Integer fileId : created) {
+                    liveDataFiles.remove(fileId);
+                }
+            }
+        }
+
+        pages.put(page, dataFiles);
+        return dataFiles;
+    }
+
+    /**
+     * Get the data file at a position, reusing the instance still referenced if any, otherwise reading its entry and
+     * those of the data files it maps to
+     *
+     * @param created receives the file ids of the data files created
+     */
+    private DataFile materialize(FileChannel channel, int index, List<Integer> created) throws IOException, SubmissionFileException {
+        int fileId = fileIds[index];
+        DataFile dataFile = liveDataFiles.get(fileId);
+        if (dataFile != null) {
+            return dataFile;
+        }
+
+        String[] entry = readEntry(channel, fileMappingOffsets[index]);
+        dataFile = SubmissionFileParser.createDataFile(entry, fileMappingColumns);
+        if (sampleMetaDataOffsets[index] != NO_OFFSET) {
+            SampleMetaData sampleMetaData = new SampleMetaData();
+            SubmissionFileParser.parseSampleMetaDataEntry(sampleMetaDataHeaders,
+                    readEntry(channel, sampleMetaDataOffsets[index]), sampleMetaData);
+            dataFile.setSampleMetaData(sampleMetaData);
+        }
+        // registered before its mappings are resolved, to guard against mapping cycles
+        liveDataFiles.put(fileId, dataFile);
+        created.add(fileId);
+
+        for (Integer mappedFileId : SubmissionFileParser.parseMappedFileIds(entry, fileMappingColumns)) {
+            int mappedIndex = indexOf(mappedFileId);
+            if (mappedIndex >= 0) {
+                dataFile.addFileMapping(materialize(channel, mappedIndex, created));
+            } else if (!deletedFileIds.contains(mappedFileId)) {
+                throw new SubmissionFileException("Invalid file id, it must related to valid data file: " + mappedFileId);
+            }
+        }
+        return dataFile;
+    }
+
+    private void checkUnmodified() throws SubmissionFileException {
+        if (file.length() != fileSize || file.lastModified() != lastModified) {
+            throw new SubmissionFileException("Submission file has been modified since it was opened: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Read a single entry at a given offset, split into its tab separated parts
+     */
+    private static String[] readEntry(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] line = new byte[READ_BUFFER_SIZE];
+        int length = 0;
+        long position = offset;
+        boolean complete = false;
+        while (!complete) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == LINE_FEED) {
+                    complete = true;
+                    break;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[length++] = b;
+            }
+            position += read;
+        }
+        if (length > 0 && line[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8).split(Constant.TAB, -1);
+    }
+
+    /**
+     * Append bytes to a line buffer, growing it when needed
+     */
+    private static byte[] append(byte[] line, int lineLength, byte[] bytes, int start, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(bytes, start, line, lineLength, length);
+        return line;
+    }
+
+    /**
+     * Get the section of a line, the characters before the first tab
+     */
+    private static String getSection(byte[] line, int length) {
+        int end = 0;
+        while (end < length && line[end] != TAB) {
+            end++;
+        }
+        return new String(line, 0, end, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parse an integer field of a line without decoding the whole line
+     */
+    private int parseIntField(byte[] line, int length, int field) throws SubmissionFileException {
+        int start = 0;
+        for (int i = 0; i < field && start <= length; i++) {
+            while (start < length && line[start] != TAB) {
+                start++;
+            }
+            start++;
+        }
+        int end = start;
+        while (end < length && line[end] != TAB) {
+            end++;
+        }
+        if (field < 0 || start > length) {
+            throw new SubmissionFileException("Missing file id in submission file entry: " + new String(line, 0, length, StandardCharsets.UTF_8));
+        }
+
+        String value = new String(line, start, end - start, StandardCharsets.US_ASCII).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new SubmissionFileException("Invalid file id in submission file entry: " + value, e);
+        }
+    }
+
+    private static int parseIntField(String[] entry, int field) throws SubmissionFileException {
+        if (field < 0 || field >= entry.length) {
+            throw new SubmissionFileException("Missing file id in submission file entry: " + Arrays.toString(entry));
+        }
+        try {
+            return Integer.parseInt(entry[field].trim());
+        } catch (NumberFormatException e) {
+            throw new SubmissionFileException("Invalid file id in submission file entry: " + entry[field], e);
+        }
+    }
+
+    private static int indexOf(String[] headers, String header) {
+        for (int i = 0; i < headers.length; i++) {
+            if (header.equalsIgnoreCase(headers[i].trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,187 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.exception.SubmissionFileException;
+import uk.ac.ebi.pride.data.util.Constant;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sidecar journal of a submission file, recording the data files deleted since the submission file was last
+ * written in full. The first line of the journal is the generation of the submission file it belongs to: GEN,
+ * generation. Each following line is a tab separated deletion entry: DEL, file id
+ * <p/>
+ * The generation identifies the submission file itself rather than its content: it is the file key (device and
+ * inode) where the file system has one, the creation time otherwise. Appends and in place writes keep it, while a
+ * full rewrite, which replaces the submission file with a new one, changes it. A journal left behind by a rewrite
+ * which did not get to remove it therefore never applies to the rewritten file: it is ignored, and removed by the
+ * next writer.
+ * <p/>
+ * The journal is stored next to the submission file, using the same file name with a journal suffix.
+ */
+final class SubmissionFileJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionFileJournal.class);
+
+    private SubmissionFileJournal() {
+    }
+
+    /**
+     * Get the journal file of a given submission file, the journal may not exist
+     *
+     * @param submissionFile submission file
+     * @return File    journal file
+     */
+    static File getJournalFile(File submissionFile) {
+        return new File(submissionFile.getPath() + Constant.JOURNAL_FILE_SUFFIX);
+    }
+
+    /**
+     * Read the ids of all the deleted data files
+     *
+     * @param submissionFile submission file
+     * @return Set<Integer>    deleted file ids, empty if there is no journal or if the journal belongs to an earlier
+     * generation of the submission file
+     * @throws SubmissionFileException exception while reading the journal
+     */
+    static Set<Integer> readDeletedFileIds(File submissionFile) throws SubmissionFileException {
+        Set<Integer> deletedFileIds = new HashSet<Integer>();
+        File journalFile = getJournalFile(submissionFile);
+        if (!journalFile.exists()) {
+            return deletedFileIds;
+        }
+
+        BufferedReader reader = null;
+        try {
+            String generation = getGeneration(submissionFile);
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8));
+            String line;
+            boolean header = true;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0) {
+                    String[] parts = line.split(Constant.TAB, -1);
+                    if (header) {
+                        header = false;
+                        if (parts.length < 2 || !Constant.JOURNAL_GENERATION_ENTRY.equals(parts[0])
+                                || !generation.equals(parts[1].trim())) {
+                            logger.warn("Ignoring submission journal of an earlier submission file: " + journalFile.getAbsolutePath());
+                            return deletedFileIds;
+                        }
+                        continue;
+                    }
+                    if (parts.length < 2 || !Constant.JOURNAL_DELETE_ENTRY.equals(parts[0])) {
+                        throw new SubmissionFileException("Unrecognised submission journal entry: " + line);
+                    }
+                    try {
+                        deletedFileIds.add(Integer.parseInt(parts[1].trim()));
+                    } catch (NumberFormatException e) {
+                        throw new SubmissionFileException("Invalid file id in submission journal: " + line, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new SubmissionFileException("Failed to read submission journal: " + journalFile.getAbsolutePath(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // do nothing here
+                }
+            }
+        }
+
+        return deletedFileIds;
+    }
+
+    /**
+     * Append deletion entries to the journal, forcing them to disk
+     *
+     * @param submissionFile submission file
+     * @param fileIds        ids of the deleted data files
+     * @throws IOException exception while writing the journal
+     */
+    static void appendDeletedFileIds(File submissionFile, Collection<Integer> fileIds) throws IOException {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+
+        StringBuilder entries = new StringBuilder();
+        if (!getJournalFile(submissionFile).exists()) {
+            entries.append(Constant.JOURNAL_GENERATION_ENTRY).append(Constant.TAB).append(getGeneration(submissionFile))
+                    .append(Constant.LINUX_LINE_SEPARATOR);
+        }
+        for (Integer fileId : fileIds) {
+            entries.append(Constant.JOURNAL_DELETE_ENTRY).append(Constant.TAB).append(fileId).append(Constant.LINUX_LINE_SEPARATOR);
+        }
+
+        FileChannel channel = FileChannel.open(getJournalFile(submissionFile).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(entries.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Remove the journal once its entries have been folded into the submission file
+     *
+     * @param submissionFile submission file
+     * @throws IOException exception while deleting the journal
+     */
+    static void delete(File submissionFile) throws IOException {
+        Files.deleteIfExists(getJournalFile(submissionFile).toPath());
+    }
+
+    /**
+     * Remove the journal if it belongs to an earlier generation of the submission file, so that it can not be
+     * appended to
+     *
+     * @param submissionFile submission file
+     * @throws IOException exception while reading or deleting the journal
+     */
+    static void deleteIfStale(File submissionFile) throws IOException {
+        File journalFile = getJournalFile(submissionFile);
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        String firstLine;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8));
+        try {
+            firstLine = reader.readLine();
+        } finally {
+            reader.close();
+        }
+
+        String expected = Constant.JOURNAL_GENERATION_ENTRY + Constant.TAB + getGeneration(submissionFile);
+        if (firstLine == null || !expected.equals(firstLine.trim())) {
+            logger.warn("Removing submission journal of an earlier submission file: " + journalFile.getAbsolutePath());
+            Files.delete(journalFile.toPath());
+        }
+    }
+
+    /**
+     * Get the generation of a submission file, which changes when the file is replaced but not when it is modified
+     */
+    static String getGeneration(File submissionFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(submissionFile.toPath(), BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return fileKey != null ? fileKey.toString() : Long.toString(attributes.creationTime().toMillis());
+    }
+}
@@ -0,0 +1,198 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.util.Constant;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Line oriented output for submission files.
+ * <p/>
+ * Lines are assembled in a single reusable character buffer, encoded into a single reusable byte buffer and written
+ * through a {@link FileChannel} to a temporary file next to the target. The temporary file only replaces the target
+ * once {@link #commit()} is called, so an interrupted write never leaves a truncated submission file behind.
+ * Writing therefore needs write permission on the directory of the target, not only on the target itself. The
+ * temporary file is created with the default permissions of new files, and takes over the permissions of the
+ * target, if any, before replacing it.
+ * <p/>
+ * An in-memory output, which is never written to disk, is used for formatting individual lines.
+ */
+final class SubmissionFileOutput {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionFileOutput.class);
+
+    /**
+     * Size of the reusable byte buffer
+     */
+    private static final int BYTE_BUFFER_SIZE = 1024 * 1024;
+    /**
+     * Number of buffered characters which triggers a write to the channel, only checked at line boundaries
+     */
+    private static final int FLUSH_THRESHOLD = 256 * 1024;
+
+    private static final Random tempFileNames = new SecureRandom();
+
+    private final File target;
+    private final Path tempFile;
+    private final FileChannel channel;
+    private final StringBuilder lines = new StringBuilder(FLUSH_THRESHOLD + 4096);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean closed = false;
+
+    /**
+     * In-memory output, the formatted lines are retrieved using {@link #takeContent()}
+     */
+    SubmissionFileOutput() {
+        this.target = null;
+        this.tempFile = null;
+        this.channel = null;
+    }
+
+    SubmissionFileOutput(File target) throws IOException {
+        this.target = target;
+        this.tempFile = createTempFile(target);
+        this.channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Create the temporary file next to the target. Unlike {@link Files#createTempFile}, which makes the file
+     * readable by its owner only, this leaves the permissions to the defaults of the file system, as for any new file.
+     */
+    private static Path createTempFile(File target) throws IOException {
+        Path directory = target.getAbsoluteFile().getParentFile().toPath();
+        while (true) {
+            Path path = directory.resolve("." + target.getName() + "." + Long.toHexString(tempFileNames.nextLong()) + ".tmp");
+            try {
+                return Files.createFile(path);
+            } catch (FileAlreadyExistsException e) {
+                // name taken, try another one
+            }
+        }
+    }
+
+    SubmissionFileOutput append(String value) {
+        lines.append(value);
+        return this;
+    }
+
+    SubmissionFileOutput append(char value) {
+        lines.append(value);
+        return this;
+    }
+
+    SubmissionFileOutput append(int value) {
+        lines.append(value);
+        return this;
+    }
+
+    /**
+     * Terminate the current line, writing the buffered lines to the channel once the threshold is reached
+     */
+    void newLine() throws IOException {
+        lines.append(Constant.LINE_SEPARATOR);
+        if (channel != null && lines.length() >= FLUSH_THRESHOLD) {
+            drain();
+        }
+    }
+
+    /**
+     * Get and clear the buffered lines of an in-memory output
+     *
+     * @return String  formatted lines
+     */
+    String takeContent() {
+        String content = lines.toString();
+        lines.setLength(0);
+        return content;
+    }
+
+    /**
+     * Write all the remaining lines, force them to disk and atomically move the temporary file onto the target
+     */
+    void commit() throws IOException {
+        drain();
+        channel.force(true);
+        channel.close();
+        closed = true;
+        copyPermissions(target.toPath(), tempFile);
+        try {
+            Files.move(tempFile, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.debug("Atomic move not supported, replacing submission file: " + target.getAbsolutePath());
+            Files.move(tempFile, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Discard everything written so far, the target file is left untouched
+     */
+    void abort() {
+        try {
+            if (!closed) {
+                channel.close();
+                closed = true;
+            }
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            logger.error("Failed to remove temporary submission file: " + tempFile, e);
+        }
+    }
+
+    /**
+     * Give the temporary file the permissions of the file it replaces, on file systems with POSIX permissions
+     */
+    private static void copyPermissions(Path target, Path tempFile) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(target);
+            Files.setPosixFilePermissions(tempFile, permissions);
+        } catch (UnsupportedOperationException e) {
+            logger.debug("POSIX permissions not supported, submission file permissions not copied: " + target);
+        }
+    }
+
+    private void drain() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(lines);
+        encoder.reset();
+        // malformed and unmappable input are replaced, so encoding can only underflow or overflow
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            writeBytes();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            writeBytes();
+        }
+        writeBytes();
+        lines.setLength(0);
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -59,6 +59,10 @@ public class SubmissionFileParser {
 
     /**
      * Parse an input file into a pre-existing submission object
+     * <p/>
+     * Submission files updated incrementally are read transparently: a file mapping or sample metadata entry
+     * repeated for the same file id replaces the earlier one, and data files recorded as deleted in the
+     * submission journal are left out.
      *
      * @param submission given submission object
      * @param file       input submission file
@@ -68,6 +72,9 @@ public class SubmissionFileParser {
     public static void parse(Submission submission, File file) throws SubmissionFileException {
         BufferedReader reader = null;
         try {
+            // data files deleted by incremental updates
+            Set<Integer> deletedFileIds = SubmissionFileJournal.readDeletedFileIds(file);
+
             // File reader
             reader = new BufferedReader(new FileReader(file));
             // each line from the file
@@ -147,10 +154,10 @@ public class SubmissionFileParser {
             parseProjectMetadata(submission, metadata);
 
             // parse file mappings
-            parseFileMapping(submission, fileMappingHeaders, fileMappings);
+            parseFileMapping(submission, fileMappingHeaders, fileMappings, deletedFileIds);
 
             // parse sample metadata
-            parseSampleMetadata(submission, sampleMetadataHeaders, sampleMetadata);
+            parseSampleMetadata(submission, sampleMetadataHeaders, sampleMetadata, deletedFileIds);
 
         } catch (FileNotFoundException e) {
             String msg = "Failed to find submission file: " + file.getAbsolutePath();
@@ -177,7 +184,7 @@ public class SubmissionFileParser {
      * @param submission submission object
      * @param metadata   metadata entries
      */
-    private static void parseProjectMetadata(Submission submission, List<String[]> metadata) {
+    static void parseProjectMetadata(Submission submission, List<String[]> metadata) {
 
         // get metadata
         ProjectMetaData projectMetaData = submission.getProjectMetaData();
@@ -295,10 +302,11 @@ public class SubmissionFileParser {
      * @param submission submission object
      * @param headers    file mapping headers
      * @param entries    file mapping entry
+     * @param deletedFileIds ids of the data files deleted by incremental updates
      * @throws uk.ac.ebi.pride.data.exception.SubmissionFileException
      *          exception wihle parsing the input file
      */
-    private static void parseFileMapping(Submission submission, String[] headers, List<String[]> entries) throws SubmissionFileException {
+    private static void parseFileMapping(Submission submission, String[] headers, List<String[]> entries, Set<Integer> deletedFileIds) throws SubmissionFileException {
         // create all the objects and mappings
 
         // map to store the mapping between file id and data file object
@@ -308,86 +316,25 @@ public class SubmissionFileParser {
         Map<Integer, List<Integer>> idMap = new HashMap<Integer, List<Integer>>();
 
         // get the index of all the values
-        int idIndex = -1, typeIndex = -1, pathIndex = -1, mappingIndex = -1, prideAccIndex = -1, urlIndex = -1;
-        for (int i = 0; i < headers.length; i++) {
-            String header = headers[i].trim();
-            if (Constant.FILE_ID.equalsIgnoreCase(header)) {
-                // file id
-                idIndex = i;
-            } else if (Constant.FILE_TYPE.equalsIgnoreCase(header)) {
-                // file type
-                typeIndex = i;
-            } else if (Constant.FILE_PATH.equalsIgnoreCase(header)) {
-                // file path
-                pathIndex = i;
-            } else if (Constant.FILE_MAPPING.equalsIgnoreCase(header)) {
-                // file mapping
-                mappingIndex = i;
-            } else if (Constant.PRIDE_ACCESSION.equalsIgnoreCase(header)) {
-                // pride accession
-                prideAccIndex = i;
-            }  else if (Constant.URL.equalsIgnoreCase(header)) {
-                // url
-                urlIndex = i;
-            }
-        }
+        FileMappingColumns columns = new FileMappingColumns(headers);
 
         // create all data file objects
         for (String[] entry : entries) {
-            // validate the file id
-            String idStr = entry[idIndex].trim();
-
-            int id = Integer.parseInt(idStr);
-
-            // file or url object
-            String path = entry[pathIndex].trim();
-            URL url = null;
-            File file = null;
-            try {
-                url = new URL(path);
-            } catch (MalformedURLException e) {
-                path = path.replace("\\", "/");
-                file = new File(path);
-                try {
-                    if (urlIndex > -1 && urlIndex < entry.length && entry[urlIndex]!=null && !entry[urlIndex].trim().isEmpty()) {
-                        url = new URL(entry[urlIndex].trim());
-                    } } catch (MalformedURLException me) {
-                    logger.error("Malformed URL, continuing anyway: " + urlIndex);
-                }
-            }
-
-            // validate the file type
-            String fileType = entry[typeIndex].trim();
-            ProjectFileType type = ProjectFileType.fromString(fileType);
-            if (type == null) {
-                throw new SubmissionFileException("Invalid file type: " + fileType);
-            }
-
-            // pride accession, this is optional
-            String prideAccession = null;
-            if (prideAccIndex != -1 && entry.length > prideAccIndex) {
-                prideAccession = entry[prideAccIndex].trim();
+            int id = parseFileId(entry, columns);
+            if (deletedFileIds.contains(id)) {
+                continue;
             }
 
             // create data file object
-            DataFile dataFile = new DataFile(id, file, url, type, new ArrayList<DataFile>(), prideAccession);
+            DataFile dataFile = createDataFile(entry, columns);
+            // a repeated entry replaces the earlier one, keeping its position
             fileMap.put(id, dataFile);
+            idMap.remove(id);
 
             // mappings
-            if (entry.length > mappingIndex) {
-                String mappingStr = entry[mappingIndex].trim();
-                if (mappingStr.length() > 0) {
-                    String[] parts = mappingStr.split(Constant.COMMA);
-                    List<Integer> idList = new ArrayList<Integer>();
-                    idMap.put(id, idList);
-                    for (String part : parts) {
-                        if (isNonNegativeInteger(part)) {
-                            idList.add(new Integer(part.trim()));
-                        } else {
-                            throw new SubmissionFileException("Invalid file id, must be none negative integer: " + part);
-                        }
-                    }
-                }
+            List<Integer> idList = parseMappedFileIds(entry, columns);
+            if (!idList.isEmpty()) {
+                idMap.put(id, idList);
             }
         }
 
@@ -400,7 +347,7 @@ public class SubmissionFileParser {
                 DataFile mappedDataFile = fileMap.get(idMapping);
                 if (mappedDataFile != null) {
                     dataFile.addFileMapping(mappedDataFile);
-                } else {
+                } else if (!deletedFileIds.contains(idMapping)) {
                     throw new SubmissionFileException("Invalid file id, it must related to valid data file: " + idMapping);
                 }
             }
@@ -413,6 +360,88 @@ public class SubmissionFileParser {
         submission.addDataFiles(fileMap.values());
     }
 
+    /**
+     * Parse the file id of a file mapping entry
+     *
+     * @param entry   file mapping entry
+     * @param columns file mapping columns
+     * @return int file id
+     */
+    static int parseFileId(String[] entry, FileMappingColumns columns) {
+        return Integer.parseInt(entry[columns.idIndex].trim());
+    }
+
+    /**
+     * Create a data file from a file mapping entry, without its file mappings
+     *
+     * @param entry   file mapping entry
+     * @param columns file mapping columns
+     * @return DataFile    data file
+     * @throws SubmissionFileException exception while parsing the entry
+     */
+    static DataFile createDataFile(String[] entry, FileMappingColumns columns) throws SubmissionFileException {
+        int id = parseFileId(entry, columns);
+
+        // file or url object
+        String path = entry[columns.pathIndex].trim();
+        URL url = null;
+        File file = null;
+        try {
+            url = new URL(path);
+        } catch (MalformedURLException e) {
+            path = path.replace("\\", "/");
+            file = new File(path);
+            int urlIndex = columns.urlIndex;
+            try {
+                if (urlIndex > -1 && urlIndex < entry.length && entry[urlIndex]!=null && !entry[urlIndex].trim().isEmpty()) {
+                    url = new URL(entry[urlIndex].trim());
+                } } catch (MalformedURLException me) {
+                logger.error("Malformed URL, continuing anyway: " + urlIndex);
+            }
+        }
+
+        // validate the file type
+        String fileType = entry[columns.typeIndex].trim();
+        ProjectFileType type = ProjectFileType.fromString(fileType);
+        if (type == null) {
+            throw new SubmissionFileException("Invalid file type: " + fileType);
+        }
+
+        // pride accession, this is optional
+        String prideAccession = null;
+        if (columns.prideAccIndex != -1 && entry.length > columns.prideAccIndex) {
+            prideAccession = entry[columns.prideAccIndex].trim();
+        }
+
+        return new DataFile(id, file, url, type, new ArrayList<DataFile>(), prideAccession);
+    }
+
+    /**
+     * Parse the ids of the files mapped by a file mapping entry
+     *
+     * @param entry   file mapping entry
+     * @param columns file mapping columns
+     * @return List<Integer>   mapped file ids, empty if there is none
+     * @throws SubmissionFileException exception while parsing the entry
+     */
+    static List<Integer> parseMappedFileIds(String[] entry, FileMappingColumns columns) throws SubmissionFileException {
+        List<Integer> idList = new ArrayList<Integer>();
+        if (entry.length > columns.mappingIndex) {
+            String mappingStr = entry[columns.mappingIndex].trim();
+            if (mappingStr.length() > 0) {
+                String[] parts = mappingStr.split(Constant.COMMA);
+                for (String part : parts) {
+                    if (isNonNegativeInteger(part)) {
+                        idList.add(new Integer(part.trim()));
+                    } else {
+                        throw new SubmissionFileException("Invalid file id, must be none negative integer: " + part);
+                    }
+                }
+            }
+        }
+        return idList;
+    }
+
     /**
      * This method checks if there are cyclic referencing in the px summary file.
      *
@@ -507,52 +536,20 @@ public class SubmissionFileParser {
      * @param submission submission object
      * @param headers    sample metadata headers
      * @param entries    sample metadata
+     * @param deletedFileIds ids of the data files deleted by incremental updates
      */
-    private static void parseSampleMetadata(Submission submission, String[] headers, List<String[]> entries) throws SubmissionFileException {
+    private static void parseSampleMetadata(Submission submission, String[] headers, List<String[]> entries, Set<Integer> deletedFileIds) throws SubmissionFileException {
         // create all data file objects
-        for (int index = 0; index < entries.size(); index++) {
-            String[] entry = entries.get(index);
-
-
+        for (String[] entry : entries) {
             // create a new sample metadata
             SampleMetaData sampleMetaDataEntry = new SampleMetaData();
-            DataFile dataFile = null;
-            int fileId = -1;
-            try {
-                for (int i = 0; i < headers.length; i++) {
-                    String value = entry[i].trim();
-                    if (value.length() > 0) {
-                        String header = headers[i].trim();
-
-                        if (Constant.FILE_ID.equalsIgnoreCase(header)) {
-                            fileId = Integer.parseInt(value);
-                            dataFile = submission.getDataFileById(fileId);
-                        } else if (Constant.SPECIES.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.SPECIES, createMultipleCvParams(value));
-                        } else if (Constant.TISSUE.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.TISSUE, createMultipleCvParams(value));
-                        } else if (Constant.DISEASE.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.DISEASE, createMultipleCvParams(value));
-                        } else if (Constant.CELL_TYPE.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.CELL_TYPE, createMultipleCvParams(value));
-                        } else if (Constant.MODIFICATION.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.MODIFICATION, createMultipleCvParams(value));
-                        } else if (Constant.INSTRUMENT.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.INSTRUMENT, createMultipleCvParams(value));
-                        } else if (Constant.QUANTIFICATION.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.setMetaData(SampleMetaData.Type.QUANTIFICATION_METHOD, createMultipleCvParams(value));
-                        } else if (Constant.EXPERIMENTAL_FACTOR.equalsIgnoreCase(header)) {
-                            sampleMetaDataEntry.addMetaData(SampleMetaData.Type.EXPERIMENTAL_FACTOR,
-                                    ExperimentalFactorUtil.getExperimentalFactorCvParam(value));
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                System.out.println(Arrays.toString( entries.get(index)));
-                e.printStackTrace();
-            }
+            int fileId = parseSampleMetaDataEntry(headers, entry, sampleMetaDataEntry);
+            DataFile dataFile = fileId == -1 ? null : submission.getDataFileById(fileId);
 
             if (dataFile == null) {
+                if (deletedFileIds.contains(fileId)) {
+                    continue;
+                }
                 throw new SubmissionFileException("Failed to find data file for sample metadata, file id: " + fileId);
             }
             dataFile.setSampleMetaData(sampleMetaDataEntry);
@@ -560,6 +557,51 @@ public class SubmissionFileParser {
     }
 
 
+    /**
+     * Parse a single sample metadata entry
+     *
+     * @param headers        sample metadata headers
+     * @param entry          sample metadata entry
+     * @param sampleMetaData sample metadata to populate
+     * @return int file id of the entry, -1 if it could not be parsed
+     */
+    static int parseSampleMetaDataEntry(String[] headers, String[] entry, SampleMetaData sampleMetaData) {
+        int fileId = -1;
+        try {
+            for (int i = 0; i < headers.length; i++) {
+                String value = entry[i].trim();
+                if (value.length() > 0) {
+                    String header = headers[i].trim();
+
+                    if (Constant.FILE_ID.equalsIgnoreCase(header)) {
+                        fileId = Integer.parseInt(value);
+                    } else if (Constant.SPECIES.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.SPECIES, createMultipleCvParams(value));
+                    } else if (Constant.TISSUE.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.TISSUE, createMultipleCvParams(value));
+                    } else if (Constant.DISEASE.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.DISEASE, createMultipleCvParams(value));
+                    } else if (Constant.CELL_TYPE.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.CELL_TYPE, createMultipleCvParams(value));
+                    } else if (Constant.MODIFICATION.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.MODIFICATION, createMultipleCvParams(value));
+                    } else if (Constant.INSTRUMENT.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.INSTRUMENT, createMultipleCvParams(value));
+                    } else if (Constant.QUANTIFICATION.equalsIgnoreCase(header)) {
+                        sampleMetaData.setMetaData(SampleMetaData.Type.QUANTIFICATION_METHOD, createMultipleCvParams(value));
+                    } else if (Constant.EXPERIMENTAL_FACTOR.equalsIgnoreCase(header)) {
+                        sampleMetaData.addMetaData(SampleMetaData.Type.EXPERIMENTAL_FACTOR,
+                                ExperimentalFactorUtil.getExperimentalFactorCvParam(value));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.out.println(Arrays.toString(entry));
+            e.printStackTrace();
+        }
+        return fileId;
+    }
+
     /**
      * Parse all the params
      */
@@ -645,4 +687,41 @@ public class SubmissionFileParser {
         Submission submission = SubmissionFileParser.parse(new File(args[0]));
         System.out.println("Submission summary file parsed successfully");
     }
+
+    /**
+     * Column indexes of a file mapping section, -1 for a missing column
+     */
+    static final class FileMappingColumns {
+        private int idIndex = -1;
+        private int typeIndex = -1;
+        private int pathIndex = -1;
+        private int mappingIndex = -1;
+        private int prideAccIndex = -1;
+        private int urlIndex = -1;
+
+        FileMappingColumns(String[] headers) {
+            for (int i = 0; i < headers.length; i++) {
+                String header = headers[i].trim();
+                if (Constant.FILE_ID.equalsIgnoreCase(header)) {
+                    // file id
+                    idIndex = i;
+                } else if (Constant.FILE_TYPE.equalsIgnoreCase(header)) {
+                    // file type
+                    typeIndex = i;
+                } else if (Constant.FILE_PATH.equalsIgnoreCase(header)) {
+                    // file path
+                    pathIndex = i;
+                } else if (Constant.FILE_MAPPING.equalsIgnoreCase(header)) {
+                    // file mapping
+                    mappingIndex = i;
+                } else if (Constant.PRIDE_ACCESSION.equalsIgnoreCase(header)) {
+                    // pride accession
+                    prideAccIndex = i;
+                } else if (Constant.URL.equalsIgnoreCase(header)) {
+                    // url
+                    urlIndex = i;
+                }
+            }
+        }
+    }
 }
@@ -5,13 +5,17 @@ import org.slf4j.LoggerFactory;
 import uk.ac.ebi.pride.data.exception.SubmissionFileException;
 import uk.ac.ebi.pride.data.model.*;
 import uk.ac.ebi.pride.data.util.Constant;
+import uk.ac.ebi.pride.data.util.ExecutorUtil;
 import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Collection;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Writer for writing a submission file
@@ -23,6 +27,22 @@ public final class SubmissionFileWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(SubmissionFileWriter.class);
 
+    /**
+     * Number of data files whose canonical paths are resolved ahead of the one being written
+     */
+    private static final int CANONICAL_PATH_LOOKAHEAD = 1024;
+    /**
+     * Number of threads resolving canonical paths, this is a file system call which can be slow on network storage
+     */
+    private static final int CANONICAL_PATH_THREADS = 16;
+
+    /**
+     * Pool resolving canonical paths, shared by all writes
+     */
+    private static final class CanonicalPathExecutorHolder {
+        private static final ExecutorService EXECUTOR = ExecutorUtil.newSharedIoExecutor(CANONICAL_PATH_THREADS, "submission-file-writer");
+    }
+
     private SubmissionFileWriter() {
     }
 
@@ -34,108 +54,172 @@ public final class SubmissionFileWriter {
      * @throws uk.ac.ebi.pride.data.exception.SubmissionFileException exception while writing a submission output file
      */
     public static void write(Submission submission, File file) throws SubmissionFileException {
-        PrintWriter writer = null;
+        List<DataFile> dataFiles = submission.getDataFiles();
+        write(submission.getProjectMetaData(), dataFiles.iterator(), hasPrideAccession(dataFiles), hasURL(dataFiles), file);
+    }
+
+    /**
+     * Write a submission file from a stream of data files, without holding the whole submission in memory.
+     * <p/>
+     * As the data files can only be visited once, the optional file mapping columns must be declared upfront.
+     * The output is written to a temporary file which replaces the given file once it has been completely written,
+     * so write permission is needed on the directory of the given file.
+     *
+     * @param projectMetaData      project metadata
+     * @param dataFiles            data files to write, in file mapping order
+     * @param prideAccessionColumn whether to write the pride accession column
+     * @param urlColumn            whether to write the url column
+     * @param file                 output file
+     * @throws uk.ac.ebi.pride.data.exception.SubmissionFileException exception while writing a submission output file
+     */
+    public static void write(ProjectMetaData projectMetaData,
+                             Iterator<DataFile> dataFiles,
+                             boolean prideAccessionColumn,
+                             boolean urlColumn,
+                             File file) throws SubmissionFileException {
+        SubmissionFileOutput output = null;
+        boolean committed = false;
         try {
-            // create writer
-            writer = new PrintWriter(file, "UTF-8");
+            // create output
+            output = new SubmissionFileOutput(file);
 
             // write general project meta data
-            ProjectMetaData projectMetaData = submission.getProjectMetaData();
-            writeGeneralProjectMetaData(writer, projectMetaData);
-            writeSampleProjectMetaData(writer, projectMetaData);
-            writer.println();
+            writeGeneralProjectMetaData(output, projectMetaData);
+            writeSampleProjectMetaData(output, projectMetaData);
+            output.newLine();
 
-            // write file mappings
-            writeFileMappings(writer, submission.getDataFiles());
-            writer.println();
+            // write file mappings, result files are kept for the sample metadata section
+            List<DataFile> resultFiles = writeFileMappings(output, CanonicalPathExecutorHolder.EXECUTOR, dataFiles, prideAccessionColumn, urlColumn);
+            output.newLine();
 
             // write sample metadata
-            if (!submission.getProjectMetaData().isPartialSubmission()) {
-                writeSampleMetaData(writer, submission.getDataFiles());
+            if (!projectMetaData.isPartialSubmission()) {
+                writeSampleMetaData(output, resultFiles);
             }
-            writer.flush();
 
+            output.commit();
+            committed = true;
         } catch (IOException e) {
             String msg = "Error while writing submission file: " + file.getAbsolutePath();
             logger.error(msg, e);
             throw new SubmissionFileException(msg, e);
         } finally {
-            if (writer != null) {
-                writer.close();
+            if (output != null && !committed) {
+                output.abort();
             }
         }
     }
 
+    /**
+     * Format the project metadata section, one line per metadata entry
+     *
+     * @param projectMetaData project metadata
+     * @return String  formatted metadata lines
+     */
+    static String formatProjectMetaData(ProjectMetaData projectMetaData) throws IOException {
+        SubmissionFileOutput output = new SubmissionFileOutput();
+        writeGeneralProjectMetaData(output, projectMetaData);
+        writeSampleProjectMetaData(output, projectMetaData);
+        return output.takeContent();
+    }
+
+    /**
+     * Format a single file mapping entry
+     *
+     * @param dataFile      data file
+     * @param path          path to write for the data file, null if it is not a file
+     * @param prideAccessionColumn whether to write the pride accession column
+     * @param urlColumn     whether to write the url column
+     * @return String  formatted file mapping line
+     */
+    static String formatFileMapping(DataFile dataFile, String path, boolean prideAccessionColumn, boolean urlColumn) throws IOException {
+        SubmissionFileOutput output = new SubmissionFileOutput();
+        writeFileMapping(output, dataFile, path, prideAccessionColumn, urlColumn);
+        return output.takeContent();
+    }
+
+    /**
+     * Format a single sample metadata entry
+     *
+     * @param dataFile result file
+     * @return String  formatted sample metadata line
+     */
+    static String formatSampleMetaDataEntry(DataFile dataFile) throws IOException {
+        SubmissionFileOutput output = new SubmissionFileOutput();
+        writeSampleMetaDataEntry(output, dataFile.getFileId(), dataFile.getSampleMetaData());
+        return output.takeContent();
+    }
+
     /**
      * Write general project level metadata to output
      */
-    private static void writeGeneralProjectMetaData(PrintWriter writer, ProjectMetaData projectMetaData) {
+    private static void writeGeneralProjectMetaData(SubmissionFileOutput output, ProjectMetaData projectMetaData) throws IOException {
         // submitter
-        writeProjectMetaData(writer, Constant.SUBMITTER_NAME, projectMetaData.getSubmitterContact().getName());
-        writeProjectMetaData(writer, Constant.SUBMITTER_EMAIL, projectMetaData.getSubmitterContact().getEmail());
-        writeProjectMetaData(writer, Constant.SUBMITTER_AFFILIATION, projectMetaData.getSubmitterContact().getAffiliation());
-        writeProjectMetaData(writer, Constant.SUBMITTER_USER_NAME, projectMetaData.getSubmitterContact().getUserName());
+        writeProjectMetaData(output, Constant.SUBMITTER_NAME, projectMetaData.getSubmitterContact().getName());
+        writeProjectMetaData(output, Constant.SUBMITTER_EMAIL, projectMetaData.getSubmitterContact().getEmail());
+        writeProjectMetaData(output, Constant.SUBMITTER_AFFILIATION, projectMetaData.getSubmitterContact().getAffiliation());
+        writeProjectMetaData(output, Constant.SUBMITTER_USER_NAME, projectMetaData.getSubmitterContact().getUserName());
 
         // lab head
         Contact labHeadContact = projectMetaData.getLabHeadContact();
         if (labHeadContact != null) {
-            writeProjectMetaData(writer, Constant.LAB_HEAD_NAME, labHeadContact.getName());
-            writeProjectMetaData(writer, Constant.LAB_HEAD_EMAIL, labHeadContact.getEmail());
-            writeProjectMetaData(writer, Constant.LAB_HEAD_AFFILIATION, labHeadContact.getAffiliation());
+            writeProjectMetaData(output, Constant.LAB_HEAD_NAME, labHeadContact.getName());
+            writeProjectMetaData(output, Constant.LAB_HEAD_EMAIL, labHeadContact.getEmail());
+            writeProjectMetaData(output, Constant.LAB_HEAD_AFFILIATION, labHeadContact.getAffiliation());
         }
 
         // title
-        writeProjectMetaData(writer, Constant.PROJECT_TITLE, projectMetaData.getProjectTitle());
+        writeProjectMetaData(output, Constant.PROJECT_TITLE, projectMetaData.getProjectTitle());
 
         // project description
-        writeProjectMetaData(writer, Constant.PROJECT_DESC, projectMetaData.getProjectDescription());
+        writeProjectMetaData(output, Constant.PROJECT_DESC, projectMetaData.getProjectDescription());
 
         // project tag
-        writeProjectMetaData(writer, Constant.PROJECT_TAG, projectMetaData.getProjectTags(), false);
+        writeProjectMetaData(output, Constant.PROJECT_TAG, projectMetaData.getProjectTags(), false);
 
         // keywords
-        writeProjectMetaData(writer, Constant.KEYWORDS, projectMetaData.getKeywords());
+        writeProjectMetaData(output, Constant.KEYWORDS, projectMetaData.getKeywords());
 
         // sample processing protocol
-        writeProjectMetaData(writer, Constant.SAMPLE_PROCESSING_PROTOCOL, projectMetaData.getSampleProcessingProtocol());
+        writeProjectMetaData(output, Constant.SAMPLE_PROCESSING_PROTOCOL, projectMetaData.getSampleProcessingProtocol());
 
         // data processing protocol
-        writeProjectMetaData(writer, Constant.DATA_PROCESSING_PROTOCOL, projectMetaData.getDataProcessingProtocol());
+        writeProjectMetaData(output, Constant.DATA_PROCESSING_PROTOCOL, projectMetaData.getDataProcessingProtocol());
 
         // other omics link
         if (projectMetaData.hasOtherOmicsLink()) {
-            writeProjectMetaData(writer, Constant.OTHER_OMICS_LINK, projectMetaData.getOtherOmicsLink());
+            writeProjectMetaData(output, Constant.OTHER_OMICS_LINK, projectMetaData.getOtherOmicsLink());
         }
 
         // experiment type
-        writeProjectMetaData(writer, Constant.EXPERIMENT_TYPE, projectMetaData.getMassSpecExperimentMethods(), false);
+        writeProjectMetaData(output, Constant.EXPERIMENT_TYPE, projectMetaData.getMassSpecExperimentMethods(), false);
 
         // complete or partial
-        writeProjectMetaData(writer, Constant.SUBMISSION_TYPE, projectMetaData.getSubmissionType().toString());
+        writeProjectMetaData(output, Constant.SUBMISSION_TYPE, projectMetaData.getSubmissionType().toString());
 
         // pubmed ids
         if (projectMetaData.hasPubmedIds()) {
-            writeProjectMetaData(writer, Constant.PUBMED_ID, projectMetaData.getPubmedIds(), false);
+            writeProjectMetaData(output, Constant.PUBMED_ID, projectMetaData.getPubmedIds(), false);
         }
 
         // DOIs
         if (projectMetaData.hasDois()) {
-            writeProjectMetaData(writer, Constant.DOI, projectMetaData.getDois(), false);
+            writeProjectMetaData(output, Constant.DOI, projectMetaData.getDois(), false);
         }
 
         // resubmission
         if (projectMetaData.isResubmission()) {
-            writeProjectMetaData(writer, Constant.RESUBMISSION_PX_ACCESSION, projectMetaData.getResubmissionPxAccession());
+            writeProjectMetaData(output, Constant.RESUBMISSION_PX_ACCESSION, projectMetaData.getResubmissionPxAccession());
         }
 
         // reanalysis
         if (projectMetaData.hasReanalysisPxAccessions()) {
-            writeProjectMetaData(writer, Constant.REANALYSIS_PX_ACCESSION, projectMetaData.getReanalysisAccessions(), false);
+            writeProjectMetaData(output, Constant.REANALYSIS_PX_ACCESSION, projectMetaData.getReanalysisAccessions(), false);
         }
 
         // additional
         if (projectMetaData.hasAdditional()) {
-            writeProjectMetaData(writer, Constant.ADDITIONAL, projectMetaData.getAdditional(), false);
+            writeProjectMetaData(output, Constant.ADDITIONAL, projectMetaData.getAdditional(), false);
         }
     }
 
@@ -143,103 +227,136 @@ public final class SubmissionFileWriter {
     /**
      * Write project level metadata for partial submission
      */
-    private static void writeSampleProjectMetaData(PrintWriter writer, ProjectMetaData projectMetaData) {
+    private static void writeSampleProjectMetaData(SubmissionFileOutput output, ProjectMetaData projectMetaData) throws IOException {
         // reason for partial submission
-        writeProjectMetaData(writer, Constant.REASON_FOR_PARTIAL, projectMetaData.getReasonForPartialSubmission());
+        writeProjectMetaData(output, Constant.REASON_FOR_PARTIAL, projectMetaData.getReasonForPartialSubmission());
 
         // species
-        writeProjectMetaData(writer, Constant.SPECIES, projectMetaData.getSpecies(), false);
+        writeProjectMetaData(output, Constant.SPECIES, projectMetaData.getSpecies(), false);
 
         // tissue
-        writeProjectMetaData(writer, Constant.TISSUE, projectMetaData.getTissues(), false);
+        writeProjectMetaData(output, Constant.TISSUE, projectMetaData.getTissues(), false);
 
         // cell type
-        writeProjectMetaData(writer, Constant.CELL_TYPE, projectMetaData.getCellTypes(), false);
+        writeProjectMetaData(output, Constant.CELL_TYPE, projectMetaData.getCellTypes(), false);
 
         // disease
-        writeProjectMetaData(writer, Constant.DISEASE, projectMetaData.getDiseases(), false);
+        writeProjectMetaData(output, Constant.DISEASE, projectMetaData.getDiseases(), false);
 
         // instrument
-        writeProjectMetaData(writer, Constant.INSTRUMENT, projectMetaData.getInstruments(), false);
+        writeProjectMetaData(output, Constant.INSTRUMENT, projectMetaData.getInstruments(), false);
 
         // modification
-        writeProjectMetaData(writer, Constant.MODIFICATION, projectMetaData.getModifications(), false);
+        writeProjectMetaData(output, Constant.MODIFICATION, projectMetaData.getModifications(), false);
 
         // quantification
-        writeProjectMetaData(writer, Constant.QUANTIFICATION, projectMetaData.getQuantifications(), false);
+        writeProjectMetaData(output, Constant.QUANTIFICATION, projectMetaData.getQuantifications(), false);
     }
 
     /**
-     * Write file mappings to output
+     * Write file mappings to output, canonical paths are resolved in parallel ahead of the line being written
+     *
+     * @return result files, in file mapping order
      */
-    private static void writeFileMappings(PrintWriter writer, List<DataFile> dataFiles) throws IOException {
-        boolean prideAccsHeader = hasPrideAccession(dataFiles);
-        boolean urlHeader = hasURL(dataFiles);
-        writeFileMappingHeader(writer, prideAccsHeader, urlHeader);
-        for (DataFile dataFile : dataFiles) {
-            writeFileMapping(writer, dataFile, prideAccsHeader, urlHeader);
+    private static List<DataFile> writeFileMappings(SubmissionFileOutput output,
+                                                    ExecutorService executor,
+                                                    Iterator<DataFile> dataFiles,
+                                                    boolean prideAccessionColumn,
+                                                    boolean urlColumn) throws IOException {
+        List<DataFile> resultFiles = new ArrayList<DataFile>();
+        writeFileMappingHeader(output, prideAccessionColumn, urlColumn);
+
+        Deque<PendingFileMapping> pendingFileMappings = new ArrayDeque<PendingFileMapping>(CANONICAL_PATH_LOOKAHEAD);
+        try {
+            while (true) {
+                // keep the look ahead window full
+                while (pendingFileMappings.size() < CANONICAL_PATH_LOOKAHEAD && dataFiles.hasNext()) {
+                    DataFile dataFile = dataFiles.next();
+                    Future<String> canonicalPath = null;
+                    if (dataFile.isFile()) {
+                        canonicalPath = executor.submit(new CanonicalPathResolver(dataFile.getFile()));
+                    }
+                    pendingFileMappings.add(new PendingFileMapping(dataFile, canonicalPath));
+                }
+
+                PendingFileMapping pendingFileMapping = pendingFileMappings.poll();
+                if (pendingFileMapping == null) {
+                    break;
+                }
+
+                DataFile dataFile = pendingFileMapping.getDataFile();
+                writeFileMapping(output, dataFile, pendingFileMapping.getCanonicalPath(), prideAccessionColumn, urlColumn);
+                if (ProjectFileType.RESULT.equals(dataFile.getFileType())) {
+                    resultFiles.add(dataFile);
+                }
+            }
+        } finally {
+            // the pool is shared, do not leave the rest of a failed write queued on it
+            for (PendingFileMapping pendingFileMapping : pendingFileMappings) {
+                pendingFileMapping.cancel();
+            }
         }
+
+        return resultFiles;
     }
 
     /**
      * Write sample metadata
      */
-    private static void writeSampleMetaData(PrintWriter writer, List<DataFile> dataFiles) {
-        writeSampleMetaDataHeader(writer);
-        for (DataFile dataFile : dataFiles) {
-            if (ProjectFileType.RESULT.equals(dataFile.getFileType())) {
-                writeSampleMetaDataEntry(writer, dataFile.getFileId(), dataFile.getSampleMetaData());
-            }
+    private static void writeSampleMetaData(SubmissionFileOutput output, List<DataFile> resultFiles) throws IOException {
+        writeSampleMetaDataHeader(output);
+        for (DataFile dataFile : resultFiles) {
+            writeSampleMetaDataEntry(output, dataFile.getFileId(), dataFile.getSampleMetaData());
         }
     }
 
     /**
      * Write sample metadata header
      */
-    private static void writeSampleMetaDataHeader(PrintWriter writer) {
-        writer.println(castToString(Constant.TAB, Constant.SAMPLE_METADATA_HEADER, Constant.FILE_ID,
-                Constant.SPECIES, Constant.TISSUE,
-                Constant.CELL_TYPE, Constant.DISEASE, Constant.MODIFICATION,
-                Constant.INSTRUMENT, Constant.QUANTIFICATION,
-                Constant.EXPERIMENTAL_FACTOR));
+    private static void writeSampleMetaDataHeader(SubmissionFileOutput output) throws IOException {
+        output.append(Constant.SAMPLE_METADATA_HEADER)
+                .append(Constant.TAB).append(Constant.FILE_ID)
+                .append(Constant.TAB).append(Constant.SPECIES)
+                .append(Constant.TAB).append(Constant.TISSUE)
+                .append(Constant.TAB).append(Constant.CELL_TYPE)
+                .append(Constant.TAB).append(Constant.DISEASE)
+                .append(Constant.TAB).append(Constant.MODIFICATION)
+                .append(Constant.TAB).append(Constant.INSTRUMENT)
+                .append(Constant.TAB).append(Constant.QUANTIFICATION)
+                .append(Constant.TAB).append(Constant.EXPERIMENTAL_FACTOR)
+                .newLine();
     }
 
     /**
      * Write a single sample metadata entry
      */
-    private static void writeSampleMetaDataEntry(PrintWriter writer, int fileId, SampleMetaData metaData) {
-        String species = metaData.hasMetaData(SampleMetaData.Type.SPECIES) ?
-            castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.SPECIES).toArray()) :
-            "";
-        String tissues = metaData.hasMetaData(SampleMetaData.Type.TISSUE) ?
-            castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.TISSUE).toArray()) :
-            "";
-        String cellTypes = metaData.hasMetaData(SampleMetaData.Type.CELL_TYPE) ?
-            castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.CELL_TYPE).toArray()) :
-            "";
-        String diseases = metaData.hasMetaData(SampleMetaData.Type.DISEASE) ?
-            castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.DISEASE).toArray()) :
-            "";
-        String modification = metaData.hasMetaData(SampleMetaData.Type.MODIFICATION) ?
-            castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.MODIFICATION).toArray()) :
-            "";
-        String instruments = metaData.hasMetaData(SampleMetaData.Type.INSTRUMENT) ?
-            castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.INSTRUMENT).toArray()) :
-            "";
-        String quantifications = metaData.hasMetaData(SampleMetaData.Type.QUANTIFICATION_METHOD) ?
-             castToString(Constant.COMMA, metaData.getMetaData(SampleMetaData.Type.QUANTIFICATION_METHOD).toArray()) :
-            "";
-        String experimentalFactor = metaData.hasMetaData(SampleMetaData.Type.EXPERIMENTAL_FACTOR) ?
-            metaData.getMetaData(SampleMetaData.Type.EXPERIMENTAL_FACTOR).iterator().next().getValue() :
-            "";
-        writer.println(castToString(Constant.TAB, Constant.SAMPLE_METADATA_ENTRY,
-                fileId, species,
-                tissues, cellTypes, diseases, modification,
-                instruments, quantifications,
-                experimentalFactor));
+    private static void writeSampleMetaDataEntry(SubmissionFileOutput output, int fileId, SampleMetaData metaData) throws IOException {
+        output.append(Constant.SAMPLE_METADATA_ENTRY).append(Constant.TAB).append(fileId);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.SPECIES);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.TISSUE);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.CELL_TYPE);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.DISEASE);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.MODIFICATION);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.INSTRUMENT);
+        writeSampleMetaDataColumn(output, metaData, SampleMetaData.Type.QUANTIFICATION_METHOD);
+        output.append(Constant.TAB);
+        if (metaData.hasMetaData(SampleMetaData.Type.EXPERIMENTAL_FACTOR)) {
+            output.append(metaData.getMetaData(SampleMetaData.Type.EXPERIMENTAL_FACTOR).iterator().next().getValue());
+        }
+        output.newLine();
+    }
+
+    /**
+     * Write a comma separated sample metadata column, empty if there is no metadata of the given type
+     */
+    private static void writeSampleMetaDataColumn(SubmissionFileOutput output, SampleMetaData metaData, SampleMetaData.Type type) {
+        output.append(Constant.TAB);
+        if (metaData.hasMetaData(type)) {
+            appendJoined(output, Constant.COMMA, metaData.getMetaData(type));
+        }
     }
 
-    private static boolean hasPrideAccession(List<DataFile> dataFiles) {
+    static boolean hasPrideAccession(List<DataFile> dataFiles) {
         for (DataFile dataFile : dataFiles) {
             if (dataFile.getAssayAccession() != null) {
                 return true;
@@ -248,7 +365,7 @@ public final class SubmissionFileWriter {
         return false;
     }
 
-    private static boolean hasURL(List<DataFile> dataFiles) {
+    static boolean hasURL(List<DataFile> dataFiles) {
         for (DataFile dataFile : dataFiles) {
             if (dataFile.isUrl()) {
                 return true;
@@ -260,15 +377,15 @@ public final class SubmissionFileWriter {
     /**
      * Write an entry from MetaData
      *
-     * @param writer print writer
+     * @param output submission file output
      * @param type   metadata type
      * @param value  metadata string value
      */
-    private static void writeProjectMetaData(PrintWriter writer, String type, Object value) {
+    private static void writeProjectMetaData(SubmissionFileOutput output, String type, Object value) throws IOException {
         if (value != null) {
             String cleanedValue = cleanString(value.toString());
             if (cleanedValue.trim().length() != 0) {
-                writer.println(castToString(Constant.TAB, Constant.METADATA_HEADER, type, cleanedValue));
+                writeProjectMetaDataLine(output, type, cleanedValue);
             }
         }
     }
@@ -276,60 +393,65 @@ public final class SubmissionFileWriter {
     /**
      * Write a list of entries from MetaData
      *
-     * @param writer print writer
+     * @param output submission file output
      * @param type   metadata type
      * @param values a list of metadata values
      */
-    private static void writeProjectMetaData(PrintWriter writer, String type, Collection values, boolean combine) {
+    private static void writeProjectMetaData(SubmissionFileOutput output, String type, Collection values, boolean combine) throws IOException {
         if (combine) {
-            String combinedValues = castToString(Constant.COMMA, values);
-            if (combinedValues.trim().length() != 0) {
-                writer.println(castToString(Constant.TAB, Constant.METADATA_HEADER, type, cleanString(combinedValues)));
+            StringBuilder combinedValues = new StringBuilder();
+            for (Object value : values) {
+                if (combinedValues.length() > 0) {
+                    combinedValues.append(Constant.COMMA);
+                }
+                combinedValues.append(value.toString());
+            }
+            if (combinedValues.toString().trim().length() != 0) {
+                writeProjectMetaDataLine(output, type, cleanString(combinedValues.toString()));
             }
         } else {
-            if (!values.isEmpty()) {
-                for (Object value : values) {
-                    writer.println(castToString(Constant.TAB, Constant.METADATA_HEADER, type, value.toString()));
-                }
+            for (Object value : values) {
+                writeProjectMetaDataLine(output, type, value.toString());
             }
         }
     }
 
+    private static void writeProjectMetaDataLine(SubmissionFileOutput output, String type, String value) throws IOException {
+        output.append(Constant.METADATA_HEADER).append(Constant.TAB).append(type).append(Constant.TAB).append(value).newLine();
+    }
+
     /**
      * Write file mapping header
      *
-     * @param writer print writer
+     * @param output submission file output
      */
-    private static void writeFileMappingHeader(PrintWriter writer, boolean hasPrideAccession,  boolean hasURLs) {
-        StringBuilder sb = new StringBuilder(castToString(Constant.TAB, Constant.FILE_MAPPING_HEADER, Constant.FILE_ID,
-                Constant.FILE_TYPE, Constant.FILE_PATH, Constant.FILE_MAPPING));
+    private static void writeFileMappingHeader(SubmissionFileOutput output, boolean hasPrideAccession, boolean hasURLs) throws IOException {
+        output.append(Constant.FILE_MAPPING_HEADER)
+                .append(Constant.TAB).append(Constant.FILE_ID)
+                .append(Constant.TAB).append(Constant.FILE_TYPE)
+                .append(Constant.TAB).append(Constant.FILE_PATH)
+                .append(Constant.TAB).append(Constant.FILE_MAPPING);
         if (hasPrideAccession) {
-            sb.append('\t');
-            sb.append(Constant.PRIDE_ACCESSION);
+            output.append(Constant.TAB).append(Constant.PRIDE_ACCESSION);
         }
         if (hasURLs) {
-            sb.append('\t');
-            sb.append(Constant.URL);
+            output.append(Constant.TAB).append(Constant.URL);
         }
-        writer.println(sb.toString());
+        output.newLine();
     }
 
     /**
      * Write a file mapping entry to output file
      *
-     * @param writer   print writer
-     * @param dataFile data file mapping entry
+     * @param output        submission file output
+     * @param dataFile      data file mapping entry
+     * @param canonicalPath canonical path of the data file, null if it is not a file
      */
-    private static void writeFileMapping(PrintWriter writer, DataFile dataFile, boolean hasPrideAccession,  boolean hasURLs) throws IOException {
-        // convert file type
-        String type = dataFile.getFileType().name();
-
+    private static void writeFileMapping(SubmissionFileOutput output, DataFile dataFile, String canonicalPath,
+                                         boolean hasPrideAccession, boolean hasURLs) throws IOException {
         // convert file path
-        String path = "";
+        String path = canonicalPath == null ? "" : canonicalPath;
         String url = "";
-        if (dataFile.isFile()) {
-            path = dataFile.getFile().getCanonicalPath();
-        }
         if (dataFile.isUrl()) {
             url = dataFile.getUrl().toString();
             if (path.isEmpty()) {
@@ -337,32 +459,31 @@ public final class SubmissionFileWriter {
             }
         }
 
-        // convert file mappings
-        String mappings = "";
-        if (dataFile.hasMappings()) {
-            for (DataFile file : dataFile.getFileMappings()) {
-                mappings += file.getFileId() + Constant.COMMA;
+        output.append(Constant.FILE_MAPPING_ENTRY)
+                .append(Constant.TAB).append(dataFile.getFileId())
+                .append(Constant.TAB).append(dataFile.getFileType().name())
+                .append(Constant.TAB).append(path)
+                .append(Constant.TAB);
+
+        // file mappings
+        List<DataFile> fileMappings = dataFile.getFileMappings();
+        for (int i = 0; i < fileMappings.size(); i++) {
+            if (i > 0) {
+                output.append(Constant.COMMA);
             }
-            mappings = mappings.substring(0, mappings.length() - 1);
-        }
-
-        // pride accession
-        String prideAccession = "";
-        if (dataFile.getAssayAccession() != null) {
-            prideAccession = dataFile.getAssayAccession();
+            output.append(fileMappings.get(i).getFileId());
         }
 
-        StringBuilder sb = new StringBuilder(castToString(Constant.TAB, Constant.FILE_MAPPING_ENTRY, dataFile.getFileId(),
-                type, path, mappings));
         if (hasPrideAccession) {
-            sb.append('\t');
-            sb.append(prideAccession);
+            output.append(Constant.TAB);
+            if (dataFile.getAssayAccession() != null) {
+                output.append(dataFile.getAssayAccession());
+            }
         }
         if (hasURLs) {
-            sb.append('\t');
-            sb.append(url);
+            output.append(Constant.TAB).append(url);
         }
-        writer.println(sb.toString());
+        output.newLine();
     }
 
 
@@ -390,25 +511,78 @@ public final class SubmissionFileWriter {
 
 
     /**
-     * Cast a set of objects into a combined string with a given separator
+     * Append a set of objects to the output with a given separator
      *
+     * @param output    submission file output
      * @param separator string separator
      * @param values    a set of objects
-     * @return combined string
      */
-    private static String castToString(String separator, Object... values) {
-        StringBuilder builder = new StringBuilder();
-
+    private static void appendJoined(SubmissionFileOutput output, String separator, Collection<?> values) {
+        boolean first = true;
         for (Object value : values) {
-            builder.append(value.toString());
-            builder.append(separator);
+            if (!first) {
+                output.append(separator);
+            }
+            output.append(value.toString());
+            first = false;
+        }
+    }
+
+    /**
+     * Get the canonical path of a data file from the look ahead window
+     */
+    private static String getCanonicalPath(Future<String> canonicalPath) throws IOException {
+        try {
+            return canonicalPath.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while resolving canonical path");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to resolve canonical path", cause);
+        }
+    }
+
+    /**
+     * A data file waiting to be written, along with its canonical path being resolved
+     */
+    private static final class PendingFileMapping {
+        private final DataFile dataFile;
+        private final Future<String> canonicalPath;
+
+        private PendingFileMapping(DataFile dataFile, Future<String> canonicalPath) {
+            this.dataFile = dataFile;
+            this.canonicalPath = canonicalPath;
+        }
+
+        private DataFile getDataFile() {
+            return dataFile;
+        }
+
+        private String getCanonicalPath() throws IOException {
+            return canonicalPath == null ? null : SubmissionFileWriter.getCanonicalPath(canonicalPath);
+        }
+
+        private void cancel() {
+            if (canonicalPath != null) {
+                canonicalPath.cancel(true);
+            }
+        }
+    }
+
+    private static final class CanonicalPathResolver implements Callable<String> {
+        private final File file;
+
+        private CanonicalPathResolver(File file) {
+            this.file = file;
         }
 
-        // remove the last the separator
-        String str = builder.toString();
-        if (values.length > 0) {
-            str = str.substring(0, str.length() - separator.length());
+        @Override
+        public String call() throws IOException {
+            return file.getCanonicalPath();
         }
-        return str;
     }
 }
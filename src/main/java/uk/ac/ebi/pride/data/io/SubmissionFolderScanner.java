@@ -0,0 +1,300 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.exception.SubmissionFileException;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.util.ExecutorUtil;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans a folder tree for the files of a submission, classifying the files in parallel.
+ * <p/>
+ * Every regular file becomes a data file candidate, typed by its detected format. Vendor data folders, such as
+ * Agilent or Bruker .d folders, become a single candidate with the total size of their content, their content is not
+ * scanned any further.
+ * <p/>
+ * Symbolic links are not followed by default. When they are, folder loops are reported as errors and a file reached
+ * through several links is only reported once.
+ */
+public class SubmissionFolderScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionFolderScanner.class);
+
+    /**
+     * Number of classification tasks queued per worker before the walk waits
+     */
+    private static final int QUEUED_TASKS_PER_WORKER = 4;
+
+    /**
+     * Receives the scan results, calls are serialized so implementations need not be thread safe
+     */
+    public interface Listener {
+
+        /**
+         * @param dataFile    data file candidate, typed by its detected format
+         * @param sizeInBytes size of the file, or total size of the content of a vendor data folder
+         */
+        void onDataFile(DataFile dataFile, long sizeInBytes);
+
+        /**
+         * @param path      file or folder which could not be scanned
+         * @param exception cause of the failure
+         */
+        void onError(Path path, IOException exception);
+    }
+
+    private final int parallelism;
+    private final boolean followLinks;
+
+    public SubmissionFolderScanner() {
+        this(ExecutorUtil.getDefaultParallelism(), false);
+    }
+
+    /**
+     * @param parallelism maximum number of files classified at the same time
+     * @param followLinks whether to follow symbolic links
+     */
+    public SubmissionFolderScanner(int parallelism, boolean followLinks) {
+        this.parallelism = parallelism;
+        this.followLinks = followLinks;
+    }
+
+    /**
+     * Scan a folder, collecting the data file candidates
+     *
+     * @param folder root folder
+     * @return List<DataFile> data file candidates, sorted by path
+     * @throws SubmissionFileException if the folder can not be scanned
+     */
+    public List<DataFile> scan(File folder) throws SubmissionFileException {
+        final List<DataFile> dataFiles = new ArrayList<DataFile>();
+        scan(folder, new Listener() {
+            @Override
+            public void onDataFile(DataFile dataFile, long sizeInBytes) {
+                dataFiles.add(dataFile);
+            }
+
+            @Override
+            public void onError(Path path, IOException exception) {
+                logger.warn("Failed to scan " + path, exception);
+            }
+        });
+
+        Collections.sort(dataFiles, new Comparator<DataFile>() {
+            @Override
+            public int compare(DataFile dataFile1, DataFile dataFile2) {
+                return dataFile1.getFile().getPath().compareTo(dataFile2.getFile().getPath());
+            }
+        });
+        return dataFiles;
+    }
+
+    /**
+     * Scan a folder, streaming the data file candidates to a listener as they are classified
+     *
+     * @param folder   root folder
+     * @param listener receives the candidates and the errors
+     * @return int number of data file candidates
+     * @throws SubmissionFileException if the folder can not be scanned
+     */
+    public int scan(File folder, Listener listener) throws SubmissionFileException {
+        if (!folder.isDirectory()) {
+            throw new SubmissionFileException("Not a folder: " + folder.getAbsolutePath());
+        }
+
+        ExecutorService executor = ExecutorUtil.newBoundedIoExecutor(parallelism, "folder-scanner");
+        Scan scan = new Scan(folder.toPath(), listener, executor, new Semaphore(parallelism * QUEUED_TASKS_PER_WORKER));
+        try {
+            Set<FileVisitOption> options = followLinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+            Files.walkFileTree(folder.toPath(), options, Integer.MAX_VALUE, scan);
+
+            // wait for the files still being classified
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            throw new SubmissionFileException("Failed to scan folder: " + folder.getAbsolutePath(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SubmissionFileException("Interrupted while scanning folder: " + folder.getAbsolutePath(), e);
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return scan.dataFileCount.get();
+    }
+
+    /**
+     * Walks the tree, handing the classification of each file or vendor folder to the executor
+     */
+    private final class Scan extends SimpleFileVisitor<Path> {
+        private final Path root;
+        private final Listener listener;
+        private final ExecutorService executor;
+        private final Semaphore pendingTasks;
+        private final Set<Object> visitedFiles = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        private final AtomicInteger dataFileCount = new AtomicInteger();
+
+        private Scan(Path root, Listener listener, ExecutorService executor, Semaphore pendingTasks) {
+            this.root = root;
+            this.listener = listener;
+            this.executor = executor;
+            this.pendingTasks = pendingTasks;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, BasicFileAttributes attrs) throws IOException {
+            if (dir.equals(root) || !hasExtension(dir) || !MassSpecFileFormat.isMassSpecDataFolder(dir.toFile())) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            if (firstVisit(dir, attrs)) {
+                submit(dir, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            MassSpecFileFormat format = MassSpecFileFormat.checkFormat(dir.toFile());
+                            report(createDataFile(dir, format), getFolderSize(dir));
+                        } catch (IOException e) {
+                            error(dir, e);
+                        }
+                    }
+                });
+            }
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+            if (!attrs.isRegularFile() || !firstVisit(file, attrs)) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            submit(file, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        MassSpecFileFormat format = hasExtension(file) ? MassSpecFileFormat.checkFormat(file.toFile()) : null;
+                        report(createDataFile(file, format), attrs.size());
+                    } catch (IOException e) {
+                        error(file, e);
+                    }
+                }
+            });
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+            // includes the folder loops found when following links
+            error(file, exc);
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Check whether a file has not been reached before, through another link
+         */
+        private boolean firstVisit(Path path, BasicFileAttributes attrs) {
+            if (!followLinks) {
+                return true;
+            }
+
+            Object key = attrs.fileKey();
+            if (key == null) {
+                try {
+                    key = path.toRealPath();
+                } catch (IOException e) {
+                    key = path.toAbsolutePath().normalize();
+                }
+            }
+            return visitedFiles.add(key);
+        }
+
+        /**
+         * Classify a file or a folder in the executor, any failure is reported as an error of the path so that the
+         * path is not silently left out of the scan
+         */
+        private void submit(final Path path, final Runnable task) throws IOException {
+            try {
+                pendingTasks.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while scanning folder: " + root);
+            }
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        error(path, new IOException("Failed to classify " + path + ": " + e.getMessage(), e));
+                    } finally {
+                        pendingTasks.release();
+                    }
+                }
+            });
+        }
+
+        private void report(DataFile dataFile, long sizeInBytes) {
+            dataFileCount.incrementAndGet();
+            synchronized (listener) {
+                listener.onDataFile(dataFile, sizeInBytes);
+            }
+        }
+
+        private void error(Path path, IOException exception) {
+            synchronized (listener) {
+                listener.onError(path, exception);
+            }
+        }
+
+        /**
+         * Total size of the regular files in a folder
+         */
+        private long getFolderSize(Path folder) throws IOException {
+            final long[] size = new long[1];
+            Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile()) {
+                        size[0] += attrs.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    error(file, exc);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return size[0];
+        }
+    }
+
+    /**
+     * Formats are detected from the extension first, files and folders without one can not be recognized
+     */
+    private static boolean hasExtension(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null && fileName.toString().lastIndexOf('.') > 0;
+    }
+
+    private static DataFile createDataFile(Path path, MassSpecFileFormat format) {
+        return format == null ? new DataFile(path.toFile(), ProjectFileType.OTHER) : new DataFile(path.toFile(), format);
+    }
+}
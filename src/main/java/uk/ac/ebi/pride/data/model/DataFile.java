@@ -2,6 +2,7 @@ package uk.ac.ebi.pride.data.model;
 
 import uk.ac.ebi.pride.data.mztab.model.MzTabDocument;
 import uk.ac.ebi.pride.data.util.FileURLUtil;
+import uk.ac.ebi.pride.data.util.UrlMetadataResolver;
 import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
 import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
 
@@ -59,6 +60,10 @@ public class DataFile implements Serializable {
 
     // mzTab document, just in case we need anything else from it after parsing the file
     private MzTabDocument mzTabDocument = null;
+    /**
+     * Identity key, created on first use and cleared whenever the file id or location changes
+     */
+    private transient volatile DataFileKey identityKey;
 
     public DataFile() {
     }
@@ -154,6 +159,7 @@ public class DataFile implements Serializable {
 
     public void setFileId(int fileId) {
         this.fileId = fileId;
+        this.identityKey = null;
     }
 
     public boolean isFile() {
@@ -166,6 +172,7 @@ public class DataFile implements Serializable {
 
     public void setFile(File file) {
         this.file = file;
+        this.identityKey = null;
     }
 
     public boolean isUrl() {
@@ -178,6 +185,7 @@ public class DataFile implements Serializable {
 
     public void setUrl(URL url) {
         this.url = url;
+        this.identityKey = null;
     }
 
     public ProjectFileType getFileType() {
@@ -205,6 +213,13 @@ public class DataFile implements Serializable {
         return fileFormat;
     }
 
+    /**
+     * Get the file format without detecting it
+     */
+    MassSpecFileFormat getAssignedFileFormat() {
+        return fileFormat;
+    }
+
     public void setFileFormat(MassSpecFileFormat fileFormat) {
         this.fileFormat = fileFormat;
     }
@@ -296,12 +311,32 @@ public class DataFile implements Serializable {
         if (isFile()) {
             fileSizeInBytes = file.length();
         } else if (isUrl()) {
-            fileSizeInBytes = FileURLUtil.getFileSize(url);
+            fileSizeInBytes = UrlMetadataResolver.getDefault().resolve(url).getSize();
         }
 
         return fileSizeInBytes;
     }
 
+    /**
+     * Get the identity of this data file: its file id and location.
+     * <p/>
+     * Note: a data file must not be modified while it is a member of a hash based collection
+     *
+     * @return DataFileKey identity key
+     */
+    public DataFileKey getIdentityKey() {
+        DataFileKey key = identityKey;
+        if (key == null) {
+            key = DataFileKey.create(fileId, file, url);
+            identityKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Data files are equal when they have the same identity, see {@link #getIdentityKey()}.
+     * Use {@link DataFileEquivalence} to compare their content.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -309,31 +344,12 @@ public class DataFile implements Serializable {
 
         DataFile dataFile = (DataFile) o;
 
-        if (fileId != dataFile.fileId) return false;
-        if (assayAccession != null ? !assayAccession.equals(dataFile.assayAccession) : dataFile.assayAccession != null)
-            return false;
-        if (file != null ? !file.equals(dataFile.file) : dataFile.file != null) return false;
-        if (fileFormat != dataFile.fileFormat) return false;
-        if (!fileMappings.equals(dataFile.fileMappings)) return false;
-        if (fileType != dataFile.fileType) return false;
-        if (sampleMetaData != null ? !sampleMetaData.equals(dataFile.sampleMetaData) : dataFile.sampleMetaData != null)
-            return false;
-        if (url != null ? !url.equals(dataFile.url) : dataFile.url != null) return false;
-
-        return true;
+        return getIdentityKey().equals(dataFile.getIdentityKey());
     }
 
     @Override
     public int hashCode() {
-        int result = fileId;
-        result = 31 * result + (file != null ? file.hashCode() : 0);
-        result = 31 * result + (url != null ? url.hashCode() : 0);
-        result = 31 * result + (fileType != null ? fileType.hashCode() : 0);
-        result = 31 * result + (fileFormat != null ? fileFormat.hashCode() : 0);
-        result = 31 * result + fileMappings.hashCode();
-        result = 31 * result + (sampleMetaData != null ? sampleMetaData.hashCode() : 0);
-        result = 31 * result + (assayAccession != null ? assayAccession.hashCode() : 0);
-        return result;
+        return getIdentityKey().hashCode();
     }
 
     @Override
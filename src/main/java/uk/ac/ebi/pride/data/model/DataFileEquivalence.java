@@ -0,0 +1,93 @@
+package uk.ac.ebi.pride.data.model;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Structural comparison of data files.
+ * <p/>
+ * {@link DataFile#equals(Object)} only compares the identity of data files, see {@link DataFileKey}. This class
+ * compares everything a data file holds: file, url, type, assigned format, file mappings, sample metadata and assay
+ * accession.
+ * Mapped files are compared by identity, so the cost does not depend on the size of the mapping graph.
+ */
+public final class DataFileEquivalence {
+
+    private DataFileEquivalence() {
+    }
+
+    /**
+     * Check whether two data files hold the same content
+     *
+     * @param dataFile      data file
+     * @param otherDataFile other data file
+     * @return boolean true if both are null or structurally equal
+     */
+    public static boolean equivalent(DataFile dataFile, DataFile otherDataFile) {
+        if (dataFile == otherDataFile) return true;
+        if (dataFile == null || otherDataFile == null) return false;
+
+        if (dataFile.getFileId() != otherDataFile.getFileId()) return false;
+        if (!equal(dataFile.getAssayAccession(), otherDataFile.getAssayAccession())) return false;
+        if (!equal(dataFile.getFile(), otherDataFile.getFile())) return false;
+        if (dataFile.getFileType() != otherDataFile.getFileType()) return false;
+        if (dataFile.getAssignedFileFormat() != otherDataFile.getAssignedFileFormat()) return false;
+        if (!equal(getLocation(dataFile.getUrl()), getLocation(otherDataFile.getUrl()))) return false;
+        if (!equal(dataFile.getSampleMetaData(), otherDataFile.getSampleMetaData())) return false;
+        if (!dataFile.getFileMappings().equals(otherDataFile.getFileMappings())) return false;
+
+        return true;
+    }
+
+    /**
+     * Check whether two lists hold structurally equal data files, in the same order
+     *
+     * @param dataFiles      data files
+     * @param otherDataFiles other data files
+     * @return boolean true if both lists are structurally equal
+     */
+    public static boolean equivalent(List<DataFile> dataFiles, List<DataFile> otherDataFiles) {
+        if (dataFiles.size() != otherDataFiles.size()) {
+            return false;
+        }
+        for (int i = 0; i < dataFiles.size(); i++) {
+            if (!equivalent(dataFiles.get(i), otherDataFiles.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash code consistent with {@link #equivalent(DataFile, DataFile)}
+     *
+     * @param dataFile data file
+     * @return int hash code
+     */
+    public static int hash(DataFile dataFile) {
+        if (dataFile == null) {
+            return 0;
+        }
+
+        int result = dataFile.getFileId();
+        result = 31 * result + (dataFile.getFile() != null ? dataFile.getFile().hashCode() : 0);
+        result = 31 * result + (dataFile.getUrl() != null ? getLocation(dataFile.getUrl()).hashCode() : 0);
+        result = 31 * result + (dataFile.getFileType() != null ? dataFile.getFileType().hashCode() : 0);
+        result = 31 * result + (dataFile.getAssignedFileFormat() != null ? dataFile.getAssignedFileFormat().hashCode() : 0);
+        result = 31 * result + dataFile.getFileMappings().hashCode();
+        result = 31 * result + (dataFile.getSampleMetaData() != null ? dataFile.getSampleMetaData().hashCode() : 0);
+        result = 31 * result + (dataFile.getAssayAccession() != null ? dataFile.getAssayAccession().hashCode() : 0);
+        return result;
+    }
+
+    /**
+     * Urls are compared by their external form, {@link URL#equals(Object)} resolves host names
+     */
+    private static String getLocation(URL url) {
+        return url == null ? null : url.toExternalForm();
+    }
+
+    private static boolean equal(Object value, Object otherValue) {
+        return value == null ? otherValue == null : value.equals(otherValue);
+    }
+}
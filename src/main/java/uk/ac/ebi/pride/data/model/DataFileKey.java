@@ -0,0 +1,76 @@
+package uk.ac.ebi.pride.data.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URL;
+
+/**
+ * {@code DataFileKey} identifies a data file by its file id and its location.
+ * <p/>
+ * The location of a file is its canonical path, falling back to the normalized absolute path when the canonical path
+ * can not be resolved; the location of a url is its external form, so no host name lookups are involved.
+ * The hash code is computed once, on creation.
+ */
+public final class DataFileKey implements Serializable {
+
+    private final int fileId;
+    private final String location;
+    private final int hash;
+
+    public DataFileKey(int fileId, String location) {
+        this.fileId = fileId;
+        this.location = location == null ? "" : location;
+        this.hash = 31 * fileId + this.location.hashCode();
+    }
+
+    /**
+     * Create the key of a data file
+     *
+     * @param fileId file id
+     * @param file   file, used as the location if not null
+     * @param url    url, used as the location if there is no file
+     * @return DataFileKey identity key
+     */
+    public static DataFileKey create(int fileId, File file, URL url) {
+        String location = null;
+        if (file != null) {
+            try {
+                location = file.getCanonicalPath();
+            } catch (IOException e) {
+                location = file.toPath().toAbsolutePath().normalize().toString();
+            }
+        } else if (url != null) {
+            location = url.toExternalForm();
+        }
+        return new DataFileKey(fileId, location);
+    }
+
+    public int getFileId() {
+        return fileId;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DataFileKey)) return false;
+
+        DataFileKey that = (DataFileKey) o;
+
+        return hash == that.hash && fileId == that.fileId && location.equals(that.location);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return fileId + ":" + location;
+    }
+}
@@ -124,7 +124,7 @@ public class Submission implements Serializable {
 
         Submission that = (Submission) o;
 
-        if (!dataFiles.equals(that.dataFiles)) return false;
+        if (!DataFileEquivalence.equivalent(getDataFiles(), that.getDataFiles())) return false;
         if (projectMetaData != null ? !projectMetaData.equals(that.projectMetaData) : that.projectMetaData != null)
             return false;
 
@@ -135,6 +135,33 @@ public abstract class MzTabParser {
         }
     }
 
+    // Incremental parsing, for callers reading the mzTab file themselves, e.g. along with other readers of the same
+    // file: startParsing(), then parseLine() for every line, in order, then finishParsing(). parse() keeps reading
+    // the file on its own, with LineAndPositionAwareBufferedReader
+    public final void startParsing() throws MzTabParserException {
+        if (getMzTabDocument().getMetaData() != null) {
+            throw new MzTabParserException("This document has already been parsed!");
+        }
+        doInitParser();
+    }
+
+    public final void parseLine(String line, long lineNo, long offset) throws MzTabParserException {
+        try {
+            parserState.parseLine(this, line, lineNo, offset);
+        } catch (ParserStateException e) {
+            logger.error("An error occurred while parsing a section of the mzTab file, '" + e.getMessage() + "'");
+            throw new MzTabParserException(e.getMessage());
+        }
+    }
+
+    public final void finishParsing() throws MzTabParserException {
+        try {
+            doValidateProduct();
+        } catch (ValidationException e) {
+            throw new MzTabParserException("An ERROR occurred while validating the parsed mzTab document: " + e.getMessage());
+        }
+    }
+
     /**
      * This is another method that could be delegated to subclasses, if another kind of mzTab parser wants to be implemented
      */
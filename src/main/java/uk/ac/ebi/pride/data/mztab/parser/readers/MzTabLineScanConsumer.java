@@ -0,0 +1,59 @@
+package uk.ac.ebi.pride.data.mztab.parser.readers;
+
+import uk.ac.ebi.pride.data.mztab.parser.MzTabParser;
+import uk.ac.ebi.pride.data.util.LineScanConsumer;
+import uk.ac.ebi.pride.data.util.LineSplitter;
+import uk.ac.ebi.pride.data.util.SharedFileScan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * {@link SharedFileScan} consumer handing the lines of an mzTab file over to {@link MzTabParser#parseLine}, with
+ * the same line numbers and offsets as {@link LineAndPositionAwareBufferedReader}.
+ * <p/>
+ * The offsets are those of the line breaks found in the file, LF, CRLF or CR, so the line breaks are not detected
+ * upfront.
+ * The parser must have been started with {@link MzTabParser#startParsing()}, a parsing error fails the consumer.
+ */
+public class MzTabLineScanConsumer extends LineScanConsumer {
+
+    private final MzTabParser parser;
+    private final Charset charset = Charset.defaultCharset();
+    private byte[] line = new byte[1024];
+    private long lineNo;
+
+    public MzTabLineScanConsumer(MzTabParser parser) {
+        this.parser = parser;
+    }
+
+    public MzTabParser getParser() {
+        return parser;
+    }
+
+    @Override
+    protected void startContent(File file) throws IOException {
+        super.startContent(file);
+        lineNo = 0;
+    }
+
+    @Override
+    protected LineSplitter.LineHandler getHandler() {
+        return new LineSplitter.LineHandler() {
+            @Override
+            public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+                int length = end - start;
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                ByteBuffer bytes = buffer.duplicate();
+                bytes.limit(end).position(start);
+                bytes.get(line, 0, length);
+                // decoded as the reader does, with the default charset
+                parser.parseLine(new String(line, 0, length, charset), ++lineNo, offset);
+            }
+        };
+    }
+}
@@ -0,0 +1,302 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controlled vocabulary read from a one column csv file with a header line, e.g. the permitted project tags.
+ * <p/>
+ * The terms are loaded once into an immutable set which is shared by all the callers. Once the set is older than its
+ * time to live, callers keep getting it while a background thread loads a fresh copy.
+ * <p/>
+ * The terms are read from a local file named by a system property when it is set, so that no network access is
+ * needed, and from the online copy otherwise or if the local file can not be read. No copy is bundled: on a host
+ * without network access the system property must be set.
+ * When none of them can be read the previous terms are kept, if there are any. Failed initial loads are not retried
+ * more than once per retry interval.
+ */
+public class CachedVocabulary {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachedVocabulary.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 24 * 60 * 60 * 1000L;
+    public static final long DEFAULT_RETRY_INTERVAL_MILLIS = 60 * 1000L;
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10 * 1000;
+
+    private final String name;
+    private final String localFileProperty;
+    private final String remoteUrl;
+    private final long timeToLiveMillis;
+    private final long retryIntervalMillis;
+
+    private volatile Set<String> terms;
+    private volatile String source;
+    private volatile long version;
+    private volatile long loadedMillis;
+    private volatile long failedMillis;
+    private volatile IOException failure;
+    private final Object loadLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong backgroundRefreshes = new AtomicLong();
+
+    /**
+     * @param name              name of the vocabulary, used in messages and thread names
+     * @param localFileProperty system property naming a local copy, may be null
+     * @param remoteUrl         url of the online copy, may be null
+     * @param timeToLiveMillis  age after which the terms are refreshed in the background
+     */
+    public CachedVocabulary(String name, String localFileProperty, String remoteUrl, long timeToLiveMillis) {
+        this(name, localFileProperty, remoteUrl, timeToLiveMillis, DEFAULT_RETRY_INTERVAL_MILLIS);
+    }
+
+    public CachedVocabulary(String name, String localFileProperty, String remoteUrl,
+                            long timeToLiveMillis, long retryIntervalMillis) {
+        this.name = name;
+        this.localFileProperty = localFileProperty;
+        this.remoteUrl = remoteUrl;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get all the terms, loading them on first use
+     *
+     * @return Set<String> immutable set of terms
+     * @throws IOException if the terms have never been loaded and none of the sources can be read
+     */
+    public Set<String> getTerms() throws IOException {
+        Set<String> current = terms;
+        if (current == null) {
+            return loadInitialTerms();
+        }
+
+        hits.incrementAndGet();
+        if (System.currentTimeMillis() - loadedMillis >= timeToLiveMillis) {
+            refreshInBackground();
+        }
+        return current;
+    }
+
+    public boolean contains(String term) throws IOException {
+        return getTerms().contains(term);
+    }
+
+    /**
+     * Load the terms again, in the calling thread
+     *
+     * @throws IOException if none of the sources can be read, the previous terms are kept
+     */
+    public void refresh() throws IOException {
+        synchronized (loadLock) {
+            load();
+        }
+    }
+
+    /**
+     * @return long    hash of the loaded terms, which changes when a refresh loads different terms, 0 if no terms
+     * have been loaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Stats getStats() {
+        Set<String> current = terms;
+        return new Stats(hits.get(), loads.get(), loadFailures.get(), backgroundRefreshes.get(),
+                current == null ? 0 : current.size(), source, loadedMillis);
+    }
+
+    private Set<String> loadInitialTerms() throws IOException {
+        synchronized (loadLock) {
+            if (terms != null) {
+                hits.incrementAndGet();
+                return terms;
+            }
+            if (failure != null && System.currentTimeMillis() - failedMillis < retryIntervalMillis) {
+                throw failure;
+            }
+            load();
+            return terms;
+        }
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    backgroundRefreshes.incrementAndGet();
+                    refresh();
+                } catch (IOException e) {
+                    logger.warn("Failed to refresh " + name + ", keeping the previous terms", e);
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        }, name + "-refresh");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Load the terms from the first readable source, must hold the load lock
+     */
+    private void load() throws IOException {
+        StringBuilder errors = new StringBuilder();
+
+        String localFile = localFileProperty == null ? null : System.getProperty(localFileProperty);
+        if (localFile != null && !localFile.trim().isEmpty()) {
+            File file = new File(localFile.trim());
+            try {
+                setTerms(read(new FileInputStream(file)), file.getAbsolutePath());
+                return;
+            } catch (IOException e) {
+                errors.append(file.getAbsolutePath()).append(": ").append(e.getMessage()).append("; ");
+            }
+        }
+
+        if (remoteUrl != null) {
+            try {
+                URLConnection connection = new URL(remoteUrl).openConnection();
+                connection.setConnectTimeout(DEFAULT_TIMEOUT_MILLIS);
+                connection.setReadTimeout(DEFAULT_TIMEOUT_MILLIS);
+                setTerms(read(connection.getInputStream()), remoteUrl);
+                return;
+            } catch (IOException e) {
+                errors.append(remoteUrl).append(": ").append(e).append("; ");
+            }
+        }
+
+        loadFailures.incrementAndGet();
+        failure = new IOException("Error while reading " + name + " file from - " + errors);
+        failedMillis = System.currentTimeMillis();
+        throw failure;
+    }
+
+    private void setTerms(Set<String> newTerms, String newSource) {
+        terms = Collections.unmodifiableSet(newTerms);
+        version = ((long) newTerms.size() << 32) | (newTerms.hashCode() & 0xffffffffL);
+        source = newSource;
+        loadedMillis = System.currentTimeMillis();
+        failure = null;
+        loads.incrementAndGet();
+        logger.debug("Loaded " + newTerms.size() + " " + name + " terms from " + newSource);
+    }
+
+    /**
+     * Read the terms, one per line after the header line
+     */
+    private static Set<String> read(InputStream in) throws IOException {
+        Set<String> newTerms = new LinkedHashSet<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            reader.readLine(); // read the header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String term = line.trim();
+                if (!term.isEmpty()) {
+                    newTerms.add(term);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return newTerms;
+    }
+
+    /**
+     * Snapshot of the cache statistics of a vocabulary
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long loads;
+        private final long loadFailures;
+        private final long backgroundRefreshes;
+        private final int size;
+        private final String source;
+        private final long loadedMillis;
+
+        private Stats(long hits, long loads, long loadFailures, long backgroundRefreshes,
+                      int size, String source, long loadedMillis) {
+            this.hits = hits;
+            this.loads = loads;
+            this.loadFailures = loadFailures;
+            this.backgroundRefreshes = backgroundRefreshes;
+            this.size = size;
+            this.source = source;
+            this.loadedMillis = loadedMillis;
+        }
+
+        /**
+         * @return long    number of lookups served from the loaded terms
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return long    number of successful loads
+         */
+        public long getLoads() {
+            return loads;
+        }
+
+        public long getLoadFailures() {
+            return loadFailures;
+        }
+
+        public long getBackgroundRefreshes() {
+            return backgroundRefreshes;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return String  where the current terms were loaded from, null if they have never been loaded
+         */
+        public String getSource() {
+            return source;
+        }
+
+        public long getLoadedMillis() {
+            return loadedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + hits +
+                    ", loads=" + loads +
+                    ", loadFailures=" + loadFailures +
+                    ", backgroundRefreshes=" + backgroundRefreshes +
+                    ", size=" + size +
+                    ", source='" + source + '\'' +
+                    ", loadedMillis=" + loadedMillis +
+                    '}';
+        }
+    }
+}
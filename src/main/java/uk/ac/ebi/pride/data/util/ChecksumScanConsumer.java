@@ -0,0 +1,70 @@
+package uk.ac.ebi.pride.data.util;
+
+import com.google.common.io.BaseEncoding;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * {@link SharedFileScan} consumer computing the checksum of a file. The checksum can be cached into a
+ * {@link FileChecksumCalculator}, which then does not read the file again.
+ */
+public class ChecksumScanConsumer implements SharedFileScan.Consumer {
+
+    private final FileChecksumCalculator.Algorithm algorithm;
+    private final FileChecksumCalculator calculator;
+    private File file;
+    private long size;
+    private long lastModified;
+    private MessageDigest digest;
+    private String checksum;
+
+    public ChecksumScanConsumer(FileChecksumCalculator.Algorithm algorithm) {
+        this(algorithm, null);
+    }
+
+    /**
+     * @param algorithm  checksum algorithm
+     * @param calculator calculator caching the checksum, may be null
+     */
+    public ChecksumScanConsumer(FileChecksumCalculator.Algorithm algorithm, FileChecksumCalculator calculator) {
+        this.algorithm = algorithm;
+        this.calculator = calculator;
+    }
+
+    public FileChecksumCalculator.Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return String  lower case hex checksum, null until the scan has finished
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public void start(File file, long size) throws IOException {
+        this.file = file;
+        this.size = size;
+        // read before the content, so a change during the scan does not get a stale checksum cached
+        lastModified = file.lastModified();
+        digest = algorithm.newDigest();
+        checksum = null;
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk, long offset) throws IOException {
+        digest.update(chunk);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        checksum = BaseEncoding.base16().lowerCase().encode(digest.digest());
+        if (calculator != null && file.length() == size && file.lastModified() == lastModified) {
+            calculator.put(file, algorithm, size, lastModified, checksum);
+        }
+    }
+}
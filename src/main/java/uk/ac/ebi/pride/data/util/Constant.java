@@ -28,6 +28,12 @@ public class Constant {
 
     public static final String SAMPLE_METADATA_ENTRY = "SME";
 
+    public static final String JOURNAL_DELETE_ENTRY = "DEL";
+
+    public static final String JOURNAL_GENERATION_ENTRY = "GEN";
+
+    public static final String JOURNAL_FILE_SUFFIX = ".journal";
+
     public static final String SUBMITTER_NAME = "submitter_name";
 
     public static final String LEGACY_SUBMITTER_NAME = "name";
@@ -204,4 +210,10 @@ public class Constant {
 
     public static final String PROJECT_TAG_FILE="https://raw.githubusercontent.com/PRIDE-Utilities/pride-ontology/master/pride-annotations/project-tags.csv";
 
+    /**
+     * System property pointing to a local copy of the project tags file, used instead of the online copy. It must be
+     * set on hosts without network access, no copy is bundled.
+     */
+    public static final String PROJECT_TAG_FILE_PROPERTY = "pride.project.tags.file";
+
 }
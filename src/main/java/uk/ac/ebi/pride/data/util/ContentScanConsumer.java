@@ -0,0 +1,58 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link SharedFileScan} consumer running a {@link LineContentScanner} over the content of a file, with the same
+ * result as {@link LineContentScanner#scan(File)}.
+ */
+public class ContentScanConsumer extends LineScanConsumer {
+
+    private final LineContentScanner scanner;
+    private ContentScanResult result;
+    private LineContentScanner.EntryParser parser;
+    private boolean finished;
+
+    public ContentScanConsumer(LineContentScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * @param format file format
+     * @return ContentScanConsumer consumer running the scanner registered for the format, null if there is no line
+     * based scanner registered for it
+     */
+    public static ContentScanConsumer forFormat(MassSpecFileFormat format) {
+        ContentScanner scanner = ContentScannerRegistry.get(format);
+        return scanner instanceof LineContentScanner ? new ContentScanConsumer((LineContentScanner) scanner) : null;
+    }
+
+    /**
+     * @return ContentScanResult   result of the scan, null until the scan has finished
+     */
+    public ContentScanResult getResult() {
+        return finished ? result : null;
+    }
+
+    @Override
+    protected LineSplitter.LineHandler getHandler() {
+        return parser;
+    }
+
+    @Override
+    protected void startContent(File file) throws IOException {
+        super.startContent(file);
+        finished = false;
+        result = new ContentScanResult(file, scanner.getFormat());
+        parser = scanner.createParser(result);
+    }
+
+    @Override
+    protected void finishContent(long contentLength) throws IOException {
+        super.finishContent(contentLength);
+        parser.finish(contentLength);
+        result.setByteCount(contentLength);
+        finished = true;
+    }
+}
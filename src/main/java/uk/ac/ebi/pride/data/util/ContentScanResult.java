@@ -0,0 +1,165 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Outcome of a {@link ContentScanner}: entry count, duplicate identifiers, malformed records and format specific
+ * statistics, such as the number of peaks.
+ * <p/>
+ * Only the first duplicates and malformed records are kept, all of them are counted.
+ */
+public final class ContentScanResult {
+
+    public static final int MAX_DUPLICATE_EXAMPLES = 10;
+    public static final int MAX_PROBLEMS = 20;
+
+    private final File file;
+    private final MassSpecFileFormat format;
+    private long byteCount;
+    private int entryCount;
+    private int duplicateCount;
+    private int malformedCount;
+    private final List<String> duplicates = new ArrayList<String>();
+    private final List<Problem> problems = new ArrayList<Problem>();
+    private final Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+
+    public ContentScanResult(File file, MassSpecFileFormat format) {
+        this.file = file;
+        this.format = format;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public MassSpecFileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return long    number of bytes scanned, decompressed bytes for compressed files
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public void setByteCount(long byteCount) {
+        this.byteCount = byteCount;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public void incrementEntryCount() {
+        entryCount++;
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return List<String>    first duplicate identifiers
+     */
+    public List<String> getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
+    public void addDuplicate(String identifier) {
+        duplicateCount++;
+        if (duplicates.size() < MAX_DUPLICATE_EXAMPLES) {
+            duplicates.add(identifier);
+        }
+    }
+
+    public int getMalformedCount() {
+        return malformedCount;
+    }
+
+    /**
+     * @return List<Problem>   first malformed records, in the order of the file
+     */
+    public List<Problem> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * Record a malformed record
+     *
+     * @param offset  offset of the record in the file
+     * @param message description of the problem
+     */
+    public void addMalformed(long offset, String message) {
+        malformedCount++;
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add(new Problem(offset, message));
+        }
+    }
+
+    /**
+     * @return Map<String, Long>    format specific statistics, by name
+     */
+    public Map<String, Long> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    public Long getStatistic(String name) {
+        return statistics.get(name);
+    }
+
+    public void addStatistic(String name, long value) {
+        Long current = statistics.get(name);
+        statistics.put(name, current == null ? value : current + value);
+    }
+
+    public void setStatistic(String name, long value) {
+        statistics.put(name, value);
+    }
+
+    /**
+     * @return boolean true if the file has entries and no malformed record
+     */
+    public boolean isValid() {
+        return entryCount > 0 && malformedCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentScanResult{" +
+                "file=" + file.getName() +
+                ", format=" + format +
+                ", entries=" + entryCount +
+                ", duplicates=" + duplicateCount +
+                ", malformed=" + malformedCount +
+                ", statistics=" + statistics +
+                '}';
+    }
+
+    /**
+     * Malformed record
+     */
+    public static final class Problem {
+        private final long offset;
+        private final String message;
+
+        private Problem(long offset, String message) {
+            this.offset = offset;
+            this.message = message;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "offset " + offset + ": " + message;
+        }
+    }
+}
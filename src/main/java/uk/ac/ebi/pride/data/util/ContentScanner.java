@@ -0,0 +1,22 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Checks the content of a data file of a given format, beyond what its extension and its header tell.
+ * <p/>
+ * Scanners are registered per format in {@link ContentScannerRegistry}, they must be thread safe as several files
+ * are scanned at the same time.
+ */
+public interface ContentScanner {
+
+    /**
+     * Scan the content of a file
+     *
+     * @param file file to scan, optionally gzipped
+     * @return ContentScanResult   entry counts, duplicate identifiers and malformed records of the file
+     * @throws IOException exception while reading the file
+     */
+    ContentScanResult scan(File file) throws IOException;
+}
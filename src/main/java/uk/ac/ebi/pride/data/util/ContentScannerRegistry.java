@@ -0,0 +1,127 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Content scanners by file format, the MGF, FASTA and MSP scanners are registered by default.
+ */
+public final class ContentScannerRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentScannerRegistry.class);
+
+    private static final Map<MassSpecFileFormat, ContentScanner> scanners = new ConcurrentHashMap<MassSpecFileFormat, ContentScanner>();
+
+    static {
+        registerDefaults();
+    }
+
+    private ContentScannerRegistry() {
+    }
+
+    /**
+     * Register a scanner for a format, replacing any scanner registered before
+     */
+    public static void register(MassSpecFileFormat format, ContentScanner scanner) {
+        scanners.put(format, scanner);
+    }
+
+    public static void unregister(MassSpecFileFormat format) {
+        scanners.remove(format);
+    }
+
+    /**
+     * Restore the default scanners, dropping all the others
+     */
+    public static void reset() {
+        scanners.clear();
+        registerDefaults();
+    }
+
+    /**
+     * @param format file format
+     * @return ContentScanner  scanner of the format, null if none has been registered
+     */
+    public static ContentScanner get(MassSpecFileFormat format) {
+        return format == null ? null : scanners.get(format);
+    }
+
+    public static Set<MassSpecFileFormat> getFormats() {
+        return Collections.unmodifiableSet(scanners.keySet());
+    }
+
+    /**
+     * Scan a file with the scanner of its format
+     *
+     * @param file   file to scan
+     * @param format format of the file
+     * @return ContentScanResult   scan result, null if no scanner is registered for the format
+     * @throws IOException exception while reading the file
+     */
+    public static ContentScanResult scan(File file, MassSpecFileFormat format) throws IOException {
+        ContentScanner scanner = get(format);
+        return scanner == null ? null : scanner.scan(file);
+    }
+
+    /**
+     * Scan several files concurrently, each with the scanner of its format
+     *
+     * @param files       formats of the files to scan, files without registered scanner are skipped
+     * @param parallelism maximum number of files scanned at the same time
+     * @return Map<File, ContentScanResult>    results by file, in the order of the files, files which can not be read are left out
+     * @throws InterruptedIOException if interrupted while waiting for the results
+     */
+    public static Map<File, ContentScanResult> scanAll(Map<File, MassSpecFileFormat> files, int parallelism) throws InterruptedIOException {
+        Map<File, Future<ContentScanResult>> pending = new LinkedHashMap<File, Future<ContentScanResult>>();
+        Map<File, ContentScanResult> results = new LinkedHashMap<File, ContentScanResult>();
+
+        ExecutorService executor = null;
+        try {
+            for (final Map.Entry<File, MassSpecFileFormat> entry : files.entrySet()) {
+                final ContentScanner scanner = get(entry.getValue());
+                if (scanner == null) {
+                    continue;
+                }
+                if (executor == null) {
+                    executor = ExecutorUtil.newBoundedExecutor(parallelism, "content-scanner");
+                }
+                pending.put(entry.getKey(), executor.submit(new Callable<ContentScanResult>() {
+                    @Override
+                    public ContentScanResult call() throws Exception {
+                        return scanner.scan(entry.getKey());
+                    }
+                }));
+            }
+
+            for (Map.Entry<File, Future<ContentScanResult>> entry : pending.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to scan " + entry.getKey().getAbsolutePath(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning files");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return results;
+    }
+
+    private static void registerDefaults() {
+        register(MassSpecFileFormat.MGF, new MgfContentScanner());
+        register(MassSpecFileFormat.FASTA, new FastaContentScanner());
+        register(MassSpecFileFormat.MSP, new MspContentScanner());
+    }
+}
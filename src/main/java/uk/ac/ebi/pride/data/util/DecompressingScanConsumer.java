@@ -0,0 +1,296 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Base of the {@link SharedFileScan} consumers which look at the content of a file rather than at its bytes.
+ * <p/>
+ * The chunks of uncompressed files are handed over as they are. gzip files, including multi member files such as
+ * BGZF, are inflated as the chunks come, verifying the CRC and the size in the trailer of every member. Of a zip
+ * file, the first entry is inflated, as {@link FileUtil#getFileInputStream(File)} does.
+ * <p/>
+ * A corrupted compressed file fails the consumer with a {@link ZipException}, a truncated one with an
+ * {@link EOFException}.
+ */
+public abstract class DecompressingScanConsumer implements SharedFileScan.Consumer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int ZIP_LOCAL_HEADER_SIZE = 30;
+    private static final int ZIP_LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private enum State {
+        PLAIN, HEADER, INFLATE, TRAILER, STORED, DONE
+    }
+
+    private File file;
+    private boolean zip;
+    private State state;
+    private boolean atMemberEnd;
+    private Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private byte[] input;
+    private byte[] output;
+    private long memberLength;
+    private long storedRemaining;
+    private long contentLength;
+
+    @Override
+    public final void start(File file, long size) throws IOException {
+        this.file = file;
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        zip = name.endsWith(".zip");
+        state = zip || name.endsWith(".gz") ? State.HEADER : State.PLAIN;
+        atMemberEnd = false;
+        pending.reset();
+        contentLength = 0;
+        if (state != State.PLAIN) {
+            inflater = new Inflater(true);
+            input = new byte[BUFFER_SIZE];
+            output = new byte[BUFFER_SIZE];
+        }
+        startContent(file);
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk, long offset) throws IOException {
+        if (state == State.PLAIN) {
+            int length = chunk.remaining();
+            acceptContent(chunk, offset);
+            contentLength += length;
+            return;
+        }
+
+        while (chunk.hasRemaining()) {
+            int length = Math.min(chunk.remaining(), input.length);
+            chunk.get(input, 0, length);
+            process(input, 0, length);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+        }
+        if (state != State.PLAIN && state != State.DONE && !(state == State.HEADER && atMemberEnd)) {
+            throw new EOFException("Unexpected end of the compressed content of " + file.getAbsolutePath());
+        }
+        finishContent(contentLength);
+    }
+
+    /**
+     * @return long    number of bytes of content handed over so far
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Called before the first bytes of content of a file
+     */
+    protected abstract void startContent(File file) throws IOException;
+
+    /**
+     * @param content read only content between its position and limit, which must not be kept after the call
+     * @param offset  offset of the content, in the decompressed content for compressed files
+     */
+    protected abstract void acceptContent(ByteBuffer content, long offset) throws IOException;
+
+    /**
+     * Called after the last bytes of content of a file
+     *
+     * @param contentLength length of the whole content
+     */
+    protected abstract void finishContent(long contentLength) throws IOException;
+
+    private void process(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            switch (state) {
+                case HEADER:
+                case TRAILER:
+                    // headers and trailers may span chunks, they are gathered before being parsed
+                    pending.write(bytes, offset, length);
+                    byte[] gathered = pending.toByteArray();
+                    int used = state == State.HEADER ? parseHeader(gathered) : parseTrailer(gathered);
+                    if (used < 0) {
+                        if (gathered.length > MAX_HEADER_SIZE) {
+                            throw new ZipException("Compressed header too long in " + file.getAbsolutePath());
+                        }
+                        return;
+                    }
+                    pending.reset();
+                    bytes = gathered;
+                    offset = used;
+                    length = gathered.length - used;
+                    break;
+                case INFLATE:
+                    int remaining = inflate(bytes, offset, length);
+                    offset += length - remaining;
+                    length = remaining;
+                    break;
+                case STORED:
+                    int stored = (int) Math.min(length, storedRemaining);
+                    deliver(bytes, offset, stored);
+                    storedRemaining -= stored;
+                    offset += stored;
+                    length -= stored;
+                    if (storedRemaining == 0) {
+                        state = State.DONE;
+                    }
+                    break;
+                default:
+                    // anything after the content is ignored
+                    return;
+            }
+        }
+    }
+
+    /**
+     * @return int number of bytes left after the end of the deflated stream, 0 if all the bytes were used
+     */
+    private int inflate(byte[] bytes, int offset, int length) throws IOException {
+        inflater.setInput(bytes, offset, length);
+        try {
+            while (true) {
+                int inflated = inflater.inflate(output);
+                if (inflated > 0) {
+                    crc.update(output, 0, inflated);
+                    memberLength += inflated;
+                    deliver(output, 0, inflated);
+                }
+                if (inflater.finished()) {
+                    state = zip ? State.DONE : State.TRAILER;
+                    return inflater.getRemaining();
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Deflated stream needs a preset dictionary in " + file.getAbsolutePath());
+                }
+                if (inflated == 0 && inflater.needsInput()) {
+                    return 0;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupted compressed content in " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    private void deliver(byte[] bytes, int offset, int length) throws IOException {
+        acceptContent(ByteBuffer.wrap(bytes, offset, length).asReadOnlyBuffer(), contentLength);
+        contentLength += length;
+    }
+
+    /**
+     * @return int length of the header, -1 if more bytes are needed
+     */
+    private int parseHeader(byte[] header) throws IOException {
+        return zip ? parseZipHeader(header) : parseGzipHeader(header);
+    }
+
+    private int parseGzipHeader(byte[] header) throws IOException {
+        if (header.length >= 2 && (header[0] != 0x1f || header[1] != (byte) 0x8b)) {
+            if (atMemberEnd) {
+                // trailing garbage after the last member, ignored like GZIPInputStream does
+                state = State.DONE;
+                return header.length;
+            }
+            throw new ZipException("Not in gzip format: " + file.getAbsolutePath());
+        }
+        if (header.length < 10) {
+            return -1;
+        }
+        if (header[2] != 8) {
+            throw new ZipException("Unsupported gzip compression method in " + file.getAbsolutePath());
+        }
+
+        int flags = header[3] & 0xff;
+        int position = 10;
+        if ((flags & 4) != 0) {
+            // FEXTRA
+            if (header.length < position + 2) {
+                return -1;
+            }
+            position += 2 + ((header[position] & 0xff) | (header[position + 1] & 0xff) << 8);
+        }
+        for (int flag : new int[]{8, 16}) {
+            // FNAME and FCOMMENT, zero terminated
+            if ((flags & flag) != 0) {
+                while (position < header.length && header[position] != 0) {
+                    position++;
+                }
+                position++;
+            }
+        }
+        if ((flags & 2) != 0) {
+            // FHCRC
+            position += 2;
+        }
+        if (header.length < position) {
+            return -1;
+        }
+
+        inflater.reset();
+        crc.reset();
+        memberLength = 0;
+        atMemberEnd = false;
+        state = State.INFLATE;
+        return position;
+    }
+
+    private int parseTrailer(byte[] trailer) throws IOException {
+        if (trailer.length < GZIP_TRAILER_SIZE) {
+            return -1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(trailer).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != (int) crc.getValue() || buffer.getInt(4) != (int) memberLength) {
+            throw new ZipException("Corrupted gzip content, CRC or size mismatch in " + file.getAbsolutePath());
+        }
+        atMemberEnd = true;
+        state = State.HEADER;
+        return GZIP_TRAILER_SIZE;
+    }
+
+    private int parseZipHeader(byte[] header) throws IOException {
+        if (header.length < ZIP_LOCAL_HEADER_SIZE) {
+            return -1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != ZIP_LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Not in zip format: " + file.getAbsolutePath());
+        }
+        int flags = buffer.getShort(6) & 0xffff;
+        int method = buffer.getShort(8) & 0xffff;
+        long compressedSize = buffer.getInt(18) & 0xffffffffL;
+        int length = ZIP_LOCAL_HEADER_SIZE + (buffer.getShort(26) & 0xffff) + (buffer.getShort(28) & 0xffff);
+        if (header.length < length) {
+            return -1;
+        }
+
+        if ((flags & 1) != 0) {
+            throw new ZipException("Encrypted zip entry in " + file.getAbsolutePath());
+        } else if (method == 8) {
+            inflater.reset();
+            state = State.INFLATE;
+        } else if (method == 0 && (flags & 8) == 0 && compressedSize != 0xffffffffL) {
+            storedRemaining = compressedSize;
+            state = compressedSize == 0 ? State.DONE : State.STORED;
+        } else {
+            throw new ZipException("Unsupported zip entry in " + file.getAbsolutePath());
+        }
+        return length;
+    }
+}
@@ -0,0 +1,149 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class for creating the bounded thread pools used by the parallel file operations
+ */
+public final class ExecutorUtil {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorUtil.class);
+
+    /**
+     * Time after which the idle threads of a shared pool are released
+     */
+    private static final long SHARED_KEEP_ALIVE_SECONDS = 30;
+
+    private ExecutorUtil() {
+    }
+
+    /**
+     * Default parallelism, based on the number of available processors
+     *
+     * @return int number of worker threads
+     */
+    public static int getDefaultParallelism() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads, so an abandoned pool never keeps the JVM alive
+     *
+     * @param parallelism maximum number of concurrent tasks
+     * @param name        prefix for the worker thread names
+     * @return ExecutorService  bounded executor
+     */
+    public static ExecutorService newBoundedExecutor(int parallelism, final String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Create a fixed size pool for tasks which spend most of their time blocked on I/O, such as file system calls
+     * on network storage. Virtual threads are used when the running JVM supports them, daemon threads otherwise.
+     *
+     * @param parallelism maximum number of concurrent tasks
+     * @param name        prefix for the worker thread names
+     * @return ExecutorService  bounded executor
+     */
+    public static ExecutorService newBoundedIoExecutor(int parallelism, String name) {
+        ThreadFactory virtualThreadFactory = getVirtualThreadFactory(name);
+        if (virtualThreadFactory == null) {
+            return newBoundedExecutor(parallelism, name);
+        }
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), virtualThreadFactory);
+    }
+
+    /**
+     * Create a pool of daemon threads without bound, reusing idle threads, for tasks which must all run at the same
+     * time, such as the consumers of a {@link SharedFileScan}. The caller bounds the number of tasks.
+     *
+     * @param name prefix for the worker thread names
+     * @return ExecutorService  unbounded executor
+     */
+    public static ExecutorService newUnboundedExecutor(final String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Create a pool for I/O bound tasks which is kept for the lifetime of the application and shared by its callers,
+     * instead of creating a pool per call. Its idle threads are released after a while, it is never shut down.
+     *
+     * @param parallelism maximum number of concurrent tasks
+     * @param name        prefix for the worker thread names
+     * @return ExecutorService  bounded executor
+     */
+    public static ExecutorService newSharedIoExecutor(int parallelism, String name) {
+        ExecutorService executor = newBoundedIoExecutor(parallelism, name);
+        if (executor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) executor).setKeepAliveTime(SHARED_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Get a factory for virtual threads, looked up reflectively as they are not available on older JVMs
+     *
+     * @param name prefix for the thread names
+     * @return ThreadFactory   virtual thread factory, null if virtual threads are not supported
+     */
+    private static ThreadFactory getVirtualThreadFactory(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            logger.debug("Virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * Shut down an executor, cancelling whatever is still running after a short grace period
+     *
+     * @param executor executor to shut down
+     */
+    public static void shutdown(ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
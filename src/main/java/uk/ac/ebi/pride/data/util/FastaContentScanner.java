@@ -0,0 +1,106 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scans FASTA files: counts the entries and their residues, finds duplicate accessions, the first word of the
+ * headers, and reports headers without accession, entries without sequence and invalid residues.
+ */
+public class FastaContentScanner extends LineContentScanner {
+
+    public static final String RESIDUES = "residues";
+    public static final String SHORTEST_SEQUENCE = "shortest sequence";
+    public static final String LONGEST_SEQUENCE = "longest sequence";
+
+    public FastaContentScanner() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public FastaContentScanner(int windowSize) {
+        super(MassSpecFileFormat.FASTA, windowSize);
+    }
+
+    @Override
+    protected EntryParser createParser(ContentScanResult result) {
+        return new FastaParser(result);
+    }
+
+    private static final class FastaParser extends EntryParser {
+        private boolean inEntry;
+        private long entryOffset;
+        private long sequenceLength;
+        private boolean invalidResidue;
+        private boolean contentBeforeHeader;
+        private long shortest = Long.MAX_VALUE;
+        private long longest;
+
+        private FastaParser(ContentScanResult result) {
+            super(result);
+            result.setStatistic(RESIDUES, 0);
+        }
+
+        @Override
+        public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+            end = trimEnd(buffer, start, end);
+            if (start == end || buffer.get(start) == ';') {
+                // blank or comment
+                return;
+            }
+
+            if (buffer.get(start) == '>') {
+                closeEntry();
+                result.incrementEntryCount();
+                inEntry = true;
+                entryOffset = offset;
+                sequenceLength = 0;
+                invalidResidue = false;
+
+                int accessionStart = skipWhitespace(buffer, start + 1, end);
+                int accessionEnd = tokenEnd(buffer, accessionStart, end);
+                if (accessionStart == accessionEnd) {
+                    result.addMalformed(offset, "Header without accession");
+                } else {
+                    addIdentifier(buffer, accessionStart, accessionEnd);
+                }
+            } else if (!inEntry) {
+                if (!contentBeforeHeader) {
+                    contentBeforeHeader = true;
+                    result.addMalformed(offset, "Sequence before the first header");
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    byte b = buffer.get(i);
+                    if (isLetter(b) || b == '*' || b == '-') {
+                        sequenceLength++;
+                    } else if (!isWhitespace(b) && !invalidResidue) {
+                        // reported once per entry
+                        invalidResidue = true;
+                        result.addMalformed(offset + i - start, "Invalid residue '" + (char) (b & 0xff) + "'");
+                    }
+                }
+            }
+        }
+
+        private void closeEntry() {
+            if (!inEntry) {
+                return;
+            }
+            if (sequenceLength == 0) {
+                result.addMalformed(entryOffset, "Entry without sequence");
+            }
+            shortest = Math.min(shortest, sequenceLength);
+            longest = Math.max(longest, sequenceLength);
+            result.addStatistic(RESIDUES, sequenceLength);
+            inEntry = false;
+        }
+
+        @Override
+        protected void finish(long endOffset) {
+            closeEntry();
+            if (result.getEntryCount() > 0) {
+                result.setStatistic(SHORTEST_SEQUENCE, shortest);
+                result.setStatistic(LONGEST_SEQUENCE, longest);
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package uk.ac.ebi.pride.data.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Computes the checksums of local files, reading them through a direct buffer so that multi GB raw files are hashed
+ * without copying their content onto the heap.
+ * <p/>
+ * Checksums are cached by canonical path, size and last modified time, so a file is only hashed again once it has
+ * changed. Batches of files are hashed concurrently on a bounded pool.
+ * <p/>
+ * The direct buffers are shared by all the calculators and handed back once a file is hashed, so that short lived
+ * pools do not leave buffers behind for the garbage collector to free. At most {@link #MAX_IDLE_BUFFERS} are kept.
+ */
+public class FileChecksumCalculator {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileChecksumCalculator.class);
+
+    public static final int BUFFER_SIZE = 1024 * 1024;
+    public static final long MAXIMUM_SIZE = 100000;
+
+    /**
+     * Number of bytes hashed between two progress reports of the same file
+     */
+    public static final long PROGRESS_INTERVAL = 64L * 1024 * 1024;
+
+    private static final FileChecksumCalculator defaultCalculator = new FileChecksumCalculator(ExecutorUtil.getDefaultParallelism());
+
+    /**
+     * Number of idle direct buffers kept for reuse
+     */
+    public static final int MAX_IDLE_BUFFERS = ExecutorUtil.getDefaultParallelism();
+
+    private static final BlockingQueue<ByteBuffer> idleBuffers = new LinkedBlockingQueue<ByteBuffer>(MAX_IDLE_BUFFERS);
+
+    /**
+     * Supported checksum algorithms
+     */
+    public enum Algorithm {
+        MD5("MD5", "MS:1000568"),
+        SHA1("SHA-1", "MS:1000569"),
+        SHA256("SHA-256", "MS:1003151");
+
+        private final String name;
+        private final String accession;
+
+        Algorithm(String name, String accession) {
+            this.name = name;
+            this.accession = accession;
+        }
+
+        /**
+         * @return String  name of the algorithm, as known to {@link MessageDigest}
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return String  PSI-MS accession of the algorithm
+         */
+        public String getAccession() {
+            return accession;
+        }
+
+        /**
+         * Get the algorithm from its name, ignoring case and dashes, such as "SHA-1", "sha1" or "SHA256"
+         *
+         * @param name algorithm name
+         * @return Algorithm   algorithm, null if not supported
+         */
+        public static Algorithm findByName(String name) {
+            if (name == null) {
+                return null;
+            }
+
+            String normalizedName = name.replace("-", "").trim();
+            for (Algorithm algorithm : values()) {
+                if (algorithm.name.replace("-", "").equalsIgnoreCase(normalizedName)) {
+                    return algorithm;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the algorithm from its PSI-MS accession
+         *
+         * @param accession cv accession, such as MS:1000569
+         * @return Algorithm   algorithm, null if not supported
+         */
+        public static Algorithm findByAccession(String accession) {
+            if (accession == null) {
+                return null;
+            }
+
+            String normalizedAccession = accession.replaceAll("\\s", "");
+            for (Algorithm algorithm : values()) {
+                if (normalizedAccession.endsWith(algorithm.accession)) {
+                    return algorithm;
+                }
+            }
+            return null;
+        }
+
+        MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                // required on every java platform
+                throw new IllegalStateException("Checksum algorithm not available: " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Receives the progress of the hashing, calls are serialized so implementations need not be thread safe
+     */
+    public interface ProgressListener {
+
+        /**
+         * @param file        file being hashed
+         * @param bytesHashed number of bytes hashed so far
+         * @param totalBytes  size of the file
+         */
+        void onProgress(File file, long bytesHashed, long totalBytes);
+    }
+
+    private final int parallelism;
+    private final Cache<Key, String> checksums;
+
+    /**
+     * @param parallelism maximum number of files hashed at the same time
+     */
+    public FileChecksumCalculator(int parallelism) {
+        this.parallelism = parallelism;
+        this.checksums = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Shared calculator
+     */
+    public static FileChecksumCalculator getDefault() {
+        return defaultCalculator;
+    }
+
+    /**
+     * Get the checksum of a file
+     *
+     * @param file      regular file
+     * @param algorithm checksum algorithm
+     * @return String  lower case hex checksum
+     * @throws IOException exception while reading the file
+     */
+    public String checksum(File file, Algorithm algorithm) throws IOException {
+        return checksum(file, algorithm, null);
+    }
+
+    /**
+     * Get the checksum of a file, hashing it only if it is not cached or has changed
+     *
+     * @param file      regular file
+     * @param algorithm checksum algorithm
+     * @param listener  receives the progress, may be null
+     * @return String  lower case hex checksum
+     * @throws IOException exception while reading the file
+     */
+    public String checksum(File file, Algorithm algorithm, ProgressListener listener) throws IOException {
+        Path path = file.toPath().toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new IOException("Not a regular file: " + file.getAbsolutePath());
+        }
+
+        Key key = new Key(path.toString(), attributes.size(), attributes.lastModifiedTime().toMillis(), algorithm);
+        String checksum = checksums.getIfPresent(key);
+        if (checksum == null) {
+            checksum = hash(file, path, algorithm, listener);
+            checksums.put(key, checksum);
+        } else if (listener != null) {
+            report(listener, file, attributes.size(), attributes.size());
+        }
+        return checksum;
+    }
+
+    /**
+     * Get the checksums of a batch of files, hashing them concurrently
+     *
+     * @param files     regular files
+     * @param algorithm checksum algorithm
+     * @param listener  receives the progress of every file, may be null
+     * @return Map<File, String>   checksum of each file, in the order of the given files, files which could not be
+     * read are left out
+     * @throws InterruptedIOException if interrupted while waiting for the checksums
+     */
+    public Map<File, String> checksumAll(Collection<File> files, final Algorithm algorithm, final ProgressListener listener) throws InterruptedIOException {
+        Map<File, Future<String>> pending = new LinkedHashMap<File, Future<String>>();
+        Map<File, String> results = new LinkedHashMap<File, String>();
+
+        ExecutorService executor = ExecutorUtil.newBoundedExecutor(Math.min(parallelism, Math.max(1, files.size())), "file-checksum");
+        try {
+            for (final File file : files) {
+                if (!pending.containsKey(file)) {
+                    pending.put(file, executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            return checksum(file, algorithm, listener);
+                        }
+                    }));
+                }
+            }
+
+            for (Map.Entry<File, Future<String>> entry : pending.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to compute the checksum of " + entry.getKey().getAbsolutePath(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while computing checksums");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return results;
+    }
+
+    /**
+     * Cache a checksum computed outside of this calculator, such as by a {@link SharedFileScan}
+     *
+     * @param file         regular file
+     * @param algorithm    checksum algorithm
+     * @param size         size of the file when it was hashed
+     * @param lastModified last modification time of the file when it was hashed, in milliseconds
+     * @param checksum     lower case hex checksum
+     * @throws IOException exception while resolving the path of the file
+     */
+    public void put(File file, Algorithm algorithm, long size, long lastModified, String checksum) throws IOException {
+        checksums.put(new Key(file.toPath().toRealPath().toString(), size, lastModified, algorithm), checksum);
+    }
+
+    public long getHitCount() {
+        return checksums.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return checksums.stats().missCount();
+    }
+
+    public void invalidateAll() {
+        checksums.invalidateAll();
+    }
+
+    private String hash(File file, Path path, Algorithm algorithm, ProgressListener listener) throws IOException {
+        MessageDigest digest = algorithm.newDigest();
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer buffer = idleBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        try {
+            long size = channel.size();
+            long hashed = 0;
+            long nextReport = PROGRESS_INTERVAL;
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hashed += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while hashing " + file.getAbsolutePath());
+                }
+                if (listener != null && hashed >= nextReport) {
+                    report(listener, file, hashed, size);
+                    nextReport = hashed + PROGRESS_INTERVAL;
+                }
+            }
+
+            if (listener != null) {
+                report(listener, file, hashed, size);
+            }
+        } finally {
+            channel.close();
+            // dropped if enough buffers are idle already
+            idleBuffers.offer(buffer);
+        }
+
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    private static void report(ProgressListener listener, File file, long bytesHashed, long totalBytes) {
+        synchronized (listener) {
+            listener.onProgress(file, bytesHashed, totalBytes);
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final Algorithm algorithm;
+
+        private Key(String path, long size, long lastModified, Algorithm algorithm) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+
+            return size == key.size && lastModified == key.lastModified && algorithm == key.algorithm && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (size ^ (size >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = 31 * result + algorithm.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package uk.ac.ebi.pride.data.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * JVM wide cache of detected file formats, keyed by canonical path, size and last modified time, so that a file is
+ * only opened again once it has changed. The name of the file is part of the key as well, since the format of a file
+ * depends on its extension, which a symbolic link may not share with its target.
+ * <p/>
+ * Files of unknown format are cached as well. Files which do not exist are not cached, their format only depends on
+ * their name.
+ */
+public final class FileFormatCache {
+
+    public static final long MAXIMUM_SIZE = 10000;
+
+    /**
+     * Placeholder for files of unknown format, the cache does not hold nulls
+     */
+    private static final Object UNKNOWN_FORMAT = new Object();
+
+    private static final Cache<Key, Object> formats = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+
+    private FileFormatCache() {
+    }
+
+    /**
+     * Get the format of a file, detecting it if the file is not cached or has changed
+     *
+     * @param file input file
+     * @return MassSpecFileFormat  mass spec file format, null if unknown
+     * @throws IOException exception while detecting the format
+     */
+    public static MassSpecFileFormat getFormat(final File file) throws IOException {
+        Key key = getKey(file);
+        if (key == null) {
+            return MassSpecFileFormat.detectFileFormat(file);
+        }
+
+        try {
+            Object format = formats.get(key, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    MassSpecFileFormat format = MassSpecFileFormat.detectFileFormat(file);
+                    return format == null ? UNKNOWN_FORMAT : format;
+                }
+            });
+            return format == UNKNOWN_FORMAT ? null : (MassSpecFileFormat) format;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to detect file format: " + file.getAbsolutePath(), e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw new IOException("Failed to detect file format: " + file.getAbsolutePath(), e.getCause());
+        }
+    }
+
+    public static long getHitCount() {
+        return formats.stats().hitCount();
+    }
+
+    public static long getMissCount() {
+        return formats.stats().missCount();
+    }
+
+    public static CacheStats getStats() {
+        return formats.stats();
+    }
+
+    public static long size() {
+        return formats.size();
+    }
+
+    public static void invalidate(File file) {
+        Key key = getKey(file);
+        if (key != null) {
+            formats.invalidate(key);
+        }
+    }
+
+    public static void invalidateAll() {
+        formats.invalidateAll();
+    }
+
+    /**
+     * @return Key cache key of the file, null if the file does not exist or can not be read
+     */
+    private static Key getKey(File file) {
+        try {
+            Path path = file.toPath().toRealPath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Key(path.toString(), file.getName(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            // missing or unreadable, detect without caching
+            return null;
+        }
+    }
+
+    private static final class Key {
+        private final String path;
+        private final String name;
+        private final long size;
+        private final long lastModified;
+
+        private Key(String path, String name, long size, long lastModified) {
+            this.path = path;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+
+            return size == key.size && lastModified == key.lastModified && path.equals(key.path) && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + name.hashCode();
+            result = 31 * result + (int) (size ^ (size >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
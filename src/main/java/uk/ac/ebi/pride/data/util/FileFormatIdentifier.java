@@ -33,6 +33,26 @@ public abstract class FileFormatIdentifier {
         return format;
     }
 
+    /**
+     * Identify the format of a probed file, the same probe is handed down the chain, so the file is read only once
+     */
+    public MassSpecFileFormat identifyFormat(FileProbe probe) {
+        MassSpecFileFormat format = doIdentifyFormat(probe);
+        if ((format == null) && (getNextHandler() != null)) {
+            return getNextHandler().identifyFormat(probe);
+        }
+        return format;
+    }
+
+    // By default identify the format from the content sample, subclasses may look at the raw bytes instead
+    protected MassSpecFileFormat doIdentifyFormat(FileProbe probe) {
+        String content = probe.getContentSample();
+        if ((content != null) && (!content.isEmpty())) {
+            return doIdentifyFormatFromContent(content);
+        }
+        return null;
+    }
+
     // Delegate format identification to subclasses
     protected abstract MassSpecFileFormat doIdentifyFormatFromContent(String content);
 }
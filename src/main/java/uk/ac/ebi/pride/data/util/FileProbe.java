@@ -0,0 +1,364 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * The first few KB of a file, and optionally the last few KB, read with a single open, so that the format of a file
+ * can be checked without opening it again for every check.
+ * <p/>
+ * The compression of the file is detected from its magic bytes. For gzip files and zip archives the start of the
+ * content, of the first entry for zip archives, is inflated from the head of the file.
+ */
+public final class FileProbe {
+
+    public static final int HEAD_SIZE = 16 * 1024;
+    public static final int TAIL_SIZE = 8 * 1024;
+
+    /**
+     * Maximum number of bytes inflated from the head of a compressed file
+     */
+    public static final int INFLATED_CONTENT_SIZE = HEAD_SIZE;
+
+    /**
+     * Number of bytes of compressed content used to identify the format
+     */
+    public static final int COMPRESSED_SAMPLE_SIZE = 1048;
+
+    /**
+     * Number of lines of plain content used to identify the format
+     */
+    public static final int PLAIN_SAMPLE_LINES = 10;
+
+    private static final int ZIP_LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int ZIP_LOCAL_HEADER_SIZE = 30;
+    private static final int ZIP_STORED = 0;
+    private static final int ZIP_DEFLATED = 8;
+
+    public enum Compression {
+        NONE,
+        GZIP,
+        ZIP,
+        BZIP2,
+        XZ
+    }
+
+    private final File file;
+    private final long size;
+    private final byte[] head;
+    private final byte[] tail;
+    private final Compression compression;
+
+    private String zipEntryName;
+    private byte[] content;
+    private String contentSample;
+    private XmlRootElement xmlRootElement;
+    private boolean xmlRootElementSniffed;
+
+    private FileProbe(File file, long size, byte[] head, byte[] tail) {
+        this.file = file;
+        this.size = size;
+        this.head = head;
+        this.tail = tail;
+        this.compression = detectCompression(head);
+    }
+
+    /**
+     * Read the head of a file
+     *
+     * @param file regular file
+     * @return FileProbe   file probe
+     * @throws IOException exception while reading the file
+     */
+    public static FileProbe open(File file) throws IOException {
+        return open(file, false);
+    }
+
+    /**
+     * Read the head of a file, and its tail if asked for
+     *
+     * @param file     regular file
+     * @param withTail whether to read the tail as well, the tail overlaps the head for small files
+     * @return FileProbe   file probe
+     * @throws IOException exception while reading the file
+     */
+    public static FileProbe open(File file, boolean withTail) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return open(file, channel, withTail);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read the head of a file through a channel which the caller keeps open, e.g. to read more of the file afterwards
+     *
+     * @param file     file the channel reads
+     * @param channel  open channel, left open
+     * @param withTail whether to read the tail as well
+     * @return FileProbe   file probe
+     * @throws IOException exception while reading the file
+     */
+    static FileProbe open(File file, FileChannel channel, boolean withTail) throws IOException {
+        long size = channel.size();
+        byte[] head = read(channel, 0, (int) Math.min(size, HEAD_SIZE));
+
+        byte[] tail = null;
+        if (withTail) {
+            if (size <= HEAD_SIZE) {
+                tail = head;
+            } else {
+                int tailSize = (int) Math.min(size, TAIL_SIZE);
+                tail = read(channel, size - tailSize, tailSize);
+            }
+        }
+
+        return new FileProbe(file, size, head, tail);
+    }
+
+    /**
+     * Probe content which has already been read, such as the start of a zip entry
+     *
+     * @param file    file the content belongs to, used for its name only
+     * @param content start of the content
+     * @return FileProbe   file probe over the given content
+     */
+    static FileProbe wrap(File file, byte[] content) {
+        return new FileProbe(file, content.length, content, null);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return ByteBuffer  read only view of the head of the file
+     */
+    public ByteBuffer getHead() {
+        return ByteBuffer.wrap(head).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return ByteBuffer  read only view of the tail of the file, null if the tail has not been read
+     */
+    public ByteBuffer getTail() {
+        return tail == null ? null : ByteBuffer.wrap(tail).asReadOnlyBuffer();
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return String  name of the first entry of a zip archive, null if this is not a zip archive
+     */
+    public String getZipEntryName() {
+        if (compression == Compression.ZIP && zipEntryName == null) {
+            ByteBuffer header = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+            if (head.length >= ZIP_LOCAL_HEADER_SIZE && header.getInt(0) == ZIP_LOCAL_HEADER_SIGNATURE) {
+                int nameLength = header.getShort(26) & 0xffff;
+                if (ZIP_LOCAL_HEADER_SIZE + nameLength <= head.length) {
+                    boolean utf8 = (header.getShort(6) & 0x800) != 0;
+                    zipEntryName = new String(head, ZIP_LOCAL_HEADER_SIZE, nameLength,
+                            utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+                }
+            }
+        }
+        return zipEntryName;
+    }
+
+    /**
+     * Get the start of the content, inflated for gzip files and zip archives
+     *
+     * @return byte[]  start of the content, empty if a compressed content can not be read from the head
+     */
+    public byte[] getContent() {
+        if (content == null) {
+            switch (compression) {
+                case GZIP:
+                    content = inflateGzip();
+                    break;
+                case ZIP:
+                    content = inflateZipEntry();
+                    break;
+                case BZIP2:
+                case XZ:
+                    content = new byte[0];
+                    break;
+                default:
+                    content = head;
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Get the text the format identifiers work on: the first lines of a plain file, with the line terminators
+     * removed, or the first KB of the content of a compressed file
+     *
+     * @return String  content sample, empty if there is no content
+     */
+    public String getContentSample() {
+        if (contentSample == null) {
+            byte[] bytes = getContent();
+            if (compression == Compression.NONE) {
+                contentSample = joinLines(new String(bytes, StandardCharsets.UTF_8), PLAIN_SAMPLE_LINES);
+            } else {
+                contentSample = new String(bytes, 0, Math.min(bytes.length, COMPRESSED_SAMPLE_SIZE), StandardCharsets.UTF_8);
+            }
+        }
+        return contentSample;
+    }
+
+    /**
+     * Get the root element of a xml file, from the start of its content
+     *
+     * @return XmlRootElement  root element, null if this is not a xml file or the root element is not in the head
+     */
+    public XmlRootElement getXmlRootElement() {
+        if (!xmlRootElementSniffed) {
+            xmlRootElement = XmlRootElement.sniff(getContent());
+            xmlRootElementSniffed = true;
+        }
+        return xmlRootElement;
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static Compression detectCompression(byte[] head) {
+        if (startsWith(head, 0x1f, 0x8b)) {
+            return Compression.GZIP;
+        } else if (startsWith(head, 0x50, 0x4b, 0x03, 0x04)) {
+            return Compression.ZIP;
+        } else if (startsWith(head, 'B', 'Z', 'h')) {
+            return Compression.BZIP2;
+        } else if (startsWith(head, 0xfd, '7', 'z', 'X', 'Z', 0x00)) {
+            return Compression.XZ;
+        }
+        return Compression.NONE;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... magic) {
+        if (bytes.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((bytes[i] & 0xff) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] inflateGzip() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            InputStream in = new GZIPInputStream(new ByteArrayInputStream(head));
+            byte[] buffer = new byte[4096];
+            int read;
+            while (output.size() < INFLATED_CONTENT_SIZE
+                    && (read = in.read(buffer, 0, Math.min(buffer.length, INFLATED_CONTENT_SIZE - output.size()))) > 0) {
+                output.write(buffer, 0, read);
+            }
+        } catch (EOFException e) {
+            // the head ends before the compressed content does
+        } catch (IOException e) {
+            // not a valid gzip file, keep whatever has been inflated
+        }
+        return output.toByteArray();
+    }
+
+    private byte[] inflateZipEntry() {
+        if (getZipEntryName() == null) {
+            return new byte[0];
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+        int method = header.getShort(8) & 0xffff;
+        int dataOffset = ZIP_LOCAL_HEADER_SIZE + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+        if (dataOffset >= head.length) {
+            return new byte[0];
+        }
+
+        if (method == ZIP_STORED) {
+            byte[] stored = new byte[Math.min(head.length - dataOffset, INFLATED_CONTENT_SIZE)];
+            System.arraycopy(head, dataOffset, stored, 0, stored.length);
+            return stored;
+        } else if (method == ZIP_DEFLATED) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(head, dataOffset, head.length - dataOffset);
+                byte[] inflated = new byte[INFLATED_CONTENT_SIZE];
+                int length = 0;
+                while (length < inflated.length && !inflater.finished() && !inflater.needsInput()) {
+                    int read = inflater.inflate(inflated, length, inflated.length - length);
+                    if (read == 0 && (inflater.needsDictionary() || inflater.needsInput())) {
+                        break;
+                    }
+                    length += read;
+                }
+                byte[] result = new byte[length];
+                System.arraycopy(inflated, 0, result, 0, length);
+                return result;
+            } catch (DataFormatException e) {
+                return new byte[0];
+            } finally {
+                inflater.end();
+            }
+        }
+
+        return new byte[0];
+    }
+
+    private static String joinLines(String text, int maxLines) {
+        StringBuilder joined = new StringBuilder(text.length());
+        int lines = 0;
+        int start = 0;
+        while (lines < maxLines && start < text.length()) {
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            joined.append(text, start, end);
+            lines++;
+            if (end < text.length() && text.charAt(end) == '\r' && end + 1 < text.length() && text.charAt(end + 1) == '\n') {
+                end++;
+            }
+            start = end + 1;
+        }
+        return joined.toString();
+    }
+}
@@ -1,8 +1,10 @@
 package uk.ac.ebi.pride.data.util;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLDecoder;
 
 /**
  * @author Rui Wang
@@ -23,7 +25,31 @@ public class FileURLUtil {
     }
 
     /**
-     * Get file size for file defined via URL.
+     * Get the decoded file name of a location, such as the ms_run location of a mzTab file, written on any platform
+     *
+     * @param location url or path
+     * @return String  file name, url decoded
+     */
+    public static String getFileName(String location) {
+        String fileName = location.trim();
+        int query = fileName.indexOf('?');
+        if (query >= 0 && fileName.contains("://")) {
+            fileName = fileName.substring(0, query);
+        }
+        fileName = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+
+        try {
+            return URLDecoder.decode(fileName.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return fileName;
+        } catch (IllegalArgumentException e) {
+            // not url encoded
+            return fileName;
+        }
+    }
+
+    /**
+     * Get file size for file defined via URL, without caching, see {@link UrlMetadataResolver} for cached sizes.
      *
      * @param url URL The URL for the file to get size for.
      * @return long Size in bytes of file. Returns -1 if connection fails.
@@ -34,9 +60,11 @@ public class FileURLUtil {
         HttpURLConnection conn = null;
         try {
             conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(UrlMetadataResolver.DEFAULT_TIMEOUT_MILLIS);
+            conn.setReadTimeout(UrlMetadataResolver.DEFAULT_TIMEOUT_MILLIS);
             conn.setRequestMethod("HEAD");
             conn.getInputStream();
-            fileSize = conn.getContentLength();
+            fileSize = conn.getContentLengthLong();
         } catch (IOException e) {
             fileSize = -1;
         } finally {
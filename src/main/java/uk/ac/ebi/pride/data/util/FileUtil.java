@@ -1,6 +1,11 @@
 package uk.ac.ebi.pride.data.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
@@ -77,24 +82,71 @@ public final class FileUtil {
         return false;
     }
 
+    /**
+     * Get the last characters of a file, one character per byte
+     *
+     * @param file          given file
+     * @param numberOfChars maximum number of characters
+     * @return String  end of the file, the whole file if it is shorter
+     * @throws IOException exception while reading the given file
+     */
     public static String tail(File file, int numberOfChars) throws IOException {
-        RandomAccessFile fileHandler = null;
+        return new String(readTail(file, numberOfChars), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Read the first bytes of a file with a single bulk read
+     *
+     * @param file          given file
+     * @param numberOfBytes maximum number of bytes
+     * @return byte[]  start of the file, the whole file if it is shorter
+     * @throws IOException exception while reading the given file
+     */
+    public static byte[] readHead(File file, int numberOfBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
         try {
-            fileHandler = new java.io.RandomAccessFile(file, "r");
-            long fileLength = file.length() - 1;
-            StringBuilder sb = new StringBuilder();
-
-            for (long filePointer = fileLength; filePointer > (fileLength - numberOfChars); filePointer--) {
-                fileHandler.seek(filePointer);
-                int readByte = fileHandler.readByte();
-                sb.append((char) readByte);
-            }
+            return read(channel, 0, (int) Math.min(numberOfBytes, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
 
-            return sb.reverse().toString();
+    /**
+     * Read the last bytes of a file with a single bulk read
+     *
+     * @param file          given file
+     * @param numberOfBytes maximum number of bytes
+     * @return byte[]  end of the file, the whole file if it is shorter
+     * @throws IOException exception while reading the given file
+     */
+    public static byte[] readTail(File file, int numberOfBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            int length = (int) Math.min(numberOfBytes, size);
+            return read(channel, size - length, length);
         } finally {
-            if (fileHandler != null)
-                fileHandler.close();
+            channel.close();
+        }
+    }
+
+    /**
+     * Read a region of a file, the channel position is left untouched so the channel can be shared between threads
+     *
+     * @param channel  open file channel
+     * @param position position of the first byte
+     * @param length   maximum number of bytes
+     * @return byte[]  bytes read, fewer than asked for if the file ends before
+     * @throws IOException exception while reading the file
+     */
+    public static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
         }
+        return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
     }
 
     public static String getDecompressedFileName(File file) throws IOException {
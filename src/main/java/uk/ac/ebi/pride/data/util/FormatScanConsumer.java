@@ -0,0 +1,64 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link SharedFileScan} consumer detecting the format of a file from its name and its first bytes, as
+ * {@link MassSpecFileFormat#checkFormat(File)} does.
+ * <p/>
+ * The format is only known once the scan has finished. A {@link SharedFileScan.Planner} choosing consumers by
+ * format uses {@link #detect(File, ByteBuffer)} on the first chunk instead.
+ */
+public class FormatScanConsumer implements SharedFileScan.Consumer {
+
+    private File file;
+    private byte[] head;
+    private int headLength;
+    private MassSpecFileFormat format;
+
+    /**
+     * @return MassSpecFileFormat  format detected from the content, null if not detected or until the scan has
+     * finished
+     */
+    public MassSpecFileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Detect the format of a file from the head of its content, which has already been read
+     *
+     * @param file file, for its name
+     * @param head first bytes of the file, the ones after {@link FileProbe#HEAD_SIZE} are not used
+     * @return MassSpecFileFormat  format, null if not detected
+     * @throws IOException exception while reading the central directory of a zip archive
+     */
+    public static MassSpecFileFormat detect(File file, ByteBuffer head) throws IOException {
+        byte[] content = new byte[Math.min(head.remaining(), FileProbe.HEAD_SIZE)];
+        head.duplicate().get(content);
+        return MassSpecFileFormat.detectFileFormat(FileProbe.wrap(file, content));
+    }
+
+    @Override
+    public void start(File file, long size) throws IOException {
+        this.file = file;
+        head = new byte[(int) Math.min(size, FileProbe.HEAD_SIZE)];
+        headLength = 0;
+        format = null;
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk, long offset) throws IOException {
+        int length = Math.min(chunk.remaining(), head.length - headLength);
+        if (length > 0) {
+            chunk.get(head, headLength, length);
+            headLength += length;
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        format = detect(file, ByteBuffer.wrap(head, 0, headLength));
+    }
+}
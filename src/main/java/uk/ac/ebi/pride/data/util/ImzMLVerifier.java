@@ -0,0 +1,399 @@
+package uk.ac.ebi.pride.data.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Checks that an imzML file and an ibd file belong together, and that the binary data declared in the imzML file
+ * lies within the ibd file.
+ * <p/>
+ * The ibd file starts with the 16 bytes of the UUID the imzML file declares with IMS:1000080. Only these bytes and
+ * the size of the ibd file are read, the binary data itself is never touched. The external offset and length of
+ * every binary data array are streamed from the imzML file.
+ */
+public final class ImzMLVerifier {
+
+    public static final String UUID_ACCESSION = "IMS:1000080";
+    public static final String CONTINUOUS_ACCESSION = "IMS:1000030";
+    public static final String PROCESSED_ACCESSION = "IMS:1000031";
+    private static final String EXTERNAL_OFFSET_ACCESSION = "IMS:1000102";
+    private static final String EXTERNAL_ARRAY_LENGTH_ACCESSION = "IMS:1000103";
+    private static final String EXTERNAL_ENCODED_LENGTH_ACCESSION = "IMS:1000104";
+    private static final String MZ_ARRAY_ACCESSION = "MS:1000514";
+
+    private static final int UUID_LENGTH = 16;
+    private static final int MAX_PROBLEMS = 20;
+    // the UUID is in the file description, at the start of the file
+    private static final int MAX_HEADER_EVENTS = 10000;
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    /**
+     * Storage mode of the binary data
+     */
+    public enum Mode {
+        /**
+         * All the spectra share the same m/z array
+         */
+        CONTINUOUS,
+        /**
+         * Every spectrum has its own m/z array
+         */
+        PROCESSED
+    }
+
+    private ImzMLVerifier() {
+    }
+
+    /**
+     * Read the UUID declared in the header of an imzML file, without reading the spectra
+     *
+     * @param imzMLFile imzML file
+     * @return String  UUID as 32 upper case hexadecimal digits, null if none is declared
+     * @throws IOException exception while reading the file
+     */
+    public static String readUuid(File imzMLFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(imzMLFile));
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(in);
+            int events = 0;
+            while (reader.hasNext() && events++ < MAX_HEADER_EVENTS) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if ("cvParam".equals(name) && UUID_ACCESSION.equals(reader.getAttributeValue(null, "accession"))) {
+                    return normalizeUuid(reader.getAttributeValue(null, "value"));
+                } else if ("run".equals(name) || "spectrumList".equals(name)) {
+                    break;
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read the header of " + imzMLFile.getAbsolutePath() + ": " + e.getMessage(), e);
+        } finally {
+            close(reader);
+            in.close();
+        }
+    }
+
+    /**
+     * Read the UUID at the start of an ibd file
+     *
+     * @param ibdFile ibd file
+     * @return String  UUID as 32 upper case hexadecimal digits, null if the file is shorter than a UUID
+     * @throws IOException exception while reading the file
+     */
+    public static String readIbdUuid(File ibdFile) throws IOException {
+        byte[] head = FileUtil.readHead(ibdFile, UUID_LENGTH);
+        if (head.length < UUID_LENGTH) {
+            return null;
+        }
+
+        StringBuilder uuid = new StringBuilder(UUID_LENGTH * 2);
+        for (byte b : head) {
+            uuid.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)));
+            uuid.append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+        }
+        return uuid.toString();
+    }
+
+    /**
+     * Verify that an ibd file belongs to an imzML file and holds all the binary data the imzML file declares
+     *
+     * @param imzMLFile imzML file
+     * @param ibdFile   ibd file
+     * @return Result  outcome of the verification
+     * @throws IOException exception while reading the files
+     */
+    public static Result verify(File imzMLFile, File ibdFile) throws IOException {
+        Result result = new Result();
+
+        FileChannel channel = FileChannel.open(ibdFile.toPath(), StandardOpenOption.READ);
+        try {
+            result.ibdSize = channel.size();
+        } finally {
+            channel.close();
+        }
+        result.ibdUuid = readIbdUuid(ibdFile);
+
+        InputStream in = new BufferedInputStream(new FileInputStream(imzMLFile), 64 * 1024);
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(in);
+            readSpectra(reader, result);
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read " + imzMLFile.getAbsolutePath() + ": " + e.getMessage(), e);
+        } finally {
+            close(reader);
+            in.close();
+        }
+
+        if (result.uuid == null) {
+            result.addProblem("No UUID (" + UUID_ACCESSION + ") declared in " + imzMLFile.getName());
+        } else if (!result.uuid.equals(result.ibdUuid)) {
+            result.addProblem("UUID of " + imzMLFile.getName() + " is " + result.uuid + " but " + ibdFile.getName() + " starts with " + result.ibdUuid);
+        }
+        if (result.mode == null) {
+            result.addProblem("No storage mode (" + CONTINUOUS_ACCESSION + " or " + PROCESSED_ACCESSION + ") declared in " + imzMLFile.getName());
+        } else if (result.mode == Mode.CONTINUOUS && result.mzOffsets.size() > 1) {
+            result.addProblem("Continuous mode but the m/z arrays have " + result.mzOffsets.size() + " different offsets");
+        }
+
+        return result;
+    }
+
+    /**
+     * Stream the imzML file, keeping the parameter groups, which are few, and checking every binary data array
+     */
+    private static void readSpectra(XMLStreamReader reader, Result result) throws XMLStreamException {
+        Map<String, ArrayParams> groups = new HashMap<String, ArrayParams>();
+        ArrayParams current = null;
+        String groupId = null;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("binaryDataArray".equals(name) && current != null) {
+                    checkArray(current, result);
+                    current = null;
+                } else if ("referenceableParamGroup".equals(name) && current != null) {
+                    groups.put(groupId, current);
+                    current = null;
+                }
+                continue;
+            } else if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String name = reader.getLocalName();
+            if ("cvParam".equals(name)) {
+                String accession = reader.getAttributeValue(null, "accession");
+                if (current != null) {
+                    current.add(accession, reader.getAttributeValue(null, "value"));
+                } else if (UUID_ACCESSION.equals(accession) && result.uuid == null) {
+                    result.uuid = normalizeUuid(reader.getAttributeValue(null, "value"));
+                } else if (CONTINUOUS_ACCESSION.equals(accession)) {
+                    result.mode = Mode.CONTINUOUS;
+                } else if (PROCESSED_ACCESSION.equals(accession)) {
+                    result.mode = Mode.PROCESSED;
+                }
+            } else if ("binaryDataArray".equals(name)) {
+                current = new ArrayParams();
+            } else if ("referenceableParamGroupRef".equals(name) && current != null) {
+                current.addAll(groups.get(reader.getAttributeValue(null, "ref")));
+            } else if ("referenceableParamGroup".equals(name)) {
+                groupId = reader.getAttributeValue(null, "id");
+                current = new ArrayParams();
+            } else if ("spectrum".equals(name)) {
+                result.spectrumCount++;
+            }
+        }
+    }
+
+    private static void checkArray(ArrayParams array, Result result) {
+        result.arrayCount++;
+        if (array.offset < 0) {
+            result.addProblem("Binary data array " + result.arrayCount + " has no external offset");
+            return;
+        }
+
+        long length = array.encodedLength;
+        if (length < 0 && array.arrayLength >= 0 && array.bytesPerValue > 0) {
+            length = array.arrayLength * array.bytesPerValue;
+        }
+        if (length < 0) {
+            result.addProblem("Binary data array " + result.arrayCount + " has no external length");
+            return;
+        }
+
+        result.checkedArrayCount++;
+        if (array.mz && result.mzOffsets.size() < 2) {
+            result.mzOffsets.add(array.offset);
+        }
+        long end = array.offset + length;
+        result.dataEnd = Math.max(result.dataEnd, end);
+        if (array.offset < UUID_LENGTH) {
+            result.addProblem("Binary data array " + result.arrayCount + " starts at " + array.offset + ", within the UUID");
+        } else if (end > result.ibdSize) {
+            result.addProblem("Binary data array " + result.arrayCount + " ends at " + end + ", after the end of the ibd file at " + result.ibdSize);
+        }
+    }
+
+    /**
+     * Normalize a UUID, written with or without braces and dashes, to 32 upper case hexadecimal digits
+     */
+    static String normalizeUuid(String uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        String normalized = uuid.replaceAll("[{}\\-\\s]", "").toUpperCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // the stream is closed by the caller
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    /**
+     * External data parameters of a binary data array, or of a parameter group
+     */
+    private static final class ArrayParams {
+        private long offset = -1;
+        private long arrayLength = -1;
+        private long encodedLength = -1;
+        private int bytesPerValue;
+        private boolean mz;
+
+        private void add(String accession, String value) {
+            if (EXTERNAL_OFFSET_ACCESSION.equals(accession)) {
+                offset = parseLong(value);
+            } else if (EXTERNAL_ARRAY_LENGTH_ACCESSION.equals(accession)) {
+                arrayLength = parseLong(value);
+            } else if (EXTERNAL_ENCODED_LENGTH_ACCESSION.equals(accession)) {
+                encodedLength = parseLong(value);
+            } else if (MZ_ARRAY_ACCESSION.equals(accession)) {
+                mz = true;
+            } else if ("MS:1000521".equals(accession) || "MS:1000519".equals(accession) || "IMS:1000141".equals(accession)) {
+                // 32-bit float or integer
+                bytesPerValue = 4;
+            } else if ("MS:1000523".equals(accession) || "MS:1000522".equals(accession) || "IMS:1000142".equals(accession)) {
+                // 64-bit float or integer
+                bytesPerValue = 8;
+            }
+        }
+
+        private void addAll(ArrayParams group) {
+            if (group == null) {
+                return;
+            }
+            if (group.offset >= 0) {
+                offset = group.offset;
+            }
+            if (group.arrayLength >= 0) {
+                arrayLength = group.arrayLength;
+            }
+            if (group.encodedLength >= 0) {
+                encodedLength = group.encodedLength;
+            }
+            if (group.bytesPerValue > 0) {
+                bytesPerValue = group.bytesPerValue;
+            }
+            mz |= group.mz;
+        }
+
+        private static long parseLong(String value) {
+            try {
+                return value == null ? -1 : Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Outcome of the verification of an imzML and ibd pair
+     */
+    public static final class Result {
+        private String uuid;
+        private String ibdUuid;
+        private Mode mode;
+        private long ibdSize;
+        private long dataEnd;
+        private int spectrumCount;
+        private int arrayCount;
+        private int checkedArrayCount;
+        private final Set<Long> mzOffsets = new HashSet<Long>();
+        private int problemCount;
+        private final List<String> problems = new ArrayList<String>();
+
+        private Result() {
+        }
+
+        private void addProblem(String problem) {
+            problemCount++;
+            if (problems.size() < MAX_PROBLEMS) {
+                problems.add(problem);
+            }
+        }
+
+        /**
+         * @return boolean true if the UUIDs match and all the binary data lies within the ibd file
+         */
+        public boolean isValid() {
+            return problemCount == 0;
+        }
+
+        public String getUuid() {
+            return uuid;
+        }
+
+        public String getIbdUuid() {
+            return ibdUuid;
+        }
+
+        public boolean isUuidMatching() {
+            return uuid != null && uuid.equals(ibdUuid);
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public long getIbdSize() {
+            return ibdSize;
+        }
+
+        /**
+         * @return long    end of the last binary data array in the ibd file
+         */
+        public long getDataEnd() {
+            return dataEnd;
+        }
+
+        public int getSpectrumCount() {
+            return spectrumCount;
+        }
+
+        public int getArrayCount() {
+            return arrayCount;
+        }
+
+        public int getCheckedArrayCount() {
+            return checkedArrayCount;
+        }
+
+        public int getProblemCount() {
+            return problemCount;
+        }
+
+        /**
+         * @return List<String>    first problems found
+         */
+        public List<String> getProblems() {
+            return Collections.unmodifiableList(problems);
+        }
+    }
+}
@@ -8,7 +8,7 @@ package uk.ac.ebi.pride.data.util;
  * © 2016 Manuel Bernal Llinares <mbdebian@gmail.com>
  * All rights reserved.
  */
-public class IndexedMzmlFileFormatIdentifier extends FileFormatIdentifier {
+public class IndexedMzmlFileFormatIdentifier extends XmlFileFormatIdentifier {
     @Override
     protected MassSpecFileFormat doIdentifyFormatFromContent(String content) {
         if (MassSpecFileRegx.INDEXED_MZML_PATTERN.matcher(content).find()) {
@@ -16,4 +16,12 @@ public class IndexedMzmlFileFormatIdentifier extends FileFormatIdentifier {
         }
         return null;
     }
+
+    @Override
+    protected MassSpecFileFormat doIdentifyFormatFromRootElement(XmlRootElement rootElement) {
+        if (rootElement.hasLocalName("indexedmzML")) {
+            return MassSpecFileFormat.INDEXED_MZML;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,384 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies the offset index of an indexed mzML file, without parsing the whole file.
+ * <p/>
+ * The indexListOffset is read from the tail of the file, then the index list it points to is parsed, and the offsets
+ * of the index are checked to land on the start tag of the spectrum or chromatogram they name. Either an evenly spread
+ * sample of the offsets is checked in the calling thread, which is meant for callers already running in a pool, or
+ * all of them are checked concurrently.
+ */
+public final class IndexedMzmlVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedMzmlVerifier.class);
+
+    /**
+     * Number of bytes at the end of the file searched for the indexListOffset
+     */
+    public static final int TAIL_SIZE = 4 * 1024;
+
+    /**
+     * Number of offsets checked by default
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 64;
+
+    /**
+     * Maximum number of problems described in a result, all of them are counted
+     */
+    public static final int MAX_REPORTED_PROBLEMS = 20;
+
+    /**
+     * Number of bytes read at each offset, enough for the start tag of a spectrum or a chromatogram
+     */
+    private static final int START_TAG_SIZE = 1024;
+
+    private static final Pattern INDEX_LIST_OFFSET = Pattern.compile("<indexListOffset>\\s*(\\d+)\\s*</indexListOffset>");
+    private static final Pattern ID_ATTRIBUTE = Pattern.compile("\\sid\\s*=\\s*([\"'])(.*?)\\1", Pattern.DOTALL);
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private IndexedMzmlVerifier() {
+    }
+
+    /**
+     * Check a sample of the offsets of an indexed mzML file, in the calling thread
+     *
+     * @param file uncompressed indexed mzML file
+     * @return Result  verification result
+     * @throws IOException exception while reading the file
+     */
+    public static Result verify(File file) throws IOException {
+        return verify(file, DEFAULT_SAMPLE_SIZE, 1);
+    }
+
+    /**
+     * Check the offsets of an indexed mzML file
+     *
+     * @param file        uncompressed indexed mzML file
+     * @param sampleSize  number of offsets to check, all of them if zero or less
+     * @param parallelism maximum number of threads checking offsets, 1 to check them in the calling thread
+     * @return Result  verification result
+     * @throws IOException exception while reading the file
+     */
+    public static Result verify(File file, int sampleSize, int parallelism) throws IOException {
+        Result result = new Result();
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long indexListOffset = findIndexList(channel, result);
+            if (indexListOffset >= 0) {
+                List<Offset> offsets = readIndexList(channel, indexListOffset, result);
+                result.offsetCount = offsets.size();
+                checkOffsets(channel, select(offsets, sampleSize), parallelism, result);
+            }
+        } finally {
+            channel.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Read the ids of one of the indexes of an indexed mzML file, without checking the offsets
+     *
+     * @param file      uncompressed indexed mzML file
+     * @param indexName name of the index, spectrum or chromatogram
+     * @return List<String>    ids in index order, null if the file has no readable offset index
+     * @throws IOException exception while reading the file
+     */
+    public static List<String> readIds(File file, String indexName) throws IOException {
+        Result result = new Result();
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long indexListOffset = findIndexList(channel, result);
+            if (indexListOffset < 0) {
+                return null;
+            }
+
+            List<Offset> offsets = readIndexList(channel, indexListOffset, result);
+            if (!result.isValid()) {
+                return null;
+            }
+
+            List<String> ids = new ArrayList<String>(offsets.size());
+            for (Offset offset : offsets) {
+                if (indexName.equals(offset.indexName)) {
+                    ids.add(offset.idRef);
+                }
+            }
+            return ids;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Find the indexList from the indexListOffset at the end of the file
+     *
+     * @return long    position of the indexList, -1 if not found
+     */
+    private static long findIndexList(FileChannel channel, Result result) throws IOException {
+        long size = channel.size();
+        int tailSize = (int) Math.min(size, TAIL_SIZE);
+        String tail = new String(FileUtil.read(channel, size - tailSize, tailSize), StandardCharsets.ISO_8859_1);
+        Matcher matcher = INDEX_LIST_OFFSET.matcher(tail);
+        if (!matcher.find()) {
+            result.addProblem("No indexListOffset found at the end of the file");
+            return -1;
+        }
+
+        long indexListOffset;
+        try {
+            indexListOffset = Long.parseLong(matcher.group(1));
+        } catch (NumberFormatException e) {
+            result.addProblem("Invalid indexListOffset: " + matcher.group(1));
+            return -1;
+        }
+        result.indexListOffset = indexListOffset;
+        if (indexListOffset >= size || !startsWith(channel, indexListOffset, "<indexList")) {
+            result.addProblem("indexListOffset " + indexListOffset + " does not point to the indexList");
+            return -1;
+        }
+        return indexListOffset;
+    }
+
+    /**
+     * Parse the offsets of the index list, which is a well formed fragment up to its end tag
+     */
+    private static List<Offset> readIndexList(FileChannel channel, long indexListOffset, Result result) throws IOException {
+        List<Offset> offsets = new ArrayList<Offset>();
+        InputStream in = Channels.newInputStream(channel.position(indexListOffset));
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(in, "UTF-8");
+            String indexName = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if ("index".equals(reader.getLocalName())) {
+                        indexName = reader.getAttributeValue(null, "name");
+                    } else if ("offset".equals(reader.getLocalName())) {
+                        String idRef = reader.getAttributeValue(null, "idRef");
+                        String text = reader.getElementText().trim();
+                        try {
+                            offsets.add(new Offset(indexName, idRef, Long.parseLong(text)));
+                        } catch (NumberFormatException e) {
+                            result.addProblem("Invalid offset for " + idRef + ": " + text);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "indexList".equals(reader.getLocalName())) {
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            result.addProblem("Invalid indexList: " + e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    logger.debug("Failed to close the indexList reader", e);
+                }
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Pick evenly spread offsets, the first and the last one included
+     */
+    private static List<Offset> select(List<Offset> offsets, int sampleSize) {
+        if (sampleSize <= 0 || offsets.size() <= sampleSize) {
+            return offsets;
+        }
+        if (sampleSize == 1) {
+            return Collections.singletonList(offsets.get(0));
+        }
+
+        List<Offset> sample = new ArrayList<Offset>(sampleSize);
+        for (int i = 0; i < sampleSize; i++) {
+            sample.add(offsets.get((int) ((long) i * (offsets.size() - 1) / (sampleSize - 1))));
+        }
+        return sample;
+    }
+
+    /**
+     * Check the offsets in chunks, one chunk per thread, reading through the shared channel with positional reads
+     */
+    private static void checkOffsets(final FileChannel channel, final List<Offset> offsets, int parallelism, final Result result) throws IOException {
+        if (offsets.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.max(1, Math.min(parallelism, offsets.size()));
+        if (threads == 1) {
+            for (Offset offset : offsets) {
+                checkOffset(channel, offset, result);
+            }
+            return;
+        }
+
+        final int chunkSize = (offsets.size() + threads - 1) / threads;
+        ExecutorService executor = ExecutorUtil.newBoundedExecutor(threads, "mzml-index");
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int start = 0; start < offsets.size(); start += chunkSize) {
+                final List<Offset> chunk = offsets.subList(start, Math.min(offsets.size(), start + chunkSize));
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (Offset offset : chunk) {
+                            checkOffset(channel, offset, result);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Failed to check the mzML index", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking the mzML index");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+    }
+
+    private static void checkOffset(FileChannel channel, Offset offset, Result result) throws IOException {
+        String content = new String(FileUtil.read(channel, offset.offset, START_TAG_SIZE), StandardCharsets.UTF_8);
+        String expectedTag = "<" + offset.indexName;
+        int tagEnd = content.indexOf('>');
+
+        if (!content.startsWith(expectedTag) || content.length() <= expectedTag.length()
+                || !Character.isWhitespace(content.charAt(expectedTag.length()))) {
+            result.addProblem("Offset " + offset.offset + " of " + offset.indexName + " " + offset.idRef
+                    + " does not point to a " + offset.indexName + " start tag");
+        } else {
+            Matcher matcher = ID_ATTRIBUTE.matcher(tagEnd < 0 ? content : content.substring(0, tagEnd));
+            String id = matcher.find() ? unescape(matcher.group(2)) : null;
+            if (id == null || !id.equals(offset.idRef)) {
+                result.addProblem("Offset " + offset.offset + " of " + offset.indexName + " " + offset.idRef
+                        + " points to " + (id == null ? "an element without id" : id));
+            }
+        }
+        result.checked();
+    }
+
+    /**
+     * Decode the predefined entities of an attribute value, as written in a start tag
+     */
+    private static String unescape(String value) {
+        return value.replace("&quot;", "\"").replace("&apos;", "'").replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+    }
+
+    private static boolean startsWith(FileChannel channel, long position, String prefix) throws IOException {
+        byte[] bytes = FileUtil.read(channel, position, prefix.length());
+        return new String(bytes, StandardCharsets.ISO_8859_1).equals(prefix);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static final class Offset {
+        private final String indexName;
+        private final String idRef;
+        private final long offset;
+
+        private Offset(String indexName, String idRef, long offset) {
+            this.indexName = indexName;
+            this.idRef = idRef;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Result of the verification of an offset index
+     */
+    public static final class Result {
+        private final List<String> problems = new ArrayList<String>();
+        private long indexListOffset = -1;
+        private int offsetCount;
+        private int checkedOffsetCount;
+        private int problemCount;
+
+        private synchronized void addProblem(String problem) {
+            problemCount++;
+            if (problems.size() < MAX_REPORTED_PROBLEMS) {
+                problems.add(problem);
+            }
+        }
+
+        private synchronized void checked() {
+            checkedOffsetCount++;
+        }
+
+        public synchronized boolean isValid() {
+            return problemCount == 0;
+        }
+
+        /**
+         * @return long    indexListOffset read from the file, -1 if not found
+         */
+        public long getIndexListOffset() {
+            return indexListOffset;
+        }
+
+        /**
+         * @return int number of offsets in the index
+         */
+        public int getOffsetCount() {
+            return offsetCount;
+        }
+
+        public synchronized int getCheckedOffsetCount() {
+            return checkedOffsetCount;
+        }
+
+        public synchronized int getProblemCount() {
+            return problemCount;
+        }
+
+        /**
+         * @return List<String>    descriptions of the first problems found
+         */
+        public synchronized List<String> getProblems() {
+            return new ArrayList<String>(problems);
+        }
+    }
+}
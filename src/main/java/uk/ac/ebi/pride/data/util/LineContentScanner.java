@@ -0,0 +1,277 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Base of the scanners of line based text formats, which look at the raw bytes of every line.
+ * <p/>
+ * Files are read through a single heap buffer of the window size, each read starting with the line the previous
+ * window did not complete. Files are not memory mapped, as mappings can not be released before they are garbage
+ * collected. The offsets of compressed files are offsets in the decompressed content. A line longer than a window is
+ * handed over in pieces.
+ * <p/>
+ * Identifiers are remembered as 64-bit hashes, so the memory used grows by 8 to 16 bytes per entry whatever the
+ * length of the identifiers. Two different identifiers with the same hash would be reported as a duplicate, which
+ * is unlikely enough to be ignored for the number of entries of a file.
+ */
+public abstract class LineContentScanner implements ContentScanner {
+
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+
+    private final MassSpecFileFormat format;
+    private final int windowSize;
+
+    protected LineContentScanner(MassSpecFileFormat format, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.format = format;
+        this.windowSize = windowSize;
+    }
+
+    public MassSpecFileFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public ContentScanResult scan(File file) throws IOException {
+        ContentScanResult result = new ContentScanResult(file, format);
+        EntryParser parser = createParser(result);
+
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        long byteCount;
+        if (name.endsWith(".gz") || name.endsWith(".zip")) {
+            InputStream in = FileUtil.getFileInputStream(file);
+            if (in == null) {
+                byteCount = 0;
+            } else {
+                byteCount = read(Channels.newChannel(in), parser);
+            }
+        } else {
+            byteCount = read(FileChannel.open(file.toPath(), StandardOpenOption.READ), parser);
+        }
+
+        parser.finish(byteCount);
+        result.setByteCount(byteCount);
+        return result;
+    }
+
+    /**
+     * Create the parser holding the state of a single scan
+     *
+     * @param result result the parser reports to
+     * @return EntryParser entry parser
+     */
+    protected abstract EntryParser createParser(ContentScanResult result);
+
+    /**
+     * Hand the lines of a channel over to a handler, the channel is closed afterwards
+     *
+     * @return long    number of bytes read
+     */
+    private long read(ReadableByteChannel channel, LineSplitter.LineHandler handler) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(windowSize);
+            long offset = 0;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(buffer) < 0;
+
+                buffer.flip();
+                int consumed = LineSplitter.split(buffer, offset, endOfInput, handler);
+                if (consumed == 0 && buffer.limit() == buffer.capacity()) {
+                    // a line longer than the window
+                    consumed = LineSplitter.split(buffer, offset, true, handler);
+                }
+                buffer.position(consumed);
+                buffer.compact();
+                offset += consumed;
+            }
+            return offset;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Parses the lines of one file into entries
+     */
+    protected abstract static class EntryParser implements LineSplitter.LineHandler {
+        protected final ContentScanResult result;
+        private final LongHashSet identifiers = new LongHashSet(1024);
+
+        protected EntryParser(ContentScanResult result) {
+            this.result = result;
+        }
+
+        /**
+         * Called once all the lines have been handed over
+         *
+         * @param endOffset size of the content
+         */
+        protected abstract void finish(long endOffset);
+
+        /**
+         * Remember the identifier of an entry, a duplicate is added to the result
+         */
+        protected void addIdentifier(ByteBuffer buffer, int start, int end) {
+            if (!identifiers.add(hash(buffer, start, end))) {
+                result.addDuplicate(decode(buffer, start, end));
+            }
+        }
+
+        /**
+         * 64-bit FNV-1a hash of bytes
+         */
+        protected static long hash(ByteBuffer buffer, int start, int end) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = start; i < end; i++) {
+                hash ^= buffer.get(i) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        protected static String decode(ByteBuffer buffer, int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                bytes[i - start] = buffer.get(i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        protected static int skipWhitespace(ByteBuffer buffer, int start, int end) {
+            while (start < end && isWhitespace(buffer.get(start))) {
+                start++;
+            }
+            return start;
+        }
+
+        protected static int trimEnd(ByteBuffer buffer, int start, int end) {
+            while (end > start && isWhitespace(buffer.get(end - 1))) {
+                end--;
+            }
+            return end;
+        }
+
+        /**
+         * @return int end of the token starting at start, which ends at the first whitespace
+         */
+        protected static int tokenEnd(ByteBuffer buffer, int start, int end) {
+            while (start < end && !isWhitespace(buffer.get(start))) {
+                start++;
+            }
+            return start;
+        }
+
+        protected static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+        }
+
+        protected static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        protected static boolean isLetter(byte b) {
+            return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+        }
+
+        /**
+         * Check whether a line starts with an ASCII prefix, ignoring case
+         *
+         * @param prefix upper case prefix
+         */
+        protected static boolean startsWith(ByteBuffer buffer, int start, int end, String prefix) {
+            if (end - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                byte b = buffer.get(start + i);
+                if (b >= 'a' && b <= 'z') {
+                    b -= 'a' - 'A';
+                }
+                if (b != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Check whether bytes are a decimal number, such as 415.2, -1 or 1.5e3
+         */
+        protected static boolean isNumber(ByteBuffer buffer, int start, int end) {
+            int i = start;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                i++;
+            }
+            boolean digits = false;
+            boolean dot = false;
+            for (; i < end; i++) {
+                byte b = buffer.get(i);
+                if (isDigit(b)) {
+                    digits = true;
+                } else if (b == '.' && !dot) {
+                    dot = true;
+                } else {
+                    break;
+                }
+            }
+            if (digits && i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+                int exponent = i + 1;
+                if (exponent < end && (buffer.get(exponent) == '-' || buffer.get(exponent) == '+')) {
+                    exponent++;
+                }
+                if (exponent < end && isDigit(buffer.get(exponent))) {
+                    i = exponent;
+                    while (i < end && isDigit(buffer.get(i))) {
+                        i++;
+                    }
+                }
+            }
+            return digits && i == end;
+        }
+
+        /**
+         * Check whether a line is a peak, its first two tokens being the m/z and the intensity, further tokens such
+         * as charges or annotations are not checked
+         */
+        protected static boolean isPeak(ByteBuffer buffer, int start, int end) {
+            int mzEnd = tokenEnd(buffer, start, end);
+            if (!isNumber(buffer, start, mzEnd)) {
+                return false;
+            }
+            int intensityStart = skipWhitespace(buffer, mzEnd, end);
+            return intensityStart == end || isNumber(buffer, intensityStart, tokenEnd(buffer, intensityStart, end));
+        }
+
+        /**
+         * Parse a non negative integer
+         *
+         * @return int value, -1 if the bytes are not an integer
+         */
+        protected static int parseInt(ByteBuffer buffer, int start, int end) {
+            if (start == end || end - start > 9) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (!isDigit(b)) {
+                    return -1;
+                }
+                value = value * 10 + b - '0';
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link SharedFileScan} consumer handing the lines of the content of a file over to a
+ * {@link LineSplitter.LineHandler}, such as the rows of an mzTab file.
+ * <p/>
+ * Lines are handed over from the chunks without copying, except for the lines which span two chunks: those are
+ * gathered first.
+ */
+public class LineScanConsumer extends DecompressingScanConsumer {
+
+    private final LineSplitter.LineHandler handler;
+    private byte[] carry = new byte[1024];
+    private int carryLength;
+    private long carryOffset;
+    private long lineCount;
+
+    public LineScanConsumer(LineSplitter.LineHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * For subclasses providing their handler through {@link #getHandler()}
+     */
+    protected LineScanConsumer() {
+        this(null);
+    }
+
+    /**
+     * @return long    number of lines handed over
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    protected LineSplitter.LineHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    protected void startContent(File file) throws IOException {
+        carryLength = 0;
+        lineCount = 0;
+    }
+
+    @Override
+    protected void acceptContent(ByteBuffer content, long offset) throws IOException {
+        int start = content.position();
+        int limit = content.limit();
+
+        if (carryLength > 0) {
+            // complete the line started in the previous chunk, up to and including its terminator
+            int end = start;
+            if (carry[carryLength - 1] == '\r') {
+                // the previous chunk ended with a \r, which may be followed by a \n
+                if (end < limit && content.get(end) == '\n') {
+                    end++;
+                }
+            } else {
+                while (end < limit && content.get(end) != '\n' && content.get(end) != '\r') {
+                    end++;
+                }
+                if (end == limit || (content.get(end) == '\r' && end + 1 == limit)) {
+                    appendToCarry(content, start, limit);
+                    return;
+                }
+                end += content.get(end) == '\r' && content.get(end + 1) == '\n' ? 2 : 1;
+            }
+            appendToCarry(content, start, end);
+            split(ByteBuffer.wrap(carry, 0, carryLength).asReadOnlyBuffer(), carryOffset, true);
+            carryLength = 0;
+            start = end;
+        }
+
+        ByteBuffer rest = content.duplicate();
+        rest.position(start);
+        long restOffset = offset + start - content.position();
+        int consumed = split(rest, restOffset, false);
+        if (start + consumed < limit) {
+            carryOffset = restOffset + consumed;
+            appendToCarry(content, start + consumed, limit);
+        }
+    }
+
+    @Override
+    protected void finishContent(long contentLength) throws IOException {
+        if (carryLength > 0) {
+            split(ByteBuffer.wrap(carry, 0, carryLength).asReadOnlyBuffer(), carryOffset, true);
+            carryLength = 0;
+        }
+    }
+
+    private int split(ByteBuffer buffer, long bufferOffset, boolean endOfInput) {
+        final LineSplitter.LineHandler lineHandler = getHandler();
+        return LineSplitter.split(buffer, bufferOffset, endOfInput, new LineSplitter.LineHandler() {
+            @Override
+            public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+                lineCount++;
+                lineHandler.onLine(buffer, start, end, offset);
+            }
+        });
+    }
+
+    private void appendToCarry(ByteBuffer content, int start, int end) {
+        int length = end - start;
+        if (carryLength + length > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLength + length));
+        }
+        for (int i = start; i < end; i++) {
+            carry[carryLength++] = content.get(i);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits the bytes of a buffer into lines without copying or decoding them.
+ * <p/>
+ * Lines are terminated by \n, \r\n or a lone \r, as {@link java.io.BufferedReader#readLine()} does. The bytes after
+ * the last line terminator are only handed over at the end of the input, otherwise they are left for the next buffer,
+ * as is a \r ending the buffer, which may be followed by a \n.
+ */
+public final class LineSplitter {
+
+    private LineSplitter() {
+    }
+
+    /**
+     * Receives the lines of a buffer
+     */
+    public interface LineHandler {
+        /**
+         * @param buffer buffer holding the line
+         * @param start  index of the first byte of the line in the buffer
+         * @param end    index after the last byte of the line in the buffer, line terminator excluded
+         * @param offset offset of the line in the input
+         */
+        void onLine(ByteBuffer buffer, int start, int end, long offset);
+    }
+
+    /**
+     * Hand over the lines between the position and the limit of a buffer
+     *
+     * @param buffer       buffer, its position and limit are not changed
+     * @param bufferOffset offset of the position of the buffer in the input
+     * @param endOfInput   true if the buffer holds the end of the input, the bytes after the last line terminator are
+     *                     then handed over as the last line
+     * @param handler      line handler
+     * @return int number of bytes consumed from the position of the buffer, up to the start of the incomplete line
+     */
+    public static int split(ByteBuffer buffer, long bufferOffset, boolean endOfInput, LineHandler handler) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int lineStart = position;
+
+        for (int i = position; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                handler.onLine(buffer, lineStart, i, bufferOffset + lineStart - position);
+                lineStart = i + 1;
+            } else if (b == '\r') {
+                if (i + 1 == limit && !endOfInput) {
+                    break;
+                }
+                handler.onLine(buffer, lineStart, i, bufferOffset + lineStart - position);
+                if (i + 1 < limit && buffer.get(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        if (endOfInput && lineStart < limit) {
+            handler.onLine(buffer, lineStart, limit, bufferOffset + lineStart - position);
+            lineStart = limit;
+        }
+
+        return lineStart - position;
+    }
+}
@@ -5,11 +5,11 @@ import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Enumeration;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Different mass spec file format, also include support methods for detecting the format
@@ -71,6 +71,20 @@ public enum MassSpecFileFormat {
 
 
 
+    /**
+     * Formats by lower case extension, the first declared file format wins for a shared extension
+     */
+    private static final Map<String, MassSpecFileFormat> FORMATS_BY_EXTENSION = new HashMap<String, MassSpecFileFormat>();
+
+    static {
+        for (MassSpecFileFormat value : values()) {
+            String ext = value.getFileExtension().toLowerCase(Locale.ROOT);
+            if (value.isFileFormat() && !FORMATS_BY_EXTENSION.containsKey(ext)) {
+                FORMATS_BY_EXTENSION.put(ext, value);
+            }
+        }
+    }
+
     private String fileExtension;
     private boolean fileFormat;
     private ProjectFileType fileType;
@@ -157,20 +171,50 @@ public enum MassSpecFileFormat {
      * @return MassSpecFileFormat  mass spec file format
      */
     public static MassSpecFileFormat checkFormat(File file) throws IOException {
+        return FileFormatCache.getFormat(file);
+    }
+
+    /**
+     * Detect mass spec file format, without using the format cache
+     * <p/>
+     * The file is read at most once, through a {@link FileProbe} shared by all the checks
+     *
+     * @param file input file
+     * @return MassSpecFileFormat  mass spec file format
+     */
+    static MassSpecFileFormat detectFileFormat(File file) throws IOException {
+        return detectFileFormat(file, null);
+    }
+
+    /**
+     * Detect mass spec file format from the head of a file which has already been read, without using the format
+     * cache. Only zip archives are read again, for their central directory.
+     *
+     * @param head head of the file
+     * @return MassSpecFileFormat  mass spec file format
+     */
+    static MassSpecFileFormat detectFileFormat(FileProbe head) throws IOException {
+        return detectFileFormat(head.getFile(), head);
+    }
+
+    /**
+     * @param head head of the file if it has already been read, null to read it when needed
+     */
+    private static MassSpecFileFormat detectFileFormat(File file, FileProbe head) throws IOException {
         MassSpecFileFormat format = null;
 
         String ext = FileUtil.getFileExtension(file);
 
         if (ext != null) {
             if ("xml".equalsIgnoreCase(ext)) {
-                format = checkXmlFile(file);
+                format = checkXmlFile(file, head);
             } else if ("zip".equalsIgnoreCase(ext)) {
-                format = checkZippedFile(file);
+                format = checkZippedFile(file, head);
             } else if ("gz".equalsIgnoreCase(ext)) {
-                format = checkGzippedFile(file);
+                format = checkGzippedFile(file, head);
             } else if ("mzml".equalsIgnoreCase(ext)) {
                 // NOTE - Why checkFormatByExtension is not being used for this particular format?
-                format = file.exists() ? checkXmlFileContent(file) : MZML;
+                format = head != null ? checkContent(head) : file.exists() ? checkContent(probe(file)) : MZML;
             } else if ("tsv".equalsIgnoreCase(ext) ){
                 format = file.getName().contains("sdrf") ? EXPERIMENTAL_DESIGN_TSV : checkFormatByExtension(ext);
             }
@@ -194,16 +238,30 @@ public enum MassSpecFileFormat {
      * @param ext extension of a given file or folder
      * @return MassSpecFileFormat  mass spec file format
      */
-    private static MassSpecFileFormat checkFormatByExtension(String ext) {
-        for (MassSpecFileFormat value : values()) {
-            if (value.getFileExtension().equalsIgnoreCase(ext) && value.isFileFormat()) {
-                return value;
-            }
-        }
+    static MassSpecFileFormat checkFormatByExtension(String ext) {
+        return ext == null ? null : FORMATS_BY_EXTENSION.get(ext.toLowerCase(Locale.ROOT));
+    }
 
-        return null;
+    /**
+     * Read the head of a file for checking its content
+     *
+     * @param file input file
+     * @return FileProbe   file probe, null if the file is not a regular file or can not be read
+     */
+    private static FileProbe probe(File file, FileProbe head) {
+        return head != null ? head : probe(file);
     }
 
+    private static FileProbe probe(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return FileProbe.open(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
     /**
      * Check the file format of a xml file
@@ -212,11 +270,14 @@ public enum MassSpecFileFormat {
      * @return file format
      * @throws IOException
      */
-    private static MassSpecFileFormat checkXmlFile(File file) throws IOException {
+    private static MassSpecFileFormat checkXmlFile(File file, FileProbe head) throws IOException {
         MassSpecFileFormat fileFormat = checkXmlFileExtension(file);
 
-        if (fileFormat == null && file.exists() && !FileUtil.isFileEmpty(file)) {
-            fileFormat = checkXmlFileContent(file);
+        if (fileFormat == null && (head != null || file.exists())) {
+            FileProbe probe = probe(file, head);
+            if (probe != null && !probe.isEmpty()) {
+                fileFormat = checkContent(probe);
+            }
         }
 
         return fileFormat;
@@ -244,126 +305,71 @@ public enum MassSpecFileFormat {
     }
 
     /**
-     * Detect the file format of a xml file
+     * Detect the file format from the head of a file
      *
-     * @param file xml file
+     * @param probe head of the file, may be null
      * @return MassSpecFileFormat  mass spec file format
      */
-    private static MassSpecFileFormat checkXmlFileContent(File file) throws IOException {
-        MassSpecFileFormat format = null;
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(new FileReader(file));
-            // read first ten lines
-            StringBuilder content = new StringBuilder();
-            for (int i = 0; i < 10; i++) {
-                content.append(reader.readLine());
-            }
-            // detect format
-            format = detectFormat(content.toString());
-        } catch (IOException ioe) {
-            //do nothing here
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+    static MassSpecFileFormat checkContent(FileProbe probe) {
+        if (probe == null) {
+            return null;
         }
-
-        return format;
+        return FileFormatIdentifierFactory.getFileFormatIdentifier().identifyFormat(probe);
     }
 
-
-    private static MassSpecFileFormat checkZippedFileExtension(File file) throws IOException {
-        MassSpecFileFormat format = null;
-
-        if (file.getName().trim().toLowerCase().endsWith("raw.zip")) {
-            return MassSpecFileFormat.RAW;
-        }
-
-        ZipFile zipFile = null;
-        try {
-            zipFile = new ZipFile(file);
-
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            if (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                String fileName = entry.getName();
-                String fileExtension = FileUtil.getFileExtension(fileName);
-                format = checkFormatByExtension(fileExtension);
-            }
-        } catch (ZipException ze) {
-            System.err.println("Unable to extract zip file to check file extension, perhaps has nested directories or too large in size.");
-            format = null;
-        } finally {
-            if (zipFile != null) {
-                zipFile.close();
-            }
-        }
-
-        return format;
-    }
-
-
     /**
      * Check the file format of a zip file
      * <p/>
-     * Taking into account of both the file name and file content if the file exists
+     * Taking into account the file name and the dominant format of all the entries, from the central directory. The
+     * name and the content of the first entry are used if the central directory can not be read.
+     * <p/>
+     * The archive is opened once, for its head and its central directory, and its entries are sniffed in the calling
+     * thread.
      *
      * @param file
      * @return
      * @throws IOException
      */
-    private static MassSpecFileFormat checkZippedFile(File file) throws IOException {
-        MassSpecFileFormat fileFormat = checkZippedFileExtension(file);
-
-        if (fileFormat == null && file.exists() && !FileUtil.isFileEmpty(file)) {
-            fileFormat = checkZippedFileContent(file);
+    private static MassSpecFileFormat checkZippedFile(File file, FileProbe head) throws IOException {
+        if (file.getName().trim().toLowerCase().endsWith("raw.zip")) {
+            return MassSpecFileFormat.RAW;
         }
 
-        return fileFormat;
-    }
-
-    /**
-     * Check the file format of a zip file
-     *
-     * @param file zipped file
-     * @return mass spec file format
-     */
-    private static MassSpecFileFormat checkZippedFileContent(File file) throws IOException {
-        MassSpecFileFormat format = null;
-
-        ZipFile zipFile = null;
-        try {
-            zipFile = new ZipFile(file);
-
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            if (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                // reading buffer size
-                int BUFFER = 1048;
-                byte data[] = new byte[BUFFER];
+        FileProbe probe = head;
+        if (probe == null || probe.getCompression() == FileProbe.Compression.ZIP) {
+            try {
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                try {
+                    if (probe == null) {
+                        probe = FileProbe.open(file, channel, false);
+                    }
+                    if (probe.getCompression() == FileProbe.Compression.ZIP) {
+                        return ZipArchiveInspector.inspect(channel, 1).getDominantFormat();
+                    }
+                } finally {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                // unreadable file, or truncated archive without a central directory
+            }
+        }
+        if (probe == null || probe.getCompression() != FileProbe.Compression.ZIP) {
+            return null;
+        }
 
-                InputStream inputStream = zipFile.getInputStream(entry);
-                inputStream.read(data, 0, BUFFER);
+        MassSpecFileFormat fileFormat = null;
+        String entryName = probe.getZipEntryName();
+        if (entryName != null) {
+            fileFormat = checkFormatByExtension(FileUtil.getFileExtension(entryName));
+        }
 
-                // convert byte array to string
-                String content = new String(data);
-                format = detectFormat(content);
-            }
-        } catch (ZipException ze) {
-            System.err.println("Unable to extract zip file to check content, perhaps has nested directories or too large in size.");
-            format = null;
-        } finally {
-            if (zipFile != null) {
-                zipFile.close();
-            }
+        if (fileFormat == null && !probe.isEmpty()) {
+            fileFormat = checkContent(probe);
         }
 
-        return format;
+        return fileFormat;
     }
 
-
     /**
      * Check the file format of a gzipped file
      * <p/>
@@ -373,14 +379,16 @@ public enum MassSpecFileFormat {
      * @return file format
      * @throws IOException
      */
-    private static MassSpecFileFormat checkGzippedFile(File file) throws IOException {
+    private static MassSpecFileFormat checkGzippedFile(File file, FileProbe head) throws IOException {
         MassSpecFileFormat fileFormat = checkGzippedFileExtension(file);
 
-        if (fileFormat != null && fileFormat.equals(MassSpecFileFormat.MZML) && file.exists()) {
-            fileFormat = checkGzippedFileContent(file);
-        }
-        if (fileFormat == null && file.exists() && !FileUtil.isFileEmpty(file)) {
-            fileFormat = checkGzippedFileContent(file);
+        if ((fileFormat == null || fileFormat.equals(MassSpecFileFormat.MZML)) && (head != null || file.exists())) {
+            FileProbe probe = probe(file, head);
+            if (fileFormat != null) {
+                fileFormat = checkGzippedContent(probe);
+            } else if (probe != null && !probe.isEmpty()) {
+                fileFormat = checkGzippedContent(probe);
+            }
         }
 
         return fileFormat;
@@ -408,54 +416,15 @@ public enum MassSpecFileFormat {
     }
 
     /**
-     * Check the file format of a gzipped file
+     * Check the file format of a gzipped file from its head
      *
-     * @param file gzipped file
+     * @param probe head of the gzipped file, may be null
      * @return mass spec file format
      */
-    private static MassSpecFileFormat checkGzippedFileContent(File file) throws IOException {
-        MassSpecFileFormat format = null;
-
-        GZIPInputStream gzipInputStream = null;
-
-        try {
-            FileInputStream fileInputStream = new FileInputStream(file);
-            gzipInputStream = new GZIPInputStream(new BufferedInputStream(fileInputStream));
-
-            // reading buffer size
-            int BUFFER = 1048;
-            byte data[] = new byte[BUFFER];
-
-            gzipInputStream.read(data, 0, BUFFER);
-
-            // convert byte array to string
-            String content = new String(data);
-            format = detectFormat(content);
-
-        } catch (Exception ex) {
-            System.err.println("Unable to read gzip file to check content: " + ex.getMessage());
-        } finally {
-            if (gzipInputStream != null) {
-                gzipInputStream.close();
-            }
+    private static MassSpecFileFormat checkGzippedContent(FileProbe probe) {
+        if (probe == null || probe.getCompression() != FileProbe.Compression.GZIP) {
+            return null;
         }
-
-        return format;
-    }
-
-    /**
-     * Detect the format based on a given string
-     *
-     * @param content input content
-     * @return mass spec file format
-     */
-    private static MassSpecFileFormat detectFormat(String content) {
-        // NOTE - Taking into account that this is not a generic algorithm, that gets the regular expression to apply
-        // NOTE - as a parameter, when identifying a file format by using a portion of its content, plus, the fact that
-        // NOTE - those regular expressions are not used anywhere else, opens the door to either implement mzTab file
-        // NOTE - identification in place, or to externalize the identification algorithm, which doesn't need to be
-        // NOTE - regex based
-        // Identification process has been refactored out of this method
-        return FileFormatIdentifierFactory.getFileFormatIdentifier().identifyFormatFromContent(content);
+        return checkContent(probe);
     }
 }
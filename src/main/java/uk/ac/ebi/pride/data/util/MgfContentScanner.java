@@ -0,0 +1,128 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scans MGF files: counts the BEGIN IONS entries and their peaks, finds duplicate titles, and reports entries which
+ * are not closed, have no precursor mass or have invalid peaks. An entry left open at the end of the file usually
+ * means the file is truncated.
+ */
+public class MgfContentScanner extends LineContentScanner {
+
+    public static final String PEAKS = "peaks";
+    public static final String EMPTY_ENTRIES = "empty entries";
+    public static final String UNTITLED_ENTRIES = "untitled entries";
+
+    public MgfContentScanner() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public MgfContentScanner(int windowSize) {
+        super(MassSpecFileFormat.MGF, windowSize);
+    }
+
+    @Override
+    protected EntryParser createParser(ContentScanResult result) {
+        return new MgfParser(result);
+    }
+
+    private static final class MgfParser extends EntryParser {
+        private boolean inEntry;
+        private long entryOffset;
+        private boolean hasTitle;
+        private boolean hasPepMass;
+        private int peakCount;
+
+        private MgfParser(ContentScanResult result) {
+            super(result);
+            result.setStatistic(PEAKS, 0);
+            result.setStatistic(EMPTY_ENTRIES, 0);
+            result.setStatistic(UNTITLED_ENTRIES, 0);
+        }
+
+        @Override
+        public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+            start = skipWhitespace(buffer, start, end);
+            end = trimEnd(buffer, start, end);
+            if (start == end) {
+                return;
+            }
+
+            byte first = buffer.get(start);
+            if (first == '#' || first == ';' || first == '!' || first == '/') {
+                // comment
+                return;
+            }
+
+            if (startsWith(buffer, start, end, "BEGIN IONS")) {
+                if (inEntry) {
+                    result.addMalformed(entryOffset, "Entry not closed by END IONS");
+                    closeEntry();
+                }
+                result.incrementEntryCount();
+                inEntry = true;
+                entryOffset = offset;
+                hasTitle = false;
+                hasPepMass = false;
+                peakCount = 0;
+            } else if (startsWith(buffer, start, end, "END IONS")) {
+                if (inEntry) {
+                    closeEntry();
+                } else {
+                    result.addMalformed(offset, "END IONS without BEGIN IONS");
+                }
+            } else if (isLetter(first)) {
+                int equals = indexOf(buffer, start, end, (byte) '=');
+                if (equals < 0) {
+                    result.addMalformed(offset, "Invalid line: " + decode(buffer, start, end));
+                } else if (inEntry && startsWith(buffer, start, end, "TITLE=")) {
+                    hasTitle = true;
+                    addIdentifier(buffer, skipWhitespace(buffer, equals + 1, end), end);
+                } else if (inEntry && startsWith(buffer, start, end, "PEPMASS=")) {
+                    int massStart = skipWhitespace(buffer, equals + 1, end);
+                    hasPepMass = true;
+                    if (!isNumber(buffer, massStart, tokenEnd(buffer, massStart, end))) {
+                        result.addMalformed(offset, "Invalid PEPMASS: " + decode(buffer, start, end));
+                    }
+                }
+            } else if (!inEntry) {
+                result.addMalformed(offset, "Content outside of an entry");
+            } else if (isPeak(buffer, start, end)) {
+                peakCount++;
+            } else {
+                result.addMalformed(offset, "Invalid peak: " + decode(buffer, start, end));
+            }
+        }
+
+        private void closeEntry() {
+            if (!hasPepMass) {
+                result.addMalformed(entryOffset, "Entry without PEPMASS");
+            }
+            if (!hasTitle) {
+                result.addStatistic(UNTITLED_ENTRIES, 1);
+            }
+            if (peakCount == 0) {
+                result.addStatistic(EMPTY_ENTRIES, 1);
+            }
+            result.addStatistic(PEAKS, peakCount);
+            inEntry = false;
+        }
+
+        @Override
+        protected void finish(long endOffset) {
+            if (inEntry) {
+                result.addMalformed(entryOffset, "Last entry not closed by END IONS, the file may be truncated");
+                closeEntry();
+            }
+        }
+
+        private static int indexOf(ByteBuffer buffer, int start, int end, byte b) {
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
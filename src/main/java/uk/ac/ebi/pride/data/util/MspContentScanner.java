@@ -0,0 +1,106 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scans MSP spectral libraries: counts the entries and their peaks, finds duplicate names, and reports entries
+ * without Num peaks, entries with a different number of peaks than declared and invalid peaks.
+ */
+public class MspContentScanner extends LineContentScanner {
+
+    public static final String PEAKS = "peaks";
+
+    public MspContentScanner() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public MspContentScanner(int windowSize) {
+        super(MassSpecFileFormat.MSP, windowSize);
+    }
+
+    @Override
+    protected EntryParser createParser(ContentScanResult result) {
+        return new MspParser(result);
+    }
+
+    private static final class MspParser extends EntryParser {
+        private boolean inEntry;
+        private long entryOffset;
+        private int declaredPeakCount;
+        private int peakCount;
+
+        private MspParser(ContentScanResult result) {
+            super(result);
+            result.setStatistic(PEAKS, 0);
+        }
+
+        @Override
+        public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+            start = skipWhitespace(buffer, start, end);
+            end = trimEnd(buffer, start, end);
+            if (start == end || buffer.get(start) == '#') {
+                return;
+            }
+
+            if (startsWith(buffer, start, end, "NAME:")) {
+                closeEntry();
+                result.incrementEntryCount();
+                inEntry = true;
+                entryOffset = offset;
+                declaredPeakCount = -1;
+                peakCount = 0;
+                addIdentifier(buffer, skipWhitespace(buffer, start + 5, end), end);
+            } else if (startsWith(buffer, start, end, "NUM PEAKS:") || startsWith(buffer, start, end, "NUMPEAKS:")) {
+                int colon = start + (buffer.get(start + 3) == ' ' ? 10 : 9);
+                int countStart = skipWhitespace(buffer, colon, end);
+                declaredPeakCount = parseInt(buffer, countStart, end);
+                if (declaredPeakCount < 0) {
+                    result.addMalformed(offset, "Invalid Num peaks: " + decode(buffer, start, end));
+                }
+            } else if (isLetter(buffer.get(start))) {
+                // other metadata, such as Comment or PrecursorMZ
+                if (!inEntry) {
+                    result.addMalformed(offset, "Metadata before the first Name");
+                }
+            } else if (!inEntry) {
+                result.addMalformed(offset, "Peak outside of an entry");
+            } else {
+                // several peaks may share a line, separated by ;
+                int peakStart = start;
+                for (int i = start; i <= end; i++) {
+                    if (i == end || buffer.get(i) == ';') {
+                        int from = skipWhitespace(buffer, peakStart, i);
+                        int to = trimEnd(buffer, from, i);
+                        if (from < to) {
+                            if (isPeak(buffer, from, to)) {
+                                peakCount++;
+                            } else {
+                                result.addMalformed(offset, "Invalid peak: " + decode(buffer, from, to));
+                                break;
+                            }
+                        }
+                        peakStart = i + 1;
+                    }
+                }
+            }
+        }
+
+        private void closeEntry() {
+            if (!inEntry) {
+                return;
+            }
+            if (declaredPeakCount < 0) {
+                result.addMalformed(entryOffset, "Entry without Num peaks");
+            } else if (declaredPeakCount != peakCount) {
+                result.addMalformed(entryOffset, "Entry declares " + declaredPeakCount + " peaks but has " + peakCount);
+            }
+            result.addStatistic(PEAKS, peakCount);
+            inEntry = false;
+        }
+
+        @Override
+        protected void finish(long endOffset) {
+            closeEntry();
+        }
+    }
+}
@@ -8,7 +8,7 @@ package uk.ac.ebi.pride.data.util;
  * © 2016 Manuel Bernal Llinares <mbdebian@gmail.com>
  * All rights reserved.
  */
-public class MzDataFileFormatIdentifier extends FileFormatIdentifier {
+public class MzDataFileFormatIdentifier extends XmlFileFormatIdentifier {
     @Override
     protected MassSpecFileFormat doIdentifyFormatFromContent(String content) {
         if (MassSpecFileRegx.MZDATA_PATTERN.matcher(content).find()) {
@@ -16,4 +16,12 @@ public class MzDataFileFormatIdentifier extends FileFormatIdentifier {
         }
         return null;
     }
+
+    @Override
+    protected MassSpecFileFormat doIdentifyFormatFromRootElement(XmlRootElement rootElement) {
+        if (rootElement.hasLocalName("mzData")) {
+            return MassSpecFileFormat.MZDATA;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,334 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Key facts of a mzIdentML file, read by streaming the file once in constant memory.
+ * <p/>
+ * Only counts and the small lists of the file header are kept: the spectra data and search database locations,
+ * the analysis software and the controlled vocabularies, together with how often each cv term is used.
+ */
+public final class MzIdentMLSummary {
+
+    private static final Logger logger = LoggerFactory.getLogger(MzIdentMLSummary.class);
+
+    /**
+     * Maximum number of distinct cv terms counted, the rest are only added to the total
+     */
+    public static final int MAX_CV_TERMS = 1000;
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private final File file;
+    private String version;
+    private int spectrumIdentificationResultCount;
+    private int spectrumIdentificationItemCount;
+    private int peptideCount;
+    private int peptideEvidenceCount;
+    private int dbSequenceCount;
+    private int proteinAmbiguityGroupCount;
+    private int proteinDetectionHypothesisCount;
+    private int cvParamCount;
+    private final List<String> spectraDataLocations = new ArrayList<String>();
+    private final List<String> searchDatabaseLocations = new ArrayList<String>();
+    private final List<String> searchDatabaseNames = new ArrayList<String>();
+    private final List<String> software = new ArrayList<String>();
+    private final Map<String, String> cvs = new LinkedHashMap<String, String>();
+    private final Map<String, Integer> cvTermCounts = new TreeMap<String, Integer>();
+    private final Map<String, String> cvTermNames = new HashMap<String, String>();
+
+    private MzIdentMLSummary(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Summarize a mzIdentML file
+     *
+     * @param file mzIdentML file, optionally gzipped or zipped
+     * @return MzIdentMLSummary    summary of the file
+     * @throws IOException exception while reading the file, or if the file is not well formed xml
+     */
+    public static MzIdentMLSummary summarize(File file) throws IOException {
+        InputStream in = FileUtil.getFileInputStream(file);
+        if (in == null) {
+            throw new IOException("Empty archive: " + file.getAbsolutePath());
+        }
+
+        MzIdentMLSummary summary = new MzIdentMLSummary(file);
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(new BufferedInputStream(in, 64 * 1024));
+            summary.read(reader);
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read mzIdentML file " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // the stream is closed below
+                }
+            }
+            in.close();
+        }
+        return summary;
+    }
+
+    /**
+     * Summarize several mzIdentML files concurrently
+     *
+     * @param files       mzIdentML files
+     * @param parallelism maximum number of files read at the same time
+     * @return Map<File, MzIdentMLSummary>  summaries by file, in the order of the files, files which can not be read are left out
+     * @throws InterruptedIOException if interrupted while waiting for the summaries
+     */
+    public static Map<File, MzIdentMLSummary> summarizeAll(Collection<File> files, int parallelism) throws InterruptedIOException {
+        Map<File, Future<MzIdentMLSummary>> pending = new LinkedHashMap<File, Future<MzIdentMLSummary>>();
+        Map<File, MzIdentMLSummary> summaries = new LinkedHashMap<File, MzIdentMLSummary>();
+
+        ExecutorService executor = ExecutorUtil.newBoundedExecutor(Math.min(parallelism, Math.max(1, files.size())), "mzidentml-summary");
+        try {
+            for (final File file : files) {
+                pending.put(file, executor.submit(new Callable<MzIdentMLSummary>() {
+                    @Override
+                    public MzIdentMLSummary call() throws Exception {
+                        return summarize(file);
+                    }
+                }));
+            }
+
+            for (Map.Entry<File, Future<MzIdentMLSummary>> entry : pending.entrySet()) {
+                try {
+                    summaries.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to summarize " + entry.getKey().getAbsolutePath(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while summarizing mzIdentML files");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return summaries;
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        // the software name is either an attribute or the param of its SoftwareName element
+        String softwareName = null;
+        String softwareVersion = null;
+        boolean inSoftwareName = false;
+        boolean rootElement = true;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("SoftwareName".equals(name)) {
+                    inSoftwareName = false;
+                } else if ("AnalysisSoftware".equals(name)) {
+                    software.add(softwareVersion == null ? String.valueOf(softwareName) : softwareName + " " + softwareVersion);
+                    softwareName = null;
+                    softwareVersion = null;
+                }
+                continue;
+            } else if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String name = reader.getLocalName();
+            if (rootElement) {
+                rootElement = false;
+                version = reader.getAttributeValue(null, "version");
+            }
+
+            // the most frequent elements first
+            if ("cvParam".equals(name)) {
+                String accession = reader.getAttributeValue(null, "accession");
+                if (inSoftwareName && softwareName == null) {
+                    softwareName = reader.getAttributeValue(null, "name");
+                }
+                addCvTerm(accession, reader.getAttributeValue(null, "name"));
+            } else if ("SpectrumIdentificationItem".equals(name)) {
+                spectrumIdentificationItemCount++;
+            } else if ("PeptideEvidence".equals(name)) {
+                peptideEvidenceCount++;
+            } else if ("SpectrumIdentificationResult".equals(name)) {
+                spectrumIdentificationResultCount++;
+            } else if ("Peptide".equals(name)) {
+                peptideCount++;
+            } else if ("DBSequence".equals(name)) {
+                dbSequenceCount++;
+            } else if ("ProteinDetectionHypothesis".equals(name)) {
+                proteinDetectionHypothesisCount++;
+            } else if ("ProteinAmbiguityGroup".equals(name)) {
+                proteinAmbiguityGroupCount++;
+            } else if ("userParam".equals(name)) {
+                if (inSoftwareName && softwareName == null) {
+                    softwareName = reader.getAttributeValue(null, "name");
+                }
+            } else if ("SpectraData".equals(name)) {
+                addIfPresent(spectraDataLocations, reader.getAttributeValue(null, "location"));
+            } else if ("SearchDatabase".equals(name)) {
+                addIfPresent(searchDatabaseLocations, reader.getAttributeValue(null, "location"));
+                addIfPresent(searchDatabaseNames, reader.getAttributeValue(null, "name"));
+            } else if ("AnalysisSoftware".equals(name)) {
+                softwareName = reader.getAttributeValue(null, "name");
+                softwareVersion = reader.getAttributeValue(null, "version");
+            } else if ("SoftwareName".equals(name)) {
+                inSoftwareName = true;
+            } else if ("cv".equals(name)) {
+                String id = reader.getAttributeValue(null, "id");
+                if (id != null) {
+                    cvs.put(id, reader.getAttributeValue(null, "fullName"));
+                }
+            }
+        }
+    }
+
+    private void addCvTerm(String accession, String name) {
+        cvParamCount++;
+        if (accession == null) {
+            return;
+        }
+
+        Integer count = cvTermCounts.get(accession);
+        if (count != null) {
+            cvTermCounts.put(accession, count + 1);
+        } else if (cvTermCounts.size() < MAX_CV_TERMS) {
+            cvTermCounts.put(accession, 1);
+            cvTermNames.put(accession, name);
+        }
+    }
+
+    private static void addIfPresent(List<String> values, String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            values.add(value.trim());
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return String  version attribute of the root element, null if not present
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public int getSpectrumIdentificationResultCount() {
+        return spectrumIdentificationResultCount;
+    }
+
+    public int getSpectrumIdentificationItemCount() {
+        return spectrumIdentificationItemCount;
+    }
+
+    public int getPeptideCount() {
+        return peptideCount;
+    }
+
+    public int getPeptideEvidenceCount() {
+        return peptideEvidenceCount;
+    }
+
+    public int getDbSequenceCount() {
+        return dbSequenceCount;
+    }
+
+    public int getProteinAmbiguityGroupCount() {
+        return proteinAmbiguityGroupCount;
+    }
+
+    public int getProteinDetectionHypothesisCount() {
+        return proteinDetectionHypothesisCount;
+    }
+
+    /**
+     * @return int total number of cv params, including the ones of the terms not counted individually
+     */
+    public int getCvParamCount() {
+        return cvParamCount;
+    }
+
+    /**
+     * @return List<String>    locations of the spectra data, as written in the file
+     */
+    public List<String> getSpectraDataLocations() {
+        return Collections.unmodifiableList(spectraDataLocations);
+    }
+
+    public List<String> getSearchDatabaseLocations() {
+        return Collections.unmodifiableList(searchDatabaseLocations);
+    }
+
+    public List<String> getSearchDatabaseNames() {
+        return Collections.unmodifiableList(searchDatabaseNames);
+    }
+
+    /**
+     * @return List<String>    name and version of each analysis software
+     */
+    public List<String> getSoftware() {
+        return Collections.unmodifiableList(software);
+    }
+
+    /**
+     * @return Map<String, String>  full names of the controlled vocabularies, by cv id
+     */
+    public Map<String, String> getCvs() {
+        return Collections.unmodifiableMap(cvs);
+    }
+
+    /**
+     * @return Map<String, Integer> number of uses of each cv term, by accession
+     */
+    public Map<String, Integer> getCvTermCounts() {
+        return Collections.unmodifiableMap(cvTermCounts);
+    }
+
+    public String getCvTermName(String accession) {
+        return cvTermNames.get(accession);
+    }
+
+    @Override
+    public String toString() {
+        return "MzIdentMLSummary{" +
+                "file=" + file.getName() +
+                ", version=" + version +
+                ", spectrumIdentificationItems=" + spectrumIdentificationItemCount +
+                ", peptideEvidences=" + peptideEvidenceCount +
+                ", proteinDetectionHypotheses=" + proteinDetectionHypothesisCount +
+                ", spectraData=" + spectraDataLocations +
+                ", searchDatabases=" + searchDatabaseLocations +
+                ", software=" + software +
+                '}';
+    }
+}
@@ -8,7 +8,7 @@ package uk.ac.ebi.pride.data.util;
  * © 2016 Manuel Bernal Llinares <mbdebian@gmail.com>
  * All rights reserved.
  */
-public class MzIdentmlFileFormatIdentifier extends FileFormatIdentifier {
+public class MzIdentmlFileFormatIdentifier extends XmlFileFormatIdentifier {
     @Override
     protected MassSpecFileFormat doIdentifyFormatFromContent(String content) {
         if (MassSpecFileRegx.MZIDENTML_PATTERN.matcher(content).find()) {
@@ -16,4 +16,12 @@ public class MzIdentmlFileFormatIdentifier extends FileFormatIdentifier {
         }
         return null;
     }
+
+    @Override
+    protected MassSpecFileFormat doIdentifyFormatFromRootElement(XmlRootElement rootElement) {
+        if (rootElement.hasLocalName("MzIdentML") || rootElement.hasLocalName("indexedmzIdentML")) {
+            return MassSpecFileFormat.MZIDENTML;
+        }
+        return null;
+    }
 }
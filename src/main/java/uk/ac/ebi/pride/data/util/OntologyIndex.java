@@ -0,0 +1,403 @@
+package uk.ac.ebi.pride.data.util;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read only index of the terms of an ontology, for validating cv params without any network access.
+ * <p/>
+ * The index is built from an OBO file, or opened from a snapshot written by {@link #writeSnapshot(File)}. Snapshots
+ * are memory mapped, so opening one does not read the terms upfront.
+ * <p/>
+ * All the terms are held in a single buffer: a string pool with the accessions and names as UTF-8, the accessions
+ * sorted by their bytes, and the lower cased names sorted the same way, so both accessions and names are looked up
+ * with a binary search and no per term objects are created. Obsolete terms are flagged.
+ */
+public final class OntologyIndex {
+
+    private static final int MAGIC = 0x4F424F49;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final byte OBSOLETE = 1;
+
+    private static final String TERM_STANZA = "[Term]";
+    private static final String ID_TAG = "id:";
+    private static final String NAME_TAG = "name:";
+    private static final String OBSOLETE_TAG = "is_obsolete:";
+
+    private final ByteBuffer buffer;
+    private final String cvLabel;
+    private final int count;
+    private final int accessionsOffset;
+    private final int namesOffset;
+    private final int lowerCaseNamesOffset;
+    private final int lowerCaseNameTermsOffset;
+    private final int flagsOffset;
+    private final int poolOffset;
+    private volatile long fingerprint;
+
+    private OntologyIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an ontology index snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported ontology index snapshot version: " + buffer.getInt(4));
+        }
+        this.count = buffer.getInt(8);
+        this.accessionsOffset = HEADER_SIZE;
+        this.namesOffset = accessionsOffset + 4 * count;
+        this.lowerCaseNamesOffset = namesOffset + 4 * count;
+        this.lowerCaseNameTermsOffset = lowerCaseNamesOffset + 4 * count;
+        this.flagsOffset = lowerCaseNameTermsOffset + 4 * count;
+        this.poolOffset = buffer.getInt(12);
+        this.cvLabel = getString(buffer.getInt(16));
+    }
+
+    /**
+     * Build an index from an OBO file
+     *
+     * @param cvLabel label of the ontology, e.g. {@link Constant#MS}
+     * @param oboFile OBO file
+     * @return OntologyIndex   ontology index
+     * @throws IOException exception while reading the OBO file
+     */
+    public static OntologyIndex loadObo(String cvLabel, File oboFile) throws IOException {
+        return loadObo(cvLabel, new FileInputStream(oboFile));
+    }
+
+    /**
+     * Build an index from an OBO stream, the stream is closed afterwards
+     *
+     * @param cvLabel label of the ontology
+     * @param in      OBO content
+     * @return OntologyIndex   ontology index
+     * @throws IOException exception while reading the OBO content
+     */
+    public static OntologyIndex loadObo(String cvLabel, InputStream in) throws IOException {
+        // accession -> name and obsolete flag, a repeated term replaces the earlier one
+        Map<String, String> names = new HashMap<String, String>();
+        Set<String> obsoleteTerms = new HashSet<String>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            boolean inTerm = false;
+            String id = null;
+            String name = null;
+            boolean obsolete = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("[")) {
+                    addTerm(names, obsoleteTerms, id, name, obsolete);
+                    inTerm = TERM_STANZA.equals(line);
+                    id = null;
+                    name = null;
+                    obsolete = false;
+                } else if (inTerm) {
+                    if (line.startsWith(ID_TAG)) {
+                        id = line.substring(ID_TAG.length()).trim();
+                    } else if (line.startsWith(NAME_TAG)) {
+                        name = line.substring(NAME_TAG.length()).trim();
+                    } else if (line.startsWith(OBSOLETE_TAG)) {
+                        obsolete = "true".equalsIgnoreCase(line.substring(OBSOLETE_TAG.length()).trim());
+                    }
+                }
+            }
+            if (inTerm) {
+                addTerm(names, obsoleteTerms, id, name, obsolete);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return build(cvLabel, names, obsoleteTerms);
+    }
+
+    /**
+     * Open a snapshot written by {@link #writeSnapshot(File)}, the snapshot is memory mapped
+     *
+     * @param snapshot snapshot file
+     * @return OntologyIndex   ontology index
+     * @throws IOException exception while mapping the snapshot
+     */
+    public static OntologyIndex openSnapshot(File snapshot) throws IOException {
+        FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ);
+        try {
+            // the mapping stays valid after the channel is closed
+            return new OntologyIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write the index to a snapshot file, which can be memory mapped using {@link #openSnapshot(File)}
+     *
+     * @param snapshot snapshot file
+     * @throws IOException exception while writing the snapshot
+     */
+    public void writeSnapshot(File snapshot) throws IOException {
+        FileChannel channel = FileChannel.open(snapshot.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer content = buffer.duplicate();
+            content.clear();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    public String getCvLabel() {
+        return cvLabel;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return long    hash of the whole index, computed on first use, which changes when the terms change
+     */
+    public long getFingerprint() {
+        long current = fingerprint;
+        if (current == 0) {
+            ByteBuffer content = buffer.duplicate();
+            content.clear();
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            byte[] bytes = new byte[64 * 1024];
+            while (content.hasRemaining()) {
+                int length = Math.min(bytes.length, content.remaining());
+                content.get(bytes, 0, length);
+                hasher.putBytes(bytes, 0, length);
+            }
+            current = hasher.hash().asLong();
+            fingerprint = current;
+        }
+        return current;
+    }
+
+    public boolean containsAccession(String accession) {
+        return findTerm(accession) >= 0;
+    }
+
+    /**
+     * Get the name of a term
+     *
+     * @param accession term accession
+     * @return String  term name, null if the accession is not in the index
+     */
+    public String getName(String accession) {
+        int term = findTerm(accession);
+        return term < 0 ? null : getString(buffer.getInt(namesOffset + 4 * term));
+    }
+
+    public boolean isObsolete(String accession) {
+        int term = findTerm(accession);
+        return term >= 0 && (buffer.get(flagsOffset + term) & OBSOLETE) != 0;
+    }
+
+    /**
+     * Find the accession of a term by name, ignoring case
+     *
+     * @param name term name
+     * @return String  term accession, null if there is no term with the given name
+     */
+    public String getAccession(String name) {
+        if (name == null) {
+            return null;
+        }
+        int index = binarySearch(lowerCaseNamesOffset, toLowerCase(name).getBytes(StandardCharsets.UTF_8));
+        if (index < 0) {
+            return null;
+        }
+        int term = buffer.getInt(lowerCaseNameTermsOffset + 4 * index);
+        return getString(buffer.getInt(accessionsOffset + 4 * term));
+    }
+
+    /**
+     * Check whether an accession and a name refer to the same term, ignoring case
+     *
+     * @param accession term accession
+     * @param name      term name
+     * @return boolean true if the term exists and has the given name
+     */
+    public boolean matches(String accession, String name) {
+        String termName = getName(accession);
+        return termName != null && name != null && toLowerCase(termName).equals(toLowerCase(name.trim()));
+    }
+
+    /**
+     * Find the position of a term by accession
+     *
+     * @return int position of the term in the accession order, negative if it is not in the index
+     */
+    private int findTerm(String accession) {
+        if (accession == null) {
+            return -1;
+        }
+        return binarySearch(accessionsOffset, accession.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Binary search over a sorted array of string references
+     */
+    private int binarySearch(int referencesOffset, byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(buffer.getInt(referencesOffset + 4 * middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compare a pooled string with a key, byte by byte as unsigned values
+     */
+    private int compare(int reference, byte[] key) {
+        int position = poolOffset + reference;
+        int length = buffer.getInt(position);
+        position += 4;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(position + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String getString(int reference) {
+        int position = poolOffset + reference;
+        byte[] bytes = new byte[buffer.getInt(position)];
+        ByteBuffer content = buffer.duplicate();
+        content.position(position + 4);
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void addTerm(Map<String, String> names, Set<String> obsoleteTerms, String id, String name, boolean obsolete) {
+        if (id == null || id.isEmpty()) {
+            return;
+        }
+        names.put(id, name == null ? "" : name);
+        if (obsolete) {
+            obsoleteTerms.add(id);
+        } else {
+            obsoleteTerms.remove(id);
+        }
+    }
+
+    /**
+     * Lay out the terms in a single buffer
+     */
+    private static OntologyIndex build(String cvLabel, Map<String, String> names, Set<String> obsoleteTerms) throws IOException {
+        int count = names.size();
+
+        // terms in accession order
+        final byte[][] accessions = new byte[count][];
+        int term = 0;
+        for (String accession : names.keySet()) {
+            accessions[term++] = accession.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(accessions, UNSIGNED_BYTES);
+
+        // names in lower case order, pointing at the terms
+        final byte[][] lowerCaseNames = new byte[count][];
+        Integer[] nameOrder = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            String name = names.get(new String(accessions[i], StandardCharsets.UTF_8));
+            lowerCaseNames[i] = toLowerCase(name).getBytes(StandardCharsets.UTF_8);
+            nameOrder[i] = i;
+        }
+        Arrays.sort(nameOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer term1, Integer term2) {
+                return UNSIGNED_BYTES.compare(lowerCaseNames[term1], lowerCaseNames[term2]);
+            }
+        });
+
+        // string pool
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        DataOutputStream poolOutput = new DataOutputStream(pool);
+        int[] accessionReferences = new int[count];
+        int[] nameReferences = new int[count];
+        int[] lowerCaseNameReferences = new int[count];
+        for (int i = 0; i < count; i++) {
+            String accession = new String(accessions[i], StandardCharsets.UTF_8);
+            accessionReferences[i] = writeString(poolOutput, accessions[i]);
+            nameReferences[i] = writeString(poolOutput, names.get(accession).getBytes(StandardCharsets.UTF_8));
+            lowerCaseNameReferences[i] = writeString(poolOutput, lowerCaseNames[i]);
+        }
+        int labelReference = writeString(poolOutput, (cvLabel == null ? "" : cvLabel).getBytes(StandardCharsets.UTF_8));
+        poolOutput.flush();
+
+        int poolOffset = HEADER_SIZE + 4 * 4 * count + count;
+        ByteBuffer buffer = ByteBuffer.allocate(poolOffset + pool.size());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(poolOffset).putInt(labelReference);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(accessionReferences[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(nameReferences[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(lowerCaseNameReferences[nameOrder[i]]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(nameOrder[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.put(obsoleteTerms.contains(new String(accessions[i], StandardCharsets.UTF_8)) ? OBSOLETE : 0);
+        }
+        buffer.put(pool.toByteArray());
+        buffer.clear();
+
+        return new OntologyIndex(buffer);
+    }
+
+    private static int writeString(DataOutputStream poolOutput, byte[] bytes) throws IOException {
+        int reference = poolOutput.size();
+        poolOutput.writeInt(bytes.length);
+        poolOutput.write(bytes);
+        return reference;
+    }
+
+    private static String toLowerCase(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static final Comparator<byte[]> UNSIGNED_BYTES = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] bytes1, byte[] bytes2) {
+            int common = Math.min(bytes1.length, bytes2.length);
+            for (int i = 0; i < common; i++) {
+                int difference = (bytes1[i] & 0xff) - (bytes2[i] & 0xff);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return bytes1.length - bytes2.length;
+        }
+    };
+}
@@ -0,0 +1,57 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ontology indexes available for offline validation, keyed by cv label, e.g. {@link Constant#MS}
+ * <p/>
+ * Nothing is registered by default, cv terms are only checked against ontologies which have been registered.
+ */
+public final class OntologyIndexRegistry {
+
+    private static final Map<String, OntologyIndex> indexes = new ConcurrentHashMap<String, OntologyIndex>();
+
+    private OntologyIndexRegistry() {
+    }
+
+    /**
+     * Register an index under its own cv label, replacing any index registered before
+     */
+    public static void register(OntologyIndex index) {
+        register(index.getCvLabel(), index);
+    }
+
+    public static void register(String cvLabel, OntologyIndex index) {
+        indexes.put(toKey(cvLabel), index);
+    }
+
+    public static void unregister(String cvLabel) {
+        indexes.remove(toKey(cvLabel));
+    }
+
+    public static void clear() {
+        indexes.clear();
+    }
+
+    /**
+     * Get the index of an ontology, ignoring the case of the label
+     *
+     * @param cvLabel cv label
+     * @return OntologyIndex   ontology index, null if none has been registered
+     */
+    public static OntologyIndex get(String cvLabel) {
+        return cvLabel == null ? null : indexes.get(toKey(cvLabel));
+    }
+
+    public static Set<String> getCvLabels() {
+        return Collections.unmodifiableSet(indexes.keySet());
+    }
+
+    private static String toKey(String cvLabel) {
+        return cvLabel.trim().toUpperCase(Locale.ROOT);
+    }
+}
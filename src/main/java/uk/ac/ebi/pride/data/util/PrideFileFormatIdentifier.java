@@ -8,7 +8,7 @@ package uk.ac.ebi.pride.data.util;
  * © 2016 Manuel Bernal Llinares <mbdebian@gmail.com>
  * All rights reserved.
  */
-public class PrideFileFormatIdentifier extends FileFormatIdentifier {
+public class PrideFileFormatIdentifier extends XmlFileFormatIdentifier {
     @Override
     protected MassSpecFileFormat doIdentifyFormatFromContent(String content) {
         if (MassSpecFileRegx.PRIDE_XML_PATTERN.matcher(content).find()) {
@@ -16,4 +16,12 @@ public class PrideFileFormatIdentifier extends FileFormatIdentifier {
         }
         return null;
     }
+
+    @Override
+    protected MassSpecFileFormat doIdentifyFormatFromRootElement(XmlRootElement rootElement) {
+        if (rootElement.hasLocalName("ExperimentCollection")) {
+            return MassSpecFileFormat.PRIDE;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,406 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a file once, in large sequential chunks, and hands every chunk over to several consumers, such as a
+ * checksum, a truncation check and a content scanner, which would otherwise read the file once each.
+ * <p/>
+ * Every consumer runs on its own thread and sees the chunks in order, through read only views of the same buffers.
+ * The chunks come from a fixed pool and are only read into again once every consumer is done with them, so the
+ * memory used is bounded and the slowest consumer sets the pace of the read.
+ * <p/>
+ * Consumers which depend on the content of the file, such as a content scanner for its format, can be added by a
+ * {@link Planner} once the first chunk has been read, before any consumer starts.
+ * <p/>
+ * A consumer which fails is left out of the rest of the scan, its failure is available from {@link #getFailures()}.
+ * A scan is meant to be run once.
+ */
+public class SharedFileScan {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedFileScan.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final Chunk END_OF_INPUT = new Chunk(null, null);
+    private static final Chunk ABORTED = new Chunk(null, null);
+
+    private final File file;
+    private final int chunkSize;
+    private final int poolSize;
+    private final List<Consumer> consumers = new ArrayList<Consumer>();
+    private final Map<Consumer, Throwable> failures = new ConcurrentHashMap<Consumer, Throwable>();
+    private Planner planner;
+    private volatile long bytesRead;
+
+    public SharedFileScan(File file) {
+        this(file, DEFAULT_CHUNK_SIZE, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param file      file to read
+     * @param chunkSize number of bytes read at once
+     * @param poolSize  number of chunks, which is the most a consumer may lag behind the read
+     */
+    public SharedFileScan(File file, int chunkSize, int poolSize) {
+        if (chunkSize <= 0 || poolSize <= 0) {
+            throw new IllegalArgumentException("Chunk size and pool size must be positive: " + chunkSize + ", " + poolSize);
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Receives the content of a file, chunk by chunk. The calls are made from a single thread, in order.
+     */
+    public interface Consumer {
+        /**
+         * Called before the first chunk
+         *
+         * @param file file being read
+         * @param size size of the file when the scan started
+         * @throws IOException to leave the consumer out of the scan
+         */
+        void start(File file, long size) throws IOException;
+
+        /**
+         * @param chunk  read only bytes of the file between its position and limit, which must not be kept after
+         *               the call returns
+         * @param offset offset of the chunk in the file
+         * @throws IOException to leave the consumer out of the rest of the scan
+         */
+        void accept(ByteBuffer chunk, long offset) throws IOException;
+
+        /**
+         * Called after the last chunk, only if the whole file has been read
+         *
+         * @throws IOException to report a failure of the consumer
+         */
+        void finish() throws IOException;
+    }
+
+    /**
+     * Adds consumers from the first bytes of a file, such as the consumers of its format
+     */
+    public interface Planner {
+        /**
+         * Called once, after the first chunk has been read and before any consumer starts
+         *
+         * @param scan scan to add the consumers to
+         * @param head read only first chunk of the file, empty for an empty file
+         * @throws IOException to fail the scan
+         */
+        void plan(SharedFileScan scan, ByteBuffer head) throws IOException;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public SharedFileScan setPlanner(Planner planner) {
+        this.planner = planner;
+        return this;
+    }
+
+    public SharedFileScan addConsumer(Consumer consumer) {
+        consumers.add(consumer);
+        return this;
+    }
+
+    public List<Consumer> getConsumers() {
+        return Collections.unmodifiableList(consumers);
+    }
+
+    /**
+     * Read the file, returning once every consumer is done
+     *
+     * @throws IOException exception while reading the file, the consumers are not finished then
+     */
+    public void run() throws IOException {
+        if (consumers.isEmpty() && planner == null) {
+            return;
+        }
+
+        ExecutorService executor = ExecutorUtil.newUnboundedExecutor("shared-scan");
+        try {
+            run(executor);
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+    }
+
+    /**
+     * Read the file, returning once every consumer is done
+     *
+     * @param executor executor running the consumers, which must be able to run all of them at the same time, as a
+     *                 consumer which does not run holds up the others
+     * @throws IOException exception while reading the file, the consumers are not finished then
+     */
+    public void run(ExecutorService executor) throws IOException {
+        if (consumers.isEmpty() && planner == null) {
+            return;
+        }
+
+        BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            pool.add(ByteBuffer.allocate(chunkSize));
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        List<BlockingQueue<Chunk>> queues = new ArrayList<BlockingQueue<Chunk>>();
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        boolean completed = false;
+        try {
+            long size = channel.size();
+            ByteBuffer buffer = pool.take();
+            int read = fill(channel, buffer);
+            if (planner != null) {
+                planner.plan(this, buffer.asReadOnlyBuffer());
+            }
+
+            for (Consumer consumer : consumers) {
+                // a consumer can not hold more chunks than the pool has, plus the end of input
+                BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(poolSize + 1);
+                queues.add(queue);
+                workers.add(executor.submit(new Worker(consumer, queue, size)));
+            }
+
+            long position = 0;
+            while (!queues.isEmpty()) {
+                if (buffer.hasRemaining()) {
+                    Chunk chunk = new Chunk(buffer, pool);
+                    chunk.offset = position;
+                    chunk.references.set(queues.size());
+                    for (BlockingQueue<Chunk> queue : queues) {
+                        queue.put(chunk);
+                    }
+                    position += buffer.remaining();
+                    bytesRead = position;
+                } else {
+                    pool.put(buffer);
+                }
+                if (read < 0) {
+                    break;
+                }
+                buffer = pool.take();
+                read = fill(channel, buffer);
+            }
+
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + file.getAbsolutePath());
+        } finally {
+            for (BlockingQueue<Chunk> queue : queues) {
+                // never full, as there are fewer chunks than places in the queue
+                queue.offer(completed ? END_OF_INPUT : ABORTED);
+            }
+            try {
+                awaitWorkers(workers);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Fill a whole chunk, a short read is not the end of the file
+     *
+     * @return int result of the last read, negative at the end of the file
+     */
+    private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        return read;
+    }
+
+    /**
+     * Run several scans concurrently
+     *
+     * @param scans       scans to run, of different files
+     * @param parallelism maximum number of files read at the same time
+     * @return List<SharedFileScan>    scans which read their whole file, in the order of the scans, the others are
+     * logged and left out
+     * @throws InterruptedIOException if interrupted while waiting for the scans
+     */
+    public static List<SharedFileScan> runAll(Collection<SharedFileScan> scans, int parallelism) throws InterruptedIOException {
+        Map<SharedFileScan, Future<?>> pending = new LinkedHashMap<SharedFileScan, Future<?>>();
+        List<SharedFileScan> completed = new ArrayList<SharedFileScan>();
+
+        ExecutorService executor = ExecutorUtil.newBoundedIoExecutor(Math.min(parallelism, Math.max(1, scans.size())), "shared-scan-file");
+        // the consumers of all the files, at most the consumers of the files read at the same time are running
+        final ExecutorService consumerExecutor = ExecutorUtil.newUnboundedExecutor("shared-scan");
+        try {
+            for (final SharedFileScan scan : scans) {
+                pending.put(scan, executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        scan.run(consumerExecutor);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Map.Entry<SharedFileScan, Future<?>> entry : pending.entrySet()) {
+                try {
+                    entry.getValue().get();
+                    completed.add(entry.getKey());
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to read " + entry.getKey().getFile().getAbsolutePath(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading files");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+            ExecutorUtil.shutdown(consumerExecutor);
+        }
+
+        return completed;
+    }
+
+    /**
+     * @return long    number of bytes read so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Map<Consumer, Throwable>    failure of every consumer which failed
+     */
+    public Map<Consumer, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean hasFailed(Consumer consumer) {
+        return failures.containsKey(consumer);
+    }
+
+    private void awaitWorkers(List<Future<?>> workers) throws InterruptedIOException {
+        boolean interrupted = false;
+        for (Future<?> worker : workers) {
+            while (true) {
+                try {
+                    worker.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // the workers hold the pool buffers, they are waited for anyway
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    logger.error("Shared scan worker failed for " + file.getAbsolutePath(), e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the consumers of " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Chunk of the file, shared by all the consumers, its buffer goes back to the pool after the last of them
+     */
+    private static final class Chunk {
+        private final ByteBuffer buffer;
+        private final BlockingQueue<ByteBuffer> pool;
+        private final AtomicInteger references = new AtomicInteger();
+        private long offset;
+
+        private Chunk(ByteBuffer buffer, BlockingQueue<ByteBuffer> pool) {
+            this.buffer = buffer;
+            this.pool = pool;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                pool.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Feeds the chunks of its queue to a consumer, and keeps releasing them once the consumer has failed
+     */
+    private final class Worker implements Runnable {
+        private final Consumer consumer;
+        private final BlockingQueue<Chunk> queue;
+        private final long size;
+
+        private Worker(Consumer consumer, BlockingQueue<Chunk> queue, long size) {
+            this.consumer = consumer;
+            this.queue = queue;
+            this.size = size;
+        }
+
+        @Override
+        public void run() {
+            boolean failed = false;
+            try {
+                consumer.start(file, size);
+            } catch (Throwable e) {
+                failed = fail(e);
+            }
+
+            while (true) {
+                Chunk chunk;
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException e) {
+                    // the reader always ends the queue, keep draining it
+                    continue;
+                }
+                if (chunk == END_OF_INPUT) {
+                    break;
+                }
+                if (chunk == ABORTED) {
+                    return;
+                }
+
+                try {
+                    if (!failed) {
+                        consumer.accept(chunk.buffer.asReadOnlyBuffer(), chunk.offset);
+                    }
+                } catch (Throwable e) {
+                    failed = fail(e);
+                } finally {
+                    chunk.release();
+                }
+            }
+
+            if (!failed) {
+                try {
+                    consumer.finish();
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private boolean fail(Throwable e) {
+            logger.warn("Shared scan consumer " + consumer.getClass().getSimpleName() + " failed on "
+                    + file.getAbsolutePath() + ": " + e.getMessage());
+            failures.put(consumer, e);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package uk.ac.ebi.pride.data.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compact index of the spectrum identifiers of a peak file, used to resolve the spectra_ref of mzTab PSMs.
+ * <p/>
+ * Identifiers ending with a number, such as "controllerType=0 controllerNumber=1 scan=42", are dictionary encoded:
+ * the text before the number is shared by all the spectra of a run, and the numbers are kept in a sorted long array
+ * per prefix. Other identifiers are kept in a sorted array. The scan numbers found in the identifiers, or in the
+ * SCANS of MGF files, are indexed as well, so that a "scan=42" reference resolves against any identifier with that
+ * scan number. References by position, "index=3", resolve against the number of spectra.
+ * <p/>
+ * mzML files are indexed from their offset index when they have one, otherwise mzML, mzXML and MGF files are streamed.
+ */
+public final class SpectrumIdIndex {
+
+    private static final Pattern SCAN_NUMBER = Pattern.compile("(?:^|\\s)scan=(\\d{1,18})(?:\\s|$)");
+    private static final String INDEX_PREFIX = "index=";
+    private static final String SCAN_PREFIX = "scan=";
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private final int spectrumCount;
+    private final Map<String, long[]> numbersByPrefix;
+    private final String[] otherIds;
+    private final long[] scanNumbers;
+
+    private SpectrumIdIndex(int spectrumCount, Map<String, long[]> numbersByPrefix, String[] otherIds, long[] scanNumbers) {
+        this.spectrumCount = spectrumCount;
+        this.numbersByPrefix = numbersByPrefix;
+        this.otherIds = otherIds;
+        this.scanNumbers = scanNumbers;
+    }
+
+    /**
+     * Index the spectrum identifiers of a peak file, from the format detected for the file
+     *
+     * @param file mzML, mzXML or MGF file, optionally gzipped
+     * @return SpectrumIdIndex spectrum id index, null if the format of the file is not supported
+     * @throws IOException exception while reading the file
+     */
+    public static SpectrumIdIndex build(File file) throws IOException {
+        return build(file, MassSpecFileFormat.checkFormat(file));
+    }
+
+    /**
+     * Index the spectrum identifiers of a peak file
+     *
+     * @param file   mzML, mzXML or MGF file, optionally gzipped
+     * @param format format of the file
+     * @return SpectrumIdIndex spectrum id index, null if the format is not supported
+     * @throws IOException exception while reading the file
+     */
+    public static SpectrumIdIndex build(File file, MassSpecFileFormat format) throws IOException {
+        if (format == null) {
+            return null;
+        }
+
+        Builder builder = new Builder();
+        switch (format) {
+            case INDEXED_MZML:
+            case MZML:
+                // the offsets of a compressed file are meaningless
+                boolean compressed = file.getName().toLowerCase(Locale.ROOT).endsWith(".gz");
+                List<String> ids = compressed ? null : IndexedMzmlVerifier.readIds(file, "spectrum");
+                if (ids == null) {
+                    readXml(file, "spectrum", "id", builder);
+                } else {
+                    for (String id : ids) {
+                        builder.addSpectrum(id);
+                    }
+                }
+                break;
+            case MZXML:
+                readXml(file, "scan", "num", builder);
+                break;
+            case MGF:
+                readMgf(file, builder);
+                break;
+            default:
+                return null;
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return int number of spectra in the file
+     */
+    public int size() {
+        return spectrumCount;
+    }
+
+    /**
+     * Check whether a spectrum identifier, as written after ms_run[n]: in a spectra_ref, resolves to a spectrum
+     *
+     * @param spectrumId spectrum identifier
+     * @return boolean true if the spectrum exists
+     */
+    public boolean contains(String spectrumId) {
+        int numberStart = getNumberStart(spectrumId);
+        if (numberStart >= 0) {
+            String prefix = spectrumId.substring(0, numberStart);
+            long number = Long.parseLong(spectrumId.substring(numberStart));
+            long[] numbers = numbersByPrefix.get(prefix);
+            if (numbers != null && Arrays.binarySearch(numbers, number) >= 0) {
+                return true;
+            }
+            if (prefix.equals(INDEX_PREFIX)) {
+                return number < spectrumCount;
+            }
+            if (prefix.equals(SCAN_PREFIX)) {
+                return Arrays.binarySearch(scanNumbers, number) >= 0;
+            }
+            return false;
+        }
+        return Arrays.binarySearch(otherIds, spectrumId) >= 0;
+    }
+
+    /**
+     * Get the start of the number an identifier ends with
+     *
+     * @return int start of the number, -1 if the identifier does not end with a number without leading zeros
+     */
+    private static int getNumberStart(String id) {
+        int start = id.length();
+        while (start > 0 && Character.isDigit(id.charAt(start - 1)) && id.charAt(start - 1) < 128) {
+            start--;
+        }
+        int length = id.length() - start;
+        if (length == 0 || length > 18 || (length > 1 && id.charAt(start) == '0')) {
+            return -1;
+        }
+        return start;
+    }
+
+    private static void readXml(File file, String elementName, String attributeName, Builder builder) throws IOException {
+        InputStream in = FileUtil.getFileInputStream(file);
+        if (in == null) {
+            return;
+        }
+
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(new BufferedInputStream(in));
+            boolean mzXml = elementName.equals("scan");
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && elementName.equals(reader.getLocalName())) {
+                    String value = reader.getAttributeValue(null, attributeName);
+                    if (value != null) {
+                        builder.addSpectrum(mzXml ? SCAN_PREFIX + value.trim() : value);
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read the spectra of " + file.getAbsolutePath(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // the stream is closed below
+                }
+            }
+            in.close();
+        }
+    }
+
+    private static void readMgf(File file, Builder builder) throws IOException {
+        InputStream in = FileUtil.getFileInputStream(file);
+        if (in == null) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            boolean inSpectrum = false;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("BEGIN IONS")) {
+                    inSpectrum = true;
+                    builder.spectrumCount++;
+                } else if (line.startsWith("END IONS")) {
+                    inSpectrum = false;
+                } else if (inSpectrum && line.startsWith("TITLE=")) {
+                    builder.addId(line.substring(6).trim());
+                } else if (inSpectrum && line.startsWith("SCANS=")) {
+                    builder.addScanNumbers(line.substring(6).trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    /**
+     * Collects the identifiers, then sorts and dedupes them into the compact index
+     */
+    private static final class Builder {
+        private final Map<String, LongArray> numbersByPrefix = new HashMap<String, LongArray>();
+        private final List<String> otherIds = new ArrayList<String>();
+        private final LongArray scanNumbers = new LongArray();
+        private int spectrumCount;
+
+        private void addSpectrum(String id) {
+            spectrumCount++;
+            addId(id);
+        }
+
+        private void addId(String id) {
+            int numberStart = getNumberStart(id);
+            if (numberStart >= 0) {
+                String prefix = id.substring(0, numberStart);
+                LongArray numbers = numbersByPrefix.get(prefix);
+                if (numbers == null) {
+                    numbers = new LongArray();
+                    numbersByPrefix.put(prefix, numbers);
+                }
+                numbers.add(Long.parseLong(id.substring(numberStart)));
+            } else {
+                otherIds.add(id);
+            }
+
+            Matcher matcher = SCAN_NUMBER.matcher(id);
+            if (matcher.find()) {
+                scanNumbers.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+
+        /**
+         * SCANS of a MGF spectrum, a number, a range or a comma separated list of them
+         */
+        private void addScanNumbers(String scans) {
+            for (String scan : scans.split(",")) {
+                String[] range = scan.trim().split("-");
+                try {
+                    long first = Long.parseLong(range[0].trim());
+                    long last = range.length > 1 ? Long.parseLong(range[1].trim()) : first;
+                    for (long number = first; number <= last && number - first < 1000; number++) {
+                        scanNumbers.add(number);
+                    }
+                } catch (NumberFormatException e) {
+                    // not a scan number
+                }
+            }
+        }
+
+        private SpectrumIdIndex build() {
+            Map<String, long[]> sortedNumbers = new HashMap<String, long[]>();
+            for (Map.Entry<String, LongArray> entry : numbersByPrefix.entrySet()) {
+                sortedNumbers.put(entry.getKey(), entry.getValue().toSortedArray());
+            }
+
+            String[] sortedIds = new TreeSet<String>(otherIds).toArray(new String[0]);
+            return new SpectrumIdIndex(spectrumCount, sortedNumbers, sortedIds, scanNumbers.toSortedArray());
+        }
+    }
+
+    /**
+     * Growable array of longs
+     */
+    private static final class LongArray {
+        private long[] values = new long[16];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * @return long[]  sorted distinct values
+         */
+        private long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package uk.ac.ebi.pride.data.util;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import uk.ac.ebi.pride.data.model.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Structural diff between two versions of a submission, for example a resubmission and the submission it replaces.
+ * <p/>
+ * Every data file and every project metadata field is reduced to a stable 64-bit fingerprint, so the two versions
+ * are compared in a single pass over each of them rather than through the deep {@code equals} of the model objects.
+ * Data files are matched by file id. The fingerprint of a data file covers its location, its size (local files only,
+ * urls are not contacted), its type, the ids of the files it maps to, its sample metadata and its assay accession.
+ * <p/>
+ * Fingerprints of unordered values, such as sets of cv params, do not depend on the iteration order of the sets.
+ */
+public final class SubmissionDiff {
+
+    public enum ChangeType {
+        ADDED,
+        REMOVED,
+        MODIFIED
+    }
+
+    private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
+
+    /**
+     * Separates the fields hashed into a fingerprint, so that adjacent fields can not run into each other
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final List<DataFileChange> dataFileChanges;
+    private final List<MetaDataChange> metaDataChanges;
+
+    private SubmissionDiff(List<DataFileChange> dataFileChanges, List<MetaDataChange> metaDataChanges) {
+        this.dataFileChanges = Collections.unmodifiableList(dataFileChanges);
+        this.metaDataChanges = Collections.unmodifiableList(metaDataChanges);
+    }
+
+    /**
+     * Compare two versions of a submission
+     *
+     * @param previous previous version of the submission
+     * @param current  current version of the submission
+     * @return SubmissionDiff  changes from the previous to the current version
+     */
+    public static SubmissionDiff diff(Submission previous, Submission current) {
+        return new SubmissionDiff(diffDataFiles(previous.getDataFiles(), current.getDataFiles()),
+                diffMetaData(previous.getProjectMetaData(), current.getProjectMetaData()));
+    }
+
+    public List<DataFileChange> getDataFileChanges() {
+        return dataFileChanges;
+    }
+
+    public List<DataFileChange> getDataFileChanges(ChangeType type) {
+        List<DataFileChange> changes = new ArrayList<DataFileChange>();
+        for (DataFileChange change : dataFileChanges) {
+            if (change.getType() == type) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    public List<MetaDataChange> getMetaDataChanges() {
+        return metaDataChanges;
+    }
+
+    public boolean hasChanges() {
+        return !dataFileChanges.isEmpty() || !metaDataChanges.isEmpty();
+    }
+
+    /**
+     * Fingerprint a data file
+     *
+     * @param dataFile data file
+     * @return long    64-bit fingerprint
+     */
+    public static long fingerprint(DataFile dataFile) {
+        Hasher hasher = FINGERPRINT.newHasher();
+        hasher.putInt(dataFile.getFileId());
+        putString(hasher, dataFile.getFileType() == null ? null : dataFile.getFileType().name());
+        putString(hasher, dataFile.isFile() ? dataFile.getFile().getAbsolutePath() : null);
+        putString(hasher, dataFile.isUrl() ? dataFile.getUrl().toString() : null);
+        hasher.putLong(dataFile.isFile() ? dataFile.getFile().length() : -1);
+
+        // mapped files by id, in id order
+        List<DataFile> fileMappings = dataFile.getFileMappings();
+        int[] mappedFileIds = new int[fileMappings.size()];
+        for (int i = 0; i < mappedFileIds.length; i++) {
+            mappedFileIds[i] = fileMappings.get(i).getFileId();
+        }
+        Arrays.sort(mappedFileIds);
+        hasher.putInt(mappedFileIds.length);
+        for (int mappedFileId : mappedFileIds) {
+            hasher.putInt(mappedFileId);
+        }
+
+        // sample metadata
+        SampleMetaData sampleMetaData = dataFile.getSampleMetaData();
+        for (SampleMetaData.Type type : SampleMetaData.Type.values()) {
+            hasher.putLong(sampleMetaData == null ? 0 : fingerprintParams(sampleMetaData.getMetaData(type)));
+        }
+
+        putString(hasher, dataFile.getAssayAccession());
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Fingerprint every project metadata field, keyed by the field names used in submission files
+     *
+     * @param projectMetaData project metadata
+     * @return Map<String, Long>   64-bit fingerprint of each field
+     */
+    public static Map<String, Long> fingerprint(ProjectMetaData projectMetaData) {
+        Map<String, Long> fingerprints = new LinkedHashMap<String, Long>();
+
+        Contact submitter = projectMetaData.getSubmitterContact();
+        fingerprints.put(Constant.SUBMITTER_NAME, fingerprintValue(submitter == null ? null : submitter.getName()));
+        fingerprints.put(Constant.SUBMITTER_EMAIL, fingerprintValue(submitter == null ? null : submitter.getEmail()));
+        fingerprints.put(Constant.SUBMITTER_AFFILIATION, fingerprintValue(submitter == null ? null : submitter.getAffiliation()));
+        fingerprints.put(Constant.SUBMITTER_USER_NAME, fingerprintValue(submitter == null ? null : submitter.getUserName()));
+
+        Contact labHead = projectMetaData.getLabHeadContact();
+        fingerprints.put(Constant.LAB_HEAD_NAME, fingerprintValue(labHead == null ? null : labHead.getName()));
+        fingerprints.put(Constant.LAB_HEAD_EMAIL, fingerprintValue(labHead == null ? null : labHead.getEmail()));
+        fingerprints.put(Constant.LAB_HEAD_AFFILIATION, fingerprintValue(labHead == null ? null : labHead.getAffiliation()));
+
+        fingerprints.put(Constant.PROJECT_TITLE, fingerprintValue(projectMetaData.getProjectTitle()));
+        fingerprints.put(Constant.PROJECT_DESC, fingerprintValue(projectMetaData.getProjectDescription()));
+        fingerprints.put(Constant.PROJECT_TAG, fingerprintValues(projectMetaData.getProjectTags()));
+        fingerprints.put(Constant.KEYWORDS, fingerprintValue(projectMetaData.getKeywords()));
+        fingerprints.put(Constant.SAMPLE_PROCESSING_PROTOCOL, fingerprintValue(projectMetaData.getSampleProcessingProtocol()));
+        fingerprints.put(Constant.DATA_PROCESSING_PROTOCOL, fingerprintValue(projectMetaData.getDataProcessingProtocol()));
+        fingerprints.put(Constant.OTHER_OMICS_LINK, fingerprintValue(projectMetaData.getOtherOmicsLink()));
+        fingerprints.put(Constant.EXPERIMENT_TYPE, fingerprintParams(projectMetaData.getMassSpecExperimentMethods()));
+        fingerprints.put(Constant.SUBMISSION_TYPE, fingerprintValue(projectMetaData.getSubmissionType()));
+        fingerprints.put(Constant.REASON_FOR_PARTIAL, fingerprintValue(projectMetaData.getReasonForPartialSubmission()));
+        fingerprints.put(Constant.PUBMED_ID, fingerprintValues(projectMetaData.getPubmedIds()));
+        fingerprints.put(Constant.DOI, fingerprintValues(projectMetaData.getDois()));
+        fingerprints.put(Constant.RESUBMISSION_PX_ACCESSION, fingerprintValue(projectMetaData.getResubmissionPxAccession()));
+        fingerprints.put(Constant.REANALYSIS_PX_ACCESSION, fingerprintValues(projectMetaData.getReanalysisAccessions()));
+
+        fingerprints.put(Constant.SPECIES, fingerprintParams(projectMetaData.getSpecies()));
+        fingerprints.put(Constant.TISSUE, fingerprintParams(projectMetaData.getTissues()));
+        fingerprints.put(Constant.CELL_TYPE, fingerprintParams(projectMetaData.getCellTypes()));
+        fingerprints.put(Constant.DISEASE, fingerprintParams(projectMetaData.getDiseases()));
+        fingerprints.put(Constant.INSTRUMENT, fingerprintParams(projectMetaData.getInstruments()));
+        fingerprints.put(Constant.MODIFICATION, fingerprintParams(projectMetaData.getModifications()));
+        fingerprints.put(Constant.QUANTIFICATION, fingerprintParams(projectMetaData.getQuantifications()));
+        fingerprints.put(Constant.ADDITIONAL, fingerprintParams(projectMetaData.getAdditional()));
+
+        return fingerprints;
+    }
+
+    private static List<DataFileChange> diffDataFiles(List<DataFile> previousDataFiles, List<DataFile> currentDataFiles) {
+        Map<Integer, DataFile> previousById = new HashMap<Integer, DataFile>(previousDataFiles.size() * 2);
+        for (DataFile dataFile : previousDataFiles) {
+            previousById.put(dataFile.getFileId(), dataFile);
+        }
+
+        List<DataFileChange> changes = new ArrayList<DataFileChange>();
+        Set<Integer> currentIds = new HashSet<Integer>(currentDataFiles.size() * 2);
+        for (DataFile current : currentDataFiles) {
+            currentIds.add(current.getFileId());
+            DataFile previous = previousById.get(current.getFileId());
+            if (previous == null) {
+                changes.add(new DataFileChange(ChangeType.ADDED, current.getFileId(), null, current));
+            } else if (fingerprint(previous) != fingerprint(current)) {
+                changes.add(new DataFileChange(ChangeType.MODIFIED, current.getFileId(), previous, current));
+            }
+        }
+
+        for (DataFile previous : previousDataFiles) {
+            if (!currentIds.contains(previous.getFileId())) {
+                changes.add(new DataFileChange(ChangeType.REMOVED, previous.getFileId(), previous, null));
+            }
+        }
+
+        return changes;
+    }
+
+    private static List<MetaDataChange> diffMetaData(ProjectMetaData previousMetaData, ProjectMetaData currentMetaData) {
+        Map<String, Long> previousFingerprints = fingerprint(previousMetaData);
+        Map<String, Long> currentFingerprints = fingerprint(currentMetaData);
+
+        List<MetaDataChange> changes = new ArrayList<MetaDataChange>();
+        for (Map.Entry<String, Long> entry : currentFingerprints.entrySet()) {
+            long previous = previousFingerprints.get(entry.getKey());
+            long current = entry.getValue();
+            if (previous != current) {
+                ChangeType type = previous == 0 ? ChangeType.ADDED : (current == 0 ? ChangeType.REMOVED : ChangeType.MODIFIED);
+                changes.add(new MetaDataChange(type, entry.getKey()));
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Fingerprint a single value, 0 for a missing value
+     */
+    private static long fingerprintValue(Object value) {
+        if (value == null || value.toString().trim().isEmpty()) {
+            return 0;
+        }
+        return FINGERPRINT.hashString(value.toString(), StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Fingerprint an unordered collection of values, 0 for a missing or empty collection
+     */
+    private static long fingerprintValues(Collection<?> values) {
+        long fingerprint = 0;
+        if (values != null) {
+            for (Object value : values) {
+                // addition is commutative, so the iteration order does not matter
+                fingerprint += fingerprintValue(value);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Fingerprint an unordered collection of params, 0 for a missing or empty collection
+     */
+    private static long fingerprintParams(Collection<? extends Param> params) {
+        long fingerprint = 0;
+        if (params != null) {
+            for (Param param : params) {
+                Hasher hasher = FINGERPRINT.newHasher();
+                if (param instanceof CvParam) {
+                    putString(hasher, ((CvParam) param).getCvLabel());
+                    putString(hasher, ((CvParam) param).getAccession());
+                }
+                putString(hasher, param.getName());
+                putString(hasher, param.getValue());
+                fingerprint += hasher.hash().asLong();
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        if (value != null) {
+            hasher.putString(value, StandardCharsets.UTF_8);
+        }
+        hasher.putChar(FIELD_SEPARATOR);
+    }
+
+    /**
+     * Change to a single data file, identified by its file id
+     */
+    public static final class DataFileChange {
+        private final ChangeType type;
+        private final int fileId;
+        private final DataFile previous;
+        private final DataFile current;
+
+        private DataFileChange(ChangeType type, int fileId, DataFile previous, DataFile current) {
+            this.type = type;
+            this.fileId = fileId;
+            this.previous = previous;
+            this.current = current;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public int getFileId() {
+            return fileId;
+        }
+
+        /**
+         * @return DataFile  data file in the previous version, null if it has been added
+         */
+        public DataFile getPrevious() {
+            return previous;
+        }
+
+        /**
+         * @return DataFile  data file in the current version, null if it has been removed
+         */
+        public DataFile getCurrent() {
+            return current;
+        }
+
+        @Override
+        public String toString() {
+            return type + " data file " + fileId;
+        }
+    }
+
+    /**
+     * Change to a single project metadata field, identified by its name in submission files
+     */
+    public static final class MetaDataChange {
+        private final ChangeType type;
+        private final String field;
+
+        private MetaDataChange(ChangeType type, String field) {
+            this.type = type;
+            this.field = field;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + field;
+        }
+    }
+}
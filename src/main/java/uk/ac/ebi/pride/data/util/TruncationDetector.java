@@ -0,0 +1,453 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Spots truncated and corrupted files from a few bounded reads at their start and end.
+ * <p/>
+ * Containers are checked first:
+ * <ul>
+ * <li>gzip files up to {@link #DEFAULT_FULL_CHECK_SIZE}, or up to the size given, are inflated, which verifies the
+ * CRC and the size of their trailer. Larger ones are only inflated at their start: a missing trailer is then only
+ * found for BGZF files, which must end with their empty end of file block.</li>
+ * <li>zip files must end with an end of central directory record pointing at their central directory.</li>
+ * </ul>
+ * Then the content of uncompressed files, and of gzip files which have been fully inflated, is checked by format:
+ * xml files must end with the closing tag of their root element, MGF files with END IONS, and the last row of
+ * tabular files, such as mzTab, must have the columns of the row before it.
+ */
+public final class TruncationDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(TruncationDetector.class);
+
+    public static final long DEFAULT_FULL_CHECK_SIZE = 1024 * 1024;
+    static final int TAIL_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] BGZF_EOF = new byte[]{
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43,
+            0x02, 0x00, 0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+
+    private static final Set<MassSpecFileFormat> XML_FORMATS = EnumSet.of(MassSpecFileFormat.IMZML,
+            MassSpecFileFormat.INDEXED_MZML, MassSpecFileFormat.MZDATA, MassSpecFileFormat.MZIDENTML,
+            MassSpecFileFormat.MZML, MassSpecFileFormat.MZXML, MassSpecFileFormat.PRIDE, MassSpecFileFormat.XTANDEM,
+            MassSpecFileFormat.PEPTIDE_PROPHET, MassSpecFileFormat.PROTEIN_PROPHET, MassSpecFileFormat.OMSSA_OMX);
+    private static final Set<MassSpecFileFormat> TABULAR_FORMATS = EnumSet.of(MassSpecFileFormat.MZTAB,
+            MassSpecFileFormat.TSV, MassSpecFileFormat.CSV, MassSpecFileFormat.EXPERIMENTAL_DESIGN_TSV,
+            MassSpecFileFormat.EXPERIMENTAL_DESIGN_TXT, MassSpecFileFormat.CRUX);
+
+    private static final Map<String, String> MZTAB_HEADERS = new HashMap<String, String>();
+
+    static {
+        MZTAB_HEADERS.put("PRT", "PRH");
+        MZTAB_HEADERS.put("PEP", "PEH");
+        MZTAB_HEADERS.put("PSM", "PSH");
+        MZTAB_HEADERS.put("SML", "SMH");
+        MZTAB_HEADERS.put("SMF", "SFH");
+        MZTAB_HEADERS.put("SME", "SEH");
+    }
+
+    private TruncationDetector() {
+    }
+
+    /**
+     * Check a file, using the format detected for it
+     *
+     * @param file file to check
+     * @return Result  problems found
+     * @throws IOException exception while reading the file
+     */
+    public static Result check(File file) throws IOException {
+        return check(file, MassSpecFileFormat.checkFormat(file));
+    }
+
+    /**
+     * Check a file, fully inflating gzip files only up to {@link #DEFAULT_FULL_CHECK_SIZE}
+     *
+     * @param file   file to check, optionally gzipped or zipped
+     * @param format format of the content of the file, may be null
+     * @return Result  problems found
+     * @throws IOException exception while reading the file
+     */
+    public static Result check(File file, MassSpecFileFormat format) throws IOException {
+        return check(file, format, DEFAULT_FULL_CHECK_SIZE);
+    }
+
+    /**
+     * Check a file, inflating gzip files fully only up to a size
+     *
+     * @param file          file to check, optionally gzipped or zipped
+     * @param format        format of the content of the file, may be null
+     * @param fullCheckSize size up to which gzip files are fully inflated, larger ones are not fully checked,
+     *                      {@link Long#MAX_VALUE} to inflate them whatever their size
+     * @return Result  problems found
+     * @throws IOException exception while reading the file
+     */
+    public static Result check(File file, MassSpecFileFormat format, long fullCheckSize) throws IOException {
+        Result result = new Result(file, format);
+        String name = file.getName().toLowerCase(Locale.ROOT);
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size == 0) {
+                result.addProblem("File is empty");
+            } else if (name.endsWith(".gz")) {
+                checkGzip(file, channel, fullCheckSize, result);
+            } else if (name.endsWith(".zip")) {
+                result.checked = true;
+                result.addProblem(ZipArchiveInspector.checkCentralDirectory(channel));
+            } else {
+                int tailSize = (int) Math.min(size, TAIL_SIZE);
+                checkContent(FileUtil.read(channel, 0, (int) Math.min(size, FileProbe.HEAD_SIZE)),
+                        FileUtil.read(channel, size - tailSize, tailSize), size == tailSize, result);
+            }
+        } finally {
+            channel.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Check several files concurrently
+     *
+     * @param files       formats of the content of the files to check
+     * @param parallelism maximum number of files checked at the same time
+     * @return Map<File, Result>   results by file, in the order of the files, files which can not be read are left out
+     * @throws InterruptedIOException if interrupted while waiting for the results
+     */
+    public static Map<File, Result> checkAll(Map<File, MassSpecFileFormat> files, int parallelism) throws InterruptedIOException {
+        Map<File, Future<Result>> pending = new LinkedHashMap<File, Future<Result>>();
+        Map<File, Result> results = new LinkedHashMap<File, Result>();
+
+        ExecutorService executor = ExecutorUtil.newBoundedIoExecutor(Math.min(parallelism, Math.max(1, files.size())), "truncation-detector");
+        try {
+            for (final Map.Entry<File, MassSpecFileFormat> entry : files.entrySet()) {
+                pending.put(entry.getKey(), executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() throws Exception {
+                        return check(entry.getKey(), entry.getValue());
+                    }
+                }));
+            }
+
+            for (Map.Entry<File, Future<Result>> entry : pending.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to check " + entry.getKey().getAbsolutePath() + " for truncation", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking files for truncation");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return results;
+    }
+
+    /**
+     * Check content which has been read elsewhere, such as by a {@link SharedFileScan}
+     *
+     * @param file          file the content belongs to
+     * @param format        format of the content, may be null
+     * @param head          first bytes of the content
+     * @param tail          last bytes of the content
+     * @param contentLength length of the whole content
+     * @param compressed    true if the content has been inflated from a gzip file, checking its CRC and size
+     * @param problem       problem found while reading the content, such as a corrupted gzip stream, may be null
+     * @return Result  problems found
+     */
+    static Result check(File file, MassSpecFileFormat format, byte[] head, byte[] tail, long contentLength,
+                        boolean compressed, String problem) {
+        Result result = new Result(file, format);
+        result.checked = compressed;
+        if (problem != null) {
+            result.addProblem(problem);
+        } else if (contentLength == 0 && !compressed) {
+            result.addProblem("File is empty");
+        } else {
+            checkContent(head, tail, contentLength <= tail.length, result);
+        }
+        return result;
+    }
+
+    private static void checkGzip(File file, FileChannel channel, long fullCheckSize, Result result) throws IOException {
+        result.checked = true;
+        long size = channel.size();
+        byte[] header = FileUtil.read(channel, 0, 18);
+        if (header.length < 18 || header[0] != 0x1f || header[1] != (byte) 0x8b || header[2] != 8) {
+            result.addProblem("Not a gzip file, or too short to hold a gzip header and trailer");
+            return;
+        }
+
+        boolean fullCheck = size <= fullCheckSize;
+        if (!fullCheck && isBgzf(header)
+                && !Arrays.equals(BGZF_EOF, FileUtil.read(channel, size - BGZF_EOF.length, BGZF_EOF.length))) {
+            result.addProblem("BGZF file does not end with its end of file block");
+        }
+
+        // inflate the whole file, or its start only, keeping the first and last bytes of the content
+        byte[] head = new byte[FileProbe.HEAD_SIZE];
+        int headLength = 0;
+        byte[] tail = new byte[TAIL_SIZE];
+        long contentLength = 0;
+        InputStream in = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                if (headLength < head.length) {
+                    int length = Math.min(read, head.length - headLength);
+                    System.arraycopy(buffer, 0, head, headLength, length);
+                    headLength += length;
+                }
+                appendToTail(tail, contentLength, buffer, read);
+                contentLength += read;
+                if (!fullCheck && contentLength >= head.length) {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            result.addProblem("Unexpected end of the gzip stream, the file is truncated");
+            return;
+        } catch (ZipException e) {
+            result.addProblem("Corrupted gzip stream: " + e.getMessage());
+            return;
+        } finally {
+            in.close();
+        }
+
+        result.fullyChecked = fullCheck;
+        if (fullCheck) {
+            checkContent(Arrays.copyOf(head, headLength), getTail(tail, contentLength),
+                    contentLength <= TAIL_SIZE, result);
+        }
+    }
+
+    private static boolean isBgzf(byte[] header) {
+        // FEXTRA flag, with a BC subfield
+        return (header[3] & 4) != 0 && header[12] == 'B' && header[13] == 'C';
+    }
+
+    /**
+     * Keep the last bytes of a stream in a ring buffer
+     */
+    private static void appendToTail(byte[] tail, long position, byte[] bytes, int length) {
+        int from = Math.max(0, length - tail.length);
+        for (int i = from; i < length; i++) {
+            tail[(int) ((position + i) % tail.length)] = bytes[i];
+        }
+    }
+
+    static byte[] getTail(byte[] ring, long contentLength) {
+        if (contentLength <= ring.length) {
+            return Arrays.copyOf(ring, (int) contentLength);
+        }
+        int start = (int) (contentLength % ring.length);
+        byte[] tail = new byte[ring.length];
+        System.arraycopy(ring, start, tail, 0, ring.length - start);
+        System.arraycopy(ring, 0, tail, ring.length - start, start);
+        return tail;
+    }
+
+    /**
+     * Check the end of the content according to its format
+     *
+     * @param head    first bytes of the content
+     * @param tail    last bytes of the content
+     * @param whole   true if the tail is the whole content
+     * @param result  receives the problems
+     */
+    private static void checkContent(byte[] head, byte[] tail, boolean whole, Result result) {
+        MassSpecFileFormat format = result.format;
+        if (format == null) {
+            return;
+        }
+
+        if (XML_FORMATS.contains(format)) {
+            result.checked = true;
+            checkXml(head, tail, result);
+        } else if (TABULAR_FORMATS.contains(format)) {
+            result.checked = true;
+            checkTabular(tail, whole, format == MassSpecFileFormat.CSV ? ',' : '\t', format == MassSpecFileFormat.MZTAB, result);
+        } else if (format == MassSpecFileFormat.MGF) {
+            result.checked = true;
+            String end = new String(tail, StandardCharsets.ISO_8859_1).trim();
+            if (!end.isEmpty() && !end.toUpperCase(Locale.ROOT).endsWith("END IONS")) {
+                result.addProblem("MGF file does not end with END IONS");
+            }
+        }
+    }
+
+    private static void checkXml(byte[] head, byte[] tail, Result result) {
+        String root = getRootElementName(new String(head, StandardCharsets.ISO_8859_1));
+        if (root == null) {
+            result.addProblem("No root element found at the start of the file");
+            return;
+        }
+
+        String end = new String(tail, StandardCharsets.ISO_8859_1).trim();
+        // comments and processing instructions may follow the root element
+        while (end.endsWith("-->") || end.endsWith("?>")) {
+            int start = end.endsWith("-->") ? end.lastIndexOf("<!--") : end.lastIndexOf("<?");
+            if (start < 0) {
+                break;
+            }
+            end = end.substring(0, start).trim();
+        }
+
+        if (!Pattern.compile("</\\s*" + Pattern.quote(root) + "\\s*>$").matcher(end).find()) {
+            result.addProblem("The file does not end with the closing tag of its root element " + root);
+        }
+    }
+
+    /**
+     * Get the name of the first element, skipping the xml declaration, the comments and the document type
+     */
+    private static String getRootElementName(String head) {
+        int index = 0;
+        while ((index = head.indexOf('<', index)) >= 0 && index + 1 < head.length()) {
+            char next = head.charAt(index + 1);
+            if (head.startsWith("<!--", index)) {
+                int end = head.indexOf("-->", index);
+                if (end < 0) {
+                    return null;
+                }
+                index = end + 3;
+            } else if (next == '?' || next == '!') {
+                index = head.indexOf('>', index);
+                if (index < 0) {
+                    return null;
+                }
+            } else {
+                int end = index + 1;
+                while (end < head.length() && !Character.isWhitespace(head.charAt(end))
+                        && head.charAt(end) != '>' && head.charAt(end) != '/') {
+                    end++;
+                }
+                return end > index + 1 ? head.substring(index + 1, end) : null;
+            }
+        }
+        return null;
+    }
+
+    private static void checkTabular(byte[] tail, boolean whole, char separator, boolean mzTab, Result result) {
+        if (tail.length == 0 || tail[tail.length - 1] == '\n') {
+            // the last row is complete
+            return;
+        }
+
+        String[] lines = new String(tail, StandardCharsets.UTF_8).split("\r?\n", -1);
+        // the first line of a tail is usually cut by the tail itself
+        int first = whole ? 0 : 1;
+        String last = lines[lines.length - 1];
+        String prefix = mzTab && last.length() >= 3 ? last.substring(0, 3) : null;
+        String header = prefix == null ? null : MZTAB_HEADERS.get(prefix);
+
+        for (int i = lines.length - 2; i >= first; i--) {
+            String line = lines[i];
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (prefix != null && !line.startsWith(prefix) && (header == null || !line.startsWith(header))) {
+                continue;
+            }
+
+            int expected = countColumns(line, separator);
+            int actual = countColumns(last, separator);
+            if (actual != expected) {
+                result.addProblem("The last row has " + actual + " columns instead of " + expected
+                        + " and no line terminator, the file is truncated");
+            }
+            return;
+        }
+    }
+
+    /**
+     * Count the columns of a row, separators within double quotes are ignored
+     */
+    private static int countColumns(String line, char separator) {
+        int count = 1;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Outcome of the truncation check of a file
+     */
+    public static final class Result {
+        private final File file;
+        private final MassSpecFileFormat format;
+        private final List<String> problems = new ArrayList<String>();
+        private boolean checked;
+        private boolean fullyChecked = true;
+
+        private Result(File file, MassSpecFileFormat format) {
+            this.file = file;
+            this.format = format;
+        }
+
+        private void addProblem(String problem) {
+            if (problem != null) {
+                checked = true;
+                problems.add(problem);
+            }
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public MassSpecFileFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * @return boolean true if at least one check applies to the file
+         */
+        public boolean isChecked() {
+            return checked;
+        }
+
+        /**
+         * @return boolean false for large gzip files, of which only the start has been inflated
+         */
+        public boolean isFullyChecked() {
+            return fullyChecked;
+        }
+
+        /**
+         * @return boolean true if the file looks truncated or corrupted
+         */
+        public boolean isSuspect() {
+            return !problems.isEmpty();
+        }
+
+        public List<String> getProblems() {
+            return Collections.unmodifiableList(problems);
+        }
+    }
+}
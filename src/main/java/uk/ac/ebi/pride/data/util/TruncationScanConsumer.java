@@ -0,0 +1,102 @@
+package uk.ac.ebi.pride.data.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.ZipException;
+
+/**
+ * {@link SharedFileScan} consumer checking a file for truncation and corruption, as {@link TruncationDetector}
+ * does. As the whole file is read anyway, gzip files are fully inflated whatever their size. zip files are checked
+ * from their central directory by {@link TruncationDetector#check(File, MassSpecFileFormat)}.
+ */
+public class TruncationScanConsumer extends DecompressingScanConsumer {
+
+    private final MassSpecFileFormat format;
+    private File file;
+    private boolean gzip;
+    private boolean zip;
+    private byte[] head;
+    private int headLength;
+    private byte[] tail;
+    private String problem;
+    private TruncationDetector.Result result;
+
+    /**
+     * @param format format of the content of the file, may be null
+     */
+    public TruncationScanConsumer(MassSpecFileFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * @return TruncationDetector.Result   problems found, null until the scan has finished
+     */
+    public TruncationDetector.Result getResult() {
+        return result;
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk, long offset) throws IOException {
+        if (zip || problem != null) {
+            return;
+        }
+        try {
+            super.accept(chunk, offset);
+        } catch (ZipException e) {
+            problem = "Corrupted gzip stream: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (zip) {
+            result = TruncationDetector.check(file, format);
+            return;
+        }
+        if (problem == null) {
+            try {
+                super.finish();
+                return;
+            } catch (EOFException e) {
+                problem = "Unexpected end of the gzip stream, the file is truncated";
+            }
+        }
+        result = TruncationDetector.check(file, format, null, null, 0, true, problem);
+    }
+
+    @Override
+    protected void startContent(File file) throws IOException {
+        this.file = file;
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        gzip = name.endsWith(".gz");
+        zip = name.endsWith(".zip");
+        head = new byte[FileProbe.HEAD_SIZE];
+        headLength = 0;
+        tail = new byte[TruncationDetector.TAIL_SIZE];
+        problem = null;
+        result = null;
+    }
+
+    @Override
+    protected void acceptContent(ByteBuffer content, long offset) throws IOException {
+        int start = content.position();
+        int length = content.remaining();
+        for (int i = 0; i < length && headLength < head.length; i++) {
+            head[headLength++] = content.get(start + i);
+        }
+        // only the bytes which may end up in the tail are kept
+        for (int i = Math.max(0, length - tail.length); i < length; i++) {
+            tail[(int) ((offset + i) % tail.length)] = content.get(start + i);
+        }
+    }
+
+    @Override
+    protected void finishContent(long contentLength) throws IOException {
+        result = TruncationDetector.check(file, format, Arrays.copyOf(head, headLength),
+                TruncationDetector.getTail(tail, contentLength), contentLength, gzip, null);
+    }
+}
@@ -0,0 +1,255 @@
+package uk.ac.ebi.pride.data.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.model.DataFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Resolves the size, last modified time and content type of remote files, using HEAD requests for http urls.
+ * <p/>
+ * Results are cached per url for a time to live, failures are not cached. Batches of urls are resolved concurrently.
+ * Connections are closed without being disconnected, so that keep-alive connections to the same host are reused.
+ */
+public class UrlMetadataResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(UrlMetadataResolver.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 10 * 60 * 1000L;
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10 * 1000;
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final long MAXIMUM_SIZE = 100000;
+
+    private static final UrlMetadataResolver defaultResolver = new UrlMetadataResolver(
+            DEFAULT_TIME_TO_LIVE_MILLIS, DEFAULT_TIMEOUT_MILLIS, DEFAULT_PARALLELISM);
+
+    private final int timeoutMillis;
+    private final int parallelism;
+    private final Cache<String, UrlMetadata> metadata;
+
+    /**
+     * @param timeToLiveMillis how long resolved metadata is reused
+     * @param timeoutMillis    connect and read timeout of each request
+     * @param parallelism      maximum number of concurrent requests of a batch
+     */
+    public UrlMetadataResolver(long timeToLiveMillis, int timeoutMillis, int parallelism) {
+        this.timeoutMillis = timeoutMillis;
+        this.parallelism = parallelism;
+        this.metadata = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(timeToLiveMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Shared resolver, used by {@link DataFile#getFileSize()}
+     */
+    public static UrlMetadataResolver getDefault() {
+        return defaultResolver;
+    }
+
+    /**
+     * Resolve the metadata of a url
+     *
+     * @param url remote file
+     * @return UrlMetadata metadata, with a size of -1 if the url could not be resolved
+     */
+    public UrlMetadata resolve(URL url) {
+        // keyed by the external form, URL.equals resolves host names
+        String key = url.toExternalForm();
+        UrlMetadata cached = metadata.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        UrlMetadata resolved = fetch(url);
+        if (resolved.isResolved()) {
+            metadata.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolve the metadata of a batch of urls concurrently
+     *
+     * @param urls remote files
+     * @return Map<URL, UrlMetadata>   metadata of each url, in the order of the given urls
+     */
+    public Map<URL, UrlMetadata> resolveAll(Collection<URL> urls) {
+        // keyed by the external form, as the cache is, URL.equals and URL.hashCode resolve host names
+        Map<String, UrlMetadata> results = new HashMap<String, UrlMetadata>();
+        Map<String, Future<UrlMetadata>> pending = new LinkedHashMap<String, Future<UrlMetadata>>();
+
+        ExecutorService executor = null;
+        try {
+            for (final URL url : urls) {
+                String key = url.toExternalForm();
+                UrlMetadata cached = metadata.getIfPresent(key);
+                if (cached != null) {
+                    results.put(key, cached);
+                } else if (!pending.containsKey(key)) {
+                    if (executor == null) {
+                        executor = ExecutorUtil.newBoundedIoExecutor(parallelism, "url-metadata");
+                    }
+                    pending.put(key, executor.submit(new Callable<UrlMetadata>() {
+                        @Override
+                        public UrlMetadata call() throws Exception {
+                            return resolve(url);
+                        }
+                    }));
+                }
+            }
+
+            for (Map.Entry<String, Future<UrlMetadata>> entry : pending.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    results.put(entry.getKey(), UrlMetadata.unresolved());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            if (executor != null) {
+                ExecutorUtil.shutdown(executor);
+            }
+        }
+
+        // keep the order of the given urls
+        Map<URL, UrlMetadata> orderedResults = new LinkedHashMap<URL, UrlMetadata>();
+        for (URL url : urls) {
+            UrlMetadata result = results.get(url.toExternalForm());
+            orderedResults.put(url, result == null ? UrlMetadata.unresolved() : result);
+        }
+        return orderedResults;
+    }
+
+    /**
+     * Resolve the metadata of all the url data files, so that later calls to {@link DataFile#getFileSize()} are
+     * served from the cache
+     */
+    public void resolveDataFiles(Collection<DataFile> dataFiles) {
+        List<URL> urls = new ArrayList<URL>();
+        for (DataFile dataFile : dataFiles) {
+            if (dataFile.isUrl()) {
+                urls.add(dataFile.getUrl());
+            }
+        }
+        resolveAll(urls);
+    }
+
+    public void invalidate(URL url) {
+        metadata.invalidate(url.toExternalForm());
+    }
+
+    public void invalidateAll() {
+        metadata.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return metadata.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return metadata.stats().missCount();
+    }
+
+    private UrlMetadata fetch(URL url) {
+        URLConnection connection = null;
+        try {
+            connection = url.openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                httpConnection.setRequestMethod("HEAD");
+                int responseCode = httpConnection.getResponseCode();
+                if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                    logger.debug("Failed to resolve " + url + ": HTTP " + responseCode);
+                    return UrlMetadata.unresolved();
+                }
+            }
+
+            // closing rather than disconnecting returns the connection to the keep-alive cache
+            InputStream in = connection.getInputStream();
+            in.close();
+
+            return new UrlMetadata(connection.getContentLengthLong(), connection.getLastModified(),
+                    connection.getContentType(), System.currentTimeMillis());
+        } catch (IOException e) {
+            logger.debug("Failed to resolve " + url, e);
+            return UrlMetadata.unresolved();
+        }
+    }
+
+    /**
+     * Metadata of a remote file
+     */
+    public static final class UrlMetadata {
+        private final long size;
+        private final long lastModified;
+        private final String contentType;
+        private final long resolvedMillis;
+
+        private UrlMetadata(long size, long lastModified, String contentType, long resolvedMillis) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.resolvedMillis = resolvedMillis;
+        }
+
+        private static UrlMetadata unresolved() {
+            return new UrlMetadata(-1, 0, null, 0);
+        }
+
+        /**
+         * @return boolean true if the url could be reached
+         */
+        public boolean isResolved() {
+            return resolvedMillis > 0;
+        }
+
+        /**
+         * @return long    size in bytes, -1 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return long    last modified time in milliseconds, 0 if unknown
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getResolvedMillis() {
+            return resolvedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "UrlMetadata{" +
+                    "size=" + size +
+                    ", lastModified=" + lastModified +
+                    ", contentType='" + contentType + '\'' +
+                    ", resolvedMillis=" + resolvedMillis +
+                    '}';
+        }
+    }
+}
@@ -1,15 +1,6 @@
 package uk.ac.ebi.pride.data.util;
 
-import org.apache.commons.io.FileUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.URL;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -17,25 +8,23 @@ import java.util.Set;
  */
 public class ValidateAnnotationFiles {
 
-    public static Set<String> getValidProjectTags() throws IOException {
+    /**
+     * Permitted project tags, shared by all the validations in the JVM
+     */
+    private static final CachedVocabulary PROJECT_TAGS = new CachedVocabulary("project-tags",
+            Constant.PROJECT_TAG_FILE_PROPERTY, Constant.PROJECT_TAG_FILE, CachedVocabulary.DEFAULT_TIME_TO_LIVE_MILLIS);
 
-        Set<String> validProjectTags = new HashSet<>();
-        URL url;
-        try {
-            url = new URL(Constant.PROJECT_TAG_FILE);
-            File fileTemp = File.createTempFile("project-citations", ".csv");
-            FileUtils.copyURLToFile(url, fileTemp);
-            String line;
-            BufferedReader br = new BufferedReader(new FileReader(fileTemp));
-            br.readLine(); // read the header
-            while ((line = br.readLine()) != null) {
-                validProjectTags.add(line.trim());
-            }
-            fileTemp.deleteOnExit();
+    /**
+     * Get the permitted project tags, they are only downloaded once and refreshed in the background
+     *
+     * @return Set<String> immutable set of project tags
+     * @throws IOException if the project tags have never been loaded and none of their sources can be read
+     */
+    public static Set<String> getValidProjectTags() throws IOException {
+        return PROJECT_TAGS.getTerms();
+    }
 
-        } catch (Exception e) {
-            throw new IOException("Error while reading project-citations file from - " + e.getMessage());
-        }
-        return validProjectTags;
+    public static CachedVocabulary getProjectTagVocabulary() {
+        return PROJECT_TAGS;
     }
 }
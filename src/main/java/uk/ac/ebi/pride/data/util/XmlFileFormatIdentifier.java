@@ -0,0 +1,22 @@
+package uk.ac.ebi.pride.data.util;
+
+/**
+ * Identifies a xml file format from the root element of the document, which is found by streaming through the
+ * start of the file rather than by matching its first lines.
+ * <p/>
+ * When no root element can be found, e.g. the content is not well formed, the content sample is matched instead.
+ */
+public abstract class XmlFileFormatIdentifier extends FileFormatIdentifier {
+
+    @Override
+    protected MassSpecFileFormat doIdentifyFormat(FileProbe probe) {
+        XmlRootElement rootElement = probe.getXmlRootElement();
+        if (rootElement == null) {
+            return super.doIdentifyFormat(probe);
+        }
+        return doIdentifyFormatFromRootElement(rootElement);
+    }
+
+    // Delegate format identification to subclasses
+    protected abstract MassSpecFileFormat doIdentifyFormatFromRootElement(XmlRootElement rootElement);
+}
@@ -0,0 +1,108 @@
+package uk.ac.ebi.pride.data.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+
+/**
+ * Root element of a xml document, found by streaming through the start of the document.
+ * <p/>
+ * Only the given bytes are read, the prolog, comments, processing instructions and DOCTYPE before the root element
+ * are skipped. DTDs and external entities are not processed. The encoding is taken from the byte order mark or the
+ * xml declaration.
+ */
+public final class XmlRootElement {
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private final String localName;
+    private final String namespaceUri;
+
+    public XmlRootElement(String localName, String namespaceUri) {
+        this.localName = localName;
+        this.namespaceUri = namespaceUri == null ? "" : namespaceUri;
+    }
+
+    /**
+     * Find the root element in the start of a xml document
+     *
+     * @param content start of the document, may end anywhere after the root element start tag
+     * @return XmlRootElement  root element, null if the content is not xml or ends before the root element
+     */
+    public static XmlRootElement sniff(byte[] content) {
+        if (content == null || content.length == 0) {
+            return null;
+        }
+
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(content));
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return new XmlRootElement(reader.getLocalName(), reader.getNamespaceURI());
+                }
+            }
+        } catch (XMLStreamException e) {
+            // not xml, or the root element is beyond the given content
+        } catch (RuntimeException e) {
+            // some parsers report malformed content as runtime exceptions
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing to release
+                }
+            }
+        }
+        return null;
+    }
+
+    public String getLocalName() {
+        return localName;
+    }
+
+    /**
+     * @return String  namespace of the root element, empty if it has none
+     */
+    public String getNamespaceUri() {
+        return namespaceUri;
+    }
+
+    /**
+     * Check the local name of the root element, ignoring case
+     */
+    public boolean hasLocalName(String name) {
+        return localName.equalsIgnoreCase(name);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof XmlRootElement)) return false;
+
+        XmlRootElement that = (XmlRootElement) o;
+
+        return localName.equals(that.localName) && namespaceUri.equals(that.namespaceUri);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * localName.hashCode() + namespaceUri.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return namespaceUri.isEmpty() ? localName : "{" + namespaceUri + "}" + localName;
+    }
+}
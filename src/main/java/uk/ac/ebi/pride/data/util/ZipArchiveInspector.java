@@ -0,0 +1,658 @@
+package uk.ac.ebi.pride.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Classifies the entries of a zip archive without extracting it.
+ * <p/>
+ * Only the central directory is read, ZIP64 archives included, and every entry is classified by its name. The entries
+ * whose format depends on their content, or can not be told from their name, are sniffed by inflating the head of
+ * each of them, as much as a
+ * {@link FileProbe} reads of a file. They are sniffed concurrently, or in the calling thread when the archive is
+ * inspected for detecting the format of a file, which usually runs in a pool already.
+ * <p/>
+ * The files of a vendor data folder, such as a zipped Bruker .d folder, are classified as a single entry of the
+ * format of the folder.
+ */
+public final class ZipArchiveInspector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZipArchiveInspector.class);
+
+    /**
+     * Number of bytes of an entry inflated for sniffing its content
+     */
+    public static final int SNIFF_SIZE = FileProbe.HEAD_SIZE;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ZipArchiveInspector() {
+    }
+
+    /**
+     * Inspect a zip archive, sniffing the content of the entries on the default number of threads
+     *
+     * @param file zip archive
+     * @return ArchiveSummary  classification of the entries
+     * @throws IOException if the file is not a zip archive or its central directory can not be read
+     */
+    public static ArchiveSummary inspect(File file) throws IOException {
+        return inspect(file, ExecutorUtil.getDefaultParallelism());
+    }
+
+    /**
+     * Inspect a zip archive
+     *
+     * @param file        zip archive
+     * @param parallelism maximum number of entries sniffed at the same time
+     * @return ArchiveSummary  classification of the entries
+     * @throws IOException if the file is not a zip archive or its central directory can not be read
+     */
+    public static ArchiveSummary inspect(File file, int parallelism) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return inspect(channel, parallelism);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Inspect a zip archive through a channel which the caller has already opened
+     *
+     * @param channel     open zip archive, left open
+     * @param parallelism maximum number of entries sniffed at the same time, 1 to sniff them in the calling thread
+     * @return ArchiveSummary  classification of the entries
+     * @throws IOException if the file is not a zip archive or its central directory can not be read
+     */
+    static ArchiveSummary inspect(FileChannel channel, int parallelism) throws IOException {
+        CentralDirectory centralDirectory = findCentralDirectory(channel);
+        List<Entry> entries = readCentralDirectory(channel, centralDirectory);
+        classify(channel, entries, parallelism);
+        return new ArchiveSummary(entries, centralDirectory.zip64);
+    }
+
+    /**
+     * Check that a zip archive ends with its end of central directory record and that the central directory it
+     * points at is there, which is what a truncated archive lacks
+     *
+     * @param channel open zip archive
+     * @return String  description of the problem, null if the archive looks complete
+     * @throws IOException exception while reading the archive
+     */
+    static String checkCentralDirectory(FileChannel channel) throws IOException {
+        CentralDirectory centralDirectory;
+        try {
+            centralDirectory = findCentralDirectory(channel);
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+
+        if (centralDirectory.offset + centralDirectory.size > channel.size()) {
+            return "Central directory ends at " + (centralDirectory.offset + centralDirectory.size) + ", after the end of the archive";
+        }
+        if (centralDirectory.entryCount > 0
+                && read(channel, centralDirectory.offset, 4).getInt(0) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+            return "No central directory at offset " + centralDirectory.offset;
+        }
+        return null;
+    }
+
+    /**
+     * Locate the central directory from the end of central directory record, and its ZIP64 counterpart if any
+     */
+    private static CentralDirectory findCentralDirectory(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new IOException("Not a zip archive, too short");
+        }
+
+        // the record is at the very end, followed by a comment of at most 64 KB
+        int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, size - tailSize, tailSize);
+        int recordOffset = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+                    && i + END_OF_CENTRAL_DIRECTORY_SIZE + (tail.getShort(i + 20) & 0xffff) <= tailSize) {
+                recordOffset = i;
+                break;
+            }
+        }
+        if (recordOffset < 0) {
+            throw new IOException("Not a zip archive, end of central directory not found");
+        }
+
+        long entryCount = tail.getShort(recordOffset + 10) & 0xffff;
+        long directorySize = tail.getInt(recordOffset + 12) & ZIP64_MAGIC;
+        long directoryOffset = tail.getInt(recordOffset + 16) & ZIP64_MAGIC;
+
+        long recordPosition = size - tailSize + recordOffset;
+        long locatorPosition = recordPosition - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+        if (locatorPosition >= 0) {
+            ByteBuffer locator = read(channel, locatorPosition, ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+                ByteBuffer record = read(channel, locator.getLong(8), 56);
+                if (record.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                    throw new IOException("Invalid zip64 end of central directory");
+                }
+                return new CentralDirectory(record.getLong(32), record.getLong(40), record.getLong(48), true);
+            }
+        }
+
+        return new CentralDirectory(entryCount, directorySize, directoryOffset, false);
+    }
+
+    /**
+     * Read the central directory headers, streaming through the directory with a small buffer
+     */
+    private static List<Entry> readCentralDirectory(FileChannel channel, CentralDirectory centralDirectory) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>((int) Math.min(centralDirectory.entryCount, 100000));
+        ChannelReader reader = new ChannelReader(channel, centralDirectory.offset, centralDirectory.size);
+
+        for (long i = 0; i < centralDirectory.entryCount; i++) {
+            ByteBuffer header = reader.next(CENTRAL_DIRECTORY_HEADER_SIZE);
+            if (header.getInt(0) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                throw new IOException("Invalid central directory header of entry " + i);
+            }
+
+            boolean utf8 = (header.getShort(8) & 0x800) != 0;
+            int method = header.getShort(10) & 0xffff;
+            long compressedSize = header.getInt(20) & ZIP64_MAGIC;
+            long size = header.getInt(24) & ZIP64_MAGIC;
+            int nameLength = header.getShort(28) & 0xffff;
+            int extraLength = header.getShort(30) & 0xffff;
+            int commentLength = header.getShort(32) & 0xffff;
+            long localHeaderOffset = header.getInt(42) & ZIP64_MAGIC;
+
+            ByteBuffer variable = reader.next(nameLength + extraLength + commentLength);
+            byte[] nameBytes = new byte[nameLength];
+            variable.get(nameBytes);
+            String name = new String(nameBytes, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+            // values too large for the header are in the zip64 extra field, in this order
+            int extraEnd = nameLength + extraLength;
+            int position = nameLength;
+            while (position + 4 <= extraEnd) {
+                int id = variable.getShort(position) & 0xffff;
+                int dataSize = variable.getShort(position + 2) & 0xffff;
+                int field = position + 4;
+                if (id == ZIP64_EXTRA_FIELD_ID) {
+                    if (size == ZIP64_MAGIC && field + 8 <= extraEnd) {
+                        size = variable.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC && field + 8 <= extraEnd) {
+                        compressedSize = variable.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC && field + 8 <= extraEnd) {
+                        localHeaderOffset = variable.getLong(field);
+                    }
+                    break;
+                }
+                position = field + dataSize;
+            }
+
+            entries.add(new Entry(name, method, compressedSize, size, localHeaderOffset));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Classify every entry by its name, sniffing the content of the entries whose name is not enough
+     */
+    private static void classify(final FileChannel channel, List<Entry> entries, int parallelism) throws IOException {
+        List<Entry> contentEntries = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+
+            String folder = getDataFolder(entry.getName());
+            if (folder != null) {
+                entry.dataFolder = folder;
+                entry.format = MassSpecFileFormat.checkFormatByExtension(getExtension(folder));
+            } else if (isIdentifiedByContent(entry.getName()) && entry.getSize() > 0) {
+                contentEntries.add(entry);
+            } else {
+                entry.format = checkFormatByName(entry.getName());
+                if (entry.format == null && entry.getSize() > 0) {
+                    // unknown extension, as the first entry of an archive used to be, the content may tell
+                    contentEntries.add(entry);
+                }
+            }
+        }
+
+        if (contentEntries.isEmpty()) {
+            return;
+        }
+
+        if (parallelism <= 1 || contentEntries.size() == 1) {
+            for (Entry entry : contentEntries) {
+                try {
+                    entry.format = sniff(channel, entry);
+                } catch (IOException e) {
+                    logger.debug("Failed to sniff zip entry", e);
+                }
+            }
+            return;
+        }
+
+        ExecutorService executor = ExecutorUtil.newBoundedExecutor(Math.min(parallelism, contentEntries.size()), "zip-inspector");
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final Entry entry : contentEntries) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        entry.format = sniff(channel, entry);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    logger.debug("Failed to sniff zip entry", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inspecting zip archive");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+    }
+
+    /**
+     * Detect the format of an entry from the start of its content, and from its extension if it has one
+     */
+    private static MassSpecFileFormat sniff(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer localHeader = read(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local header of entry " + entry.getName());
+        }
+
+        long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE
+                + (localHeader.getShort(26) & 0xffff) + (localHeader.getShort(28) & 0xffff);
+        int compressedLength = (int) Math.min(entry.compressedSize, FileProbe.HEAD_SIZE);
+        ByteBuffer data = read(channel, dataOffset, compressedLength);
+        byte[] compressed = new byte[data.remaining()];
+        data.get(compressed);
+
+        byte[] content;
+        if (entry.method == STORED) {
+            content = Arrays.copyOf(compressed, Math.min(compressed.length, SNIFF_SIZE));
+        } else if (entry.method == DEFLATED) {
+            content = inflate(compressed);
+        } else {
+            return null;
+        }
+
+        MassSpecFileFormat format = MassSpecFileFormat.checkContent(FileProbe.wrap(new File(entry.getName()), content));
+        return format == null ? checkFormatByName(entry.getName()) : format;
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] inflated = new byte[SNIFF_SIZE];
+            int length = 0;
+            while (length < inflated.length && !inflater.finished() && !inflater.needsInput()) {
+                int read = inflater.inflate(inflated, length, inflated.length - length);
+                if (read == 0 && inflater.needsDictionary()) {
+                    break;
+                }
+                length += read;
+            }
+            return Arrays.copyOf(inflated, length);
+        } catch (DataFormatException e) {
+            return new byte[0];
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Entries without an extension, xml entries and mzML entries can only be told apart by their content
+     */
+    private static boolean isIdentifiedByContent(String name) {
+        String ext = getExtension(name);
+        if (ext == null || ext.equalsIgnoreCase("mzml")) {
+            return true;
+        }
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        return ext.equalsIgnoreCase("xml") && !lowerCaseName.endsWith(".xt.xml") && !lowerCaseName.endsWith(".pride.xml");
+    }
+
+    /**
+     * Classify an entry by its name, following the rules applied to files, without touching the file system
+     */
+    private static MassSpecFileFormat checkFormatByName(String name) {
+        String ext = getExtension(name);
+        if (ext == null) {
+            return null;
+        }
+
+        String lowerCaseName = FileUtil.getRealFileName(name).toLowerCase(Locale.ROOT);
+        String lowerCaseExt = ext.toLowerCase(Locale.ROOT);
+        if (lowerCaseExt.equals("xml")) {
+            if (lowerCaseName.endsWith(".xt.xml")) {
+                return MassSpecFileFormat.XTANDEM;
+            }
+            return lowerCaseName.endsWith(".pride.xml") ? MassSpecFileFormat.PRIDE : null;
+        } else if (lowerCaseExt.equals("mzml")) {
+            return MassSpecFileFormat.MZML;
+        } else if (lowerCaseExt.equals("gz")) {
+            // classified by the name of the compressed file
+            return lowerCaseName.endsWith("raw.gzip") ? MassSpecFileFormat.RAW : checkFormatByName(name.substring(0, name.length() - 3));
+        } else if (lowerCaseExt.equals("tsv") || lowerCaseExt.equals("txt")) {
+            if (lowerCaseName.contains("sdrf")) {
+                return MassSpecFileFormat.EXPERIMENTAL_DESIGN_TSV;
+            }
+            return lowerCaseExt.equals("tsv") ? MassSpecFileFormat.TSV : null;
+        } else if (lowerCaseExt.equals("xls") || lowerCaseExt.equals("zip")) {
+            return null;
+        }
+        return MassSpecFileFormat.checkFormatByExtension(lowerCaseExt);
+    }
+
+    /**
+     * Get the outermost vendor data folder containing an entry, such as run.d for run.d/AcqData/MSScan.bin
+     */
+    private static String getDataFolder(String name) {
+        String[] parts = name.split("/");
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < parts.length - 1; i++) {
+            path.append(parts[i]).append('/');
+            String ext = getExtension(parts[i]);
+            if (ext != null) {
+                MassSpecFileFormat format = MassSpecFileFormat.checkFormatByExtension(ext);
+                if (format != null && format.getFileType() == ProjectFileType.RAW) {
+                    return path.toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String getExtension(String name) {
+        String fileName = FileUtil.getRealFileName(name);
+        int index = fileName.lastIndexOf('.');
+        return index > 0 && index < fileName.length() - 1 ? fileName.substring(index + 1) : null;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Sequential reader over a region of a channel
+     */
+    private static final class ChannelReader {
+        private final FileChannel channel;
+        private final long end;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        private ChannelReader(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return ByteBuffer  the next bytes, starting at index 0
+         */
+        private ByteBuffer next(int length) throws IOException {
+            if (length > buffer.capacity()) {
+                ByteBuffer large = read(channel, position - buffer.remaining(), length);
+                skip(length);
+                return large;
+            }
+
+            if (buffer.remaining() < length) {
+                buffer.compact();
+                while (buffer.position() < length) {
+                    int limit = (int) Math.min(buffer.capacity(), buffer.position() + Math.max(0, end - position));
+                    if (limit == buffer.position()) {
+                        throw new EOFException("Central directory ends unexpectedly");
+                    }
+                    buffer.limit(limit);
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new EOFException("Central directory ends unexpectedly");
+                    }
+                    position += read;
+                }
+                buffer.flip();
+            }
+
+            ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            slice.limit(length);
+            buffer.position(buffer.position() + length);
+            return slice;
+        }
+
+        private void skip(int length) {
+            long buffered = buffer.remaining();
+            buffer.limit(0);
+            position += length - buffered;
+        }
+    }
+
+    private static final class CentralDirectory {
+        private final long entryCount;
+        private final long size;
+        private final long offset;
+        private final boolean zip64;
+
+        private CentralDirectory(long entryCount, long size, long offset, boolean zip64) {
+            this.entryCount = entryCount;
+            this.size = size;
+            this.offset = offset;
+            this.zip64 = zip64;
+        }
+    }
+
+    /**
+     * An entry of a zip archive, as described by the central directory
+     */
+    public static final class Entry {
+        private final String name;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        private volatile MassSpecFileFormat format;
+        private String dataFolder;
+
+        private Entry(String name, int method, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * @return MassSpecFileFormat  format of the entry, or of the vendor data folder it belongs to, null if unknown
+         */
+        public MassSpecFileFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * @return String  path of the vendor data folder this entry belongs to, null if none
+         */
+        public String getDataFolder() {
+            return dataFolder;
+        }
+    }
+
+    /**
+     * Classification of the entries of a zip archive
+     */
+    public static final class ArchiveSummary {
+        private final List<Entry> entries;
+        private final boolean zip64;
+        private final Map<MassSpecFileFormat, Integer> formatHistogram = new EnumMap<MassSpecFileFormat, Integer>(MassSpecFileFormat.class);
+        private final Map<MassSpecFileFormat, Long> sizeByFormat = new EnumMap<MassSpecFileFormat, Long>(MassSpecFileFormat.class);
+        private final Map<ProjectFileType, Long> sizeByFileType = new EnumMap<ProjectFileType, Long>(ProjectFileType.class);
+        private final Map<ProjectFileType, Integer> countByFileType = new EnumMap<ProjectFileType, Integer>(ProjectFileType.class);
+        private int unknownEntryCount;
+
+        private ArchiveSummary(List<Entry> entries, boolean zip64) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.zip64 = zip64;
+
+            // the files of a vendor data folder count once
+            Set<String> dataFolders = new HashSet<String>();
+            for (Entry entry : entries) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                MassSpecFileFormat format = entry.getFormat();
+                if (format == null) {
+                    unknownEntryCount++;
+                } else {
+                    if (entry.getDataFolder() == null || dataFolders.add(entry.getDataFolder())) {
+                        increment(formatHistogram, format);
+                        increment(countByFileType, format.getFileType());
+                    }
+                    add(sizeByFormat, format, entry.getSize());
+                    add(sizeByFileType, format.getFileType(), entry.getSize());
+                }
+            }
+        }
+
+        private static <K> void add(Map<K, Long> sizes, K key, long size) {
+            Long total = sizes.get(key);
+            sizes.put(key, (total == null ? 0 : total) + size);
+        }
+
+        private static <K> void increment(Map<K, Integer> counts, K key) {
+            Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+
+        /**
+         * @return List<Entry> all the entries, folders included, in central directory order
+         */
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public boolean isZip64() {
+            return zip64;
+        }
+
+        /**
+         * @return Map<MassSpecFileFormat, Integer>    number of entries of each known format
+         */
+        public Map<MassSpecFileFormat, Integer> getFormatHistogram() {
+            return Collections.unmodifiableMap(formatHistogram);
+        }
+
+        /**
+         * @return int number of files of unknown format
+         */
+        public int getUnknownEntryCount() {
+            return unknownEntryCount;
+        }
+
+        /**
+         * Get the file type of most of the entries, ties are broken by the total uncompressed size
+         *
+         * @return ProjectFileType file type, null if no entry has a known format
+         */
+        public ProjectFileType getDominantFileType() {
+            ProjectFileType dominantType = null;
+            for (Map.Entry<ProjectFileType, Integer> entry : countByFileType.entrySet()) {
+                if (dominantType == null || entry.getValue() > countByFileType.get(dominantType)
+                        || (entry.getValue().equals(countByFileType.get(dominantType))
+                        && sizeByFileType.get(entry.getKey()) > sizeByFileType.get(dominantType))) {
+                    dominantType = entry.getKey();
+                }
+            }
+            return dominantType;
+        }
+
+        /**
+         * Get the most frequent format of the dominant file type, ties are broken by the total uncompressed size
+         *
+         * @return MassSpecFileFormat  format, null if no entry has a known format
+         */
+        public MassSpecFileFormat getDominantFormat() {
+            ProjectFileType dominantType = getDominantFileType();
+            MassSpecFileFormat dominantFormat = null;
+            for (Map.Entry<MassSpecFileFormat, Integer> entry : formatHistogram.entrySet()) {
+                if (entry.getKey().getFileType() == dominantType
+                        && (dominantFormat == null || entry.getValue() > formatHistogram.get(dominantFormat)
+                        || (entry.getValue().equals(formatHistogram.get(dominantFormat))
+                        && sizeByFormat.get(entry.getKey()) > sizeByFormat.get(dominantFormat)))) {
+                    dominantFormat = entry.getKey();
+                }
+            }
+            return dominantFormat;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package uk.ac.ebi.pride.data.validation;
+
+import com.google.common.io.BaseEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.ExecutorUtil;
+import uk.ac.ebi.pride.data.util.FileChecksumCalculator;
+import uk.ac.ebi.pride.data.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds the data files of a submission which have the same content, e.g. a raw file uploaded twice under different
+ * names.
+ * <p/>
+ * Files are first bucketed by size. Files of the same size are told apart by hashing their first, middle and last
+ * megabyte, concurrently. Only the files whose partial hashes collide are hashed in full, to confirm that they are
+ * duplicates. Files of up to three megabytes are hashed in full by the partial hash already.
+ * <p/>
+ * {@link SubmissionValidator#validateSubmission(Submission, ValidationReport)} runs it on every full validation.
+ */
+public class DuplicateFileDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateFileDetector.class);
+
+    public static final int SAMPLE_SIZE = 1024 * 1024;
+
+    private final FileChecksumCalculator checksumCalculator;
+    private final int parallelism;
+
+    public DuplicateFileDetector() {
+        this(FileChecksumCalculator.getDefault(), ExecutorUtil.getDefaultParallelism());
+    }
+
+    /**
+     * @param checksumCalculator calculator of the full hashes
+     * @param parallelism        maximum number of files sampled at the same time
+     */
+    public DuplicateFileDetector(FileChecksumCalculator checksumCalculator, int parallelism) {
+        this.checksumCalculator = checksumCalculator;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Report every group of data files with the same content of a submission
+     *
+     * @param submission submission
+     * @param report     receives a warning per group of duplicates
+     * @throws InterruptedIOException if interrupted while hashing the files
+     */
+    public void validate(Submission submission, ValidationReport report) throws InterruptedIOException {
+        for (List<DataFile> duplicates : findDuplicates(submission.getDataFiles())) {
+            List<String> fileNames = new ArrayList<String>();
+            for (DataFile duplicate : duplicates) {
+                fileNames.add(duplicate.getFileName());
+            }
+            report.addMessage(new ValidationMessage(duplicates.get(0), ValidationMessage.Type.WARNING, "Data files "
+                    + fileNames + " have the same content, " + duplicates.get(0).getFile().length() + " bytes each"));
+        }
+    }
+
+    /**
+     * Find the local data files with the same content, empty files are ignored
+     *
+     * @param dataFiles data files
+     * @return List<List<DataFile>>    groups of data files with the same content, each in the order of the data files
+     * @throws InterruptedIOException if interrupted while hashing the files
+     */
+    public List<List<DataFile>> findDuplicates(Collection<DataFile> dataFiles) throws InterruptedIOException {
+        // the same file may be listed more than once, it is then read only once
+        Map<String, List<DataFile>> dataFilesByPath = new LinkedHashMap<String, List<DataFile>>();
+        Map<Long, List<File>> filesBySize = new LinkedHashMap<Long, List<File>>();
+        for (DataFile dataFile : dataFiles) {
+            if (!dataFile.isFile()) {
+                continue;
+            }
+
+            String path;
+            long size;
+            try {
+                path = dataFile.getFile().toPath().toRealPath().toString();
+                size = Files.size(dataFile.getFile().toPath());
+            } catch (IOException e) {
+                // missing files are reported by the data file validation
+                continue;
+            }
+            if (size == 0) {
+                continue;
+            }
+
+            List<DataFile> samePath = dataFilesByPath.get(path);
+            if (samePath == null) {
+                samePath = new ArrayList<DataFile>();
+                dataFilesByPath.put(path, samePath);
+                addToGroup(filesBySize, size, new File(path));
+            }
+            samePath.add(dataFile);
+        }
+
+        List<List<File>> candidates = new ArrayList<List<File>>();
+        List<File> sampledFiles = new ArrayList<File>();
+        for (List<File> sameSize : filesBySize.values()) {
+            if (sameSize.size() > 1) {
+                candidates.add(sameSize);
+                sampledFiles.addAll(sameSize);
+            }
+        }
+
+        List<List<File>> duplicateFiles = new ArrayList<List<File>>();
+        if (!sampledFiles.isEmpty()) {
+            Map<File, String> sampleHashes = hashSamples(sampledFiles);
+            for (List<File> sameSize : candidates) {
+                Map<String, List<File>> bySample = new LinkedHashMap<String, List<File>>();
+                for (File file : sameSize) {
+                    String sampleHash = sampleHashes.get(file);
+                    if (sampleHash != null) {
+                        addToGroup(bySample, sampleHash, file);
+                    }
+                }
+                for (List<File> sameSample : bySample.values()) {
+                    if (sameSample.size() < 2) {
+                        continue;
+                    }
+                    if (sameSample.get(0).length() <= 3L * SAMPLE_SIZE) {
+                        // the samples covered the whole files
+                        duplicateFiles.add(sameSample);
+                    } else {
+                        duplicateFiles.addAll(confirm(sameSample));
+                    }
+                }
+            }
+        }
+
+        // back to data files, a file listed more than once is a duplicate on its own
+        List<List<DataFile>> duplicates = new ArrayList<List<DataFile>>();
+        Set<String> groupedPaths = new HashSet<String>();
+        for (List<File> sameContent : duplicateFiles) {
+            List<DataFile> group = new ArrayList<DataFile>();
+            for (File file : sameContent) {
+                groupedPaths.add(file.getPath());
+                group.addAll(dataFilesByPath.get(file.getPath()));
+            }
+            duplicates.add(group);
+        }
+        for (Map.Entry<String, List<DataFile>> entry : dataFilesByPath.entrySet()) {
+            if (entry.getValue().size() > 1 && !groupedPaths.contains(entry.getKey())) {
+                duplicates.add(entry.getValue());
+            }
+        }
+
+        return duplicates;
+    }
+
+    /**
+     * Confirm that files with the same partial hash have the same full hash
+     */
+    private List<List<File>> confirm(List<File> files) throws InterruptedIOException {
+        Map<File, String> checksums = checksumCalculator.checksumAll(files, FileChecksumCalculator.Algorithm.SHA256, null);
+        Map<String, List<File>> byChecksum = new LinkedHashMap<String, List<File>>();
+        for (Map.Entry<File, String> entry : checksums.entrySet()) {
+            addToGroup(byChecksum, entry.getValue(), entry.getKey());
+        }
+
+        List<List<File>> confirmed = new ArrayList<List<File>>();
+        for (List<File> sameChecksum : byChecksum.values()) {
+            if (sameChecksum.size() > 1) {
+                confirmed.add(sameChecksum);
+            }
+        }
+        return confirmed;
+    }
+
+    /**
+     * Hash the first, middle and last megabyte of files concurrently
+     */
+    private Map<File, String> hashSamples(Collection<File> files) throws InterruptedIOException {
+        Map<File, Future<String>> pending = new LinkedHashMap<File, Future<String>>();
+        Map<File, String> hashes = new HashMap<File, String>();
+
+        ExecutorService executor = ExecutorUtil.newBoundedIoExecutor(Math.min(parallelism, files.size()), "duplicate-sampler");
+        try {
+            for (final File file : files) {
+                pending.put(file, executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return hashSample(file);
+                    }
+                }));
+            }
+
+            for (Map.Entry<File, Future<String>> entry : pending.entrySet()) {
+                try {
+                    hashes.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to sample " + entry.getKey().getAbsolutePath(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sampling files");
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return hashes;
+    }
+
+    private static String hashSample(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size <= 3L * SAMPLE_SIZE) {
+                digest.update(FileUtil.read(channel, 0, (int) size));
+            } else {
+                digest.update(FileUtil.read(channel, 0, SAMPLE_SIZE));
+                digest.update(FileUtil.read(channel, size / 2 - SAMPLE_SIZE / 2, SAMPLE_SIZE));
+                digest.update(FileUtil.read(channel, size - SAMPLE_SIZE, SAMPLE_SIZE));
+            }
+        } finally {
+            channel.close();
+        }
+
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    private static <K> void addToGroup(Map<K, List<File>> groups, K key, File file) {
+        List<File> group = groups.get(key);
+        if (group == null) {
+            group = new ArrayList<File>();
+            groups.put(key, group);
+        }
+        group.add(file);
+    }
+}
@@ -0,0 +1,152 @@
+package uk.ac.ebi.pride.data.validation;
+
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.mztab.model.MetaData;
+import uk.ac.ebi.pride.data.mztab.model.MsRun;
+import uk.ac.ebi.pride.data.mztab.model.MsRunHashMethod;
+import uk.ac.ebi.pride.data.util.FileChecksumCalculator;
+import uk.ac.ebi.pride.data.util.FileURLUtil;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.*;
+
+/**
+ * Checks the ms_run hashes reported in the metadata of mzTab files against the files of a submission.
+ * <p/>
+ * Each ms_run with a hash is matched, by the file name of its location, to a local data file of the submission. The
+ * data files are hashed concurrently, each file only once per algorithm.
+ */
+public class MsRunHashVerifier {
+
+    private final FileChecksumCalculator checksumCalculator;
+
+    public MsRunHashVerifier() {
+        this(FileChecksumCalculator.getDefault());
+    }
+
+    public MsRunHashVerifier(FileChecksumCalculator checksumCalculator) {
+        this.checksumCalculator = checksumCalculator;
+    }
+
+    /**
+     * Verify the ms_run hashes of all the mzTab files of a submission
+     *
+     * @param submission submission, with the mzTab documents of its mzTab files
+     * @param report     receives an error for every mismatching hash
+     * @throws InterruptedIOException if interrupted while hashing the files
+     */
+    public void verify(Submission submission, ValidationReport report) throws InterruptedIOException {
+        verify(submission, report, null);
+    }
+
+    /**
+     * Verify the ms_run hashes of all the mzTab files of a submission
+     *
+     * @param submission submission, with the mzTab documents of its mzTab files
+     * @param report     receives an error for every mismatching hash
+     * @param listener   receives the hashing progress, may be null
+     * @throws InterruptedIOException if interrupted while hashing the files
+     */
+    public void verify(Submission submission, ValidationReport report, FileChecksumCalculator.ProgressListener listener) throws InterruptedIOException {
+        Map<String, DataFile> dataFilesByName = new HashMap<String, DataFile>();
+        for (DataFile dataFile : submission.getDataFiles()) {
+            if (dataFile.getFileName() != null) {
+                dataFilesByName.put(dataFile.getFileName(), dataFile);
+            }
+        }
+
+        // collect the files to hash for each algorithm first, so every file is hashed once
+        List<HashCheck> checks = new ArrayList<HashCheck>();
+        Map<FileChecksumCalculator.Algorithm, Set<File>> filesByAlgorithm = new EnumMap<FileChecksumCalculator.Algorithm, Set<File>>(FileChecksumCalculator.Algorithm.class);
+        for (DataFile dataFile : submission.getDataFiles()) {
+            if (dataFile.getMzTabDocument() == null || dataFile.getMzTabDocument().getMetaData() == null) {
+                continue;
+            }
+
+            MetaData metaData = dataFile.getMzTabDocument().getMetaData();
+            for (Integer index : new TreeSet<Integer>(metaData.getAvailableMsRunIndexes())) {
+                MsRun msRun = metaData.getMsRunEntry(index);
+                if (msRun == null || msRun.getHash() == null || msRun.getHash().trim().isEmpty() || msRun.getLocation() == null) {
+                    continue;
+                }
+
+                String description = "ms_run[" + index + "] of " + dataFile.getFileName();
+                FileChecksumCalculator.Algorithm algorithm = getAlgorithm(msRun.getHashMethod());
+                if (algorithm == null) {
+                    report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.WARNING,
+                            "Unsupported hash method for " + description + ": " + msRun.getHashMethod()));
+                    continue;
+                }
+
+                String fileName = FileURLUtil.getFileName(msRun.getLocation().toString());
+                DataFile runFile = dataFilesByName.get(fileName);
+                if (runFile == null) {
+                    report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.WARNING,
+                            "The hash of " + description + " can not be verified, " + fileName + " is not part of the submission"));
+                } else if (!runFile.isFile()) {
+                    report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.WARNING,
+                            "The hash of " + description + " can not be verified, " + fileName + " is not a local file"));
+                } else {
+                    checks.add(new HashCheck(dataFile, description, runFile, algorithm, msRun.getHash().trim()));
+                    Set<File> files = filesByAlgorithm.get(algorithm);
+                    if (files == null) {
+                        files = new LinkedHashSet<File>();
+                        filesByAlgorithm.put(algorithm, files);
+                    }
+                    files.add(runFile.getFile());
+                }
+            }
+        }
+
+        Map<FileChecksumCalculator.Algorithm, Map<File, String>> checksums = new EnumMap<FileChecksumCalculator.Algorithm, Map<File, String>>(FileChecksumCalculator.Algorithm.class);
+        for (Map.Entry<FileChecksumCalculator.Algorithm, Set<File>> entry : filesByAlgorithm.entrySet()) {
+            checksums.put(entry.getKey(), checksumCalculator.checksumAll(entry.getValue(), entry.getKey(), listener));
+        }
+
+        for (HashCheck check : checks) {
+            String checksum = checksums.get(check.algorithm).get(check.runFile.getFile());
+            if (checksum == null) {
+                report.addMessage(new ValidationMessage(check.mzTabFile, ValidationMessage.Type.ERROR,
+                        "The hash of " + check.description + " can not be verified, failed to read " + check.runFile.getFilePath()));
+            } else if (checksum.equalsIgnoreCase(check.expectedHash)) {
+                report.addMessage(new ValidationMessage(check.mzTabFile, ValidationMessage.Type.SUCCESS,
+                        "The " + check.algorithm.getName() + " hash of " + check.description + " matches " + check.runFile.getFileName()));
+            } else {
+                report.addMessage(new ValidationMessage(check.mzTabFile, ValidationMessage.Type.ERROR,
+                        "The " + check.algorithm.getName() + " hash of " + check.description + " does not match " +
+                                check.runFile.getFileName() + ", expected " + check.expectedHash + " but was " + checksum));
+            }
+        }
+    }
+
+    /**
+     * Get the algorithm of a hash method, from its name or its accession
+     */
+    private static FileChecksumCalculator.Algorithm getAlgorithm(MsRunHashMethod hashMethod) {
+        if (hashMethod == null) {
+            return null;
+        }
+
+        FileChecksumCalculator.Algorithm algorithm = FileChecksumCalculator.Algorithm.findByName(hashMethod.getName());
+        return algorithm == null ? FileChecksumCalculator.Algorithm.findByAccession(hashMethod.getAccession()) : algorithm;
+    }
+
+    private static final class HashCheck {
+        private final DataFile mzTabFile;
+        private final String description;
+        private final DataFile runFile;
+        private final FileChecksumCalculator.Algorithm algorithm;
+        private final String expectedHash;
+
+        private HashCheck(DataFile mzTabFile, String description, DataFile runFile,
+                          FileChecksumCalculator.Algorithm algorithm, String expectedHash) {
+            this.mzTabFile = mzTabFile;
+            this.description = description;
+            this.runFile = runFile;
+            this.algorithm = algorithm;
+            this.expectedHash = expectedHash;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package uk.ac.ebi.pride.data.validation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes validation messages as newline delimited JSON, one object per message:
+ * <pre>
+ * {"type":"ERROR","message":"Data file is empty: 1","source":"..."}
+ * </pre>
+ * The source is only written when the message has one. Write errors are kept and thrown by {@link #flush()} and
+ * {@link #close()}, the messages received after an error are ignored.
+ */
+public class NdjsonValidationMessageSink implements ValidationMessageSink, Flushable {
+
+    private final Writer writer;
+    private IOException failure;
+    private int messageCount;
+
+    public NdjsonValidationMessageSink(File file) throws IOException {
+        this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    public NdjsonValidationMessageSink(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+    }
+
+    @Override
+    public synchronized void accept(ValidationMessage message) {
+        if (failure != null) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder("{\"type\":\"");
+        line.append(message.getType()).append("\",\"message\":");
+        appendString(line, message.getMessage());
+        if (message.getSource() != null) {
+            line.append(",\"source\":");
+            appendString(line, message.getSource().toString());
+        }
+        line.append("}\n");
+
+        try {
+            writer.write(line.toString());
+            messageCount++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * @return int number of messages written
+     */
+    public synchronized int getMessageCount() {
+        return messageCount;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        throwFailure();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            throwFailure();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Failed to write validation messages", failure);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,362 @@
+package uk.ac.ebi.pride.data.validation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.ExecutorUtil;
+import uk.ac.ebi.pride.data.util.FileURLUtil;
+import uk.ac.ebi.pride.data.util.FileUtil;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.SpectrumIdIndex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the spectra_ref of the PSMs of mzTab files against the spectra of the peak files behind their ms_runs.
+ * <p/>
+ * The mzTab file is read once: the ms_run locations are taken from the metadata, the spectrum id indexes of all the
+ * peak files are built concurrently when the PSM header is reached, then every reference of the PSM section is
+ * looked up as the section is streamed. Spectrum id indexes are kept by the resolver, so a peak file referenced by
+ * several mzTab files is only read once.
+ */
+public class SpectraRefResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpectraRefResolver.class);
+
+    /**
+     * Maximum number of unresolved references kept as examples, per ms_run
+     */
+    public static final int MAX_UNRESOLVED_EXAMPLES = 5;
+
+    private static final Pattern MS_RUN_LOCATION = Pattern.compile("ms_run\\[(\\d+)\\]-location");
+    private static final Pattern SPECTRA_REF = Pattern.compile("\\s*ms_run\\[(\\d+)\\]:(.+?)\\s*");
+    private static final String SPECTRA_REF_COLUMN = "spectra_ref";
+
+    private final Map<String, File> peakFilesByName = new HashMap<String, File>();
+    private final Map<File, Future<SpectrumIdIndex>> indexes = new ConcurrentHashMap<File, Future<SpectrumIdIndex>>();
+    private final int parallelism;
+
+    /**
+     * @param peakFiles peak files the ms_run locations are matched to, by file name
+     */
+    public SpectraRefResolver(Collection<File> peakFiles) {
+        this(peakFiles, ExecutorUtil.getDefaultParallelism());
+    }
+
+    /**
+     * @param peakFiles   peak files the ms_run locations are matched to, by file name
+     * @param parallelism maximum number of peak files indexed at the same time
+     */
+    public SpectraRefResolver(Collection<File> peakFiles, int parallelism) {
+        for (File peakFile : peakFiles) {
+            peakFilesByName.put(peakFile.getName(), peakFile);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Resolve the spectra_ref of the PSMs of all the mzTab files of a submission, against the other files of the
+     * submission
+     *
+     * @param submission submission
+     * @param report     receives an error for every ms_run with unresolved references
+     */
+    public static void validate(Submission submission, ValidationReport report) {
+        List<File> files = new ArrayList<File>();
+        List<DataFile> mzTabFiles = new ArrayList<DataFile>();
+        for (DataFile dataFile : submission.getDataFiles()) {
+            if (dataFile.isFile()) {
+                files.add(dataFile.getFile());
+                if (dataFile.getFileFormat() == MassSpecFileFormat.MZTAB) {
+                    mzTabFiles.add(dataFile);
+                }
+            }
+        }
+
+        SpectraRefResolver resolver = new SpectraRefResolver(files);
+        for (DataFile mzTabFile : mzTabFiles) {
+            try {
+                resolver.resolve(mzTabFile.getFile()).report(mzTabFile, report);
+            } catch (IOException e) {
+                report.addMessage(new ValidationMessage(mzTabFile, ValidationMessage.Type.ERROR,
+                        "Failed to resolve the spectra_ref of " + mzTabFile.getFileName() + ": " + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Resolve the spectra_ref of the PSMs of a mzTab file, in a single pass over the file
+     *
+     * @param mzTabFile mzTab file, optionally gzipped
+     * @return Result  reference counts of each ms_run
+     * @throws IOException exception while reading the mzTab file
+     */
+    public Result resolve(File mzTabFile) throws IOException {
+        Result result = new Result(mzTabFile);
+        Map<Integer, SpectrumIdIndex> runIndexes = null;
+        int spectraRefColumn = -1;
+
+        InputStream in = FileUtil.getFileInputStream(mzTabFile);
+        if (in == null) {
+            throw new IOException("Failed to open " + mzTabFile.getAbsolutePath());
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("MTD\t")) {
+                    String[] items = line.split("\t", -1);
+                    Matcher matcher = MS_RUN_LOCATION.matcher(items.length > 1 ? items[1] : "");
+                    if (matcher.matches() && items.length > 2) {
+                        result.getOrCreate(Integer.parseInt(matcher.group(1))).location = items[2].trim();
+                    }
+                } else if (line.startsWith("PSH\t")) {
+                    spectraRefColumn = Arrays.asList(line.split("\t", -1)).indexOf(SPECTRA_REF_COLUMN);
+                    runIndexes = getIndexes(result);
+                } else if (line.startsWith("PSM\t") && runIndexes != null && spectraRefColumn > 0) {
+                    String[] items = line.split("\t", -1);
+                    if (items.length > spectraRefColumn) {
+                        resolve(items[spectraRefColumn], runIndexes, result);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolve the references of a spectra_ref cell, several references are separated by |
+     */
+    private static void resolve(String spectraRef, Map<Integer, SpectrumIdIndex> runIndexes, Result result) {
+        for (String reference : spectraRef.split("\\|")) {
+            Matcher matcher = SPECTRA_REF.matcher(reference);
+            if (!matcher.matches()) {
+                if (!reference.trim().isEmpty() && !reference.trim().equalsIgnoreCase("null")) {
+                    result.malformedReferenceCount++;
+                }
+                continue;
+            }
+
+            MsRunResult runResult = result.getOrCreate(Integer.parseInt(matcher.group(1)));
+            runResult.referenceCount++;
+            SpectrumIdIndex index = runIndexes.get(runResult.msRunIndex);
+            if (index != null && !index.contains(matcher.group(2))) {
+                runResult.unresolvedCount++;
+                if (runResult.unresolvedExamples.size() < MAX_UNRESOLVED_EXAMPLES) {
+                    runResult.unresolvedExamples.add(matcher.group(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the spectrum id indexes of the peak files of all the ms_runs, building the missing ones concurrently
+     */
+    private Map<Integer, SpectrumIdIndex> getIndexes(Result result) throws IOException {
+        Map<Integer, Future<SpectrumIdIndex>> pending = new HashMap<Integer, Future<SpectrumIdIndex>>();
+        ExecutorService executor = null;
+        try {
+            for (MsRunResult runResult : result.msRuns.values()) {
+                if (runResult.location == null) {
+                    continue;
+                }
+
+                final File peakFile = peakFilesByName.get(FileURLUtil.getFileName(runResult.location));
+                runResult.peakFile = peakFile;
+                if (peakFile == null) {
+                    continue;
+                }
+
+                Future<SpectrumIdIndex> future = indexes.get(peakFile);
+                if (future == null) {
+                    if (executor == null) {
+                        executor = ExecutorUtil.newBoundedExecutor(parallelism, "spectrum-index");
+                    }
+                    future = executor.submit(new Callable<SpectrumIdIndex>() {
+                        @Override
+                        public SpectrumIdIndex call() throws Exception {
+                            return SpectrumIdIndex.build(peakFile);
+                        }
+                    });
+                    indexes.put(peakFile, future);
+                }
+                pending.put(runResult.msRunIndex, future);
+            }
+
+            Map<Integer, SpectrumIdIndex> runIndexes = new HashMap<Integer, SpectrumIdIndex>();
+            for (Map.Entry<Integer, Future<SpectrumIdIndex>> entry : pending.entrySet()) {
+                try {
+                    SpectrumIdIndex index = entry.getValue().get();
+                    if (index != null) {
+                        runIndexes.put(entry.getKey(), index);
+                    }
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to index the spectra of " + result.msRuns.get(entry.getKey()).peakFile, e.getCause());
+                }
+            }
+            for (MsRunResult runResult : result.msRuns.values()) {
+                runResult.checked = runIndexes.containsKey(runResult.msRunIndex);
+            }
+            return runIndexes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing spectra");
+        } finally {
+            if (executor != null) {
+                // the indexes are complete, the pool is not needed any more
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Spectra references of a mzTab file
+     */
+    public static final class Result {
+        private final File mzTabFile;
+        private final Map<Integer, MsRunResult> msRuns = new TreeMap<Integer, MsRunResult>();
+        private int malformedReferenceCount;
+
+        private Result(File mzTabFile) {
+            this.mzTabFile = mzTabFile;
+        }
+
+        private MsRunResult getOrCreate(int msRunIndex) {
+            MsRunResult runResult = msRuns.get(msRunIndex);
+            if (runResult == null) {
+                runResult = new MsRunResult(msRunIndex);
+                msRuns.put(msRunIndex, runResult);
+            }
+            return runResult;
+        }
+
+        public File getMzTabFile() {
+            return mzTabFile;
+        }
+
+        /**
+         * @return List<MsRunResult>   results of the ms_runs declared or referenced, by ms_run index
+         */
+        public List<MsRunResult> getMsRunResults() {
+            return new ArrayList<MsRunResult>(msRuns.values());
+        }
+
+        public MsRunResult getMsRunResult(int msRunIndex) {
+            return msRuns.get(msRunIndex);
+        }
+
+        /**
+         * @return int number of references which are not of the form ms_run[n]:id
+         */
+        public int getMalformedReferenceCount() {
+            return malformedReferenceCount;
+        }
+
+        public int getUnresolvedCount() {
+            int count = 0;
+            for (MsRunResult runResult : msRuns.values()) {
+                count += runResult.unresolvedCount;
+            }
+            return count;
+        }
+
+        /**
+         * Add the outcome of every referenced ms_run to a validation report
+         *
+         * @param source source of the messages
+         * @param report validation report
+         */
+        public void report(Object source, ValidationReport report) {
+            String fileName = mzTabFile.getName();
+            for (MsRunResult runResult : msRuns.values()) {
+                if (runResult.referenceCount == 0) {
+                    continue;
+                }
+
+                String description = "ms_run[" + runResult.msRunIndex + "] of " + fileName;
+                if (!runResult.checked) {
+                    report.addMessage(new ValidationMessage(source, ValidationMessage.Type.WARNING, "The spectra_ref of " + description
+                            + " can not be checked, " + (runResult.peakFile == null ? "its peak file is not part of the submission" : "its peak file can not be indexed")));
+                } else if (runResult.unresolvedCount > 0) {
+                    report.addMessage(new ValidationMessage(source, ValidationMessage.Type.ERROR, runResult.unresolvedCount + " of "
+                            + runResult.referenceCount + " spectra_ref of " + description + " do not resolve to a spectrum of "
+                            + runResult.peakFile.getName() + ", such as " + runResult.unresolvedExamples));
+                } else {
+                    report.addMessage(new ValidationMessage(source, ValidationMessage.Type.SUCCESS, "All the "
+                            + runResult.referenceCount + " spectra_ref of " + description + " resolve to a spectrum"));
+                }
+            }
+
+            if (malformedReferenceCount > 0) {
+                report.addMessage(new ValidationMessage(source, ValidationMessage.Type.ERROR,
+                        malformedReferenceCount + " malformed spectra_ref in " + fileName));
+            }
+        }
+    }
+
+    /**
+     * Spectra references of one ms_run
+     */
+    public static final class MsRunResult {
+        private final int msRunIndex;
+        private final List<String> unresolvedExamples = new ArrayList<String>();
+        private String location;
+        private File peakFile;
+        private boolean checked;
+        private int referenceCount;
+        private int unresolvedCount;
+
+        private MsRunResult(int msRunIndex) {
+            this.msRunIndex = msRunIndex;
+        }
+
+        public int getMsRunIndex() {
+            return msRunIndex;
+        }
+
+        /**
+         * @return String  location declared in the metadata, null if the ms_run is not declared
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * @return File    peak file of the ms_run, null if none matches its location
+         */
+        public File getPeakFile() {
+            return peakFile;
+        }
+
+        /**
+         * @return boolean true if the references have been checked against the spectra of the peak file
+         */
+        public boolean isChecked() {
+            return checked;
+        }
+
+        public int getReferenceCount() {
+            return referenceCount;
+        }
+
+        public int getUnresolvedCount() {
+            return unresolvedCount;
+        }
+
+        /**
+         * @return List<String>    first unresolved spectrum ids
+         */
+        public List<String> getUnresolvedExamples() {
+            return Collections.unmodifiableList(unresolvedExamples);
+        }
+    }
+}
@@ -2,17 +2,50 @@ package uk.ac.ebi.pride.data.validation;
 
 import com.google.common.base.CharMatcher;
 import uk.ac.ebi.pride.data.model.*;
+import uk.ac.ebi.pride.data.mztab.parser.MzTabFullDocumentQuickParser;
+import uk.ac.ebi.pride.data.mztab.parser.MzTabParser;
+import uk.ac.ebi.pride.data.mztab.parser.exceptions.MzTabParserException;
+import uk.ac.ebi.pride.data.mztab.parser.readers.MzTabLineScanConsumer;
+import uk.ac.ebi.pride.data.util.ChecksumScanConsumer;
 import uk.ac.ebi.pride.data.util.Constant;
+import uk.ac.ebi.pride.data.util.ContentScanConsumer;
+import uk.ac.ebi.pride.data.util.ContentScanResult;
+import uk.ac.ebi.pride.data.util.ContentScannerRegistry;
+import uk.ac.ebi.pride.data.util.ExecutorUtil;
+import uk.ac.ebi.pride.data.util.FileChecksumCalculator;
+import uk.ac.ebi.pride.data.util.ImzMLVerifier;
+import uk.ac.ebi.pride.data.util.FileURLUtil;
+import uk.ac.ebi.pride.data.util.FormatScanConsumer;
+import uk.ac.ebi.pride.data.util.IndexedMzmlVerifier;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.MzIdentMLSummary;
+import uk.ac.ebi.pride.data.util.OntologyIndex;
+import uk.ac.ebi.pride.data.util.OntologyIndexRegistry;
+import uk.ac.ebi.pride.data.util.SharedFileScan;
+import uk.ac.ebi.pride.data.util.TruncationDetector;
+import uk.ac.ebi.pride.data.util.TruncationScanConsumer;
 import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
 import uk.ac.ebi.pride.archive.dataprovider.project.SubmissionType;
 import uk.ac.ebi.pride.data.util.ValidateAnnotationFiles;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.*;
 import java.util.regex.Matcher;
 
 /**
@@ -25,6 +58,18 @@ import java.util.regex.Matcher;
  */
 public final class SubmissionValidator {
 
+    /**
+     * Default time allowed for checking a single data file in parallel validation, the whole validation is allowed
+     * this time for every round of parallelism data files
+     */
+    public static final long DEFAULT_DATA_FILE_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Retention policy of the reports of the individual checks while validating into a caller's report, so that the
+     * checks do not create the messages the caller's report would drop
+     */
+    private static final ThreadLocal<ValidationReport.RetentionPolicy> checkRetentionPolicy = new ThreadLocal<ValidationReport.RetentionPolicy>();
+
     private SubmissionValidator() {
     }
 
@@ -32,8 +77,130 @@ public final class SubmissionValidator {
      * Full validation, also checks the existence and access permissions of the data files
      */
     public static ValidationReport validateSubmission(Submission submission) throws IOException {
-        ValidationReport report = validateSubmissionSyntax(submission);
-        report.combine(validateDataFiles(submission.getDataFiles()));
+        return validateSubmission(submission, new ValidationReport());
+    }
+
+    /**
+     * Full validation into the given report, which decides which messages are kept and where they are streamed to.
+     * Success messages are not even created if the report drops them.
+     * <p/>
+     * The remaining checks are skipped once the report reaches its error limit.
+     *
+     * @param submission submission to validate
+     * @param report     report to add the messages to
+     * @return ValidationReport    the given report
+     */
+    public static ValidationReport validateSubmission(Submission submission, ValidationReport report) throws IOException {
+        setCheckRetentionPolicy(report);
+        try {
+            report.combine(validateProjectMetaData(submission.getProjectMetaData()));
+            if (report.isErrorLimitReached()) {
+                return report;
+            }
+
+            report.combine(validateFileMappings(submission));
+            if (report.isErrorLimitReached()) {
+                return report;
+            }
+
+            report.combine(validateSampleMetaData(submission, false));
+
+            for (DataFile dataFile : submission.getDataFiles()) {
+                if (report.isErrorLimitReached()) {
+                    break;
+                }
+                report.combine(validateDataFile(dataFile));
+            }
+
+            return report;
+        } finally {
+            checkRetentionPolicy.remove();
+        }
+    }
+
+    /**
+     * Full validation into the given report, reusing the cached messages of the project metadata and the data files
+     * which have not changed since they were cached. As with {@link #validateSubmission(Submission, ValidationReport)},
+     * success messages are not even created if the report drops them, such reports are cached apart.
+     * <p/>
+     * The file mappings and the sample metadata are always checked, they are cheap to check and depend on the whole
+     * submission. The remaining checks are skipped once the report reaches its error limit.
+     *
+     * @param submission submission to validate
+     * @param report     report to add the messages to
+     * @param cache      cache of the earlier validation messages, updated with the units checked
+     * @return ValidationReport    the given report
+     */
+    public static ValidationReport validateSubmission(Submission submission, ValidationReport report, ValidationCache cache) throws IOException {
+        setCheckRetentionPolicy(report);
+        try {
+            long metaDataFingerprint = getCacheKey(cache.fingerprint(submission.getProjectMetaData()));
+            ValidationReport metaDataReport = cache.get(metaDataFingerprint, submission.getProjectMetaData());
+            if (metaDataReport == null) {
+                metaDataReport = validateProjectMetaData(submission.getProjectMetaData());
+                cache.put(metaDataFingerprint, metaDataReport);
+            }
+            report.combine(metaDataReport);
+            if (report.isErrorLimitReached()) {
+                return report;
+            }
+
+            report.combine(validateFileMappings(submission));
+            if (report.isErrorLimitReached()) {
+                return report;
+            }
+
+            report.combine(validateSampleMetaData(submission, false));
+
+            Map<DataFile, Long> fingerprints = new IdentityHashMap<DataFile, Long>();
+            for (DataFile dataFile : submission.getDataFiles()) {
+                if (report.isErrorLimitReached()) {
+                    break;
+                }
+
+                long fingerprint = getCacheKey(cache.fingerprint(dataFile, fingerprints));
+                ValidationReport dataFileReport = cache.get(fingerprint, dataFile);
+                if (dataFileReport == null) {
+                    dataFileReport = validateDataFile(dataFile);
+                    cache.put(fingerprint, dataFileReport);
+                }
+                report.combine(dataFileReport);
+            }
+
+            return report;
+        } finally {
+            checkRetentionPolicy.remove();
+        }
+    }
+
+    /**
+     * Have the reports of the individual checks keep the successes only if the caller's report keeps them
+     */
+    private static void setCheckRetentionPolicy(ValidationReport report) {
+        checkRetentionPolicy.set(report.getRetentionPolicy().isRetainSuccess()
+                ? ValidationReport.RetentionPolicy.RETAIN_ALL : ValidationReport.RetentionPolicy.DROP_SUCCESS);
+    }
+
+    /**
+     * Key of a unit in the validation cache, the reports which only count their successes are cached apart from
+     * those which keep them
+     */
+    private static long getCacheKey(long fingerprint) {
+        return checkRetentionPolicy.get() == ValidationReport.RetentionPolicy.DROP_SUCCESS ? ~fingerprint : fingerprint;
+    }
+
+    /**
+     * Report the data files with the same content as warnings, see {@link DuplicateFileDetector}.
+     * <p/>
+     * Not part of {@link #validateSubmission(Submission)}: data files of the same size are sampled, and fully hashed
+     * if their samples match, so this reads the content of the data files.
+     *
+     * @param submission submission whose data files are compared
+     * @return ValidationReport    a warning for every group of data files with the same content
+     */
+    public static ValidationReport validateDuplicateFiles(Submission submission) throws IOException {
+        ValidationReport report = newReport();
+        new DuplicateFileDetector().validate(submission, report);
         return report;
     }
 
@@ -42,7 +209,7 @@ public final class SubmissionValidator {
      * data files
      */
     public static ValidationReport validateSubmissionSyntax(Submission submission) throws IOException {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         report.combine(validateProjectMetaData(submission.getProjectMetaData()))
                 .combine(validateFileMappings(submission))
                 .combine(validateSampleMetaData(submission, false));
@@ -53,7 +220,7 @@ public final class SubmissionValidator {
      * Validate project metadata
      */
     public static ValidationReport validateProjectMetaData(ProjectMetaData projectMetaData) throws IOException {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         if (projectMetaData == null) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project metadata cannot be empty"));
         } else {
@@ -91,7 +258,7 @@ public final class SubmissionValidator {
      * @return a ValidationReport with any reported errors.
      */
     public static ValidationReport validateFileMappings(Submission submission) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         List<DataFile> dataFiles = submission.getDataFiles();
         SubmissionType submissionType = submission.getProjectMetaData().getSubmissionType();
         if (dataFiles == null) {
@@ -158,16 +325,216 @@ public final class SubmissionValidator {
         }
         // cyclic referencing is early detected while parsing the file instead of checking here, to minimize the performance hit
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Data files are valid"));
+            addSuccess(report, "Data files are valid");
+        }
+        return report;
+    }
+
+    /**
+     * Cross-check the file mappings of the mzIdentML result files against the spectra data they reference, using
+     * the default parallelism
+     */
+    public static ValidationReport validateMzIdentMLMappings(Submission submission) {
+        return validateMzIdentMLMappings(submission, ExecutorUtil.getDefaultParallelism());
+    }
+
+    /**
+     * Cross-check the file mappings of the mzIdentML result files against the spectra data they reference.
+     * <p/>
+     * The local mzIdentML files are summarized concurrently. A spectra data location is matched to a mapped file by
+     * file name, or by base name so that a peak list can stand for the raw file it was generated from.
+     *
+     * @param submission  submission to check
+     * @param parallelism maximum number of mzIdentML files read at the same time
+     * @return ValidationReport    a warning for every spectra data without mapped file and every unreferenced mapped file
+     */
+    public static ValidationReport validateMzIdentMLMappings(Submission submission, int parallelism) {
+        ValidationReport report = newReport();
+
+        Map<File, DataFile> resultFiles = new LinkedHashMap<File, DataFile>();
+        for (DataFile dataFile : submission.getDataFileByType(ProjectFileType.RESULT)) {
+            if (dataFile.isFile() && dataFile.getFileFormat() == MassSpecFileFormat.MZIDENTML) {
+                resultFiles.put(dataFile.getFile(), dataFile);
+            }
+        }
+        if (resultFiles.isEmpty()) {
+            return report;
+        }
+
+        Map<File, MzIdentMLSummary> summaries;
+        try {
+            summaries = MzIdentMLSummary.summarizeAll(resultFiles.keySet(), parallelism);
+        } catch (InterruptedIOException e) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Interrupted while reading mzIdentML files"));
+            return report;
+        }
+
+        for (Map.Entry<File, DataFile> entry : resultFiles.entrySet()) {
+            DataFile resultFile = entry.getValue();
+            MzIdentMLSummary summary = summaries.get(entry.getKey());
+            if (summary == null) {
+                report.addMessage(new ValidationMessage(resultFile, ValidationMessage.Type.ERROR,
+                        "Failed to read mzIdentML file: " + entry.getKey().getAbsolutePath()));
+                continue;
+            }
+
+            boolean consistent = true;
+            if (summary.getSpectrumIdentificationItemCount() == 0) {
+                consistent = false;
+                report.addMessage(new ValidationMessage(resultFile, ValidationMessage.Type.WARNING,
+                        "No spectrum identification in mzIdentML file: " + resultFile.getFileName()));
+            }
+
+            Set<DataFile> referencedMappings = new HashSet<DataFile>();
+            for (String location : summary.getSpectraDataLocations()) {
+                String spectraDataName = FileURLUtil.getFileName(location);
+                DataFile mapping = findMappingByName(resultFile, spectraDataName);
+                if (mapping == null) {
+                    consistent = false;
+                    report.addMessage(new ValidationMessage(resultFile, ValidationMessage.Type.WARNING, "Spectra data "
+                            + spectraDataName + " of " + resultFile.getFileName() + " is not mapped to any file"));
+                } else {
+                    referencedMappings.add(mapping);
+                }
+            }
+            for (DataFile mapping : resultFile.getFileMappings()) {
+                if ((ProjectFileType.RAW.equals(mapping.getFileType()) || ProjectFileType.PEAK.equals(mapping.getFileType()))
+                        && !referencedMappings.contains(mapping)) {
+                    consistent = false;
+                    report.addMessage(new ValidationMessage(resultFile, ValidationMessage.Type.WARNING, "Mapped file "
+                            + mapping.getFileName() + " is not referenced by the spectra data of " + resultFile.getFileName()));
+                }
+            }
+
+            if (consistent) {
+                addSuccess(report, resultFile, "File mappings match the spectra data of " + resultFile.getFileName());
+            }
         }
+
         return report;
     }
 
+    /**
+     * Pair the imzML files of a submission with their ibd files and verify each pair.
+     * <p/>
+     * An imzML file is paired with the ibd file of the same base name. When their UUIDs differ, the ibd file with
+     * the UUID of the imzML file is looked for, so swapped files are reported as such. Only the first bytes and the
+     * size of the ibd files are read.
+     *
+     * @param submission submission to check
+     * @return ValidationReport    an error for every imzML or ibd file without its counterpart and every invalid pair
+     */
+    public static ValidationReport validateImzMLPairs(Submission submission) {
+        ValidationReport report = newReport();
+
+        List<DataFile> imzMLFiles = new ArrayList<DataFile>();
+        Map<String, DataFile> ibdFilesByBaseName = new LinkedHashMap<String, DataFile>();
+        for (DataFile dataFile : submission.getDataFiles()) {
+            String fileName = dataFile.isFile() ? dataFile.getFileName().toLowerCase(Locale.ROOT) : "";
+            if (fileName.endsWith(".imzml")) {
+                imzMLFiles.add(dataFile);
+            } else if (fileName.endsWith(".ibd")) {
+                ibdFilesByBaseName.put(getBaseName(fileName), dataFile);
+            }
+        }
+        if (imzMLFiles.isEmpty() && ibdFilesByBaseName.isEmpty()) {
+            return report;
+        }
+
+        // the UUIDs of the ibd files are only read when a pair by name does not match
+        Map<String, DataFile> ibdFilesByUuid = null;
+        Set<DataFile> pairedIbdFiles = new HashSet<DataFile>();
+        for (DataFile imzMLFile : imzMLFiles) {
+            try {
+                DataFile ibdFile = ibdFilesByBaseName.get(getBaseName(imzMLFile.getFileName().toLowerCase(Locale.ROOT)));
+                String uuid = ImzMLVerifier.readUuid(imzMLFile.getFile());
+                if (uuid != null && (ibdFile == null || !uuid.equals(ImzMLVerifier.readIbdUuid(ibdFile.getFile())))) {
+                    if (ibdFilesByUuid == null) {
+                        ibdFilesByUuid = new HashMap<String, DataFile>();
+                        for (DataFile candidate : ibdFilesByBaseName.values()) {
+                            String ibdUuid = ImzMLVerifier.readIbdUuid(candidate.getFile());
+                            if (ibdUuid != null) {
+                                ibdFilesByUuid.put(ibdUuid, candidate);
+                            }
+                        }
+                    }
+                    DataFile uuidMatch = ibdFilesByUuid.get(uuid);
+                    if (uuidMatch != null) {
+                        if (ibdFile != null) {
+                            report.addMessage(new ValidationMessage(imzMLFile, ValidationMessage.Type.ERROR, "The UUID of "
+                                    + imzMLFile.getFileName() + " matches " + uuidMatch.getFileName() + " instead of " + ibdFile.getFileName()));
+                        }
+                        ibdFile = uuidMatch;
+                    }
+                }
+
+                if (ibdFile == null) {
+                    report.addMessage(new ValidationMessage(imzMLFile, ValidationMessage.Type.ERROR,
+                            "No ibd file found for imzML file: " + imzMLFile.getFileName()));
+                    continue;
+                }
+                pairedIbdFiles.add(ibdFile);
+
+                ImzMLVerifier.Result result = ImzMLVerifier.verify(imzMLFile.getFile(), ibdFile.getFile());
+                if (result.isValid()) {
+                    addSuccess(report, imzMLFile, "imzML file "
+                            + imzMLFile.getFileName() + " matches " + ibdFile.getFileName() + ": " + result.getSpectrumCount() + " spectra");
+                } else {
+                    report.addMessage(new ValidationMessage(imzMLFile, ValidationMessage.Type.ERROR, "imzML file "
+                            + imzMLFile.getFileName() + " does not match " + ibdFile.getFileName() + ": " + result.getProblems().get(0)
+                            + (result.getProblemCount() > 1 ? " (" + result.getProblemCount() + " problems)" : "")));
+                }
+            } catch (IOException e) {
+                report.addMessage(new ValidationMessage(imzMLFile, ValidationMessage.Type.ERROR,
+                        "Failed to verify imzML file " + imzMLFile.getFileName() + ": " + e.getMessage()));
+            }
+        }
+
+        for (DataFile ibdFile : ibdFilesByBaseName.values()) {
+            if (!pairedIbdFiles.contains(ibdFile)) {
+                report.addMessage(new ValidationMessage(ibdFile, ValidationMessage.Type.ERROR,
+                        "No imzML file found for ibd file: " + ibdFile.getFileName()));
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Find the mapping of a result file for a spectra data file name, by file name first, then by base name
+     */
+    private static DataFile findMappingByName(DataFile resultFile, String fileName) {
+        String baseName = getBaseName(fileName);
+        DataFile baseNameMatch = null;
+        for (DataFile mapping : resultFile.getFileMappings()) {
+            String mappingName = mapping.getFileName();
+            if (mappingName == null) {
+                continue;
+            }
+            if (mappingName.equals(fileName)) {
+                return mapping;
+            }
+            if (baseNameMatch == null && getBaseName(mappingName).equals(baseName)) {
+                baseNameMatch = mapping;
+            }
+        }
+        return baseNameMatch;
+    }
+
+    /**
+     * File name without its compression and format extensions, e.g. run1 for run1.mgf.gz
+     */
+    private static String getBaseName(String fileName) {
+        String name = fileName.replaceFirst("(?i)\\.(gz|zip)$", "");
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
     /**
      * Validate sample metadata
      */
     public static ValidationReport validateSampleMetaData(Submission submission, boolean experimentalFactorOptional) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         List<DataFile> dataFiles = submission.getDataFiles();
         for (DataFile dataFile : dataFiles) {
             SampleMetaData sampleMetaData = dataFile.getSampleMetaData();
@@ -178,7 +545,7 @@ public final class SubmissionValidator {
             }
         }
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Sample metadata is valid"));
+            addSuccess(report, "Sample metadata is valid");
         }
         return report;
     }
@@ -190,7 +557,7 @@ public final class SubmissionValidator {
      * @return the validation report about sample metadata.
      */
     public static ValidationReport validateSampleMetaDataEntry(DataFile dataFile, boolean experimentalFactorOptional) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         if (dataFile.getFileType().equals(ProjectFileType.RESULT)) {
             SampleMetaData sampleMetaDataEntry = dataFile.getSampleMetaData();
             report.combine(validateSpecies(sampleMetaDataEntry.getMetaData(SampleMetaData.Type.SPECIES)))
@@ -212,7 +579,7 @@ public final class SubmissionValidator {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Sample metadata entry must have a matching result file: " + dataFile.getFileId()));
         }
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Sample metadata entry is valid: " + dataFile.getFileId()));
+            addSuccess(report, "Sample metadata entry is valid: " + dataFile.getFileId());
         }
         return report;
     }
@@ -221,7 +588,7 @@ public final class SubmissionValidator {
      * Validate contact
      */
     public static ValidationReport validateContact(Contact contact) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         if (contact == null) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Contact cannot be empty"));
         } else {
@@ -237,13 +604,13 @@ public final class SubmissionValidator {
      * Validate submitter name
      */
     public static ValidationReport validateName(String name) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         if (!noneEmptyString(name)) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Submitter name is empty"));
         } else {
             String trimmedName = name.trim();
             if (trimmedName.length()>0 && trimmedName.contains(" ")) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Submitter name is valid: " + name));
+                addSuccess(report, "Submitter name is valid: " + name);
             } else {
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Submitter name must have a space"));
             }
@@ -255,14 +622,14 @@ public final class SubmissionValidator {
      * Validate email address
      */
     public static ValidationReport validateEmail(String email) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (email == null) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Email address cannot be null"));
         } else {
             Matcher m = Constant.EMAIL_PATTERN.matcher(email);
             if (m.matches()) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Email address is valid"));
+                addSuccess(report, "Email address is valid");
             } else {
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Email address is invalid: " + email));
             }
@@ -275,12 +642,12 @@ public final class SubmissionValidator {
      * Validate affiliation
      */
     public static ValidationReport validateAffiliation(String affiliation) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         if (!noneEmptyString(affiliation)) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Affiliation cannot be empty"));
         } else {
             if (affiliation.length()<=500) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Affiliation is valid"));
+                addSuccess(report, "Affiliation is valid");
             } else{
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Affiliation must be <500 characters"));
             }
@@ -289,17 +656,24 @@ public final class SubmissionValidator {
     }
 
     private static ValidationReport validateProjectTags(Set<String> projectTags) throws IOException {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
+        // permitted tags are only fetched when there is a tag to check
+        Set<String> validProjectTags = null;
         for (String projectTag : projectTags) {
             if (!noneEmptyString(projectTag)) {
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project tag cannot be empty"));
             } else if(projectTag.contains(",")) {
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project tag cannot contain commas. Multiple tags should report in multiple entries"));
-            }else if(!ValidateAnnotationFiles.getValidProjectTags().contains(projectTag)) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project tag is not valid. " + projectTag + " does not match with permitted tags at: " + Constant.PROJECT_TAG_FILE + ". New tags are accepted by Pull Requests."));
-            }else {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Project tag is valid: " + projectTag));
+            } else {
+                if (validProjectTags == null) {
+                    validProjectTags = ValidateAnnotationFiles.getValidProjectTags();
+                }
+                if (!validProjectTags.contains(projectTag)) {
+                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project tag is not valid. " + projectTag + " does not match with permitted tags at: " + Constant.PROJECT_TAG_FILE + ". New tags are accepted by Pull Requests."));
+                } else {
+                    addSuccess(report, "Project tag is valid: " + projectTag);
+                }
             }
         }
 
@@ -310,11 +684,11 @@ public final class SubmissionValidator {
      * Validate user name
      */
     public static ValidationReport validateUserName(String userName) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (userName != null) {
             if (noneEmptyString(userName)) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "User name is valid"));
+                addSuccess(report, "User name is valid");
             } else {
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "User anme cannot be empty"));
             }
@@ -327,10 +701,10 @@ public final class SubmissionValidator {
      * Validate project title
      */
     public static ValidationReport validateProjectTile(String title) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (isValidProjectTitle(title)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Project title is valid"));
+            addSuccess(report, "Project title is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project title must be less than " + Constant.MAXIMUM_SHORT_STRING_LENGTH + " and less than " + Constant.MINIMUM_SHORT_STRING_LENGTH + " characters"));
         }
@@ -342,10 +716,10 @@ public final class SubmissionValidator {
      * Validate project description
      */
     public static ValidationReport validateProjectDescription(String projectDesc) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (isValidLongString(projectDesc)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Project description is valid"));
+            addSuccess(report, "Project description is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Project description must be both more than " + Constant.MINIMUM_STRING_LENGTH + " and less than " + Constant.MAXIMUM_LONG_STRING_LENGTH + " characters"));
         }
@@ -357,10 +731,10 @@ public final class SubmissionValidator {
      * Validate sample processing protocol
      */
     public static ValidationReport validateSampleProcessingProtocol(String sampleProtocol) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (isValidLongString(sampleProtocol)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Sample processing protocol is valid"));
+            addSuccess(report, "Sample processing protocol is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Sample processing protocol must be both more than " + Constant.MINIMUM_STRING_LENGTH + " and less than " + Constant.MAXIMUM_LONG_STRING_LENGTH + " characters"));
         }
@@ -372,10 +746,10 @@ public final class SubmissionValidator {
      * Validate data processing protocol
      */
     public static ValidationReport validateDataProcessingProtocol(String dataProtocol) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (isValidLongString(dataProtocol)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Data processing protocol is valid"));
+            addSuccess(report, "Data processing protocol is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data processing protocol must be both more than " + Constant.MINIMUM_STRING_LENGTH + " and less than " + Constant.MAXIMUM_LONG_STRING_LENGTH + " characters"));
         }
@@ -387,10 +761,10 @@ public final class SubmissionValidator {
      * Validate other omics link
      */
     public static ValidationReport validateOtherOmicsLink(String otherOmicsLink) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (otherOmicsLink == null || "".equals(otherOmicsLink.trim()) || isValidMediumString(otherOmicsLink)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Other omics link is valid"));
+            addSuccess(report, "Other omics link is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Other omics link must be less than " + Constant.MAXIMUM_MEDIUM_STRING_LENGTH + " characters"));
         }
@@ -402,12 +776,13 @@ public final class SubmissionValidator {
      * Validate experiment methods
      */
     public static ValidationReport validateExperimentMethods(Set<CvParam> expMethods) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (expMethods == null || expMethods.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Experiment methods cannot be empty"));
         } else {
             for (CvParam experimentMethod : expMethods) {
+                validateOntologyTerm(experimentMethod, "Experiment method", report);
                 if (!Constant.PRIDE.equalsIgnoreCase(experimentMethod.getCvLabel()) && !Constant.MS.equalsIgnoreCase(experimentMethod.getCvLabel())) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Experiment methods must be defined using a PRIDE CV term: " + experimentMethod.getAccession()));
                 }
@@ -415,20 +790,47 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Experiment methods are valid"));
+            addSuccess(report, "Experiment methods are valid");
         }
 
         return report;
     }
 
+    /**
+     * Check a cv term against the local index of its ontology, if one has been registered
+     */
+    private static void validateOntologyTerm(CvParam cvParam, String description, ValidationReport report) {
+        OntologyIndex index = OntologyIndexRegistry.get(cvParam.getCvLabel());
+        if (index == null) {
+            return;
+        }
+
+        String accession = cvParam.getAccession();
+        if (accession != null && !index.containsAccession(accession) && !accession.contains(":")) {
+            // NEWT accessions are usually given without the ontology prefix
+            accession = index.getCvLabel() + ":" + accession.trim();
+        }
+
+        if (!index.containsAccession(accession)) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, description + " accession cannot be found in " + index.getCvLabel() + ": " + cvParam.getAccession()));
+        } else {
+            if (index.isObsolete(accession)) {
+                report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, description + " is an obsolete " + index.getCvLabel() + " term: " + cvParam.getAccession()));
+            }
+            if (!index.matches(accession, cvParam.getName())) {
+                report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, description + " name does not match " + index.getCvLabel() + " term " + cvParam.getAccession() + ": " + index.getName(accession)));
+            }
+        }
+    }
+
     /**
      * Validate keywords
      */
     public static ValidationReport validateKeywords(String keywords) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (noneEmptyString(keywords) && keywords.length()<500) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Keywords are valid"));
+            addSuccess(report, "Keywords are valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Keywords cannot be empty"));
         }
@@ -440,7 +842,7 @@ public final class SubmissionValidator {
      * Validate PubMed ids
      */
     public static ValidationReport validatePubmedIds(Set<String> pubmedIds) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (pubmedIds != null) {
             for (String pubmedId : pubmedIds) {
@@ -455,7 +857,7 @@ public final class SubmissionValidator {
      * Validate DOIs
      */
     public static ValidationReport validateDois(Set<String> dois) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (dois != null) {
             for (String doi : dois) {
@@ -470,11 +872,11 @@ public final class SubmissionValidator {
      * Validate resubmission px accession
      */
     public static ValidationReport validateResubmissionPxAccession(String px) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (px != null) {
             if (isValidProjectAccession(px)) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Resubmission PX accession is valid: " + px));
+                addSuccess(report, "Resubmission PX accession is valid: " + px);
             } else {
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Resubmission PX accession is invalid: " + px));
             }
@@ -487,12 +889,12 @@ public final class SubmissionValidator {
      * Validate reanalysis px accessions
      */
     public static ValidationReport validateReanalysisPxAccessions(Collection<String> pxs) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (pxs != null) {
             for (String px : pxs) {
                 if (isValidProjectAccession(px)) {
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Reanalysis PX accession is valid: " + px));
+                    addSuccess(report, "Reanalysis PX accession is valid: " + px);
                 } else {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Reanalysis PX accession is invalid: " + px));
                 }
@@ -506,12 +908,12 @@ public final class SubmissionValidator {
      * Validate reason for partial submission
      */
     public static ValidationReport validateReasonForPartialSubmission(String reason, SubmissionType submissionType) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (reason != null) {
             if (submissionType.equals(SubmissionType.PARTIAL)) {
                 if (isValidMediumString(reason)) {
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Reason for partial submission is valid"));
+                    addSuccess(report, "Reason for partial submission is valid");
                 } else {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Reason for partial submission must be less than " + Constant.MAXIMUM_MEDIUM_STRING_LENGTH + " characters"));
                 }
@@ -527,13 +929,14 @@ public final class SubmissionValidator {
      * Validate species
      */
     public static ValidationReport validateSpecies(Set<? extends Param> species) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (species == null || species.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Species cannot be empty"));
         } else {
             for (Param sp : species) {
                 CvParam spCvParam = (CvParam) sp;
+                validateOntologyTerm(spCvParam, "Species", report);
                 if (!Constant.NEWT.equalsIgnoreCase(spCvParam.getCvLabel())) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Species must be defined using NEWT ontology: " + spCvParam.getAccession()));
                 }
@@ -541,7 +944,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Species are valid"));
+            addSuccess(report, "Species are valid");
         }
 
         return report;
@@ -551,13 +954,14 @@ public final class SubmissionValidator {
      * Validate tissues
      */
     public static ValidationReport validateTissues(Set<? extends Param> tissues) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (tissues == null || tissues.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Tissues cannot be empty"));
         } else {
             for (Param ts : tissues) {
                 CvParam tsCvParam = (CvParam) ts;
+                validateOntologyTerm(tsCvParam, "Tissue", report);
                 String cvLabel = tsCvParam.getCvLabel();
                 if (!Constant.BTO.equalsIgnoreCase(cvLabel) && !Constant.PRIDE.equalsIgnoreCase(cvLabel)) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Tissues must be defined using BTO ontology: " + tsCvParam.getAccession()));
@@ -566,7 +970,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Tissues are valid"));
+            addSuccess(report, "Tissues are valid");
         }
 
         return report;
@@ -576,13 +980,14 @@ public final class SubmissionValidator {
      * Validate cell types
      */
     public static ValidationReport validateCellTypes(Set<? extends Param> cellTypes) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (cellTypes == null || cellTypes.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "Cell types are empty"));
         } else {
             for (Param ct : cellTypes) {
                 CvParam ctCvParam = (CvParam) ct;
+                validateOntologyTerm(ctCvParam, "Cell type", report);
                 if (!Constant.CL.equalsIgnoreCase(ctCvParam.getCvLabel())) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Cell type must be defined using CL ontology: " + ctCvParam.getAccession()));
                 }
@@ -590,7 +995,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Cell types are valid"));
+            addSuccess(report, "Cell types are valid");
         }
 
         return report;
@@ -600,13 +1005,14 @@ public final class SubmissionValidator {
      * Validate diseases
      */
     public static ValidationReport validateDiseases(Set<? extends Param> diseases) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (diseases == null || diseases.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "Diseases are empty"));
         } else {
             for (Param de : diseases) {
                 CvParam deCvParam = (CvParam) de;
+                validateOntologyTerm(deCvParam, "Disease", report);
                 if (!Constant.DOID.equalsIgnoreCase(deCvParam.getCvLabel())) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Disease must be defined using DOID ontology: " + deCvParam.getAccession()));
                 }
@@ -614,7 +1020,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Disease are valid"));
+            addSuccess(report, "Disease are valid");
         }
 
         return report;
@@ -624,13 +1030,14 @@ public final class SubmissionValidator {
      * Validate instruments
      */
     public static ValidationReport validateInstruments(Set<? extends Param> instruments) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (instruments == null || instruments.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Instruments cannot be empty"));
         } else {
             for (Param instrument : instruments) {
                 CvParam instrumentCvParam = (CvParam) instrument;
+                validateOntologyTerm(instrumentCvParam, "Instrument", report);
                 if (!Constant.MS.equalsIgnoreCase(instrumentCvParam.getCvLabel()) && !Constant.PRIDE.equalsIgnoreCase(instrumentCvParam.getCvLabel())) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Instrument must be defined using either MS or PRIDE ontology: " + instrumentCvParam.getAccession()));
                 }
@@ -641,7 +1048,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Instruments are valid"));
+            addSuccess(report, "Instruments are valid");
         }
 
         return report;
@@ -651,13 +1058,14 @@ public final class SubmissionValidator {
      * Validate modifications
      */
     public static ValidationReport validateModifications(Set<CvParam> mods) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (mods == null || mods.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Modifications cannot be empty"));
         } else {
             for (CvParam mod : mods) {
                 String cvLabel = mod.getCvLabel();
+                validateOntologyTerm(mod, "Modification", report);
                 if (!Constant.PSI_MOD.equalsIgnoreCase(cvLabel) && !Constant.UNIMOD.equalsIgnoreCase(cvLabel) && !Constant.PRIDE.equalsIgnoreCase(cvLabel)
                         && !(Constant.MS.equalsIgnoreCase(cvLabel) && "MS:1001460".equalsIgnoreCase(mod.getAccession()))) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Modification must be defined using PSI MOD, UNIMOD or PRIDE: " + mod.getAccession()));
@@ -670,7 +1078,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Modifications are valid"));
+            addSuccess(report, "Modifications are valid");
         }
 
         return report;
@@ -680,13 +1088,14 @@ public final class SubmissionValidator {
      * Validate quantifications
      */
     public static ValidationReport validateQuantifications(Set<? extends Param> quantifications) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (quantifications == null || quantifications.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "Quantifications are empty"));
         } else {
             for (Param quantification : quantifications) {
                 CvParam quantCvParam = (CvParam) quantification;
+                validateOntologyTerm(quantCvParam, "Quantification", report);
                 if (!Constant.PRIDE.equalsIgnoreCase(quantCvParam.getCvLabel()) && !Constant.MS.equalsIgnoreCase(quantCvParam.getCvLabel())) {
                     report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Quantifications musth be defined using either PRIDE ontology or MS ontology: " + quantCvParam.getAccession()));
                 }
@@ -694,7 +1103,7 @@ public final class SubmissionValidator {
         }
 
         if (!report.hasError() && !report.hasWarning()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Quantifications are valid"));
+            addSuccess(report, "Quantifications are valid");
         }
 
         return report;
@@ -707,9 +1116,9 @@ public final class SubmissionValidator {
      * @return the validation report about success or error.
      */
     public static ValidationReport validateExperimentalFactor(String expFactor) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
         if (isValidShortString(expFactor)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Experimental factor is valid"));
+            addSuccess(report, "Experimental factor is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Experimental factor must be less than " + Constant.MAXIMUM_SHORT_STRING_LENGTH + " characters"));
         }
@@ -720,19 +1129,19 @@ public final class SubmissionValidator {
      * Validate additional
      */
     public static ValidationReport validateAdditional(Set<Param> additional) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (additional == null || additional.isEmpty()) {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "Additional fields are empty"));
         } else {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Additional fields are valid"));
+            addSuccess(report, "Additional fields are valid");
         }
 
         return report;
     }
 
     public static ValidationReport validateDataFiles(Collection<DataFile> dataFiles) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         for (DataFile dataFile : dataFiles) {
             report.combine(validateDataFile(dataFile));
@@ -741,13 +1150,318 @@ public final class SubmissionValidator {
         return report;
     }
 
+    /**
+     * Validate data files in parallel, using the default timeout for each round of parallelism data files
+     *
+     * @param dataFiles   data files to validate
+     * @param parallelism maximum number of data files checked at the same time
+     * @return ValidationReport    messages of all the data files, in the same order as the data files
+     */
+    public static ValidationReport validateDataFiles(Collection<DataFile> dataFiles, int parallelism) {
+        long rounds = Math.max(1, (dataFiles.size() + parallelism - 1) / parallelism);
+        return validateDataFiles(dataFiles, parallelism, rounds * DEFAULT_DATA_FILE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Validate data files in parallel, which pays off when file system calls are slow, e.g. on network storage.
+     * <p/>
+     * The messages are the same as the ones of {@link #validateDataFiles(java.util.Collection)}, in the same order.
+     * The timeout is a single deadline for the whole validation: the data files which have not been checked by then
+     * are reported as errors.
+     *
+     * @param dataFiles   data files to validate
+     * @param parallelism maximum number of data files checked at the same time
+     * @param timeout     time allowed for checking all the data files
+     * @param unit        unit of the timeout
+     * @return ValidationReport    messages of all the data files, in the same order as the data files
+     */
+    public static ValidationReport validateDataFiles(Collection<DataFile> dataFiles, int parallelism, long timeout, TimeUnit unit) {
+        ValidationReport report = newReport();
+        List<DataFile> pendingDataFiles = new ArrayList<DataFile>(dataFiles.size());
+        List<Future<ValidationReport>> pendingReports = new ArrayList<Future<ValidationReport>>(dataFiles.size());
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ExecutorService executor = ExecutorUtil.newBoundedIoExecutor(parallelism, "data-file-validator");
+        try {
+            for (final DataFile dataFile : dataFiles) {
+                pendingDataFiles.add(dataFile);
+                pendingReports.add(executor.submit(new Callable<ValidationReport>() {
+                    @Override
+                    public ValidationReport call() throws Exception {
+                        return validateDataFile(dataFile);
+                    }
+                }));
+            }
+
+            // merge the reports in submission order
+            for (int i = 0; i < pendingReports.size(); i++) {
+                Future<ValidationReport> pendingReport = pendingReports.get(i);
+                try {
+                    report.combine(pendingReport.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    pendingReport.cancel(true);
+                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR,
+                            "Timed out while checking data file: " + getDataFileLocation(pendingDataFiles.get(i))));
+                } catch (ExecutionException e) {
+                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR,
+                            "Failed to check data file: " + getDataFileLocation(pendingDataFiles.get(i)) + ", " + e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR,
+                            "Interrupted while checking data file: " + getDataFileLocation(pendingDataFiles.get(i))));
+                    break;
+                }
+            }
+        } finally {
+            ExecutorUtil.shutdown(executor);
+        }
+
+        return report;
+    }
+
+    /**
+     * Scan the content of the local data files whose format has a registered content scanner, such as MGF, FASTA
+     * and MSP files, see {@link ContentScannerRegistry}
+     *
+     * @param dataFiles   data files to check, the ones without content scanner are skipped
+     * @param parallelism maximum number of files scanned at the same time
+     * @return ValidationReport    an error for every empty or malformed file, a warning for duplicate identifiers
+     */
+    public static ValidationReport validateFileContents(Collection<DataFile> dataFiles, int parallelism) {
+        ValidationReport report = newReport();
+
+        Map<File, MassSpecFileFormat> formats = new LinkedHashMap<File, MassSpecFileFormat>();
+        Map<File, DataFile> scannedFiles = new LinkedHashMap<File, DataFile>();
+        for (DataFile dataFile : dataFiles) {
+            MassSpecFileFormat format = dataFile.isFile() ? dataFile.getFileFormat() : null;
+            if (ContentScannerRegistry.get(format) != null) {
+                formats.put(dataFile.getFile(), format);
+                scannedFiles.put(dataFile.getFile(), dataFile);
+            }
+        }
+        if (formats.isEmpty()) {
+            return report;
+        }
+
+        Map<File, ContentScanResult> results;
+        try {
+            results = ContentScannerRegistry.scanAll(formats, parallelism);
+        } catch (InterruptedIOException e) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Interrupted while scanning data files"));
+            return report;
+        }
+
+        for (Map.Entry<File, DataFile> entry : scannedFiles.entrySet()) {
+            DataFile dataFile = entry.getValue();
+            ContentScanResult result = results.get(entry.getKey());
+            if (result == null) {
+                report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR,
+                        "Failed to scan data file: " + entry.getKey().getAbsolutePath()));
+                continue;
+            }
+
+            reportContentScan(dataFile, result, report);
+        }
+
+        return report;
+    }
+
+    /**
+     * Check the local data files for truncation and corruption, from a few bounded reads per file, see
+     * {@link TruncationDetector}
+     *
+     * @param dataFiles   data files to check
+     * @param parallelism maximum number of files checked at the same time
+     * @return ValidationReport    an error for every truncated or corrupted file
+     */
+    public static ValidationReport validateTruncation(Collection<DataFile> dataFiles, int parallelism) {
+        ValidationReport report = newReport();
+
+        Map<File, MassSpecFileFormat> formats = new LinkedHashMap<File, MassSpecFileFormat>();
+        Map<File, DataFile> checkedFiles = new LinkedHashMap<File, DataFile>();
+        for (DataFile dataFile : dataFiles) {
+            if (dataFile.isFile() && dataFile.getFile().isFile()) {
+                formats.put(dataFile.getFile(), dataFile.getFileFormat());
+                checkedFiles.put(dataFile.getFile(), dataFile);
+            }
+        }
+        if (formats.isEmpty()) {
+            return report;
+        }
+
+        Map<File, TruncationDetector.Result> results;
+        try {
+            results = TruncationDetector.checkAll(formats, parallelism);
+        } catch (InterruptedIOException e) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Interrupted while checking data files for truncation"));
+            return report;
+        }
+
+        for (Map.Entry<File, DataFile> entry : checkedFiles.entrySet()) {
+            DataFile dataFile = entry.getValue();
+            TruncationDetector.Result result = results.get(entry.getKey());
+            if (result == null) {
+                report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR,
+                        "Failed to check data file for truncation: " + entry.getKey().getAbsolutePath()));
+            } else {
+                reportTruncation(dataFile, result, report);
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Check the local data files for truncation, scan their content, parse the mzTab files and compute their
+     * checksums, reading every file only once, see {@link SharedFileScan}. The format of a file is detected from the
+     * first chunk read. The checksums are cached by {@link FileChecksumCalculator#getDefault()}, the formats and the
+     * parsed mzTab documents are set on the data files.
+     * <p/>
+     * Once read, the offset index of the uncompressed files detected as indexed mzML is spot checked, see
+     * {@link IndexedMzmlVerifier}.
+     *
+     * @param dataFiles   data files to check
+     * @param algorithm   checksum algorithm
+     * @param parallelism maximum number of files read at the same time
+     * @return ValidationReport    the messages of {@link #validateTruncation(Collection, int)} and
+     * {@link #validateFileContents(Collection, int)}, and an error for every invalid mzTab file and every invalid
+     * mzML offset index
+     */
+    public static ValidationReport validateFilesInOneRead(Collection<DataFile> dataFiles, FileChecksumCalculator.Algorithm algorithm,
+                                                          int parallelism) {
+        ValidationReport report = newReport();
+
+        Map<File, DataFile> readFiles = new LinkedHashMap<File, DataFile>();
+        Map<File, SharedFileScan> scans = new LinkedHashMap<File, SharedFileScan>();
+        // formats detected by the planners, which run in the scan threads
+        final Map<File, MassSpecFileFormat> formats = new ConcurrentHashMap<File, MassSpecFileFormat>();
+        for (final DataFile dataFile : dataFiles) {
+            File file = dataFile.isFile() ? dataFile.getFile() : null;
+            if (file == null || !file.isFile() || scans.containsKey(file)) {
+                continue;
+            }
+
+            SharedFileScan scan = new SharedFileScan(file)
+                    .addConsumer(new ChecksumScanConsumer(algorithm, FileChecksumCalculator.getDefault()))
+                    .setPlanner(new SharedFileScan.Planner() {
+                        @Override
+                        public void plan(SharedFileScan scan, ByteBuffer head) throws IOException {
+                            MassSpecFileFormat format = FormatScanConsumer.detect(scan.getFile(), head);
+                            dataFile.setFileFormat(format);
+                            if (format != null) {
+                                formats.put(scan.getFile(), format);
+                            }
+                            scan.addConsumer(new TruncationScanConsumer(format));
+                            ContentScanConsumer contentScan = ContentScanConsumer.forFormat(format);
+                            if (contentScan != null) {
+                                scan.addConsumer(contentScan);
+                            }
+                            if (format == MassSpecFileFormat.MZTAB) {
+                                MzTabParser parser = new MzTabFullDocumentQuickParser(scan.getFile());
+                                parser.startParsing();
+                                scan.addConsumer(new MzTabLineScanConsumer(parser));
+                            }
+                        }
+                    });
+            readFiles.put(file, dataFile);
+            scans.put(file, scan);
+        }
+        if (scans.isEmpty()) {
+            return report;
+        }
+
+        Set<SharedFileScan> completed;
+        try {
+            completed = new HashSet<SharedFileScan>(SharedFileScan.runAll(scans.values(), parallelism));
+        } catch (InterruptedIOException e) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Interrupted while reading data files"));
+            return report;
+        }
+
+        for (Map.Entry<File, DataFile> entry : readFiles.entrySet()) {
+            DataFile dataFile = entry.getValue();
+            SharedFileScan scan = scans.get(entry.getKey());
+            if (!completed.contains(scan)) {
+                report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR,
+                        "Failed to read data file: " + entry.getKey().getAbsolutePath()));
+                continue;
+            }
+
+            for (SharedFileScan.Consumer consumer : scan.getConsumers()) {
+                if (consumer instanceof TruncationScanConsumer && ((TruncationScanConsumer) consumer).getResult() != null) {
+                    reportTruncation(dataFile, ((TruncationScanConsumer) consumer).getResult(), report);
+                } else if (consumer instanceof ContentScanConsumer && ((ContentScanConsumer) consumer).getResult() != null) {
+                    reportContentScan(dataFile, ((ContentScanConsumer) consumer).getResult(), report);
+                } else if (consumer instanceof MzTabLineScanConsumer) {
+                    Throwable failure = scan.getFailures().get(consumer);
+                    reportMzTab(dataFile, ((MzTabLineScanConsumer) consumer).getParser(), failure, report);
+                } else if (scan.hasFailed(consumer)) {
+                    report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR, "Failed to check data file "
+                            + dataFile.getFileName() + ": " + scan.getFailures().get(consumer).getMessage()));
+                }
+            }
+
+            if (formats.get(entry.getKey()) == MassSpecFileFormat.INDEXED_MZML
+                    && entry.getKey().getName().toLowerCase().endsWith(".mzml")) {
+                validateMzmlIndex(dataFile, report);
+            }
+        }
+
+        return report;
+    }
+
+    private static void reportMzTab(DataFile dataFile, MzTabParser parser, Throwable failure, ValidationReport report) {
+        if (failure == null) {
+            try {
+                parser.finishParsing();
+                dataFile.setMzTabDocument(parser.getMzTabDocument());
+            } catch (MzTabParserException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR, "Invalid mzTab file "
+                    + dataFile.getFileName() + ": " + failure.getMessage()));
+        } else {
+            addSuccess(report, dataFile, "mzTab file " + dataFile.getFileName() + " is valid");
+        }
+    }
+
+    private static void reportContentScan(DataFile dataFile, ContentScanResult result, ValidationReport report) {
+        String fileName = dataFile.getFileName();
+        if (result.getEntryCount() == 0) {
+            report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR,
+                    "No " + result.getFormat() + " entry found in data file: " + fileName));
+        }
+        if (result.getMalformedCount() > 0) {
+            report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR, result.getMalformedCount()
+                    + " malformed records in data file " + fileName + ", first at " + result.getProblems().get(0)));
+        }
+        if (result.getDuplicateCount() > 0) {
+            report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.WARNING, result.getDuplicateCount()
+                    + " duplicate identifiers in data file " + fileName + ", such as " + result.getDuplicates()));
+        }
+        if (result.isValid() && result.getDuplicateCount() == 0) {
+            addSuccess(report, dataFile, "Content of data file " + fileName + " is valid: " + result.getEntryCount() + " entries");
+        }
+    }
+
+    private static void reportTruncation(DataFile dataFile, TruncationDetector.Result result, ValidationReport report) {
+        if (result.isSuspect()) {
+            report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR, "Data file "
+                    + dataFile.getFileName() + " looks truncated or corrupted: " + result.getProblems().get(0)));
+        } else if (result.isChecked()) {
+            addSuccess(report, dataFile, "Data file " + dataFile.getFileName() + " is complete");
+        }
+    }
+
     /**
      * Validate data file
      * <p/>
      * NOTE: here we check file existence and file read permission, AND, we also check that the file name is portable
      */
     public static ValidationReport validateDataFile(DataFile dataFile) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         validateDataFile(dataFile, report);
 
@@ -759,62 +1473,133 @@ public final class SubmissionValidator {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file cannot be empty"));
         } else {
             if (dataFile.isFile()) {
-                // check whether file exist
                 File actualFile = dataFile.getFile();
-                if (!actualFile.isFile()) {
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file is not a file: " + actualFile.getAbsolutePath()));
-                } else if (!actualFile.exists()) {
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file doesn't exist: " + actualFile.getAbsolutePath()));
-                } else if (!actualFile.canRead()) {
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "No read permission on data file: " + actualFile.getAbsolutePath()));
-                } else if (actualFile.length() <= 0) {
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file is empty: " + actualFile.getAbsolutePath()));
-                }
-                // Check that the file name is portable
-                if (!CharMatcher.ASCII.matchesAllOf(dataFile.getFileName())) {
-                    // Not all characters in the file name are part of the ASCII standard
-                    // NOTE - This artifact is used by the px-submission-tool (and probably no one else), where strings
-                    // used in messages, specially those used on the GUI, have been externalized to a configuration
-                    // file, but not getting to the point of "internationalization". In the case of this artifact,
-                    // pretty much all the strings are hard coded... hurray!
-                    // WARNING - I know this check is not very strict, and it's not picky in terms of checking that for
-                    // the file name a subset of the POSIX definition of "portable character set"
-                    // (https://en.wikipedia.org/wiki/Portable_character_set) has been used in a strict way, but that's
-                    // because, when you reach this point, it means the file name can be used in a PATH, as the file can
-                    // be opened and read, i.e. it already is compatible with at least one file system, now we just need
-                    // to check that the characters that have been used to write the file name, are part of ASCII
-                    // charset.
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "NON-STANDARD CHARSET used in file name '" + actualFile.getName() + "'"));
-                }
-
-                if (dataFile.getFileName().contains("#")){
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "# is not allowed in the file name '" + actualFile.getName() + "'"));
-                }
-
-                if (!dataFile.getFileName().matches("[^-_.A-Za-z0-9]")){
-                    report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "POSIX compatible charset is NOT used in file name '" + actualFile.getName() + "'"));
-                }
+                validateFileAttributes(actualFile, report);
+                validateFileName(dataFile.getFileName(), actualFile.getName(), report);
             } else if (!dataFile.isUrl()) {
                 // Accept URL
                 report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file is not a file: " + dataFile.getFileId()));
             }
 
             if (!report.hasError() && !report.hasWarning()) {
-                report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Data file is valid: " + dataFile.getFileId()));
+                addSuccess(report, "Data file is valid: " + dataFile.getFileId());
             }
         }
     }
 
+    /**
+     * Check that a data file is an existing, readable, non empty regular file.
+     * <p/>
+     * All the attributes are read with a single file system call, plus one for the read permission.
+     */
+    private static void validateFileAttributes(File actualFile, ValidationReport report) {
+        Path path = actualFile.toPath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // missing or inaccessible
+            attributes = null;
+        }
+
+        if (attributes == null || !attributes.isRegularFile()) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file is not a file: " + actualFile.getAbsolutePath()));
+        } else if (!Files.isReadable(path)) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "No read permission on data file: " + actualFile.getAbsolutePath()));
+        } else if (attributes.size() <= 0) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file is empty: " + actualFile.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Spot check the offset index of an uncompressed indexed mzML file
+     */
+    private static void validateMzmlIndex(DataFile dataFile, ValidationReport report) {
+        File actualFile = dataFile.getFile();
+        try {
+            IndexedMzmlVerifier.Result result = IndexedMzmlVerifier.verify(actualFile);
+            if (!result.isValid()) {
+                report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR, "Invalid offset index in indexed mzML file "
+                        + actualFile.getAbsolutePath() + ": " + result.getProblems().get(0)
+                        + (result.getProblemCount() > 1 ? " (" + result.getProblemCount() + " problems)" : "")));
+            }
+        } catch (IOException e) {
+            report.addMessage(new ValidationMessage(dataFile, ValidationMessage.Type.ERROR, "Failed to read the offset index of indexed mzML file "
+                    + actualFile.getAbsolutePath() + ": " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Check that a data file name is portable, this does not touch the file system
+     */
+    private static void validateFileName(String fileName, String displayName, ValidationReport report) {
+        // Check that the file name is portable
+        if (!CharMatcher.ASCII.matchesAllOf(fileName)) {
+            // Not all characters in the file name are part of the ASCII standard
+            // NOTE - This artifact is used by the px-submission-tool (and probably no one else), where strings
+            // used in messages, specially those used on the GUI, have been externalized to a configuration
+            // file, but not getting to the point of "internationalization". In the case of this artifact,
+            // pretty much all the strings are hard coded... hurray!
+            // WARNING - I know this check is not very strict, and it's not picky in terms of checking that for
+            // the file name a subset of the POSIX definition of "portable character set"
+            // (https://en.wikipedia.org/wiki/Portable_character_set) has been used in a strict way, but that's
+            // because, when you reach this point, it means the file name can be used in a PATH, as the file can
+            // be opened and read, i.e. it already is compatible with at least one file system, now we just need
+            // to check that the characters that have been used to write the file name, are part of ASCII
+            // charset.
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "NON-STANDARD CHARSET used in file name '" + displayName + "'"));
+        }
+
+        if (fileName.contains("#")){
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "# is not allowed in the file name '" + displayName + "'"));
+        }
+
+        if (!fileName.matches("[^-_.A-Za-z0-9]")){
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "POSIX compatible charset is NOT used in file name '" + displayName + "'"));
+        }
+    }
+
+    /**
+     * New report for a single check, which drops the success messages if the report being validated into does
+     */
+    private static ValidationReport newReport() {
+        ValidationReport.RetentionPolicy retentionPolicy = checkRetentionPolicy.get();
+        return retentionPolicy == null ? new ValidationReport() : new ValidationReport(retentionPolicy);
+    }
+
+    private static void addSuccess(ValidationReport report, String message) {
+        addSuccess(report, null, message);
+    }
+
+    /**
+     * Add a success message, only counting it if the report would drop it
+     */
+    private static void addSuccess(ValidationReport report, Object source, String message) {
+        if (report.isRetained(ValidationMessage.Type.SUCCESS)) {
+            report.addMessage(new ValidationMessage(source, ValidationMessage.Type.SUCCESS, message));
+        } else {
+            report.countMessage(ValidationMessage.Type.SUCCESS);
+        }
+    }
+
+    private static String getDataFileLocation(DataFile dataFile) {
+        if (dataFile == null) {
+            return "null";
+        }
+        String path = dataFile.getFilePath();
+        return path == null ? String.valueOf(dataFile.getFileId()) : path;
+    }
+
 
     /**
      * Validate pubmed id
      */
     public static ValidationReport validatePubMedId(String id) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         Matcher m = Constant.PUBMED_PATTERN.matcher(id);
         if (m.matches()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "PubMed is valid: " + id));
+            addSuccess(report, "PubMed is valid: " + id);
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "PubMed is invalid: " + id));
         }
@@ -826,11 +1611,11 @@ public final class SubmissionValidator {
      * Validate pubmed id
      */
     public static ValidationReport validateDoi(String doi) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         Matcher m = Constant.DOI_PATTERN.matcher(doi);
         if (m.lookingAt()) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "DOI is valid: " + doi));
+            addSuccess(report, "DOI is valid: " + doi);
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "DOI is invalid: " + doi));
         }
@@ -839,12 +1624,12 @@ public final class SubmissionValidator {
     }
 
     public static ValidationReport validatePxAccession(String px) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (isValidProjectAccession(px)) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "ProteomeXchange accession is valid: " + px));
+            addSuccess(report, "ProteomeXchange accession is valid: " + px);
         } else {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "ProteomeXchange accession is invalid" + px));
+            addSuccess(report, "ProteomeXchange accession is invalid" + px);
         }
 
         return report;
@@ -865,10 +1650,10 @@ public final class SubmissionValidator {
      * Validate password
      */
     public static ValidationReport validatePassword(char[] password) {
-        ValidationReport report = new ValidationReport();
+        ValidationReport report = newReport();
 
         if (password != null && password.length > 0) {
-            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Password is valid"));
+            addSuccess(report, "Password is valid");
         } else {
             report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Password is invalid"));
         }
@@ -0,0 +1,370 @@
+package uk.ac.ebi.pride.data.validation;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.ProjectMetaData;
+import uk.ac.ebi.pride.data.util.OntologyIndex;
+import uk.ac.ebi.pride.data.util.OntologyIndexRegistry;
+import uk.ac.ebi.pride.data.util.SubmissionDiff;
+import uk.ac.ebi.pride.data.util.ValidateAnnotationFiles;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of validation messages, keyed by a fingerprint of the validated unit, so that revalidating a submission only
+ * checks what has changed since the last run.
+ * <p/>
+ * The fingerprint of a data file covers its id, type, location, size, last modified time, readability, sample
+ * metadata and the fingerprints of the files mapped to it, so a changed raw file also changes the fingerprint of the
+ * result files which refer to it. The fingerprint of the project metadata covers all its fields, the version of the
+ * permitted project tags and the registered ontology indexes, so that a refreshed vocabulary invalidates it. As the
+ * project tags are only loaded by the first validation which needs them, the first run after the load misses once.
+ * <p/>
+ * Messages are kept in a least recently used map, and optionally in a directory which outlives the process. The
+ * source of the messages is not kept, only whether they had one: the validated unit is given back as their source
+ * when they are replayed. Messages which the cached report counted without keeping them are cached as counts.
+ */
+public class ValidationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidationCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
+
+    /**
+     * Changed whenever the validation rules or the stored format change, to invalidate earlier entries
+     */
+    private static final int VERSION = 3;
+
+    private static final String ENTRY_FILE_SUFFIX = ".validation";
+    private static final char SOURCE = '+';
+    private static final char NO_SOURCE = '-';
+    private static final char COUNTED = '#';
+
+    private final Map<Long, List<CachedMessage>> entries;
+    private final File directory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ValidationCache() {
+        this(DEFAULT_MAX_ENTRIES, null);
+    }
+
+    /**
+     * @param maxEntries maximum number of units kept in memory
+     * @param directory  directory where the messages are also stored, may be null
+     */
+    public ValidationCache(final int maxEntries, File directory) {
+        this.entries = new LinkedHashMap<Long, List<CachedMessage>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<CachedMessage>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.directory = directory;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            logger.warn("Failed to create validation cache directory, the cache is kept in memory only: " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Fingerprint of the project metadata
+     */
+    public long fingerprint(ProjectMetaData projectMetaData) {
+        Hasher hasher = FINGERPRINT.newHasher().putInt(VERSION);
+        // sorted, so that the fingerprint does not depend on the iteration order of the fields
+        for (Map.Entry<String, Long> field : new TreeMap<String, Long>(SubmissionDiff.fingerprint(projectMetaData)).entrySet()) {
+            hasher.putString(field.getKey(), StandardCharsets.UTF_8).putLong(field.getValue());
+        }
+        hasher.putLong(ValidateAnnotationFiles.getProjectTagVocabulary().getVersion());
+        for (String cvLabel : new TreeSet<String>(OntologyIndexRegistry.getCvLabels())) {
+            OntologyIndex index = OntologyIndexRegistry.get(cvLabel);
+            if (index != null) {
+                hasher.putString(cvLabel, StandardCharsets.UTF_8).putLong(index.getFingerprint());
+            }
+        }
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Fingerprint of a data file, including the files mapped to it
+     */
+    public long fingerprint(DataFile dataFile) {
+        return fingerprint(dataFile, new IdentityHashMap<DataFile, Long>());
+    }
+
+    /**
+     * Fingerprint of a data file, remembering the fingerprints computed so far, which are shared by the data files
+     * of a submission
+     */
+    long fingerprint(DataFile dataFile, Map<DataFile, Long> fingerprints) {
+        Long fingerprint = fingerprints.get(dataFile);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+
+        // mark as visited, in case of mapping cycles
+        fingerprints.put(dataFile, 0L);
+
+        Hasher hasher = FINGERPRINT.newHasher().putInt(VERSION);
+        hasher.putLong(SubmissionDiff.fingerprint(dataFile));
+        hasher.putLong(dataFile.isFile() ? dataFile.getFile().lastModified() : -1);
+        hasher.putBoolean(dataFile.isFile() && dataFile.getFile().canRead());
+        for (DataFile mappedFile : dataFile.getFileMappings()) {
+            hasher.putLong(fingerprint(mappedFile, fingerprints));
+        }
+
+        fingerprint = hasher.hash().asLong();
+        fingerprints.put(dataFile, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Get the messages of a unit
+     *
+     * @param fingerprint fingerprint of the unit
+     * @param source      source given to the messages which had one, usually the validated unit, may be null
+     * @return ValidationReport    a new report with the cached messages, null if the unit is not cached
+     */
+    public ValidationReport get(long fingerprint, Object source) {
+        List<CachedMessage> messages;
+        synchronized (entries) {
+            messages = entries.get(fingerprint);
+        }
+
+        if (messages == null && directory != null) {
+            messages = read(fingerprint);
+            if (messages != null) {
+                synchronized (entries) {
+                    entries.put(fingerprint, messages);
+                }
+            }
+        }
+
+        if (messages == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        ValidationReport report = new ValidationReport();
+        for (CachedMessage message : messages) {
+            if (message.count > 0) {
+                for (int i = 0; i < message.count; i++) {
+                    report.countMessage(message.type);
+                }
+            } else {
+                report.addMessage(new ValidationMessage(message.hasSource ? source : null, message.type, message.message));
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Cache the messages of a unit, the messages the report did not keep are cached as counts
+     */
+    public void put(long fingerprint, ValidationReport report) {
+        List<CachedMessage> messages = new ArrayList<CachedMessage>(report.getMessages().size());
+        int[] retained = new int[ValidationMessage.Type.values().length];
+        for (ValidationMessage message : report.getMessages()) {
+            messages.add(new CachedMessage(message.getType(), message.getSource() != null, message.getMessage()));
+            retained[message.getType().ordinal()]++;
+        }
+        for (ValidationMessage.Type type : ValidationMessage.Type.values()) {
+            int count = report.getMessageCount(type) - retained[type.ordinal()];
+            if (count > 0) {
+                messages.add(new CachedMessage(type, count));
+            }
+        }
+        messages = Collections.unmodifiableList(messages);
+
+        synchronized (entries) {
+            entries.put(fingerprint, messages);
+        }
+
+        if (directory != null) {
+            write(fingerprint, messages);
+        }
+    }
+
+    public void invalidate(long fingerprint) {
+        synchronized (entries) {
+            entries.remove(fingerprint);
+        }
+        if (directory != null) {
+            getEntryFile(fingerprint).delete();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        if (directory != null) {
+            File[] entryFiles = directory.listFiles();
+            if (entryFiles != null) {
+                for (File entryFile : entryFiles) {
+                    if (entryFile.getName().endsWith(ENTRY_FILE_SUFFIX)) {
+                        entryFile.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private File getEntryFile(long fingerprint) {
+        return new File(directory, String.format("%016x", fingerprint) + ENTRY_FILE_SUFFIX);
+    }
+
+    /**
+     * Read the messages of a unit from the cache directory, one message per line: type, tab, whether the message has
+     * a source, tab, escaped message. Counted messages are stored as their type, tab, #, tab, count
+     */
+    private List<CachedMessage> read(long fingerprint) {
+        File entryFile = getEntryFile(fingerprint);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+
+        try {
+            List<CachedMessage> messages = new ArrayList<CachedMessage>();
+            for (String line : Files.readAllLines(entryFile.toPath(), StandardCharsets.UTF_8)) {
+                int separator = line.indexOf('\t');
+                if (separator < 0 || line.length() < separator + 3 || line.charAt(separator + 2) != '\t') {
+                    throw new IOException("Malformed validation cache entry: " + line);
+                }
+                ValidationMessage.Type type = ValidationMessage.Type.valueOf(line.substring(0, separator));
+                char marker = line.charAt(separator + 1);
+                if (marker == COUNTED) {
+                    messages.add(new CachedMessage(type, Integer.parseInt(line.substring(separator + 3))));
+                } else {
+                    messages.add(new CachedMessage(type, marker == SOURCE, unescape(line.substring(separator + 3))));
+                }
+            }
+            return Collections.unmodifiableList(messages);
+        } catch (IOException e) {
+            logger.warn("Failed to read validation cache entry: " + entryFile.getAbsolutePath(), e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Failed to read validation cache entry: " + entryFile.getAbsolutePath(), e);
+        }
+        return null;
+    }
+
+    private void write(long fingerprint, List<CachedMessage> messages) {
+        File entryFile = getEntryFile(fingerprint);
+        try {
+            StringBuilder content = new StringBuilder();
+            for (CachedMessage message : messages) {
+                content.append(message.type.name()).append('\t');
+                if (message.count > 0) {
+                    content.append(COUNTED).append('\t').append(message.count).append('\n');
+                } else {
+                    content.append(message.hasSource ? SOURCE : NO_SOURCE).append('\t').append(escape(message.message)).append('\n');
+                }
+            }
+
+            // write a temporary file first, so that readers never see a partial entry
+            File tempFile = File.createTempFile("entry", ".tmp", directory);
+            try {
+                Files.write(tempFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write validation cache entry: " + entryFile.getAbsolutePath(), e);
+        }
+    }
+
+    private static String escape(String message) {
+        if (message == null) {
+            return "\\0";
+        }
+        return message.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if ("\\0".equals(value)) {
+            return null;
+        }
+
+        StringBuilder message = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                switch (escaped) {
+                    case 't':
+                        message.append('\t');
+                        break;
+                    case 'n':
+                        message.append('\n');
+                        break;
+                    case 'r':
+                        message.append('\r');
+                        break;
+                    default:
+                        message.append(escaped);
+                }
+            } else {
+                message.append(c);
+            }
+        }
+        return message.toString();
+    }
+
+    /**
+     * Cached message, without its source, or a number of messages which were counted without being kept
+     */
+    private static final class CachedMessage {
+        private final ValidationMessage.Type type;
+        private final boolean hasSource;
+        private final String message;
+
+        private final int count;
+
+        private CachedMessage(ValidationMessage.Type type, boolean hasSource, String message) {
+            this.type = type;
+            this.hasSource = hasSource;
+            this.message = message;
+            this.count = 0;
+        }
+
+        private CachedMessage(ValidationMessage.Type type, int count) {
+            this.type = type;
+            this.hasSource = false;
+            this.message = null;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package uk.ac.ebi.pride.data.validation;
+
+import java.io.Closeable;
+
+/**
+ * Receives validation messages as they are added to a {@link ValidationReport}
+ */
+public interface ValidationMessageSink extends Closeable {
+
+    /**
+     * Called for every message kept by the report, in the calling thread of the report
+     *
+     * @param message validation message
+     */
+    void accept(ValidationMessage message);
+}
@@ -1,10 +1,16 @@
 package uk.ac.ebi.pride.data.validation;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * {@code ValidationLog} encapsulate a list of validation messages
+ * <p/>
+ * The number of messages of each type is counted as they are added, so checking for errors doesn't scan the messages.
+ * A {@link RetentionPolicy} decides which messages are kept in memory, the counts always include every message.
+ * Messages which are kept are also passed on to the registered {@link ValidationMessageSink}s as they arrive.
+ * Once the report reaches its error limit, further messages are ignored.
  *
  * @author Rui Wang
  * @version $Id$
@@ -12,30 +18,141 @@ import java.util.List;
 public class ValidationReport {
 
     private final List<ValidationMessage> validationMessages;
+    private final RetentionPolicy retentionPolicy;
+    private final int[] messageCounts;
+    private final int[] retainedCounts;
+    private final List<ValidationMessageSink> sinks;
+    private final List<ValidationMessage> messageList = new MessageList();
+    private int droppedMessages;
+    private int errorLimit;
 
     public ValidationReport() {
+        this(RetentionPolicy.RETAIN_ALL);
+    }
+
+    public ValidationReport(RetentionPolicy retentionPolicy) {
         this.validationMessages = new ArrayList<ValidationMessage>();
+        this.retentionPolicy = retentionPolicy;
+        this.messageCounts = new int[ValidationMessage.Type.values().length];
+        this.retainedCounts = new int[ValidationMessage.Type.values().length];
+        this.sinks = new ArrayList<ValidationMessageSink>();
     }
 
     public ValidationReport combine(ValidationReport validationReport) {
-        this.validationMessages.addAll(validationReport.getMessages());
+        for (ValidationMessage message : validationReport.validationMessages) {
+            if (isErrorLimitReached()) {
+                return this;
+            }
+            messageCounts[message.getType().ordinal()]++;
+            retain(message);
+        }
+        // the messages the other report counted without keeping them
+        for (int i = 0; i < messageCounts.length; i++) {
+            int dropped = validationReport.messageCounts[i] - validationReport.retainedCounts[i];
+            if (errorLimit > 0 && i == ValidationMessage.Type.ERROR.ordinal()) {
+                dropped = Math.max(0, Math.min(dropped, errorLimit - messageCounts[i]));
+            }
+            messageCounts[i] += dropped;
+            droppedMessages += dropped;
+        }
         return this;
     }
 
     public void addMessages(List<ValidationMessage> messages) {
-        this.validationMessages.addAll(messages);
+        for (ValidationMessage message : messages) {
+            addMessage(message);
+        }
     }
 
     public void addMessage(ValidationMessage message) {
-        this.validationMessages.add(message);
+        if (isErrorLimitReached()) {
+            return;
+        }
+        messageCounts[message.getType().ordinal()]++;
+        retain(message);
+    }
+
+    /**
+     * Count a message without creating it, for messages which would not be kept, see {@link #isRetained(ValidationMessage.Type)}
+     */
+    public void countMessage(ValidationMessage.Type type) {
+        if (isErrorLimitReached()) {
+            return;
+        }
+        messageCounts[type.ordinal()]++;
+        droppedMessages++;
+    }
+
+    /**
+     * @return boolean true if a message of the given type added now would be kept, so that callers can skip
+     * creating messages which would be dropped
+     */
+    public boolean isRetained(ValidationMessage.Type type) {
+        return !isErrorLimitReached() && retentionPolicy.isRetained(type, retainedCounts[type.ordinal()]);
     }
 
     public void removeMessage(ValidationMessage message) {
-        this.validationMessages.remove(message);
+        if (this.validationMessages.remove(message)) {
+            messageCounts[message.getType().ordinal()]--;
+            retainedCounts[message.getType().ordinal()]--;
+        }
     }
 
+    /**
+     * @return List<ValidationMessage> messages kept by the retention policy, changes to the list are reflected in the
+     * message counts
+     */
     public List<ValidationMessage> getMessages() {
-        return validationMessages;
+        return messageList;
+    }
+
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Register a sink which receives the messages kept by this report from now on
+     */
+    public void addSink(ValidationMessageSink sink) {
+        this.sinks.add(sink);
+    }
+
+    public void removeSink(ValidationMessageSink sink) {
+        this.sinks.remove(sink);
+    }
+
+    /**
+     * Number of messages of the given type, including the ones which were not kept
+     */
+    public int getMessageCount(ValidationMessage.Type type) {
+        return messageCounts[type.ordinal()];
+    }
+
+    /**
+     * Number of messages which were not kept due to the retention policy
+     */
+    public int getDroppedMessageCount() {
+        return droppedMessages;
+    }
+
+    public int getErrorLimit() {
+        return errorLimit;
+    }
+
+    /**
+     * Set the number of errors after which validation should stop, see {@link #isErrorLimitReached()}
+     *
+     * @param errorLimit maximum number of errors, zero or less for no limit
+     */
+    public void setErrorLimit(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+
+    /**
+     * @return boolean true if an error limit is set and the report has reached it
+     */
+    public boolean isErrorLimitReached() {
+        return errorLimit > 0 && getMessageCount(ValidationMessage.Type.ERROR) >= errorLimit;
     }
 
     public boolean hasError() {
@@ -55,11 +172,112 @@ public class ValidationReport {
     }
 
     private boolean hasMessageType(ValidationMessage.Type type) {
-        for (ValidationMessage validationMessage : validationMessages) {
-            if (validationMessage.getType().equals(type)) {
-                return true;
+        return messageCounts[type.ordinal()] > 0;
+    }
+
+    /**
+     * Keep a message if the retention policy allows it, the message must already be counted
+     */
+    private void retain(ValidationMessage message) {
+        int type = message.getType().ordinal();
+        if (!retentionPolicy.isRetained(message.getType(), retainedCounts[type])) {
+            droppedMessages++;
+            return;
+        }
+
+        validationMessages.add(message);
+        retainedCounts[type]++;
+        for (ValidationMessageSink sink : sinks) {
+            sink.accept(message);
+        }
+    }
+
+    /**
+     * Live view of the kept messages, keeping the counts in line with the messages added and removed through it
+     */
+    private final class MessageList extends AbstractList<ValidationMessage> {
+        @Override
+        public ValidationMessage get(int index) {
+            return validationMessages.get(index);
+        }
+
+        @Override
+        public int size() {
+            return validationMessages.size();
+        }
+
+        @Override
+        public void add(int index, ValidationMessage message) {
+            validationMessages.add(index, message);
+            messageCounts[message.getType().ordinal()]++;
+            retainedCounts[message.getType().ordinal()]++;
+            modCount++;
+        }
+
+        @Override
+        public ValidationMessage set(int index, ValidationMessage message) {
+            ValidationMessage replaced = validationMessages.set(index, message);
+            messageCounts[replaced.getType().ordinal()]--;
+            retainedCounts[replaced.getType().ordinal()]--;
+            messageCounts[message.getType().ordinal()]++;
+            retainedCounts[message.getType().ordinal()]++;
+            return replaced;
+        }
+
+        @Override
+        public ValidationMessage remove(int index) {
+            ValidationMessage removed = validationMessages.remove(index);
+            messageCounts[removed.getType().ordinal()]--;
+            retainedCounts[removed.getType().ordinal()]--;
+            modCount++;
+            return removed;
+        }
+    }
+
+    /**
+     * Decides which messages a report keeps
+     */
+    public static final class RetentionPolicy {
+        /**
+         * Keep all the messages
+         */
+        public static final RetentionPolicy RETAIN_ALL = new RetentionPolicy(true, Integer.MAX_VALUE);
+
+        /**
+         * Keep all the messages apart from the success messages
+         */
+        public static final RetentionPolicy DROP_SUCCESS = new RetentionPolicy(false, Integer.MAX_VALUE);
+
+        private final boolean retainSuccess;
+        private final int maxMessagesPerType;
+
+        /**
+         * @param retainSuccess      whether to keep success messages
+         * @param maxMessagesPerType maximum number of messages kept for each type
+         */
+        public RetentionPolicy(boolean retainSuccess, int maxMessagesPerType) {
+            this.retainSuccess = retainSuccess;
+            this.maxMessagesPerType = maxMessagesPerType;
+        }
+
+        public boolean isRetainSuccess() {
+            return retainSuccess;
+        }
+
+        public int getMaxMessagesPerType() {
+            return maxMessagesPerType;
+        }
+
+        /**
+         * @param type          type of the message
+         * @param retainedCount number of messages of the same type kept so far
+         * @return boolean true if the message should be kept
+         */
+        public boolean isRetained(ValidationMessage.Type type, int retainedCount) {
+            if (!retainSuccess && ValidationMessage.Type.SUCCESS.equals(type)) {
+                return false;
             }
+            return retainedCount < maxMessagesPerType;
         }
-        return false;
     }
 }
@@ -0,0 +1,114 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.data.util.CachedVocabulary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CachedVocabularyTest {
+    private static final String LOCAL_FILE_PROPERTY = "pride.test.vocabulary.file";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File remoteFile;
+
+    private String remoteUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        remoteFile = temporaryFolder.newFile("remote.csv");
+        writeTerms(remoteFile, "Biological", "Biomedical");
+        remoteUrl = remoteFile.toURI().toURL().toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(LOCAL_FILE_PROPERTY);
+    }
+
+    @Test
+    public void termsAreLoadedOnce() throws Exception {
+        CachedVocabulary vocabulary = new CachedVocabulary("test", LOCAL_FILE_PROPERTY, remoteUrl, 60000);
+
+        Set<String> terms = vocabulary.getTerms();
+        assertEquals(2, terms.size());
+        assertTrue(terms.contains("Biomedical"));
+        assertFalse(terms.contains("tag"));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(vocabulary.contains("Biological"));
+        }
+        assertEquals(1, vocabulary.getStats().getLoads());
+        assertEquals(10, vocabulary.getStats().getHits());
+        assertEquals(remoteUrl, vocabulary.getStats().getSource());
+    }
+
+    @Test
+    public void localFileIsPreferred() throws Exception {
+        File localFile = temporaryFolder.newFile("local.csv");
+        writeTerms(localFile, "Technical");
+        System.setProperty(LOCAL_FILE_PROPERTY, localFile.getAbsolutePath());
+
+        CachedVocabulary vocabulary = new CachedVocabulary("test", LOCAL_FILE_PROPERTY, remoteUrl, 60000);
+
+        assertTrue(vocabulary.contains("Technical"));
+        assertFalse(vocabulary.contains("Biological"));
+        assertEquals(localFile.getAbsolutePath(), vocabulary.getStats().getSource());
+    }
+
+    @Test
+    public void previousTermsAreKeptWhenRefreshFails() throws Exception {
+        CachedVocabulary vocabulary = new CachedVocabulary("test", LOCAL_FILE_PROPERTY, remoteUrl, 60000);
+        assertTrue(vocabulary.contains("Biological"));
+
+        assertTrue(remoteFile.delete());
+        try {
+            vocabulary.refresh();
+            fail("Refresh should fail without any readable source");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(vocabulary.contains("Biological"));
+        assertEquals(1, vocabulary.getStats().getLoadFailures());
+    }
+
+    @Test
+    public void expiredTermsAreRefreshedInBackground() throws Exception {
+        CachedVocabulary vocabulary = new CachedVocabulary("test", LOCAL_FILE_PROPERTY, remoteUrl, 0);
+        assertFalse(vocabulary.contains("Technical"));
+
+        writeTerms(remoteFile, "Technical");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!vocabulary.contains("Technical") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(vocabulary.contains("Technical"));
+        assertTrue(vocabulary.getStats().getBackgroundRefreshes() > 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void missingSourcesFail() throws Exception {
+        new CachedVocabulary("test", LOCAL_FILE_PROPERTY, null, 60000).getTerms();
+    }
+
+    private static void writeTerms(File file, String... terms) throws IOException {
+        StringBuilder content = new StringBuilder("tag\n");
+        for (String term : terms) {
+            content.append(term).append("\n");
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
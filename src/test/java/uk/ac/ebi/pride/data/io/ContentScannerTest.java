@@ -0,0 +1,135 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.util.*;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ContentScannerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String MGF = "CHARGE=2+\r\n" +
+            "BEGIN IONS\r\nTITLE=spectrum 1\r\nPEPMASS=415.2 1200\r\n100.1 20\r\n200.2\t30.5\r\nEND IONS\r\n\r\n" +
+            "BEGIN IONS\r\nTITLE=spectrum 2\r\nPEPMASS=515.3\r\n150.5 1.5e3 2+\r\nEND IONS\r\n" +
+            "BEGIN IONS\r\nTITLE=spectrum 1\r\nPEPMASS=615.4\r\nEND IONS\r\n";
+
+    @Test
+    public void validMgfIsScannedAcrossWindows() throws Exception {
+        File mgf = TestFiles.write(temporaryFolder, "spectra.mgf", MGF);
+
+        // windows smaller than an entry, so lines span window boundaries
+        for (int windowSize : new int[]{32, 100, LineContentScanner.DEFAULT_WINDOW_SIZE}) {
+            ContentScanResult result = new MgfContentScanner(windowSize).scan(mgf);
+
+            assertEquals(3, result.getEntryCount());
+            assertEquals(result.getProblems().toString(), 0, result.getMalformedCount());
+            assertEquals(Arrays.asList("spectrum 1"), result.getDuplicates());
+            assertEquals(Long.valueOf(3), result.getStatistic(MgfContentScanner.PEAKS));
+            assertEquals(Long.valueOf(1), result.getStatistic(MgfContentScanner.EMPTY_ENTRIES));
+            assertEquals(mgf.length(), result.getByteCount());
+        }
+    }
+
+    @Test
+    public void truncatedMgfIsDetected() throws Exception {
+        File mgf = TestFiles.write(temporaryFolder, "truncated.mgf", "BEGIN IONS\nTITLE=a\n100.1 20\nEND IONS\nBEGIN IONS\nTITLE=b\nPEPMASS=415.2\n100.1 abc\n120.");
+
+        ContentScanResult result = new MgfContentScanner().scan(mgf);
+
+        assertEquals(2, result.getEntryCount());
+        assertEquals(3, result.getMalformedCount());
+        // missing PEPMASS of the first entry, the invalid peak, the unclosed last entry
+        assertEquals(0, result.getProblems().get(0).getOffset());
+        assertEquals(70, result.getProblems().get(1).getOffset());
+        assertEquals(37, result.getProblems().get(2).getOffset());
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    public void fastaIsScanned() throws Exception {
+        File fasta = TestFiles.write(temporaryFolder, "db.fasta", ">sp|P12345|TEST_HUMAN Test protein\nMKTAYIAKQR\nQISFVKSHFS\n" +
+                ">sp|P67890|OTHER_HUMAN\nMKV*\n>sp|P12345|TEST_HUMAN duplicate\nMKTA1\n>\nAA\n>empty\n");
+
+        ContentScanResult result = new FastaContentScanner(40).scan(fasta);
+
+        assertEquals(5, result.getEntryCount());
+        assertEquals(Arrays.asList("sp|P12345|TEST_HUMAN"), result.getDuplicates());
+        // invalid residue, header without accession, entry without sequence
+        assertEquals(3, result.getMalformedCount());
+        assertEquals(Long.valueOf(30), result.getStatistic(FastaContentScanner.RESIDUES));
+        assertEquals(Long.valueOf(20), result.getStatistic(FastaContentScanner.LONGEST_SEQUENCE));
+        assertEquals(Long.valueOf(0), result.getStatistic(FastaContentScanner.SHORTEST_SEQUENCE));
+    }
+
+    @Test
+    public void gzippedMspIsScanned() throws Exception {
+        String msp = "Name: PEPTIDE/2\nMW: 799.36\nComment: Spec=Consensus\nNum peaks: 3\n" +
+                "101.07\t500\t\"b1/0.01\"\n200.1 300; 300.2 100\n\n" +
+                "Name: PEPTIDEK/2\nNum peaks: 2\n101.07 500\n\n" +
+                "Name: PEPTIDE/2\nNumPeaks: 1\n99.5 10\n";
+        File gzipped = TestFiles.gzip(temporaryFolder, "library.msp.gz", msp.getBytes(StandardCharsets.UTF_8));
+
+        ContentScanResult result = new MspContentScanner(64).scan(gzipped);
+
+        assertEquals(3, result.getEntryCount());
+        assertEquals(1, result.getMalformedCount());
+        assertTrue(result.getProblems().get(0).getMessage().contains("declares 2 peaks but has 1"));
+        assertEquals(Arrays.asList("PEPTIDE/2"), result.getDuplicates());
+        assertEquals(Long.valueOf(5), result.getStatistic(MspContentScanner.PEAKS));
+        assertEquals(msp.length(), result.getByteCount());
+    }
+
+    @Test
+    public void longHashSetGrows() throws Exception {
+        LongHashSet set = new LongHashSet();
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(set.add(i * 31));
+        }
+        assertFalse(set.add(0));
+        assertFalse(set.add(9999 * 31));
+        assertTrue(set.contains(310));
+        assertFalse(set.contains(311));
+        assertEquals(10000, set.size());
+    }
+
+    @Test
+    public void filesAreScannedInParallel() throws Exception {
+        File mgf = TestFiles.write(temporaryFolder, "spectra.mgf", MGF);
+        File empty = TestFiles.write(temporaryFolder, "empty.mgf", "\n");
+        File fasta = TestFiles.write(temporaryFolder, "db.fasta", ">P1\nMK\n");
+        File other = TestFiles.write(temporaryFolder, "other.txt", "text");
+
+        Map<File, MassSpecFileFormat> formats = new LinkedHashMap<File, MassSpecFileFormat>();
+        formats.put(mgf, MassSpecFileFormat.MGF);
+        formats.put(empty, MassSpecFileFormat.MGF);
+        formats.put(fasta, MassSpecFileFormat.FASTA);
+        formats.put(other, MassSpecFileFormat.EXPERIMENTAL_DESIGN_TXT);
+        Map<File, ContentScanResult> results = ContentScannerRegistry.scanAll(formats, 3);
+
+        assertEquals(3, results.size());
+        assertNull(results.get(other));
+        assertEquals(0, results.get(empty).getEntryCount());
+        assertTrue(results.get(fasta).isValid());
+
+        ValidationReport report = SubmissionValidator.validateFileContents(Arrays.asList(
+                new DataFile(mgf, MassSpecFileFormat.MGF), new DataFile(empty, MassSpecFileFormat.MGF),
+                new DataFile(fasta, MassSpecFileFormat.FASTA)), 2);
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.WARNING));
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.SUCCESS));
+    }
+}
@@ -0,0 +1,56 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.CvParam;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.DataFileEquivalence;
+import uk.ac.ebi.pride.data.model.SampleMetaData;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DataFileIdentityTest {
+
+    @Test
+    public void hashIsStableWhenContentChanges() throws Exception {
+        DataFile result = new DataFile(1, new File("result.mzid"), ProjectFileType.RESULT);
+        Set<DataFile> dataFiles = new HashSet<DataFile>();
+        dataFiles.add(result);
+
+        result.addFileMapping(new DataFile(2, new File("raw.raw"), ProjectFileType.RAW));
+        result.getSampleMetaData().addMetaData(SampleMetaData.Type.SPECIES,
+                new CvParam("NEWT", "9606", "Homo sapiens (Human)", null));
+
+        assertTrue(dataFiles.contains(result));
+    }
+
+    @Test
+    public void identityIsFileIdAndCanonicalLocation() throws Exception {
+        DataFile dataFile = new DataFile(1, new File("result.mzid"), ProjectFileType.RESULT);
+        DataFile sameLocation = new DataFile(1, new File("./result.mzid"), ProjectFileType.RESULT);
+        DataFile otherId = new DataFile(2, new File("result.mzid"), ProjectFileType.RESULT);
+
+        assertEquals(dataFile, sameLocation);
+        assertEquals(dataFile.hashCode(), sameLocation.hashCode());
+        assertFalse(dataFile.equals(otherId));
+
+        dataFile.setFileId(2);
+        assertEquals(otherId, dataFile);
+    }
+
+    @Test
+    public void equivalenceComparesContent() throws Exception {
+        DataFile dataFile = new DataFile(1, new File("result.mzid"), ProjectFileType.RESULT);
+        DataFile other = new DataFile(1, new File("result.mzid"), ProjectFileType.RESULT);
+        assertTrue(DataFileEquivalence.equivalent(dataFile, other));
+        assertEquals(DataFileEquivalence.hash(dataFile), DataFileEquivalence.hash(other));
+
+        other.setAssayAccession("12345");
+        assertEquals(dataFile, other);
+        assertFalse(DataFileEquivalence.equivalent(dataFile, other));
+    }
+}
@@ -0,0 +1,102 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.FileChecksumCalculator;
+import uk.ac.ebi.pride.data.validation.DuplicateFileDetector;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DuplicateFileDetectorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final DuplicateFileDetector detector = new DuplicateFileDetector(new FileChecksumCalculator(2), 2);
+
+    @Test
+    public void smallDuplicatesAreFound() throws Exception {
+        DataFile first = dataFile("run1.raw", "same content".getBytes(StandardCharsets.UTF_8));
+        DataFile copy = dataFile("run1 copy.raw", "same content".getBytes(StandardCharsets.UTF_8));
+        DataFile sameSize = dataFile("run2.raw", "same CONTENT".getBytes(StandardCharsets.UTF_8));
+        DataFile empty = dataFile("empty.raw", new byte[0]);
+        DataFile otherEmpty = dataFile("other empty.raw", new byte[0]);
+
+        List<List<DataFile>> duplicates = detector.findDuplicates(Arrays.asList(first, sameSize, copy, empty, otherEmpty));
+
+        assertEquals(1, duplicates.size());
+        assertEquals(Arrays.asList(first, copy), duplicates.get(0));
+    }
+
+    @Test
+    public void largeDuplicatesAreConfirmedWithFullHash() throws Exception {
+        byte[] content = new byte[4 * DuplicateFileDetector.SAMPLE_SIZE + 10];
+        new Random(42).nextBytes(content);
+        DataFile first = dataFile("large.raw", content);
+        DataFile copy = dataFile("large copy.raw", content);
+        // differs between the sampled regions only
+        content[DuplicateFileDetector.SAMPLE_SIZE + 100]++;
+        DataFile nearCopy = dataFile("large near copy.raw", content);
+
+        Submission submission = new Submission();
+        submission.addDataFile(first);
+        submission.addDataFile(copy);
+        submission.addDataFile(nearCopy);
+        ValidationReport report = new ValidationReport();
+        detector.validate(submission, report);
+
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.WARNING));
+        assertTrue(report.getMessages().get(0).getMessage().contains("large copy.raw"));
+        assertFalse(report.getMessages().get(0).getMessage().contains("near copy"));
+    }
+
+    @Test
+    public void fileListedTwiceIsADuplicate() throws Exception {
+        DataFile first = dataFile("run1.raw", "content".getBytes(StandardCharsets.UTF_8));
+        DataFile again = new DataFile(first.getFile(), ProjectFileType.RAW);
+
+        List<List<DataFile>> duplicates = detector.findDuplicates(Arrays.asList(first, again));
+
+        assertEquals(1, duplicates.size());
+        assertEquals(2, duplicates.get(0).size());
+    }
+
+    @Test
+    public void duplicatesAreOnlyReportedOnRequest() throws Exception {
+        Submission submission = new Submission();
+        submission.addDataFile(dataFile("run1.raw", "same content".getBytes(StandardCharsets.UTF_8)));
+        submission.addDataFile(dataFile("run1 copy.raw", "same content".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(0, countDuplicateWarnings(SubmissionValidator.validateSubmission(submission)));
+        assertEquals(1, countDuplicateWarnings(SubmissionValidator.validateDuplicateFiles(submission)));
+    }
+
+    private static int countDuplicateWarnings(ValidationReport report) {
+        int duplicateWarnings = 0;
+        for (ValidationMessage message : report.getMessages()) {
+            if (message.getType() == ValidationMessage.Type.WARNING && message.getMessage().contains("have the same content")) {
+                duplicateWarnings++;
+            }
+        }
+        return duplicateWarnings;
+    }
+
+    private DataFile dataFile(String name, byte[] content) throws Exception {
+        File file = temporaryFolder.newFile(name);
+        Files.write(file.toPath(), content);
+        return new DataFile(file, ProjectFileType.RAW);
+    }
+}
@@ -0,0 +1,139 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.mztab.model.MetaData;
+import uk.ac.ebi.pride.data.mztab.model.MsRun;
+import uk.ac.ebi.pride.data.mztab.model.MsRunHashMethod;
+import uk.ac.ebi.pride.data.mztab.model.MzTabDocument;
+import uk.ac.ebi.pride.data.util.FileChecksumCalculator;
+import uk.ac.ebi.pride.data.validation.MsRunHashVerifier;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FileChecksumCalculatorTest {
+    private static final String MD5_ABC = "900150983cd24fb0d6963f7d28e17f72";
+    private static final String SHA1_ABC = "a9993e364706816aba3e25717850c26c9cd0d89d";
+    private static final String SHA256_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileChecksumCalculator calculator;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        calculator = new FileChecksumCalculator(2);
+        file = temporaryFolder.newFile("run.raw");
+        Files.write(file.toPath(), "abc".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void checksumsMatchKnownDigests() throws Exception {
+        assertEquals(MD5_ABC, calculator.checksum(file, FileChecksumCalculator.Algorithm.MD5));
+        assertEquals(SHA1_ABC, calculator.checksum(file, FileChecksumCalculator.Algorithm.SHA1));
+        assertEquals(SHA256_ABC, calculator.checksum(file, FileChecksumCalculator.Algorithm.SHA256));
+    }
+
+    @Test
+    public void unchangedFilesAreNotHashedAgain() throws Exception {
+        calculator.checksum(file, FileChecksumCalculator.Algorithm.SHA1);
+        calculator.checksum(file, FileChecksumCalculator.Algorithm.SHA1);
+        assertEquals(1, calculator.getHitCount());
+
+        Files.write(file.toPath(), "abcd".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertFalse(SHA1_ABC.equals(calculator.checksum(file, FileChecksumCalculator.Algorithm.SHA1)));
+        assertEquals(2, calculator.getMissCount());
+    }
+
+    @Test
+    public void largeFilesReportProgress() throws Exception {
+        File largeFile = temporaryFolder.newFile("large.raw");
+        byte[] block = new byte[FileChecksumCalculator.BUFFER_SIZE];
+        Arrays.fill(block, (byte) 7);
+        for (int i = 0; i < 70; i++) {
+            Files.write(largeFile.toPath(), block, StandardOpenOption.APPEND);
+        }
+
+        final List<Long> progress = new ArrayList<Long>();
+        Map<File, String> checksums = calculator.checksumAll(Arrays.asList(file, largeFile, new File(temporaryFolder.getRoot(), "missing.raw")),
+                FileChecksumCalculator.Algorithm.MD5, new FileChecksumCalculator.ProgressListener() {
+                    @Override
+                    public void onProgress(File progressFile, long bytesHashed, long totalBytes) {
+                        if (progressFile.getName().equals("large.raw")) {
+                            progress.add(bytesHashed);
+                        }
+                    }
+                });
+
+        assertEquals(2, checksums.size());
+        assertEquals(MD5_ABC, checksums.get(file));
+        assertEquals(Arrays.asList(FileChecksumCalculator.PROGRESS_INTERVAL, largeFile.length()), progress);
+    }
+
+    @Test
+    public void algorithmsAreFoundByNameOrAccession() throws Exception {
+        assertEquals(FileChecksumCalculator.Algorithm.SHA1, FileChecksumCalculator.Algorithm.findByName("sha1"));
+        assertEquals(FileChecksumCalculator.Algorithm.SHA256, FileChecksumCalculator.Algorithm.findByName("SHA-256"));
+        assertEquals(FileChecksumCalculator.Algorithm.SHA1, FileChecksumCalculator.Algorithm.findByAccession("MS: MS:1000569"));
+        assertNull(FileChecksumCalculator.Algorithm.findByName("CRC32"));
+    }
+
+    @Test
+    public void msRunHashesAreVerified() throws Exception {
+        File otherFile = temporaryFolder.newFile("other run.raw");
+        Files.write(otherFile.toPath(), "other".getBytes(StandardCharsets.US_ASCII));
+
+        MetaData metaData = new MetaData();
+        metaData.updateMsRun(createMsRun(file, "SHA-1", SHA1_ABC.toUpperCase()), 1);
+        metaData.updateMsRun(createMsRun(otherFile, "SHA-1", SHA1_ABC), 2);
+        metaData.updateMsRun(createMsRun(new File(temporaryFolder.getRoot(), "absent.raw"), "MD5", MD5_ABC), 3);
+        MzTabDocument mzTabDocument = new MzTabDocument();
+        mzTabDocument.setMetaData(metaData);
+
+        DataFile mzTabFile = new DataFile(temporaryFolder.newFile("result.mztab"), ProjectFileType.RESULT);
+        mzTabFile.setMzTabDocument(mzTabDocument);
+        Submission submission = new Submission();
+        submission.addDataFile(mzTabFile);
+        submission.addDataFile(new DataFile(file, ProjectFileType.RAW));
+        submission.addDataFile(new DataFile(otherFile, ProjectFileType.RAW));
+
+        ValidationReport report = new ValidationReport();
+        new MsRunHashVerifier(calculator).verify(submission, report);
+
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.SUCCESS));
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.WARNING));
+        for (ValidationMessage message : report.getMessages()) {
+            if (message.getType() == ValidationMessage.Type.ERROR) {
+                assertTrue(message.getMessage().contains("ms_run[2]"));
+            }
+        }
+    }
+
+    private static MsRun createMsRun(File file, String hashMethod, String hash) throws Exception {
+        MsRun msRun = new MsRun();
+        msRun.setLocation(file.toURI().toURL());
+        msRun.setHashMethod(new MsRunHashMethod("MS", "", hashMethod, ""));
+        msRun.setHash(hash);
+        return msRun;
+    }
+}
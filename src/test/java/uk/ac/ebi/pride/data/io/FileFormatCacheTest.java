@@ -0,0 +1,60 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.data.util.FileFormatCache;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class FileFormatCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        FileFormatCache.invalidateAll();
+    }
+
+    @Test
+    public void unknownFormatIsCached() throws Exception {
+        File file = temporaryFolder.newFile("notes.xml");
+        Files.write(file.toPath(), "<notes/>".getBytes(StandardCharsets.UTF_8));
+
+        long misses = FileFormatCache.getMissCount();
+        long hits = FileFormatCache.getHitCount();
+        assertNull(MassSpecFileFormat.checkFormat(file));
+        assertNull(MassSpecFileFormat.checkFormat(file));
+
+        assertEquals(misses + 1, FileFormatCache.getMissCount());
+        assertEquals(hits + 1, FileFormatCache.getHitCount());
+    }
+
+    @Test
+    public void changedFileIsDetectedAgain() throws Exception {
+        File file = temporaryFolder.newFile("data.xml");
+        Files.write(file.toPath(), "<notes/>".getBytes(StandardCharsets.UTF_8));
+        assertNull(MassSpecFileFormat.checkFormat(file));
+
+        Files.write(file.toPath(), ("<?xml version=\"1.0\"?>\n" +
+                "<mzML xmlns=\"http://psi.hupo.org/ms/mzml\" version=\"1.1.0\">\n").getBytes(StandardCharsets.UTF_8));
+        long misses = FileFormatCache.getMissCount();
+
+        assertEquals(MassSpecFileFormat.MZML, MassSpecFileFormat.checkFormat(file));
+        assertEquals(misses + 1, FileFormatCache.getMissCount());
+    }
+
+    @Test
+    public void missingFilesAreNotCached() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "missing.mgf");
+
+        assertEquals(MassSpecFileFormat.MGF, MassSpecFileFormat.checkFormat(file));
+        assertEquals(0, FileFormatCache.size());
+    }
+}
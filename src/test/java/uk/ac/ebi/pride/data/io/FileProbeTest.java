@@ -0,0 +1,104 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.data.util.FileProbe;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class FileProbeTest {
+    private static final String MZML = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+            "<mzML xmlns=\"http://psi.hupo.org/ms/mzml\" id=\"test\" version=\"1.1.0\">\n" +
+            "  <cvList count=\"1\"/>\n" +
+            "</mzML>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void plainFileIsProbed() throws Exception {
+        File file = temporaryFolder.newFile("run.xml");
+        Files.write(file.toPath(), MZML.getBytes(StandardCharsets.UTF_8));
+
+        FileProbe probe = FileProbe.open(file);
+        assertEquals(FileProbe.Compression.NONE, probe.getCompression());
+        assertEquals(file.length(), probe.getSize());
+        assertFalse(probe.getContentSample().contains("\n"));
+        assertTrue(probe.getContentSample().startsWith("<?xml"));
+        assertNull(probe.getTail());
+
+        assertEquals(MassSpecFileFormat.MZML, MassSpecFileFormat.checkFormat(file));
+    }
+
+    @Test
+    public void tailIsReadWithHead() throws Exception {
+        File file = temporaryFolder.newFile("large.txt");
+        byte[] content = new byte[FileProbe.HEAD_SIZE * 3];
+        content[content.length - 1] = 7;
+        Files.write(file.toPath(), content);
+
+        FileProbe probe = FileProbe.open(file, true);
+        assertEquals(FileProbe.HEAD_SIZE, probe.getHead().remaining());
+        ByteBuffer tail = probe.getTail();
+        assertEquals(FileProbe.TAIL_SIZE, tail.remaining());
+        assertEquals(7, tail.get(tail.limit() - 1));
+    }
+
+    @Test
+    public void gzipContentIsInflated() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "run.data.gz");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        out.write(MZML.getBytes(StandardCharsets.UTF_8));
+        out.close();
+
+        FileProbe probe = FileProbe.open(file);
+        assertEquals(FileProbe.Compression.GZIP, probe.getCompression());
+        assertEquals(MZML, new String(probe.getContent(), StandardCharsets.UTF_8));
+
+        assertEquals(MassSpecFileFormat.MZML, MassSpecFileFormat.checkFormat(file));
+    }
+
+    @Test
+    public void firstZipEntryIsInflated() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "results.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        out.putNextEntry(new ZipEntry("run.unknown"));
+        out.write(MZML.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("other.mgf"));
+        out.write("BEGIN IONS".getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+        out.close();
+
+        FileProbe probe = FileProbe.open(file);
+        assertEquals(FileProbe.Compression.ZIP, probe.getCompression());
+        assertEquals("run.unknown", probe.getZipEntryName());
+        assertEquals(MZML, new String(probe.getContent(), StandardCharsets.UTF_8));
+
+        assertEquals(MassSpecFileFormat.MZML, MassSpecFileFormat.checkFormat(file));
+    }
+
+    @Test
+    public void zipEntryExtensionIsUsed() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "peaks.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        out.putNextEntry(new ZipEntry("peaks.mgf"));
+        out.write("BEGIN IONS".getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+        out.close();
+
+        assertEquals(MassSpecFileFormat.MGF, MassSpecFileFormat.checkFormat(file));
+    }
+}
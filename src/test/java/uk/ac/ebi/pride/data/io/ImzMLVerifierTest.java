@@ -0,0 +1,135 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.ImzMLVerifier;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ImzMLVerifierTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String UUID = "{554a27fa-79d2-4766-9a2c-862e191d3e72}";
+    private static final byte[] UUID_BYTES = new byte[]{0x55, 0x4a, 0x27, (byte) 0xfa, 0x79, (byte) 0xd2, 0x47, 0x66,
+            (byte) 0x9a, 0x2c, (byte) 0x86, 0x2e, 0x19, 0x1d, 0x3e, 0x72};
+
+    @Test
+    public void matchingPairIsVerified() throws Exception {
+        File imzML = writeImzML("sample.imzML", UUID, 40);
+        File ibd = writeIbd("sample.ibd", UUID_BYTES, 64);
+
+        assertEquals("554A27FA79D247669A2C862E191D3E72", ImzMLVerifier.readUuid(imzML));
+        assertEquals("554A27FA79D247669A2C862E191D3E72", ImzMLVerifier.readIbdUuid(ibd));
+
+        ImzMLVerifier.Result result = ImzMLVerifier.verify(imzML, ibd);
+        assertTrue(result.getProblems().toString(), result.isValid());
+        assertEquals(ImzMLVerifier.Mode.CONTINUOUS, result.getMode());
+        assertEquals(2, result.getSpectrumCount());
+        assertEquals(4, result.getCheckedArrayCount());
+        assertEquals(64, result.getDataEnd());
+    }
+
+    @Test
+    public void truncatedIbdIsDetected() throws Exception {
+        File imzML = writeImzML("sample.imzML", UUID, 40);
+        File ibd = writeIbd("sample.ibd", UUID_BYTES, 60);
+
+        ImzMLVerifier.Result result = ImzMLVerifier.verify(imzML, ibd);
+
+        assertTrue(result.isUuidMatching());
+        assertFalse(result.isValid());
+        assertEquals(1, result.getProblemCount());
+    }
+
+    @Test
+    public void swappedIbdFilesAreDetected() throws Exception {
+        byte[] otherUuid = UUID_BYTES.clone();
+        otherUuid[15] = 0x00;
+        File first = writeImzML("first.imzML", UUID, 40);
+        File second = writeImzML("second.imzML", "554A27FA79D247669A2C862E191D3E00", 40);
+        File firstIbd = writeIbd("first.ibd", otherUuid, 64);
+        File secondIbd = writeIbd("second.ibd", UUID_BYTES, 64);
+        File orphanIbd = writeIbd("orphan.ibd", new byte[16], 16);
+
+        Submission submission = new Submission();
+        submission.addDataFile(new DataFile(first, ProjectFileType.MS_IMAGE_DATA));
+        submission.addDataFile(new DataFile(second, ProjectFileType.MS_IMAGE_DATA));
+        submission.addDataFile(new DataFile(firstIbd, ProjectFileType.RAW));
+        submission.addDataFile(new DataFile(secondIbd, ProjectFileType.RAW));
+        submission.addDataFile(new DataFile(orphanIbd, ProjectFileType.RAW));
+
+        ValidationReport report = SubmissionValidator.validateImzMLPairs(submission);
+
+        // both imzML files point at the other ibd file, the orphan ibd file has no imzML file
+        assertEquals(3, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(2, report.getMessageCount(ValidationMessage.Type.SUCCESS));
+    }
+
+    private File writeImzML(String name, String uuid, long intensityOffset) throws Exception {
+        String imzML = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+                "<mzML xmlns=\"http://psi.hupo.org/ms/mzml\" version=\"1.1\">\n" +
+                "  <fileDescription><fileContent>\n" +
+                "    <cvParam cvRef=\"MS\" accession=\"MS:1000579\" name=\"MS1 spectrum\" value=\"\"/>\n" +
+                "    <cvParam cvRef=\"IMS\" accession=\"IMS:1000080\" name=\"universally unique identifier\" value=\"" + uuid + "\"/>\n" +
+                "    <cvParam cvRef=\"IMS\" accession=\"IMS:1000030\" name=\"continuous\" value=\"\"/>\n" +
+                "  </fileContent></fileDescription>\n" +
+                "  <referenceableParamGroupList count=\"2\">\n" +
+                "    <referenceableParamGroup id=\"mzArray\">\n" +
+                "      <cvParam cvRef=\"MS\" accession=\"MS:1000514\" name=\"m/z array\" value=\"\"/>\n" +
+                "      <cvParam cvRef=\"MS\" accession=\"MS:1000523\" name=\"64-bit float\" value=\"\"/>\n" +
+                "    </referenceableParamGroup>\n" +
+                "    <referenceableParamGroup id=\"intensities\">\n" +
+                "      <cvParam cvRef=\"MS\" accession=\"MS:1000515\" name=\"intensity array\" value=\"\"/>\n" +
+                "      <cvParam cvRef=\"MS\" accession=\"MS:1000521\" name=\"32-bit float\" value=\"\"/>\n" +
+                "    </referenceableParamGroup>\n" +
+                "  </referenceableParamGroupList>\n" +
+                "  <run id=\"run\"><spectrumList count=\"2\">\n" +
+                spectrum(0, intensityOffset) +
+                spectrum(1, intensityOffset + 12) +
+                "  </spectrumList></run>\n" +
+                "</mzML>\n";
+        File file = temporaryFolder.newFile(name);
+        Files.write(file.toPath(), imzML.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static String spectrum(int index, long intensityOffset) {
+        return "    <spectrum id=\"Scan=" + index + "\" defaultArrayLength=\"0\" index=\"" + index + "\">\n" +
+                "      <binaryDataArrayList count=\"2\">\n" +
+                "        <binaryDataArray encodedLength=\"0\">\n" +
+                "          <referenceableParamGroupRef ref=\"mzArray\"/>\n" +
+                "          <cvParam cvRef=\"IMS\" accession=\"IMS:1000103\" name=\"external array length\" value=\"3\"/>\n" +
+                "          <cvParam cvRef=\"IMS\" accession=\"IMS:1000102\" name=\"external offset\" value=\"16\"/>\n" +
+                "          <binary/>\n" +
+                "        </binaryDataArray>\n" +
+                "        <binaryDataArray encodedLength=\"0\">\n" +
+                "          <referenceableParamGroupRef ref=\"intensities\"/>\n" +
+                "          <cvParam cvRef=\"IMS\" accession=\"IMS:1000103\" name=\"external array length\" value=\"3\"/>\n" +
+                "          <cvParam cvRef=\"IMS\" accession=\"IMS:1000104\" name=\"external encoded length\" value=\"12\"/>\n" +
+                "          <cvParam cvRef=\"IMS\" accession=\"IMS:1000102\" name=\"external offset\" value=\"" + intensityOffset + "\"/>\n" +
+                "          <binary/>\n" +
+                "        </binaryDataArray>\n" +
+                "      </binaryDataArrayList>\n" +
+                "    </spectrum>\n";
+    }
+
+    private File writeIbd(String name, byte[] uuid, int size) throws Exception {
+        byte[] content = new byte[size];
+        System.arraycopy(uuid, 0, content, 0, Math.min(uuid.length, size));
+        File file = temporaryFolder.newFile(name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
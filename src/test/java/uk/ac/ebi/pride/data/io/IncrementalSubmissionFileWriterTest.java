@@ -0,0 +1,141 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class IncrementalSubmissionFileWriterTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File submissionFile;
+
+    private Submission submission;
+
+    private IncrementalSubmissionFileWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = IncrementalSubmissionFileWriterTest.class.getClassLoader().getResource("submissionFile.px");
+        submissionFile = new File(temporaryFolder.getRoot(), "submission.px");
+        SubmissionFileWriter.write(SubmissionFileParser.parse(new File(url.toURI())), submissionFile);
+        submission = SubmissionFileParser.parse(submissionFile);
+        writer = new IncrementalSubmissionFileWriter(submissionFile);
+    }
+
+    @Test
+    public void unchangedSubmissionLeavesFileUntouched() throws Exception {
+        byte[] original = Files.readAllBytes(submissionFile.toPath());
+
+        writer.update(submission);
+
+        assertArrayEquals(original, Files.readAllBytes(submissionFile.toPath()));
+        assertFalse(SubmissionFileJournal.getJournalFile(submissionFile).exists());
+    }
+
+    @Test
+    public void newDataFileIsAppended() throws Exception {
+        long originalLength = submissionFile.length();
+        DataFile newDataFile = new DataFile(1000, new File(temporaryFolder.getRoot(), "new.raw"), ProjectFileType.RAW);
+        submission.addDataFile(newDataFile);
+
+        writer.update(submission);
+
+        String appended = new String(Files.readAllBytes(submissionFile.toPath()), "UTF-8").substring((int) originalLength);
+        assertTrue(appended.trim().startsWith("FME\t1000\tRAW"));
+
+        Submission updatedSubmission = SubmissionFileParser.parse(submissionFile);
+        assertEquals(submission.getDataFiles().size(), updatedSubmission.getDataFiles().size());
+        assertNotNull(updatedSubmission.getDataFileById(1000));
+    }
+
+    @Test
+    public void removedDataFileIsJournaled() throws Exception {
+        byte[] original = Files.readAllBytes(submissionFile.toPath());
+        DataFile removedDataFile = null;
+        for (DataFile dataFile : submission.getDataFiles()) {
+            if (!ProjectFileType.RESULT.equals(dataFile.getFileType())) {
+                removedDataFile = dataFile;
+            }
+        }
+        assertNotNull(removedDataFile);
+        for (DataFile dataFile : submission.getDataFiles()) {
+            dataFile.getFileMappings().remove(removedDataFile);
+        }
+        submission.removeDataFile(removedDataFile);
+
+        writer.update(submission);
+
+        Submission updatedSubmission = SubmissionFileParser.parse(submissionFile);
+        assertTrue(SubmissionFileJournal.getJournalFile(submissionFile).exists());
+        assertNull(updatedSubmission.getDataFileById(removedDataFile.getFileId()));
+        assertEquals(submission.getDataFiles().size(), updatedSubmission.getDataFiles().size());
+
+        // the journal is folded into the submission file on compaction
+        writer.compact();
+        assertFalse(SubmissionFileJournal.getJournalFile(submissionFile).exists());
+        assertTrue(Files.readAllBytes(submissionFile.toPath()).length < original.length);
+        assertNull(SubmissionFileParser.parse(submissionFile).getDataFileById(removedDataFile.getFileId()));
+    }
+
+    @Test
+    public void journalLeftBehindByRewriteIsIgnored() throws Exception {
+        DataFile removedDataFile = null;
+        for (DataFile dataFile : submission.getDataFiles()) {
+            if (!ProjectFileType.RESULT.equals(dataFile.getFileType())) {
+                removedDataFile = dataFile;
+            }
+        }
+        assertNotNull(removedDataFile);
+        for (DataFile dataFile : submission.getDataFiles()) {
+            dataFile.getFileMappings().remove(removedDataFile);
+        }
+        submission.removeDataFile(removedDataFile);
+        writer.update(submission);
+        File journalFile = SubmissionFileJournal.getJournalFile(submissionFile);
+        byte[] journal = Files.readAllBytes(journalFile.toPath());
+
+        // the file id is reused by a full rewrite, which crashes before removing the journal
+        submission.addDataFile(removedDataFile);
+        SubmissionFileWriter.write(submission, submissionFile);
+        Files.write(journalFile.toPath(), journal);
+
+        assertNotNull(SubmissionFileParser.parse(submissionFile).getDataFileById(removedDataFile.getFileId()));
+        new IncrementalSubmissionFileWriter(submissionFile).update(submission);
+        assertFalse(journalFile.exists());
+        assertNotNull(SubmissionFileParser.parse(submissionFile).getDataFileById(removedDataFile.getFileId()));
+    }
+
+    @Test
+    public void shorterProjectMetaDataIsUpdatedInPlace() throws Exception {
+        long originalLength = submissionFile.length();
+        String title = submission.getProjectMetaData().getProjectTitle();
+        submission.getProjectMetaData().setProjectTitle(title.substring(0, title.length() - 1));
+
+        writer.update(submission);
+
+        assertEquals(originalLength, submissionFile.length());
+        assertEquals(title.substring(0, title.length() - 1),
+                SubmissionFileParser.parse(submissionFile).getProjectMetaData().getProjectTitle());
+    }
+
+    @Test
+    public void longerProjectMetaDataRewritesFile() throws Exception {
+        String title = submission.getProjectMetaData().getProjectTitle() + " and more";
+        submission.getProjectMetaData().setProjectTitle(title);
+
+        writer.update(submission);
+
+        assertEquals(title, SubmissionFileParser.parse(submissionFile).getProjectMetaData().getProjectTitle());
+    }
+}
@@ -0,0 +1,99 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.util.FileChecksumCalculator;
+import uk.ac.ebi.pride.data.util.FileUtil;
+import uk.ac.ebi.pride.data.util.IndexedMzmlVerifier;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class IndexedMzmlVerifierTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File indexedMzml;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = IndexedMzmlVerifierTest.class.getClassLoader().getResource("mzml/indexed_valid.mzML");
+        if (url == null) {
+            throw new IllegalStateException("no file for input found!");
+        }
+        indexedMzml = new File(url.toURI());
+    }
+
+    @Test
+    public void headAndTailAreRead() throws Exception {
+        assertEquals("<?xml", new String(FileUtil.readHead(indexedMzml, 5), StandardCharsets.ISO_8859_1));
+        assertTrue(FileUtil.tail(indexedMzml, 20).endsWith("</indexedmzML>\n"));
+        assertEquals(indexedMzml.length(), FileUtil.readTail(indexedMzml, Integer.MAX_VALUE).length);
+    }
+
+    @Test
+    public void validIndexIsVerified() throws Exception {
+        IndexedMzmlVerifier.Result result = IndexedMzmlVerifier.verify(indexedMzml, 0, 4);
+
+        assertTrue(result.getProblems().toString(), result.isValid());
+        assertEquals(24498, result.getIndexListOffset());
+        assertEquals(6, result.getOffsetCount());
+        assertEquals(6, result.getCheckedOffsetCount());
+    }
+
+    @Test
+    public void offsetsAreSampled() throws Exception {
+        IndexedMzmlVerifier.Result result = IndexedMzmlVerifier.verify(indexedMzml, 3, 2);
+
+        assertTrue(result.isValid());
+        assertEquals(3, result.getCheckedOffsetCount());
+    }
+
+    @Test
+    public void brokenIndexIsDetected() throws Exception {
+        String content = new String(Files.readAllBytes(indexedMzml.toPath()), StandardCharsets.UTF_8);
+        File broken = temporaryFolder.newFile("broken.mzML");
+        Files.write(broken.toPath(), content.replace("\">10424</offset>", "\">10425</offset>")
+                .replace("\">20654</offset>", "\">6883</offset>").getBytes(StandardCharsets.UTF_8));
+
+        IndexedMzmlVerifier.Result result = IndexedMzmlVerifier.verify(broken, 0, 2);
+
+        assertFalse(result.isValid());
+        assertEquals(2, result.getProblemCount());
+
+        // the per file check only looks at the file attributes, the index is checked once the file is read
+        assertFalse(SubmissionValidator.validateDataFile(new DataFile(broken, ProjectFileType.PEAK)).hasError());
+        ValidationReport report = SubmissionValidator.validateFilesInOneRead(
+                Collections.singletonList(new DataFile(broken, ProjectFileType.PEAK)), FileChecksumCalculator.Algorithm.SHA1, 1);
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.ERROR));
+        for (ValidationMessage message : report.getMessages()) {
+            if (message.getType() == ValidationMessage.Type.ERROR) {
+                assertTrue(message.getMessage().startsWith("Invalid offset index"));
+            }
+        }
+    }
+
+    @Test
+    public void misplacedIndexListIsDetected() throws Exception {
+        String content = new String(Files.readAllBytes(indexedMzml.toPath()), StandardCharsets.UTF_8);
+        File shifted = temporaryFolder.newFile("shifted.mzML");
+        Files.write(shifted.toPath(), content.replace("<mzML ", "<mzML  ").getBytes(StandardCharsets.UTF_8));
+
+        IndexedMzmlVerifier.Result result = IndexedMzmlVerifier.verify(shifted);
+
+        assertFalse(result.isValid());
+        assertEquals(0, result.getOffsetCount());
+    }
+}
@@ -0,0 +1,116 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.DataFileEquivalence;
+import uk.ac.ebi.pride.data.model.Submission;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LazySubmissionTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File submissionFile;
+
+    private Submission submission;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = LazySubmissionTest.class.getClassLoader().getResource("submissionFile.px");
+        submissionFile = new File(url.toURI());
+        submission = SubmissionFileParser.parse(submissionFile);
+    }
+
+    @Test
+    public void projectMetaDataIsParsed() throws Exception {
+        LazySubmission lazySubmission = new LazySubmission(submissionFile);
+
+        assertEquals(submission.getProjectMetaData(), lazySubmission.getProjectMetaData());
+        assertEquals(submission.getDataFiles().size(), lazySubmission.getNumberOfDataFiles());
+    }
+
+    @Test
+    public void dataFilesMatchParsedSubmission() throws Exception {
+        // small pages, so that mappings cross pages and pages get evicted
+        LazySubmission lazySubmission = new LazySubmission(submissionFile, 2, 2);
+
+        List<DataFile> dataFiles = submission.getDataFiles();
+        for (int i = dataFiles.size() - 1; i >= 0; i--) {
+            DataFile dataFile = dataFiles.get(i);
+            assertTrue(DataFileEquivalence.equivalent(dataFile, lazySubmission.getDataFile(i)));
+            assertTrue(DataFileEquivalence.equivalent(dataFile, lazySubmission.getDataFileById(dataFile.getFileId())));
+        }
+        assertTrue(DataFileEquivalence.equivalent(dataFiles, lazySubmission.getDataFiles(0, dataFiles.size())));
+        assertNull(lazySubmission.getDataFileById(-5));
+    }
+
+    @Test
+    public void referencedDataFilesKeepTheirIdentity() throws Exception {
+        // a single cached page, so that every page read evicts the previous one
+        LazySubmission lazySubmission = new LazySubmission(submissionFile, 2, 1);
+
+        DataFile result = lazySubmission.getDataFileById(1);
+        List<DataFile> mapped = result.getFileMappings();
+        assertEquals(3, mapped.size());
+        lazySubmission.getDataFile(lazySubmission.getNumberOfDataFiles() - 1);
+
+        assertSame(result, lazySubmission.getDataFileById(1));
+        for (DataFile dataFile : mapped) {
+            assertSame(dataFile, lazySubmission.getDataFileById(dataFile.getFileId()));
+        }
+    }
+
+    @Test
+    public void repeatedEntriesKeepTheirPosition() throws Exception {
+        File copy = new File(temporaryFolder.getRoot(), "repeated.px");
+        StringBuilder content = new StringBuilder(new String(Files.readAllBytes(submissionFile.toPath()), StandardCharsets.UTF_8));
+        content.append("FME\t2\tresult\t/path/to/pride/xml/files/pride-2-replaced.xml\t4\n");
+        Files.write(copy.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+        LazySubmission lazySubmission = new LazySubmission(copy, 2, 2);
+        Submission parsed = SubmissionFileParser.parse(copy);
+        assertEquals(parsed.getDataFiles().size(), lazySubmission.getNumberOfDataFiles());
+        assertEquals("pride-2-replaced.xml", lazySubmission.getDataFileById(2).getFileName());
+        assertTrue(DataFileEquivalence.equivalent(parsed.getDataFiles(),
+                lazySubmission.getDataFiles(0, lazySubmission.getNumberOfDataFiles())));
+    }
+
+    @Test
+    public void incrementalUpdatesAreApplied() throws Exception {
+        File copy = new File(temporaryFolder.getRoot(), "submission.px");
+        SubmissionFileWriter.write(submission, copy);
+        Submission updated = SubmissionFileParser.parse(copy);
+
+        DataFile removed = null;
+        for (DataFile dataFile : updated.getDataFiles()) {
+            if (!ProjectFileType.RESULT.equals(dataFile.getFileType())) {
+                removed = dataFile;
+            }
+        }
+        for (DataFile dataFile : updated.getDataFiles()) {
+            dataFile.removeFileMapping(removed);
+        }
+        updated.removeDataFile(removed);
+        updated.getDataFiles().get(0).setAssayAccession("12345");
+        updated.addDataFile(new DataFile(1000, new File(temporaryFolder.getRoot(), "new.raw"), ProjectFileType.RAW));
+        new IncrementalSubmissionFileWriter(copy).update(updated);
+
+        LazySubmission lazySubmission = new LazySubmission(copy);
+        Submission parsed = SubmissionFileParser.parse(copy);
+        assertEquals(parsed.getDataFiles().size(), lazySubmission.getNumberOfDataFiles());
+        assertNull(lazySubmission.getDataFileById(removed.getFileId()));
+        assertTrue(DataFileEquivalence.equivalent(parsed.getDataFiles(),
+                lazySubmission.getDataFiles(0, lazySubmission.getNumberOfDataFiles())));
+    }
+}
@@ -0,0 +1,141 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.MzIdentMLSummary;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class MzIdentMLSummaryTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String MZIDENTML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<MzIdentML xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\" id=\"test\" version=\"1.1.0\">\n" +
+            "  <cvList>\n" +
+            "    <cv id=\"PSI-MS\" fullName=\"Proteomics Standards Initiative Mass Spectrometry Vocabularies\" version=\"4.1.0\" uri=\"psi-ms.obo\"/>\n" +
+            "    <cv id=\"UNIMOD\" fullName=\"UNIMOD\" uri=\"unimod.obo\"/>\n" +
+            "  </cvList>\n" +
+            "  <AnalysisSoftwareList>\n" +
+            "    <AnalysisSoftware id=\"AS_1\" version=\"2.5\">\n" +
+            "      <SoftwareName><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001207\" name=\"Mascot\"/></SoftwareName>\n" +
+            "    </AnalysisSoftware>\n" +
+            "  </AnalysisSoftwareList>\n" +
+            "  <SequenceCollection>\n" +
+            "    <DBSequence id=\"DBSeq_1\" accession=\"P12345\" searchDatabase_ref=\"SDB_1\"/>\n" +
+            "    <Peptide id=\"PEP_1\"><PeptideSequence>PEPTIDE</PeptideSequence></Peptide>\n" +
+            "    <PeptideEvidence id=\"PE_1\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSeq_1\"/>\n" +
+            "    <PeptideEvidence id=\"PE_2\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSeq_1\"/>\n" +
+            "  </SequenceCollection>\n" +
+            "  <DataCollection>\n" +
+            "    <Inputs>\n" +
+            "      <SearchDatabase id=\"SDB_1\" location=\"file:///db/uniprot_human.fasta\" name=\"UniProt\"/>\n" +
+            "      <SpectraData id=\"SD_1\" location=\"file:///data/run1.mgf\"/>\n" +
+            "      <SpectraData id=\"SD_2\" location=\"C:\\data\\run2.mzML\"/>\n" +
+            "    </Inputs>\n" +
+            "    <AnalysisData>\n" +
+            "      <SpectrumIdentificationList id=\"SIL_1\">\n" +
+            "        <SpectrumIdentificationResult id=\"SIR_1\" spectrumID=\"index=0\" spectraData_ref=\"SD_1\">\n" +
+            "          <SpectrumIdentificationItem id=\"SII_1\" rank=\"1\" passThreshold=\"true\" peptide_ref=\"PEP_1\">\n" +
+            "            <cvParam cvRef=\"PSI-MS\" accession=\"MS:1001171\" name=\"Mascot:score\" value=\"50\"/>\n" +
+            "          </SpectrumIdentificationItem>\n" +
+            "          <SpectrumIdentificationItem id=\"SII_2\" rank=\"2\" passThreshold=\"false\" peptide_ref=\"PEP_1\">\n" +
+            "            <cvParam cvRef=\"PSI-MS\" accession=\"MS:1001171\" name=\"Mascot:score\" value=\"10\"/>\n" +
+            "          </SpectrumIdentificationItem>\n" +
+            "        </SpectrumIdentificationResult>\n" +
+            "      </SpectrumIdentificationList>\n" +
+            "      <ProteinDetectionList id=\"PDL_1\">\n" +
+            "        <ProteinAmbiguityGroup id=\"PAG_1\">\n" +
+            "          <ProteinDetectionHypothesis id=\"PDH_1\" dBSequence_ref=\"DBSeq_1\" passThreshold=\"true\"/>\n" +
+            "        </ProteinAmbiguityGroup>\n" +
+            "      </ProteinDetectionList>\n" +
+            "    </AnalysisData>\n" +
+            "  </DataCollection>\n" +
+            "</MzIdentML>\n";
+
+    private File mzIdentML;
+
+    @Before
+    public void setUp() throws Exception {
+        mzIdentML = temporaryFolder.newFile("result.mzid");
+        Files.write(mzIdentML.toPath(), MZIDENTML.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keyFactsAreSummarized() throws Exception {
+        MzIdentMLSummary summary = MzIdentMLSummary.summarize(mzIdentML);
+
+        assertEquals("1.1.0", summary.getVersion());
+        assertEquals(1, summary.getSpectrumIdentificationResultCount());
+        assertEquals(2, summary.getSpectrumIdentificationItemCount());
+        assertEquals(2, summary.getPeptideEvidenceCount());
+        assertEquals(1, summary.getProteinDetectionHypothesisCount());
+        assertEquals(1, summary.getDbSequenceCount());
+        assertEquals(Arrays.asList("file:///data/run1.mgf", "C:\\data\\run2.mzML"), summary.getSpectraDataLocations());
+        assertEquals(Arrays.asList("file:///db/uniprot_human.fasta"), summary.getSearchDatabaseLocations());
+        assertEquals(Arrays.asList("Mascot 2.5"), summary.getSoftware());
+        assertEquals(2, summary.getCvs().size());
+        assertEquals(Integer.valueOf(2), summary.getCvTermCounts().get("MS:1001171"));
+        assertEquals("Mascot:score", summary.getCvTermName("MS:1001171"));
+        assertEquals(3, summary.getCvParamCount());
+    }
+
+    @Test
+    public void filesAreSummarizedInParallel() throws Exception {
+        File gzipped = temporaryFolder.newFile("result2.mzid.gz");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipped));
+        try {
+            out.write(MZIDENTML.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+        File broken = temporaryFolder.newFile("broken.mzid");
+        Files.write(broken.toPath(), MZIDENTML.substring(0, 500).getBytes(StandardCharsets.UTF_8));
+
+        Map<File, MzIdentMLSummary> summaries = MzIdentMLSummary.summarizeAll(Arrays.asList(mzIdentML, gzipped, broken), 3);
+
+        assertEquals(2, summaries.size());
+        assertEquals(2, summaries.get(gzipped).getSpectrumIdentificationItemCount());
+        assertNull(summaries.get(broken));
+    }
+
+    @Test
+    public void mappingsAreCrossChecked() throws Exception {
+        DataFile resultFile = new DataFile(mzIdentML, ProjectFileType.RESULT);
+        resultFile.setFileFormat(MassSpecFileFormat.MZIDENTML);
+        DataFile run1 = new DataFile(new File(temporaryFolder.getRoot(), "run1.raw"), ProjectFileType.RAW);
+        DataFile run3 = new DataFile(new File(temporaryFolder.getRoot(), "run3.raw"), ProjectFileType.RAW);
+        resultFile.addFileMapping(run1);
+        resultFile.addFileMapping(run3);
+
+        Submission submission = new Submission();
+        submission.addDataFile(resultFile);
+        submission.addDataFile(run1);
+        submission.addDataFile(run3);
+
+        ValidationReport report = SubmissionValidator.validateMzIdentMLMappings(submission, 2);
+
+        // run2.mzML is not mapped and run3.raw is not referenced
+        assertFalse(report.hasError());
+        assertEquals(2, report.getMessageCount(ValidationMessage.Type.WARNING));
+        assertFalse(report.hasSuccess());
+    }
+}
@@ -0,0 +1,120 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.data.model.CvParam;
+import uk.ac.ebi.pride.data.util.Constant;
+import uk.ac.ebi.pride.data.util.OntologyIndex;
+import uk.ac.ebi.pride.data.util.OntologyIndexRegistry;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class OntologyIndexTest {
+    private static final String OBO = "format-version: 1.2\n" +
+            "ontology: ms\n" +
+            "\n" +
+            "[Term]\n" +
+            "id: MS:1000031\n" +
+            "name: instrument model\n" +
+            "\n" +
+            "[Term]\n" +
+            "id: MS:1001742\n" +
+            "name: LTQ Orbitrap Velos\n" +
+            "is_a: MS:1000494 ! Thermo Scientific instrument model\n" +
+            "\n" +
+            "[Term]\n" +
+            "id: MS:1000449\n" +
+            "name: LTQ Orbitrap\n" +
+            "\n" +
+            "[Term]\n" +
+            "id: MS:1000141\n" +
+            "name: old instrument\n" +
+            "is_obsolete: true\n" +
+            "\n" +
+            "[Typedef]\n" +
+            "id: part_of\n" +
+            "name: part of\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private OntologyIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        File oboFile = temporaryFolder.newFile("ms.obo");
+        Files.write(oboFile.toPath(), OBO.getBytes(StandardCharsets.UTF_8));
+        index = OntologyIndex.loadObo(Constant.MS, oboFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        OntologyIndexRegistry.clear();
+    }
+
+    @Test
+    public void termsAreIndexed() throws Exception {
+        assertIndex(index);
+    }
+
+    @Test
+    public void snapshotMatchesIndex() throws Exception {
+        File snapshot = new File(temporaryFolder.getRoot(), "ms.idx");
+        index.writeSnapshot(snapshot);
+
+        assertIndex(OntologyIndex.openSnapshot(snapshot));
+    }
+
+    @Test
+    public void registeredOntologiesAreValidated() throws Exception {
+        OntologyIndexRegistry.register(index);
+
+        ValidationReport report = SubmissionValidator.validateInstruments(Collections.singleton(
+                new CvParam(Constant.MS, "MS:1001742", "LTQ Orbitrap Velos", null)));
+        assertFalse(report.hasError());
+        assertFalse(report.hasWarning());
+
+        report = SubmissionValidator.validateInstruments(Collections.singleton(
+                new CvParam(Constant.MS, "MS:9999999", "unknown", null)));
+        assertTrue(report.hasError());
+
+        report = SubmissionValidator.validateInstruments(Collections.singleton(
+                new CvParam(Constant.MS, "MS:1000141", "old instrument", null)));
+        assertFalse(report.hasError());
+        assertEquals(ValidationMessage.Type.WARNING, report.getMessages().get(0).getType());
+
+        // other ontologies are not checked
+        report = SubmissionValidator.validateInstruments(Collections.singleton(
+                new CvParam(Constant.PRIDE, "PRIDE:9999999", "unknown", null)));
+        assertFalse(report.hasError());
+    }
+
+    private static void assertIndex(OntologyIndex index) {
+        assertEquals(Constant.MS, index.getCvLabel());
+        assertEquals(4, index.size());
+
+        assertTrue(index.containsAccession("MS:1000449"));
+        assertFalse(index.containsAccession("MS:1000450"));
+        assertFalse(index.containsAccession("part_of"));
+
+        assertEquals("LTQ Orbitrap Velos", index.getName("MS:1001742"));
+        assertEquals("MS:1000449", index.getAccession("ltq orbitrap"));
+        assertNull(index.getAccession("LTQ"));
+        assertTrue(index.matches("MS:1001742", "ltq orbitrap velos"));
+        assertFalse(index.matches("MS:1001742", "LTQ Orbitrap"));
+
+        assertTrue(index.isObsolete("MS:1000141"));
+        assertFalse(index.isObsolete("MS:1000031"));
+    }
+}
@@ -0,0 +1,303 @@
+package uk.ac.ebi.pride.data.io;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.util.*;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SharedFileScanTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void consumersGetTheSameResultsAsSeparateReads() throws Exception {
+        File mgf = TestFiles.write(temporaryFolder, "spectra.mgf", mgf(200));
+        File gzippedMgf = TestFiles.gzip(temporaryFolder, "spectra.mgf.gz", mgf(200));
+
+        for (File file : new File[]{mgf, gzippedMgf}) {
+            // chunks smaller than an entry, so lines and gzip headers span chunks
+            ChecksumScanConsumer checksum = new ChecksumScanConsumer(FileChecksumCalculator.Algorithm.SHA1);
+            TruncationScanConsumer truncation = new TruncationScanConsumer(MassSpecFileFormat.MGF);
+            ContentScanConsumer contentScan = ContentScanConsumer.forFormat(MassSpecFileFormat.MGF);
+            SharedFileScan scan = new SharedFileScan(file, 7, 2)
+                    .addConsumer(checksum).addConsumer(truncation).addConsumer(contentScan);
+            scan.run();
+
+            assertTrue(scan.getFailures().isEmpty());
+            assertEquals(file.length(), scan.getBytesRead());
+            assertEquals(new FileChecksumCalculator(1).checksum(file, FileChecksumCalculator.Algorithm.SHA1), checksum.getChecksum());
+            assertTrue(truncation.getResult().isChecked());
+            assertFalse(truncation.getResult().isSuspect());
+
+            ContentScanResult expected = new MgfContentScanner().scan(file);
+            ContentScanResult result = contentScan.getResult();
+            assertEquals(200, result.getEntryCount());
+            assertEquals(expected.getEntryCount(), result.getEntryCount());
+            assertEquals(expected.getByteCount(), result.getByteCount());
+            assertEquals(expected.getMalformedCount(), result.getMalformedCount());
+            assertEquals(expected.getDuplicateCount(), result.getDuplicateCount());
+        }
+    }
+
+    @Test
+    public void linesSpanningChunksAreHandedOverWhole() throws Exception {
+        String text = "MTD\tmzTab-version\t1.0.0\r\n\r\nPSH\tsequence\tPSM_ID\r\nPSM\tPEPTIDE\t1\r\nPSM\tPEPTIDES\t2";
+        byte[] content = text.getBytes(StandardCharsets.UTF_8);
+        // two gzip members, as BGZF files have
+        File multiMember = temporaryFolder.newFile("multi_member.mzTab.gz");
+        Files.write(multiMember.toPath(), concat(TestFiles.gzip(Arrays.copyOf(content, 30)), TestFiles.gzip(Arrays.copyOfRange(content, 30, content.length))));
+
+        for (File file : new File[]{TestFiles.write(temporaryFolder, "rows.mzTab", content), TestFiles.gzip(temporaryFolder, "rows.mzTab.gz", content), multiMember}) {
+            for (int chunkSize : new int[]{1, 5, 1024}) {
+                final List<String> lines = new ArrayList<String>();
+                final List<Long> offsets = new ArrayList<Long>();
+                LineScanConsumer consumer = new LineScanConsumer(new LineSplitter.LineHandler() {
+                    @Override
+                    public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+                        byte[] line = new byte[end - start];
+                        for (int i = start; i < end; i++) {
+                            line[i - start] = buffer.get(i);
+                        }
+                        lines.add(new String(line, StandardCharsets.UTF_8));
+                        offsets.add(offset);
+                    }
+                });
+                new SharedFileScan(file, chunkSize, 3).addConsumer(consumer).run();
+
+                assertEquals(Arrays.asList(text.split("\r\n", -1)), lines);
+                assertEquals(Arrays.asList(0L, 25L, 27L, 48L, 63L), offsets);
+                assertEquals(5, consumer.getLineCount());
+                assertEquals(content.length, consumer.getContentLength());
+            }
+        }
+    }
+
+    @Test
+    public void lineBreaksAreSplitAsByABufferedReader() throws Exception {
+        byte[] windows = Files.readAllBytes(resource("sample_data/windows_position_test").toPath());
+        // a lone \r ends a line too, as in files from classic Mac OS
+        byte[] crOnly = new String(windows, StandardCharsets.UTF_8).replace("\r\n", "\r").getBytes(StandardCharsets.UTF_8);
+        List<File> files = new ArrayList<File>(Arrays.asList(resource("sample_data/unix_position_test"),
+                resource("sample_data/windows_position_test"), resource("sample_data/windows_position_test.gz")));
+        files.add(TestFiles.write(temporaryFolder, "cr_position_test", crOnly));
+        files.add(TestFiles.gzip(temporaryFolder, "cr_position_test.gz", crOnly));
+        files.add(TestFiles.write(temporaryFolder, "cr_ended", "A\rB\r".getBytes(StandardCharsets.UTF_8)));
+
+        for (File file : files) {
+            byte[] content = ByteStreams.toByteArray(FileUtil.getFileInputStream(file));
+            List<String> expected = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                expected.add(line);
+            }
+
+            for (int chunkSize : new int[]{1, 2, 5, 1024}) {
+                List<String> lines = new ArrayList<String>();
+                LineScanConsumer consumer = new LineScanConsumer(collectLines(lines, content));
+                new SharedFileScan(file, chunkSize, 2).addConsumer(consumer).run();
+                assertEquals(file.getName() + " in chunks of " + chunkSize, expected, lines);
+            }
+        }
+    }
+
+    @Test
+    public void mzTabFilesWithCarriageReturnsAreParsedInOneRead() throws Exception {
+        byte[] content = Files.readAllBytes(resource("mzml/F002759.dat-pride.pride.mztab").toPath());
+        File mzTab = TestFiles.write(temporaryFolder, "cr.mztab", new String(content, StandardCharsets.UTF_8).replace('\n', '\r').getBytes(StandardCharsets.UTF_8));
+
+        DataFile dataFile = new DataFile(mzTab, ProjectFileType.RESULT);
+        ValidationReport report = SubmissionValidator.validateFilesInOneRead(Arrays.asList(dataFile),
+                FileChecksumCalculator.Algorithm.SHA1, 1);
+
+        assertEquals(0, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals("GlcNAc dynamics", dataFile.getMzTabDocument().getMetaData().getTitle());
+    }
+
+    @Test
+    public void brokenGzipFilesAreReported() throws Exception {
+        byte[] compressed = TestFiles.gzip(mgf(50));
+        File truncated = TestFiles.write(temporaryFolder, "truncated.mgf.gz", Arrays.copyOf(compressed, compressed.length - 4));
+        byte[] corrupted = compressed.clone();
+        corrupted[corrupted.length - 8]++;
+        File badCrc = TestFiles.write(temporaryFolder, "bad_crc.mgf.gz", corrupted);
+
+        for (File file : new File[]{truncated, badCrc}) {
+            TruncationScanConsumer truncation = new TruncationScanConsumer(MassSpecFileFormat.MGF);
+            ContentScanConsumer contentScan = ContentScanConsumer.forFormat(MassSpecFileFormat.MGF);
+            SharedFileScan scan = new SharedFileScan(file, 64, 2).addConsumer(truncation).addConsumer(contentScan);
+            scan.run();
+
+            assertTrue(truncation.getResult().isSuspect());
+            assertTrue(scan.hasFailed(contentScan));
+            assertNull(contentScan.getResult());
+        }
+    }
+
+    @Test
+    public void slowConsumerSetsThePaceAndFailedConsumerIsLeftOut() throws Exception {
+        final int chunkSize = 1024;
+        final int poolSize = 2;
+        File file = TestFiles.write(temporaryFolder, "spectra.mgf", mgf(100));
+        final List<Long> leads = new ArrayList<Long>();
+        final SharedFileScan scan = new SharedFileScan(file, chunkSize, poolSize);
+        SharedFileScan.Consumer slow = new CountingConsumer() {
+            @Override
+            public void accept(ByteBuffer chunk, long offset) throws IOException {
+                super.accept(chunk, offset);
+                leads.add(scan.getBytesRead() - offset);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        CountingConsumer failing = new CountingConsumer() {
+            @Override
+            public void accept(ByteBuffer chunk, long offset) throws IOException {
+                super.accept(chunk, offset);
+                throw new IOException("failed on purpose");
+            }
+        };
+        CountingConsumer fast = new CountingConsumer();
+        scan.addConsumer(slow).addConsumer(failing).addConsumer(fast).run();
+
+        // the read never gets more than the pool ahead of the slowest consumer
+        assertFalse(leads.isEmpty());
+        for (long lead : leads) {
+            assertTrue("read ahead by " + lead, lead <= (long) chunkSize * poolSize);
+        }
+        assertEquals(file.length(), fast.byteCount);
+        assertTrue(fast.finished);
+        assertEquals(chunkSize, failing.byteCount);
+        assertFalse(failing.finished);
+        assertEquals("failed on purpose", scan.getFailures().get(failing).getMessage());
+        assertEquals(1, scan.getFailures().size());
+    }
+
+    @Test
+    public void plannerAddsConsumersFromTheFirstChunk() throws Exception {
+        File gzippedMgf = TestFiles.gzip(temporaryFolder, "spectra.mgf.gz", mgf(20));
+        final List<MassSpecFileFormat> formats = new ArrayList<MassSpecFileFormat>();
+        final CountingConsumer planned = new CountingConsumer();
+        CountingConsumer added = new CountingConsumer();
+        SharedFileScan scan = new SharedFileScan(gzippedMgf, 64, 2).addConsumer(added).setPlanner(new SharedFileScan.Planner() {
+            @Override
+            public void plan(SharedFileScan scan, ByteBuffer head) throws IOException {
+                formats.add(FormatScanConsumer.detect(scan.getFile(), head));
+                scan.addConsumer(planned);
+            }
+        });
+        scan.run();
+
+        assertEquals(Arrays.asList(MassSpecFileFormat.MGF), formats);
+        assertEquals(gzippedMgf.length(), added.byteCount);
+        assertEquals(gzippedMgf.length(), planned.byteCount);
+        assertTrue(planned.finished);
+    }
+
+    @Test
+    public void dataFilesAreValidatedInOneRead() throws Exception {
+        File mgf = TestFiles.write(temporaryFolder, "validated.mgf", mgf(20));
+        File cut = TestFiles.write(temporaryFolder, "cut.mgf", Arrays.copyOf(mgf(20), 300));
+        File mzTab = temporaryFolder.newFile("result.mztab");
+        Files.copy(resource("mzml/F002759.dat-pride.pride.mztab").toPath(), mzTab.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File badMzTab = TestFiles.write(temporaryFolder, "bad.mztab", "MTD\tmzTab-version\t1.0.0\nPSM\tbroken\n".getBytes(StandardCharsets.UTF_8));
+
+        DataFile mzTabFile = new DataFile(mzTab, ProjectFileType.RESULT);
+        FileChecksumCalculator calculator = FileChecksumCalculator.getDefault();
+        ValidationReport report = SubmissionValidator.validateFilesInOneRead(Arrays.asList(
+                new DataFile(mgf, ProjectFileType.PEAK), new DataFile(cut, ProjectFileType.PEAK),
+                mzTabFile, new DataFile(badMzTab, ProjectFileType.RESULT)),
+                FileChecksumCalculator.Algorithm.SHA1, 2);
+
+        // complete and valid content of the first file, truncation and unclosed entry of the second one, the mzTab
+        // file is complete and parsed, the broken one is not parsed
+        assertEquals(5, report.getMessageCount(ValidationMessage.Type.SUCCESS));
+        assertEquals(3, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(MassSpecFileFormat.MZTAB, mzTabFile.getFileFormat());
+        assertEquals("GlcNAc dynamics", mzTabFile.getMzTabDocument().getMetaData().getTitle());
+
+        // the checksum has been cached by the scan
+        long hits = calculator.getHitCount();
+        assertEquals(new FileChecksumCalculator(1).checksum(mgf, FileChecksumCalculator.Algorithm.SHA1),
+                calculator.checksum(mgf, FileChecksumCalculator.Algorithm.SHA1));
+        assertEquals(hits + 1, calculator.getHitCount());
+    }
+
+    /**
+     * Collect the lines handed over, checking that their offsets point at them in the content
+     */
+    private static LineSplitter.LineHandler collectLines(final List<String> lines, final byte[] content) {
+        return new LineSplitter.LineHandler() {
+            @Override
+            public void onLine(ByteBuffer buffer, int start, int end, long offset) {
+                byte[] line = new byte[end - start];
+                for (int i = start; i < end; i++) {
+                    line[i - start] = buffer.get(i);
+                    assertEquals(content[(int) offset + i - start], line[i - start]);
+                }
+                lines.add(new String(line, StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private static File resource(String name) throws Exception {
+        return new File(SharedFileScanTest.class.getClassLoader().getResource(name).toURI());
+    }
+
+    private static byte[] mgf(int spectra) {
+        StringBuilder mgf = new StringBuilder();
+        for (int i = 1; i <= spectra; i++) {
+            mgf.append("BEGIN IONS\nTITLE=spectrum ").append(i).append("\nPEPMASS=").append(400 + i)
+                    .append(".2\n100.1 20\n200.2 30.5\nEND IONS\n\n");
+        }
+        return mgf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private static class CountingConsumer implements SharedFileScan.Consumer {
+        private long byteCount;
+        private boolean finished;
+
+        @Override
+        public void start(File file, long size) throws IOException {
+        }
+
+        @Override
+        public void accept(ByteBuffer chunk, long offset) throws IOException {
+            byteCount += chunk.remaining();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            finished = true;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.SpectrumIdIndex;
+import uk.ac.ebi.pride.data.validation.SpectraRefResolver;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SpectraRefResolverTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File mzml;
+    private File mgf;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = SpectraRefResolverTest.class.getClassLoader().getResource("mzml/indexed_valid.mzML");
+        if (url == null) {
+            throw new IllegalStateException("no file for input found!");
+        }
+        mzml = new File(url.toURI());
+
+        mgf = temporaryFolder.newFile("spectra.mgf");
+        Files.write(mgf.toPath(), ("BEGIN IONS\nTITLE=spectrum one\nSCANS=100\nPEPMASS=500.2\n100.1 20\nEND IONS\n" +
+                "BEGIN IONS\nTITLE=File.2.2.2\nSCANS=101-102\nPEPMASS=600.3\n150.2 10\nEND IONS\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void mzmlIdsAreIndexedFromTheOffsetIndex() throws Exception {
+        SpectrumIdIndex index = SpectrumIdIndex.build(mzml, MassSpecFileFormat.INDEXED_MZML);
+
+        assertEquals(4, index.size());
+        assertTrue(index.contains("scan=19"));
+        assertTrue(index.contains("scan=21"));
+        assertTrue(index.contains("sample=1 period=1 cycle=22 experiment=1"));
+        assertTrue(index.contains("index=3"));
+        assertFalse(index.contains("scan=22"));
+        assertFalse(index.contains("index=4"));
+        assertFalse(index.contains("tic"));
+    }
+
+    @Test
+    public void mgfTitlesAndScansAreIndexed() throws Exception {
+        SpectrumIdIndex index = SpectrumIdIndex.build(mgf, MassSpecFileFormat.MGF);
+
+        assertEquals(2, index.size());
+        assertTrue(index.contains("spectrum one"));
+        assertTrue(index.contains("File.2.2.2"));
+        assertTrue(index.contains("scan=102"));
+        assertTrue(index.contains("index=1"));
+        assertFalse(index.contains("scan=103"));
+        assertFalse(index.contains("File.2.2.3"));
+    }
+
+    @Test
+    public void spectraRefsAreResolved() throws Exception {
+        File mzTab = temporaryFolder.newFile("result.mzTab");
+        Files.write(mzTab.toPath(), ("MTD\tmzTab-version\t1.0.0\n" +
+                "MTD\tms_run[1]-location\tfile:///data/" + mzml.getName() + "\n" +
+                "MTD\tms_run[2]-location\tftp://ftp.example.org/spectra.mgf\n" +
+                "MTD\tms_run[3]-location\tfile:///data/missing.mgf\n" +
+                "\n" +
+                "PSH\tsequence\tPSM_ID\tspectra_ref\tcharge\n" +
+                "PSM\tPEPTIDE\t1\tms_run[1]:scan=19\t2\n" +
+                "PSM\tPEPTIDE\t2\tms_run[1]:scan=20|ms_run[2]:index=1\t2\n" +
+                "PSM\tPEPTIDE\t3\tms_run[1]:scan=99\t2\n" +
+                "PSM\tPEPTIDE\t4\tms_run[2]:scan=100\t2\n" +
+                "PSM\tPEPTIDE\t5\tms_run[3]:index=0\t2\n" +
+                "PSM\tPEPTIDE\t6\tscan=19\t2\n").getBytes(StandardCharsets.UTF_8));
+
+        SpectraRefResolver resolver = new SpectraRefResolver(Arrays.asList(mzml, mgf), 2);
+        SpectraRefResolver.Result result = resolver.resolve(mzTab);
+
+        SpectraRefResolver.MsRunResult first = result.getMsRunResult(1);
+        assertTrue(first.isChecked());
+        assertEquals(3, first.getReferenceCount());
+        assertEquals(1, first.getUnresolvedCount());
+        assertEquals(Arrays.asList("scan=99"), first.getUnresolvedExamples());
+
+        SpectraRefResolver.MsRunResult second = result.getMsRunResult(2);
+        assertTrue(second.isChecked());
+        assertEquals(2, second.getReferenceCount());
+        assertEquals(0, second.getUnresolvedCount());
+
+        SpectraRefResolver.MsRunResult third = result.getMsRunResult(3);
+        assertFalse(third.isChecked());
+        assertNull(third.getPeakFile());
+
+        assertEquals(1, result.getMalformedReferenceCount());
+        assertEquals(1, result.getUnresolvedCount());
+
+        ValidationReport report = new ValidationReport();
+        result.report(mzTab, report);
+        assertTrue(report.hasError());
+    }
+}
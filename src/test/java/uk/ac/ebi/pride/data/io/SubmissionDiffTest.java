@@ -0,0 +1,69 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.CvParam;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.Constant;
+import uk.ac.ebi.pride.data.util.SubmissionDiff;
+
+import java.io.File;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+public class SubmissionDiffTest {
+    private Submission previous;
+
+    private Submission current;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = SubmissionDiffTest.class.getClassLoader().getResource("submissionFile.px");
+        File submissionFile = new File(url.toURI());
+        previous = SubmissionFileParser.parse(submissionFile);
+        current = SubmissionFileParser.parse(submissionFile);
+    }
+
+    @Test
+    public void identicalSubmissionsHaveNoChanges() throws Exception {
+        assertFalse(SubmissionDiff.diff(previous, current).hasChanges());
+    }
+
+    @Test
+    public void dataFileChangesAreDetected() throws Exception {
+        DataFile removed = current.getDataFiles().get(current.getDataFiles().size() - 1);
+        for (DataFile dataFile : current.getDataFiles()) {
+            dataFile.getFileMappings().remove(removed);
+        }
+        current.removeDataFile(removed);
+        current.addDataFile(new DataFile(1000, new File("new.raw"), ProjectFileType.RAW));
+
+        SubmissionDiff diff = SubmissionDiff.diff(previous, current);
+
+        assertEquals(1, diff.getDataFileChanges(SubmissionDiff.ChangeType.ADDED).size());
+        assertEquals(1000, diff.getDataFileChanges(SubmissionDiff.ChangeType.ADDED).get(0).getFileId());
+        assertEquals(1, diff.getDataFileChanges(SubmissionDiff.ChangeType.REMOVED).size());
+        assertEquals(removed.getFileId(), diff.getDataFileChanges(SubmissionDiff.ChangeType.REMOVED).get(0).getFileId());
+        for (SubmissionDiff.DataFileChange change : diff.getDataFileChanges(SubmissionDiff.ChangeType.MODIFIED)) {
+            assertTrue(previous.getDataFileById(change.getFileId()).getFileMappings().contains(removed));
+        }
+        assertTrue(diff.getMetaDataChanges().isEmpty());
+    }
+
+    @Test
+    public void metaDataChangesAreDetected() throws Exception {
+        current.getProjectMetaData().setProjectTitle("A different title");
+        current.getProjectMetaData().addSpecies(new CvParam("NEWT", "10090", "Mus musculus (Mouse)", null));
+
+        SubmissionDiff diff = SubmissionDiff.diff(previous, current);
+
+        assertTrue(diff.getDataFileChanges().isEmpty());
+        assertEquals(2, diff.getMetaDataChanges().size());
+        assertEquals(Constant.PROJECT_TITLE, diff.getMetaDataChanges().get(0).getField());
+        assertEquals(SubmissionDiff.ChangeType.MODIFIED, diff.getMetaDataChanges().get(0).getType());
+        assertEquals(Constant.SPECIES, diff.getMetaDataChanges().get(1).getField());
+    }
+}
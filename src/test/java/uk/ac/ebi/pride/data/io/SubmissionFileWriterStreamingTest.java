@@ -0,0 +1,123 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SubmissionFileWriterStreamingTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Submission submission;
+
+    private File newSubmissionFile;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = SubmissionFileWriterStreamingTest.class.getClassLoader().getResource("submissionFile.px");
+        submission = SubmissionFileParser.parse(new File(url.toURI()));
+        newSubmissionFile = new File(temporaryFolder.getRoot(), "submission.px");
+    }
+
+    @Test
+    public void streamedFileMappingsAreWritten() throws Exception {
+        List<DataFile> dataFiles = submission.getDataFiles();
+        SubmissionFileWriter.write(submission.getProjectMetaData(), dataFiles.iterator(), false, true, newSubmissionFile);
+
+        Submission newSubmission = SubmissionFileParser.parse(newSubmissionFile);
+        assertEquals(dataFiles.size(), newSubmission.getDataFiles().size());
+        for (DataFile dataFile : dataFiles) {
+            DataFile newDataFile = newSubmission.getDataFileById(dataFile.getFileId());
+            assertNotNull(newDataFile);
+            assertEquals(dataFile.getFileType(), newDataFile.getFileType());
+            assertEquals(dataFile.getFileMappings().size(), newDataFile.getFileMappings().size());
+        }
+    }
+
+    @Test
+    public void manyFileMappingsAreWritten() throws Exception {
+        DataFile result = new DataFile(0, new File(temporaryFolder.getRoot(), "result.mzid"), ProjectFileType.RESULT);
+        List<DataFile> dataFiles = new ArrayList<DataFile>();
+        dataFiles.add(result);
+        for (int i = 1; i <= 5000; i++) {
+            DataFile raw = new DataFile(i, new File(temporaryFolder.getRoot(), "raw-" + i + ".raw"), ProjectFileType.RAW);
+            result.addFileMapping(raw);
+            dataFiles.add(raw);
+        }
+        SubmissionFileWriter.write(submission.getProjectMetaData(), dataFiles.iterator(), false, false, newSubmissionFile);
+
+        Submission newSubmission = SubmissionFileParser.parse(newSubmissionFile);
+        assertEquals(5001, newSubmission.getDataFiles().size());
+        assertEquals(5000, newSubmission.getDataFileById(0).getFileMappings().size());
+        assertEquals(new File(temporaryFolder.getRoot(), "raw-2500.raw").getCanonicalPath(),
+                newSubmission.getDataFileById(2500).getFile().getPath());
+    }
+
+    @Test
+    public void failedWriteLeavesExistingFileUntouched() throws Exception {
+        SubmissionFileWriter.write(submission, newSubmissionFile);
+        byte[] original = Files.readAllBytes(newSubmissionFile.toPath());
+
+        final Iterator<DataFile> dataFiles = submission.getDataFiles().iterator();
+        Iterator<DataFile> failingDataFiles = new Iterator<DataFile>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public DataFile next() {
+                if (dataFiles.hasNext()) {
+                    return dataFiles.next();
+                }
+                throw new IllegalStateException("Data file source failed");
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        try {
+            SubmissionFileWriter.write(submission.getProjectMetaData(), failingDataFiles, false, true, newSubmissionFile);
+            fail("Failing data file source should abort the write");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertArrayEquals(original, Files.readAllBytes(newSubmissionFile.toPath()));
+        String[] remaining = temporaryFolder.getRoot().list();
+        assertEquals(1, remaining.length);
+    }
+
+    @Test
+    public void permissionsOfReplacedFileAreKept() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        SubmissionFileWriter.write(submission, newSubmissionFile);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(newSubmissionFile.toPath(), permissions);
+        SubmissionFileWriter.write(submission, newSubmissionFile);
+
+        assertEquals(permissions, Files.getPosixFilePermissions(newSubmissionFile.toPath()));
+    }
+}
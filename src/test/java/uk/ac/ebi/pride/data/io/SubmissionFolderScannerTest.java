@@ -0,0 +1,129 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SubmissionFolderScannerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = temporaryFolder.newFolder("submission");
+        File peaks = new File(root, "peaks");
+        assertTrue(peaks.mkdir());
+        for (int i = 0; i < 50; i++) {
+            Files.write(new File(peaks, "spectra-" + i + ".mgf").toPath(), "BEGIN IONS\nEND IONS\n".getBytes("UTF-8"));
+        }
+        Files.write(new File(root, "README").toPath(), new byte[]{1});
+
+        File vendorFolder = new File(root, "run.d");
+        assertTrue(new File(vendorFolder, "AcqData").mkdirs());
+        Files.write(new File(vendorFolder, "AcqData/MSScan.bin").toPath(), new byte[100]);
+        Files.write(new File(vendorFolder, "AcqData/MSPeak.bin").toPath(), new byte[50]);
+    }
+
+    @Test
+    public void filesAreClassified() throws Exception {
+        List<DataFile> dataFiles = new SubmissionFolderScanner(4, false).scan(root);
+
+        assertEquals(52, dataFiles.size());
+        int peakFiles = 0;
+        for (DataFile dataFile : dataFiles) {
+            if (ProjectFileType.PEAK.equals(dataFile.getFileType())) {
+                peakFiles++;
+            }
+        }
+        assertEquals(50, peakFiles);
+        assertEquals(ProjectFileType.OTHER, dataFiles.get(0).getFileType());
+        assertEquals("README", dataFiles.get(0).getFileName());
+    }
+
+    @Test
+    public void vendorFolderSizesAreAggregated() throws Exception {
+        final Map<String, Long> sizes = new HashMap<String, Long>();
+        int count = new SubmissionFolderScanner(4, false).scan(root, new SubmissionFolderScanner.Listener() {
+            @Override
+            public void onDataFile(DataFile dataFile, long sizeInBytes) {
+                sizes.put(dataFile.getFileName(), sizeInBytes);
+            }
+
+            @Override
+            public void onError(Path path, IOException exception) {
+                fail("Unexpected error for " + path + ": " + exception);
+            }
+        });
+
+        assertEquals(52, count);
+        assertEquals(Long.valueOf(150), sizes.get("run.d"));
+        assertFalse(sizes.containsKey("MSScan.bin"));
+    }
+
+    @Test
+    public void runtimeFailuresAreReported() throws Exception {
+        final Map<Path, IOException> errors = new HashMap<Path, IOException>();
+        new SubmissionFolderScanner(4, false).scan(root, new SubmissionFolderScanner.Listener() {
+            @Override
+            public void onDataFile(DataFile dataFile, long sizeInBytes) {
+                if ("README".equals(dataFile.getFileName())) {
+                    throw new IllegalStateException("failed on purpose");
+                }
+            }
+
+            @Override
+            public void onError(Path path, IOException exception) {
+                errors.put(path, exception);
+            }
+        });
+
+        assertEquals(1, errors.size());
+        IOException error = errors.get(new File(root, "README").toPath());
+        assertTrue(error.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void linkLoopsAreReported() throws Exception {
+        Path link = new File(root, "peaks/loop").toPath();
+        try {
+            Files.createSymbolicLink(link, root.toPath());
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        } catch (IOException e) {
+            Assume.assumeNoException(e);
+        }
+
+        final List<Path> errors = new ArrayList<Path>();
+        int count = new SubmissionFolderScanner(4, true).scan(root, new SubmissionFolderScanner.Listener() {
+            @Override
+            public void onDataFile(DataFile dataFile, long sizeInBytes) {
+            }
+
+            @Override
+            public void onError(Path path, IOException exception) {
+                errors.add(path);
+            }
+        });
+
+        assertEquals(52, count);
+        assertEquals(1, errors.size());
+        assertEquals(link, errors.get(0));
+    }
+}
@@ -0,0 +1,111 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SubmissionValidatorParallelDataFilesTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private List<DataFile> dataFiles;
+
+    @Before
+    public void setUp() throws Exception {
+        dataFiles = new ArrayList<DataFile>();
+        for (int i = 0; i < 200; i++) {
+            File file = new File(temporaryFolder.getRoot(), "raw-" + i + ".raw");
+            if (i % 3 == 0) {
+                // missing file
+            } else if (i % 3 == 1) {
+                Files.write(file.toPath(), new byte[]{1, 2, 3});
+            } else {
+                assertTrue(file.createNewFile());
+            }
+            dataFiles.add(new DataFile(i, file, ProjectFileType.RAW));
+        }
+        dataFiles.add(new DataFile(200, temporaryFolder.newFolder("folder"), ProjectFileType.RAW));
+    }
+
+    @Test
+    public void parallelReportMatchesSerialReport() throws Exception {
+        ValidationReport serialReport = SubmissionValidator.validateDataFiles(dataFiles);
+        ValidationReport parallelReport = SubmissionValidator.validateDataFiles(dataFiles, 8);
+
+        List<ValidationMessage> serialMessages = serialReport.getMessages();
+        List<ValidationMessage> parallelMessages = parallelReport.getMessages();
+        assertEquals(serialMessages.size(), parallelMessages.size());
+        for (int i = 0; i < serialMessages.size(); i++) {
+            assertEquals(serialMessages.get(i).getType(), parallelMessages.get(i).getType());
+            assertEquals(serialMessages.get(i).getMessage(), parallelMessages.get(i).getMessage());
+        }
+    }
+
+    @Test
+    public void missingEmptyAndDirectoryFilesAreErrors() throws Exception {
+        ValidationReport report = SubmissionValidator.validateDataFiles(dataFiles, 4);
+
+        int notAFile = 0;
+        int empty = 0;
+        for (ValidationMessage message : report.getMessages()) {
+            if (message.getMessage().startsWith("Data file is not a file")) {
+                notAFile++;
+            } else if (message.getMessage().startsWith("Data file is empty")) {
+                empty++;
+            }
+        }
+        assertEquals(68, notAFile);
+        assertEquals(66, empty);
+    }
+
+    @Test
+    public void timeoutIsOneDeadlineForAllTheDataFiles() throws Exception {
+        List<DataFile> slowDataFiles = new ArrayList<DataFile>();
+        for (int i = 0; i < 6; i++) {
+            slowDataFiles.add(new DataFile(i, temporaryFolder.newFile("slow-" + i + ".raw"), ProjectFileType.RAW) {
+                private boolean checked;
+
+                @Override
+                public boolean isFile() {
+                    if (!checked) {
+                        checked = true;
+                        try {
+                            Thread.sleep(1000);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.isFile();
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        ValidationReport report = SubmissionValidator.validateDataFiles(slowDataFiles, 1, 1500, TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // each data file is checked within the timeout, but not all of them together
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 4000);
+        int timedOut = 0;
+        for (ValidationMessage message : report.getMessages()) {
+            if (message.getMessage().startsWith("Timed out while checking data file")) {
+                timedOut++;
+            }
+        }
+        assertTrue(timedOut >= 4);
+    }
+}
@@ -0,0 +1,45 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes test files into a temporary folder
+ */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    static File write(TemporaryFolder folder, String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    static File write(TemporaryFolder folder, String name, String content) throws IOException {
+        return write(folder, name, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static File gzip(TemporaryFolder folder, String name, byte[] content) throws IOException {
+        return write(folder, name, gzip(content));
+    }
+
+    static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bytes);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.TruncationDetector;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TruncationDetectorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] mzml;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = TruncationDetectorTest.class.getClassLoader().getResource("mzml/indexed_valid.mzML");
+        if (url == null) {
+            throw new IllegalStateException("no file for input found!");
+        }
+        mzml = Files.readAllBytes(new File(url.toURI()).toPath());
+    }
+
+    @Test
+    public void xmlWithoutClosingRootTagIsSuspect() throws Exception {
+        File complete = TestFiles.write(temporaryFolder, "complete.mzML", mzml);
+        File truncated = TestFiles.write(temporaryFolder, "truncated.mzML", Arrays.copyOf(mzml, mzml.length - 20));
+
+        assertFalse(TruncationDetector.check(complete, MassSpecFileFormat.INDEXED_MZML).isSuspect());
+        TruncationDetector.Result result = TruncationDetector.check(truncated, MassSpecFileFormat.INDEXED_MZML);
+        assertTrue(result.isSuspect());
+        assertTrue(result.getProblems().get(0).contains("indexedmzML"));
+    }
+
+    @Test
+    public void gzipTrailerIsVerified() throws Exception {
+        File complete = TestFiles.gzip(temporaryFolder, "complete.mzML.gz", mzml);
+        byte[] compressed = Files.readAllBytes(complete.toPath());
+        File truncated = TestFiles.write(temporaryFolder, "truncated.mzML.gz", Arrays.copyOf(compressed, compressed.length - 4));
+        byte[] corrupted = compressed.clone();
+        corrupted[corrupted.length - 8]++;
+        File badCrc = TestFiles.write(temporaryFolder, "bad_crc.mzML.gz", corrupted);
+
+        TruncationDetector.Result result = TruncationDetector.check(complete, MassSpecFileFormat.INDEXED_MZML);
+        assertTrue(result.isChecked());
+        assertTrue(result.isFullyChecked());
+        assertFalse(result.isSuspect());
+        assertTrue(TruncationDetector.check(truncated, MassSpecFileFormat.INDEXED_MZML).isSuspect());
+        assertTrue(TruncationDetector.check(badCrc, MassSpecFileFormat.INDEXED_MZML).isSuspect());
+
+        // the content of a complete gzip file is checked too
+        File truncatedContent = TestFiles.gzip(temporaryFolder, "truncated_content.mzML.gz", Arrays.copyOf(mzml, mzml.length - 20));
+        assertTrue(TruncationDetector.check(truncatedContent, MassSpecFileFormat.INDEXED_MZML).isSuspect());
+    }
+
+    @Test
+    public void largeGzipFilesAreOnlyFullyCheckedOnRequest() throws Exception {
+        // incompressible content, so the gzip file is larger than the default full check size
+        byte[] content = new byte[(int) TruncationDetector.DEFAULT_FULL_CHECK_SIZE + 64 * 1024];
+        new Random(42).nextBytes(content);
+        byte[] compressed = Files.readAllBytes(TestFiles.gzip(temporaryFolder, "large.bin.gz", content).toPath());
+        assertTrue(compressed.length > TruncationDetector.DEFAULT_FULL_CHECK_SIZE);
+        File truncated = TestFiles.write(temporaryFolder, "large_truncated.bin.gz", Arrays.copyOf(compressed, compressed.length - 4));
+
+        // by default only the start is inflated, the missing trailer is not seen
+        TruncationDetector.Result result = TruncationDetector.check(truncated, null);
+        assertFalse(result.isFullyChecked());
+        assertFalse(result.isSuspect());
+
+        TruncationDetector.Result full = TruncationDetector.check(truncated, null, Long.MAX_VALUE);
+        assertTrue(full.isFullyChecked());
+        assertTrue(full.isSuspect());
+    }
+
+    @Test
+    public void rootElementAfterLongPrologIsFound() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<!--");
+        for (int i = 0; i < 1000; i++) {
+            xml.append(" comment");
+        }
+        xml.append(" -->\n<mzML><run/></mzML>\n");
+        byte[] content = xml.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(content.length > 4 * 1024);
+
+        assertFalse(TruncationDetector.check(TestFiles.write(temporaryFolder, "prolog.mzML", content), MassSpecFileFormat.MZML).isSuspect());
+        assertFalse(TruncationDetector.check(TestFiles.gzip(temporaryFolder, "prolog.mzML.gz", content), MassSpecFileFormat.MZML).isSuspect());
+    }
+
+    @Test
+    public void zipWithoutCentralDirectoryIsSuspect() throws Exception {
+        URL url = TruncationDetectorTest.class.getClassLoader().getResource("sample_data/unix_file.zip");
+        File complete = new File(url.toURI());
+        byte[] content = Files.readAllBytes(complete.toPath());
+        File truncated = TestFiles.write(temporaryFolder, "truncated.zip", Arrays.copyOf(content, content.length - 30));
+
+        assertFalse(TruncationDetector.check(complete, null).isSuspect());
+        assertTrue(TruncationDetector.check(truncated, null).isSuspect());
+    }
+
+    @Test
+    public void cutRowsAreSuspect() throws Exception {
+        String mzTab = "MTD\tmzTab-version\t1.0.0\n\nPSH\tsequence\tPSM_ID\tspectra_ref\tcharge\n" +
+                "PSM\tPEPTIDE\t1\tms_run[1]:scan=1\t2\nPSM\tPEPTIDE\t2\tms_run[1]:scan=2\t2\n";
+        File complete = TestFiles.write(temporaryFolder, "complete.mzTab", mzTab.getBytes(StandardCharsets.UTF_8));
+        File noNewLine = TestFiles.write(temporaryFolder, "no_new_line.mzTab", mzTab.trim().getBytes(StandardCharsets.UTF_8));
+        File cut = TestFiles.write(temporaryFolder, "cut.mzTab", mzTab.substring(0, mzTab.length() - 6).getBytes(StandardCharsets.UTF_8));
+        File cutMgf = TestFiles.write(temporaryFolder, "cut.mgf", "BEGIN IONS\nTITLE=a\nPEPMASS=415.2\n100.1 20\n".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(TruncationDetector.check(complete, MassSpecFileFormat.MZTAB).isSuspect());
+        assertFalse(TruncationDetector.check(noNewLine, MassSpecFileFormat.MZTAB).isSuspect());
+        assertTrue(TruncationDetector.check(cut, MassSpecFileFormat.MZTAB).isSuspect());
+        assertTrue(TruncationDetector.check(cutMgf, MassSpecFileFormat.MGF).isSuspect());
+
+        ValidationReport report = SubmissionValidator.validateTruncation(Arrays.asList(
+                new DataFile(complete, ProjectFileType.RESULT), new DataFile(cut, ProjectFileType.RESULT),
+                new DataFile(cutMgf, ProjectFileType.PEAK)), 2);
+        assertEquals(2, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(1, report.getMessageCount(ValidationMessage.Type.SUCCESS));
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.ebi.pride.data.io;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.util.UrlMetadataResolver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UrlMetadataResolverTest {
+    private static final long LARGE_FILE_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private HttpServer server;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if (exchange.getRequestURI().getPath().startsWith("/missing")) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+                    exchange.getResponseHeaders().add("Content-Length", Long.toString(LARGE_FILE_SIZE));
+                    exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void largeSizesAreResolved() throws Exception {
+        UrlMetadataResolver resolver = new UrlMetadataResolver(60000, 5000, 4);
+        UrlMetadataResolver.UrlMetadata metadata = resolver.resolve(new URL(baseUrl + "run.raw"));
+
+        assertTrue(metadata.isResolved());
+        assertEquals(LARGE_FILE_SIZE, metadata.getSize());
+        assertEquals("application/octet-stream", metadata.getContentType());
+        assertEquals(1445412480000L, metadata.getLastModified());
+    }
+
+    @Test
+    public void batchesAreResolvedOnce() throws Exception {
+        UrlMetadataResolver resolver = new UrlMetadataResolver(60000, 5000, 4);
+        List<URL> urls = new ArrayList<URL>();
+        for (int i = 0; i < 20; i++) {
+            urls.add(new URL(baseUrl + "run-" + i + ".raw"));
+        }
+        urls.add(new URL(baseUrl + "missing.raw"));
+
+        Map<URL, UrlMetadataResolver.UrlMetadata> metadata = resolver.resolveAll(urls);
+        assertEquals(21, metadata.size());
+        assertEquals(LARGE_FILE_SIZE, metadata.get(urls.get(7)).getSize());
+        assertFalse(metadata.get(urls.get(20)).isResolved());
+        assertEquals(-1, metadata.get(urls.get(20)).getSize());
+        assertEquals(21, requests.get());
+
+        // resolved urls are cached, failures are retried
+        resolver.resolveAll(urls);
+        assertEquals(22, requests.get());
+    }
+
+    @Test
+    public void dataFileSizeUsesDefaultResolver() throws Exception {
+        DataFile dataFile = new DataFile(1, new URL(baseUrl + "data-file.raw"), ProjectFileType.RAW);
+        UrlMetadataResolver.getDefault().resolveDataFiles(Collections.singletonList(dataFile));
+
+        assertEquals(LARGE_FILE_SIZE, dataFile.getFileSize());
+        assertEquals(LARGE_FILE_SIZE, dataFile.getFileSize());
+        assertEquals(1, requests.get());
+    }
+}
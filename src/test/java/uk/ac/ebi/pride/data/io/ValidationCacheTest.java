@@ -0,0 +1,182 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.ProjectMetaData;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.util.OntologyIndex;
+import uk.ac.ebi.pride.data.util.OntologyIndexRegistry;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationCache;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ValidationCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Submission submission;
+
+    private File rawFile;
+
+    private DataFile resultDataFile;
+
+    @Before
+    public void setUp() throws Exception {
+        rawFile = temporaryFolder.newFile("run.raw");
+        Files.write(rawFile.toPath(), new byte[]{1, 2, 3});
+        File resultFile = temporaryFolder.newFile("result.mzid");
+        Files.write(resultFile.toPath(), new byte[]{1});
+
+        DataFile rawDataFile = new DataFile(1, rawFile, ProjectFileType.RAW);
+        resultDataFile = new DataFile(2, resultFile, ProjectFileType.RESULT);
+        resultDataFile.addFileMapping(rawDataFile);
+
+        submission = new Submission();
+        submission.addDataFile(rawDataFile);
+        submission.addDataFile(resultDataFile);
+        submission.addDataFile(new DataFile(3, new File(temporaryFolder.getRoot(), "missing.raw"), ProjectFileType.RAW));
+    }
+
+    @Test
+    public void cachedMessagesMatchValidation() throws Exception {
+        ValidationCache cache = new ValidationCache();
+        ValidationReport expected = SubmissionValidator.validateSubmission(submission);
+
+        assertMessages(expected, SubmissionValidator.validateSubmission(submission, new ValidationReport(), cache));
+        assertEquals(0, cache.getHitCount());
+
+        assertMessages(expected, SubmissionValidator.validateSubmission(submission, new ValidationReport(), cache));
+        assertEquals(4, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void changedMappedFileInvalidatesResultFile() throws Exception {
+        ValidationCache cache = new ValidationCache();
+        long resultFingerprint = cache.fingerprint(resultDataFile);
+
+        Files.write(rawFile.toPath(), new byte[]{1, 2, 3, 4});
+
+        assertNotEquals(resultFingerprint, cache.fingerprint(resultDataFile));
+    }
+
+    @Test
+    public void entriesAreKeptOnDisk() throws Exception {
+        File directory = temporaryFolder.newFolder("cache");
+        SubmissionValidator.validateSubmission(submission, new ValidationReport(), new ValidationCache(10, directory));
+
+        ValidationCache cache = new ValidationCache(10, directory);
+        ValidationReport report = SubmissionValidator.validateSubmission(submission, new ValidationReport(), cache);
+
+        assertMessages(SubmissionValidator.validateSubmission(submission), report);
+        assertEquals(4, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void replayedMessagesKeepTheirDataFile() throws Exception {
+        File directory = temporaryFolder.newFolder("cache");
+        SubmissionValidator.validateSubmission(submission, new ValidationReport(), new ValidationCache(10, directory));
+
+        for (ValidationCache cache : new ValidationCache[]{new ValidationCache(10, directory), new ValidationCache(10, directory)}) {
+            ValidationReport report = SubmissionValidator.validateSubmission(submission, new ValidationReport(), cache);
+            assertMessages(SubmissionValidator.validateSubmission(submission), report);
+        }
+
+        ValidationCache cache = new ValidationCache();
+        long fingerprint = cache.fingerprint(resultDataFile);
+        ValidationReport report = new ValidationReport();
+        report.addMessage(new ValidationMessage(resultDataFile, ValidationMessage.Type.ERROR, "with source"));
+        report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "without source"));
+        cache.put(fingerprint, report);
+
+        List<ValidationMessage> replayed = cache.get(fingerprint, resultDataFile).getMessages();
+        assertSame(resultDataFile, replayed.get(0).getSource());
+        assertNull(replayed.get(1).getSource());
+    }
+
+    @Test
+    public void retentionPolicyAppliesToCachedValidation() throws Exception {
+        File directory = temporaryFolder.newFolder("cache");
+        ValidationReport expected = SubmissionValidator.validateSubmission(submission,
+                new ValidationReport(ValidationReport.RetentionPolicy.DROP_SUCCESS));
+        assertTrue(expected.getMessageCount(ValidationMessage.Type.SUCCESS) > 0);
+        for (ValidationMessage message : expected.getMessages()) {
+            assertNotEquals(ValidationMessage.Type.SUCCESS, message.getType());
+        }
+
+        // checked, then replayed from the disk with the successes only counted
+        for (ValidationCache cache : new ValidationCache[]{new ValidationCache(10, directory), new ValidationCache(10, directory)}) {
+            ValidationReport report = SubmissionValidator.validateSubmission(submission,
+                    new ValidationReport(ValidationReport.RetentionPolicy.DROP_SUCCESS), cache);
+            assertMessages(expected, report);
+            for (ValidationMessage.Type type : ValidationMessage.Type.values()) {
+                assertEquals(expected.getMessageCount(type), report.getMessageCount(type));
+            }
+        }
+
+        // the successes are not lost for the reports which keep them
+        ValidationReport report = SubmissionValidator.validateSubmission(submission, new ValidationReport(), new ValidationCache(10, directory));
+        assertMessages(SubmissionValidator.validateSubmission(submission), report);
+        assertEquals(0, report.getDroppedMessageCount());
+    }
+
+    @Test
+    public void unreadableFileChangesFingerprint() throws Exception {
+        ValidationCache cache = new ValidationCache();
+        long resultFingerprint = cache.fingerprint(resultDataFile);
+
+        Assume.assumeTrue(rawFile.setReadable(false) && !rawFile.canRead());
+        try {
+            assertNotEquals(resultFingerprint, cache.fingerprint(resultDataFile));
+        } finally {
+            rawFile.setReadable(true);
+        }
+    }
+
+    @Test
+    public void registeredOntologyChangesMetaDataFingerprint() throws Exception {
+        ValidationCache cache = new ValidationCache();
+        ProjectMetaData projectMetaData = new ProjectMetaData();
+        long fingerprint = cache.fingerprint(projectMetaData);
+
+        String obo = "[Term]\nid: MS:1000031\nname: instrument model\n";
+        OntologyIndexRegistry.register(OntologyIndex.loadObo("MS", new ByteArrayInputStream(obo.getBytes(StandardCharsets.UTF_8))));
+        try {
+            long withOntology = cache.fingerprint(projectMetaData);
+            assertNotEquals(fingerprint, withOntology);
+
+            obo += "[Term]\nid: MS:1000032\nname: customization\n";
+            OntologyIndexRegistry.register(OntologyIndex.loadObo("MS", new ByteArrayInputStream(obo.getBytes(StandardCharsets.UTF_8))));
+            assertNotEquals(withOntology, cache.fingerprint(projectMetaData));
+        } finally {
+            OntologyIndexRegistry.unregister("MS");
+        }
+        assertEquals(fingerprint, cache.fingerprint(projectMetaData));
+    }
+
+    private static void assertMessages(ValidationReport expected, ValidationReport actual) {
+        List<ValidationMessage> expectedMessages = expected.getMessages();
+        List<ValidationMessage> actualMessages = actual.getMessages();
+        assertEquals(expectedMessages.size(), actualMessages.size());
+        for (int i = 0; i < expectedMessages.size(); i++) {
+            assertEquals(expectedMessages.get(i).getType(), actualMessages.get(i).getType());
+            assertEquals(expectedMessages.get(i).getMessage(), actualMessages.get(i).getMessage());
+            assertSame(expectedMessages.get(i).getSource(), actualMessages.get(i).getSource());
+        }
+    }
+}
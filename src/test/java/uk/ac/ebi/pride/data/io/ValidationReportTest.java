@@ -0,0 +1,146 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Test;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.model.DataFile;
+import uk.ac.ebi.pride.data.model.Submission;
+import uk.ac.ebi.pride.data.validation.NdjsonValidationMessageSink;
+import uk.ac.ebi.pride.data.validation.SubmissionValidator;
+import uk.ac.ebi.pride.data.validation.ValidationMessage;
+import uk.ac.ebi.pride.data.validation.ValidationReport;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ValidationReportTest {
+
+    @Test
+    public void countsIncludeDroppedMessages() throws Exception {
+        ValidationReport report = new ValidationReport(new ValidationReport.RetentionPolicy(false, 2));
+        for (int i = 0; i < 5; i++) {
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "error " + i));
+            report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "success " + i));
+        }
+
+        assertEquals(5, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(5, report.getMessageCount(ValidationMessage.Type.SUCCESS));
+        assertTrue(report.hasSuccess());
+        assertFalse(report.hasWarning());
+        assertEquals(2, report.getMessages().size());
+        assertEquals("error 1", report.getMessages().get(1).getMessage());
+        assertEquals(8, report.getDroppedMessageCount());
+    }
+
+    @Test
+    public void combinedCountsAreKept() throws Exception {
+        ValidationReport child = new ValidationReport();
+        child.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "warning"));
+        child.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "success"));
+
+        ValidationReport report = new ValidationReport(ValidationReport.RetentionPolicy.DROP_SUCCESS);
+        report.combine(child);
+
+        assertEquals(1, report.getMessages().size());
+        assertTrue(report.hasWarning());
+        assertTrue(report.hasSuccess());
+
+        report.removeMessage(report.getMessages().get(0));
+        assertFalse(report.hasWarning());
+    }
+
+    @Test
+    public void messageListChangesAreCounted() throws Exception {
+        ValidationReport report = new ValidationReport();
+        report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "warning"));
+
+        List<ValidationMessage> messages = report.getMessages();
+        messages.add(new ValidationMessage(ValidationMessage.Type.ERROR, "error"));
+        assertTrue(report.hasError());
+        assertEquals(2, report.getMessages().size());
+
+        Iterator<ValidationMessage> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getType() == ValidationMessage.Type.WARNING) {
+                iterator.remove();
+            }
+        }
+        assertFalse(report.hasWarning());
+        assertEquals(1, report.getMessages().size());
+    }
+
+    @Test
+    public void messagesBeyondErrorLimitAreIgnored() throws Exception {
+        ValidationReport child = new ValidationReport(new ValidationReport.RetentionPolicy(true, 2));
+        for (int i = 0; i < 5; i++) {
+            child.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "error " + i));
+        }
+
+        ValidationReport report = new ValidationReport();
+        report.setErrorLimit(3);
+        report.combine(child);
+        assertEquals(3, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertEquals(2, report.getMessages().size());
+
+        report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "one more"));
+        report.addMessage(new ValidationMessage(ValidationMessage.Type.WARNING, "warning"));
+        assertEquals(3, report.getMessageCount(ValidationMessage.Type.ERROR));
+        assertFalse(report.hasWarning());
+        assertFalse(report.isRetained(ValidationMessage.Type.WARNING));
+    }
+
+    @Test
+    public void droppedSuccessMessagesAreOnlyCounted() throws Exception {
+        Submission submission = new Submission();
+        submission.addDataFile(new DataFile(1, new File("missing.raw"), ProjectFileType.RAW));
+
+        ValidationReport fullReport = SubmissionValidator.validateSubmission(submission);
+        ValidationReport report = SubmissionValidator.validateSubmission(submission,
+                new ValidationReport(ValidationReport.RetentionPolicy.DROP_SUCCESS));
+
+        for (ValidationMessage.Type type : ValidationMessage.Type.values()) {
+            assertEquals(fullReport.getMessageCount(type), report.getMessageCount(type));
+        }
+        for (ValidationMessage message : report.getMessages()) {
+            assertNotEquals(ValidationMessage.Type.SUCCESS, message.getType());
+        }
+        assertEquals(report.getMessageCount(ValidationMessage.Type.SUCCESS), report.getDroppedMessageCount());
+    }
+
+    @Test
+    public void messagesAreStreamedToSinks() throws Exception {
+        StringWriter output = new StringWriter();
+        NdjsonValidationMessageSink sink = new NdjsonValidationMessageSink(output);
+
+        ValidationReport report = new ValidationReport(ValidationReport.RetentionPolicy.DROP_SUCCESS);
+        report.addSink(sink);
+        report.addMessage(new ValidationMessage(ValidationMessage.Type.ERROR, "Data file is \"missing\"\n"));
+        report.addMessage(new ValidationMessage(ValidationMessage.Type.SUCCESS, "Data file is valid"));
+        sink.close();
+
+        assertEquals(1, sink.getMessageCount());
+        assertEquals("{\"type\":\"ERROR\",\"message\":\"Data file is \\\"missing\\\"\\n\"}\n", output.toString());
+    }
+
+    @Test
+    public void validationStopsAtErrorLimit() throws Exception {
+        Submission submission = new Submission();
+        for (int i = 0; i < 10; i++) {
+            submission.addDataFile(new DataFile(i, new File("missing-" + i + ".raw"), ProjectFileType.RAW));
+        }
+
+        ValidationReport fullReport = SubmissionValidator.validateSubmission(submission);
+        int errors = fullReport.getMessageCount(ValidationMessage.Type.ERROR);
+
+        // the metadata errors are reported together, the data files are skipped
+        ValidationReport report = new ValidationReport();
+        report.setErrorLimit(errors - 10);
+        SubmissionValidator.validateSubmission(submission, report);
+
+        assertTrue(report.isErrorLimitReached());
+        assertEquals(errors - 10, report.getMessageCount(ValidationMessage.Type.ERROR));
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.XmlRootElement;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class XmlRootElementTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void prologIsSkipped() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<!-- written by a converter -->\n" +
+                "<!DOCTYPE MzIdentML SYSTEM \"http://localhost:1/missing.dtd\">\n" +
+                "<?xml-stylesheet type=\"text/xsl\" href=\"style.xsl\"?>\n" +
+                "<MzIdentML xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\" version=\"1.1.0\"><cvList>";
+
+        XmlRootElement rootElement = XmlRootElement.sniff(xml.getBytes(StandardCharsets.UTF_8));
+
+        assertNotNull(rootElement);
+        assertEquals("MzIdentML", rootElement.getLocalName());
+        assertEquals("http://psidev.info/psi/pi/mzIdentML/1.1", rootElement.getNamespaceUri());
+    }
+
+    @Test
+    public void encodingIsDetected() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-16\"?><mzXML xmlns=\"http://sashimi.sourceforge.net/schema_revision/mzXML_3.2\">";
+
+        XmlRootElement rootElement = XmlRootElement.sniff(xml.getBytes(StandardCharsets.UTF_16));
+
+        assertEquals(new XmlRootElement("mzXML", "http://sashimi.sourceforge.net/schema_revision/mzXML_3.2"), rootElement);
+    }
+
+    @Test
+    public void contentWithoutRootElementIsNotXml() throws Exception {
+        assertNull(XmlRootElement.sniff("MTD\tmzTab-version\t1.0.0".getBytes(StandardCharsets.UTF_8)));
+        assertNull(XmlRootElement.sniff("<?xml version=\"1.0\"?>\n<!-- comment".getBytes(StandardCharsets.UTF_8)));
+        assertNull(XmlRootElement.sniff(new byte[0]));
+    }
+
+    @Test
+    public void rootElementAfterLongPrologIsDetected() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
+        for (int i = 0; i < 20; i++) {
+            xml.append("<!-- line ").append(i).append(" -->\n");
+        }
+        xml.append("<indexedmzML xmlns=\"http://psi.hupo.org/ms/mzml\"><mzML xmlns=\"http://psi.hupo.org/ms/mzml\">");
+        File file = temporaryFolder.newFile("run.xml");
+        Files.write(file.toPath(), xml.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(MassSpecFileFormat.INDEXED_MZML, MassSpecFileFormat.checkFormat(file));
+    }
+
+    @Test
+    public void singleLineFileIsDetected() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><mzData version=\"1.05\" accessionNumber=\"1\">");
+        for (int i = 0; i < 100000; i++) {
+            xml.append("<spectrum id=\"").append(i).append("\"/>");
+        }
+        xml.append("</mzData>");
+        File file = temporaryFolder.newFile("spectra.xml");
+        Files.write(file.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(MassSpecFileFormat.MZDATA, MassSpecFileFormat.checkFormat(file));
+    }
+}
@@ -0,0 +1,133 @@
+package uk.ac.ebi.pride.data.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.pride.archive.dataprovider.file.ProjectFileType;
+import uk.ac.ebi.pride.data.util.MassSpecFileFormat;
+import uk.ac.ebi.pride.data.util.ZipArchiveInspector;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ZipArchiveInspectorTest {
+    private static final String MZIDENTML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<MzIdentML xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\" version=\"1.1.0\">\n</MzIdentML>";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void entriesAreClassified() throws Exception {
+        File zip = temporaryFolder.newFile("submission.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            addEntry(out, "README", "read me");
+            addEntry(out, "run.d/", null);
+            addEntry(out, "run.d/AcqData/MSScan.bin", "scan");
+            addEntry(out, "run.d/AcqData/MSPeak.bin", "peak");
+            for (int i = 0; i < 3; i++) {
+                addEntry(out, "peaks/spectra-" + i + ".mgf", "BEGIN IONS\nEND IONS\n");
+            }
+            addEntry(out, "results/result.mzid", MZIDENTML);
+            addEntry(out, "results/identifications.xml", MZIDENTML);
+        } finally {
+            out.close();
+        }
+
+        ZipArchiveInspector.ArchiveSummary summary = ZipArchiveInspector.inspect(zip, 2);
+
+        assertFalse(summary.isZip64());
+        assertEquals(9, summary.getEntries().size());
+        Map<MassSpecFileFormat, Integer> histogram = summary.getFormatHistogram();
+        assertEquals(Integer.valueOf(3), histogram.get(MassSpecFileFormat.MGF));
+        assertEquals(Integer.valueOf(2), histogram.get(MassSpecFileFormat.MZIDENTML));
+        assertEquals(Integer.valueOf(1), histogram.get(MassSpecFileFormat.TOMIF));
+        assertEquals(1, summary.getUnknownEntryCount());
+        assertEquals(ProjectFileType.PEAK, summary.getDominantFileType());
+        assertEquals(MassSpecFileFormat.MGF, summary.getDominantFormat());
+        assertEquals(MassSpecFileFormat.MGF, MassSpecFileFormat.checkFormat(zip));
+    }
+
+    @Test
+    public void zip64ArchivesAreInspected() throws Exception {
+        File zip = temporaryFolder.newFile("spectra.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            out.setLevel(0);
+            for (int i = 0; i < 70000; i++) {
+                addEntry(out, "spectra-" + i + ".mgf", null);
+            }
+        } finally {
+            out.close();
+        }
+
+        ZipArchiveInspector.ArchiveSummary summary = ZipArchiveInspector.inspect(zip);
+
+        assertTrue(summary.isZip64());
+        assertEquals(70000, summary.getEntries().size());
+        assertEquals(Integer.valueOf(70000), summary.getFormatHistogram().get(MassSpecFileFormat.MGF));
+    }
+
+    @Test
+    public void truncatedArchivesFallBackToTheFirstEntry() throws Exception {
+        File zip = temporaryFolder.newFile("result.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            addEntry(out, "result.mzid", MZIDENTML);
+        } finally {
+            out.close();
+        }
+        byte[] content = Files.readAllBytes(zip.toPath());
+        File truncated = temporaryFolder.newFile("truncated.zip");
+        Files.write(truncated.toPath(), Arrays.copyOf(content, content.length - 30));
+
+        try {
+            ZipArchiveInspector.inspect(truncated);
+            fail("The central directory of a truncated archive can not be read");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(MassSpecFileFormat.MZIDENTML, MassSpecFileFormat.checkFormat(truncated));
+    }
+
+    @Test
+    public void entriesAreSniffedAsFarAsAFileHead() throws Exception {
+        StringBuilder comment = new StringBuilder("<!--");
+        for (int i = 0; i < 500; i++) {
+            comment.append(" generated");
+        }
+        comment.append(" -->\n");
+        String mzIdentMl = MZIDENTML.replace("?>\n", "?>\n" + comment);
+        assertTrue(mzIdentMl.indexOf("<MzIdentML") > 4 * 1024);
+
+        File zip = temporaryFolder.newFile("identifications.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            addEntry(out, "identifications.xml", mzIdentMl);
+        } finally {
+            out.close();
+        }
+
+        ZipArchiveInspector.ArchiveSummary summary = ZipArchiveInspector.inspect(zip, 1);
+        assertEquals(MassSpecFileFormat.MZIDENTML, summary.getEntries().get(0).getFormat());
+        assertEquals(MassSpecFileFormat.MZIDENTML, MassSpecFileFormat.checkFormat(zip));
+    }
+
+    private static void addEntry(ZipOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        if (content != null) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        out.closeEntry();
+    }
+}